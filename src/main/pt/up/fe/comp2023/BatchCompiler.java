@@ -0,0 +1,166 @@
+package pt.up.fe.comp2023;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Compiles many .jmm files in a single JVM, running one pipeline per file on a bounded work-stealing pool.
+ * Each input produces one class file in the output folder.
+ */
+public class BatchCompiler {
+
+    private final Pipeline pipeline;
+    private final File outputDir;
+    private final int threads;
+    private final Map<String, File> classOwners;
+
+    public BatchCompiler(Map<String, String> config, File outputDir, int threads) {
+        this.pipeline = new Pipeline(config);
+        this.outputDir = outputDir;
+        this.threads = threads;
+        this.classOwners = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Expands the given paths into the list of .jmm files to compile. Folders are searched recursively.
+     */
+    public static List<File> collectInputs(List<String> paths) {
+        List<File> inputs = new ArrayList<>();
+
+        for (String path : paths) {
+            File file = new File(path);
+
+            if (file.isFile()) {
+                inputs.add(file);
+            } else if (file.isDirectory()) {
+                try (Stream<Path> files = Files.walk(file.toPath())) {
+                    files.filter(p -> p.toString().endsWith(".jmm"))
+                            .sorted()
+                            .forEach(p -> inputs.add(p.toFile()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                throw new RuntimeException("Expected a path to an existing file or folder, got '" + file + "'.");
+            }
+        }
+
+        return inputs;
+    }
+
+    public List<Entry> compile(List<File> inputs) {
+        List<Entry> entries = new ArrayList<>();
+        ExecutorService pool = Executors.newWorkStealingPool(threads);
+
+        try {
+            List<Future<Entry>> futures = new ArrayList<>();
+            for (File input : inputs) {
+                futures.add(pool.submit(compileTask(input)));
+            }
+
+            // Collect in input order, so the summary is stable between runs
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    entries.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    entries.add(Entry.failure(inputs.get(i), e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    entries.add(Entry.failure(inputs.get(i), "Interrupted"));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return entries;
+    }
+
+    private Callable<Entry> compileTask(File input) {
+        return () -> {
+            try {
+                CompiledClass compiledClass = pipeline.compile(input.toPath());
+
+                File previous = classOwners.putIfAbsent(compiledClass.getClassName(), input);
+                if (previous != null) {
+                    return Entry.failure(input, "Class '" + compiledClass.getClassName() + "' is already generated by " + previous);
+                }
+
+                return Entry.success(input, compiledClass.write(outputDir));
+            } catch (CompilationException e) {
+                return Entry.failure(input, e.getMessage() + " (" + e.getReports().size() + " reports)");
+            } catch (RuntimeException e) {
+                return Entry.failure(input, e.getMessage());
+            }
+        };
+    }
+
+    /**
+     * Prints one line per input and the totals. Returns the number of failed inputs.
+     */
+    public static int printSummary(List<Entry> entries) {
+        int failures = 0;
+
+        System.out.println("Batch summary:");
+        for (Entry entry : entries) {
+            if (entry.isSuccess()) {
+                System.out.println("\tOK   " + entry.getInput() + " -> " + entry.getOutput());
+            } else {
+                System.out.println("\tFAIL " + entry.getInput() + ": " + entry.getMessage());
+                failures++;
+            }
+        }
+        System.out.println((entries.size() - failures) + " succeeded, " + failures + " failed");
+
+        return failures;
+    }
+
+    public static class Entry {
+        private final File input;
+        private final File output;
+        private final String message;
+
+        private Entry(File input, File output, String message) {
+            this.input = input;
+            this.output = output;
+            this.message = message;
+        }
+
+        static Entry success(File input, File output) {
+            return new Entry(input, output, null);
+        }
+
+        static Entry failure(File input, String message) {
+            return new Entry(input, null, message);
+        }
+
+        public File getInput() {
+            return input;
+        }
+
+        public File getOutput() {
+            return output;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public boolean isSuccess() {
+            return output != null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.List;
+
+public class CompilationException extends RuntimeException {
+
+    private final Stage stage;
+    private final List<Report> reports;
+
+    public CompilationException(String message, Stage stage, List<Report> reports) {
+        super(message);
+        this.stage = stage;
+        this.reports = reports;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+}
@@ -0,0 +1,259 @@
+package pt.up.fe.comp2023;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running compiler that keeps the pipeline classes loaded and the JIT warm between compilations.
+ * <p>
+ * Requests use a line protocol, either over stdin/stdout or over a loopback / Unix-domain socket:
+ * <pre>
+ * compile &lt;path&gt; [key=value ...]      compiles the given file
+ * source &lt;byteCount&gt; [key=value ...]  compiles the next byteCount bytes (UTF-8 source)
+ * ping                                 answers "pong"
+ * shutdown                             stops the daemon, only over stdin
+ * </pre>
+ * Each compile answers with zero or more "report" lines, an optional "class &lt;name&gt; &lt;base64 bytes&gt;" line
+ * and a final "done ok" or "done failed &lt;message&gt;" line.
+ * <p>
+ * Requests can only set the options in {@link #REQUEST_OPTIONS}. Everything else, such as the cache folder and the
+ * profile file, comes from the configuration the daemon was started with, so no client can make it write elsewhere or
+ * change the cache the other clients share. For the same reason a socket connection cannot stop the daemon, which
+ * serves until its process is stopped.
+ */
+public class CompileDaemon {
+
+    private static final String WARMUP_CODE = "class Warmup { int a; public int run(int b) { int c; c = 0;"
+            + " while (c < b) { c = c + 1; } if (c < 10) { a = c; } else { a = 0 - c; } return a; } }";
+
+    /**
+     * Options that only change the code generated for the request that sets them.
+     */
+    private static final Set<String> REQUEST_OPTIONS = Set.of("optimize", "registerAllocation", "registerAllocator", "debug");
+
+    private final Map<String, String> defaultConfig;
+    private final int warmupIterations;
+    private volatile boolean running;
+
+    public CompileDaemon(Map<String, String> defaultConfig, int warmupIterations) {
+        this.defaultConfig = defaultConfig;
+        this.warmupIterations = warmupIterations;
+        this.running = true;
+    }
+
+    /**
+     * Compiles a small program a few times, so the lexer/parser ATNs are deserialized and the hot paths
+     * are already compiled by the JIT before the first request arrives.
+     */
+    private void warmup() {
+        // The warm-up program must not end up in the compilation cache or in the profile
+        Map<String, String> config = new HashMap<>(defaultConfig);
+        config.remove("cacheDir");
+        config.remove("profile");
+
+        Pipeline pipeline = new Pipeline(config);
+        for (int i = 0; i < warmupIterations; i++) {
+            pipeline.compile(WARMUP_CODE);
+        }
+    }
+
+    public void serveStdin() throws IOException {
+        // Stage output would corrupt the protocol, so it is moved to stderr
+        PrintStream protocolOut = System.out;
+        System.setOut(System.err);
+
+        warmup();
+        serve(System.in, protocolOut, true);
+    }
+
+    public void serveTcp(int port) throws IOException {
+        System.setOut(System.err);
+        warmup();
+
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            System.err.println("Compile daemon listening on " + server.getLocalAddress());
+            acceptLoop(server);
+        }
+    }
+
+    public void serveUnixSocket(Path socketPath) throws IOException {
+        System.setOut(System.err);
+        warmup();
+
+        Files.deleteIfExists(socketPath);
+        SocketAddress address = UnixDomainSocketAddress.of(socketPath);
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(address);
+            System.err.println("Compile daemon listening on " + socketPath);
+            acceptLoop(server);
+        } finally {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    private void acceptLoop(ServerSocketChannel server) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+            while (true) {
+                SocketChannel client = server.accept();
+                pool.submit(() -> {
+                    try (client) {
+                        serve(new BufferedInputStream(Channels.newInputStream(client)), new PrintStream(Channels.newOutputStream(client), false, StandardCharsets.UTF_8), false);
+                    } catch (IOException e) {
+                        System.err.println("Compile daemon connection failed: " + e.getMessage());
+                    }
+                });
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Answers requests from the given stream until it ends or, when it may, it requests a shutdown.
+     */
+    private void serve(InputStream in, PrintStream out, boolean acceptsShutdown) throws IOException {
+        String line;
+        while (running && (line = readLine(in)) != null) {
+            String[] tokens = line.trim().split("\\s+");
+
+            switch (tokens[0]) {
+                case "" -> {
+                }
+                case "ping" -> out.println("pong");
+                case "shutdown" -> {
+                    if (acceptsShutdown) {
+                        running = false;
+                        out.println("done ok");
+                    } else {
+                        out.println("done failed shutdown is only accepted over stdin");
+                    }
+                }
+                case "compile" -> {
+                    if (tokens.length < 2) {
+                        out.println("done failed expected 'compile <path>'");
+                    } else {
+                        File file = new File(tokens[1]);
+                        if (file.isFile()) {
+                            compile(SpecsIo.read(file), file.getPath(), tokens, out);
+                        } else {
+                            out.println("done failed no such file " + file);
+                        }
+                    }
+                }
+                case "source" -> {
+                    int byteCount = tokens.length < 2 ? -1 : parseByteCount(tokens[1]);
+                    if (byteCount < 0) {
+                        out.println("done failed expected 'source <byteCount>'");
+                    } else {
+                        byte[] source = in.readNBytes(byteCount);
+                        compile(new String(source, StandardCharsets.UTF_8), null, tokens, out);
+                    }
+                }
+                default -> out.println("done failed unknown request '" + tokens[0] + "'");
+            }
+
+            out.flush();
+        }
+    }
+
+    /**
+     * Configuration of a request: the daemon's own, with the options the request sets. Fails on any option a request
+     * cannot set.
+     */
+    private Map<String, String> parseOptions(String[] tokens) {
+        Map<String, String> config = new HashMap<>(defaultConfig);
+
+        for (int i = 2; i < tokens.length; i++) {
+            int separator = tokens[i].indexOf('=');
+            if (separator > 0) {
+                String key = tokens[i].substring(0, separator);
+                if (!REQUEST_OPTIONS.contains(key)) {
+                    throw new IllegalArgumentException("option '" + key + "' cannot be set per request");
+                }
+                config.put(key, tokens[i].substring(separator + 1));
+            }
+        }
+
+        return config;
+    }
+
+    private void compile(String code, String sourceName, String[] tokens, PrintStream out) {
+        try {
+            Map<String, String> config = parseOptions(tokens);
+            CompiledClass compiledClass = new Pipeline(config).compile(code, sourceName);
+
+            out.println("class " + compiledClass.getClassName() + " " + Base64.getEncoder().encodeToString(compiledClass.getClassBytes()));
+            out.println("done ok");
+        } catch (CompilationException e) {
+            printReports(e.getReports(), out);
+            out.println("done failed " + e.getMessage());
+        } catch (RuntimeException e) {
+            out.println("done failed " + String.valueOf(e.getMessage()).replace('\n', ' '));
+        }
+    }
+
+    /**
+     * Byte count of a source request, or -1 when it is not a non-negative number.
+     */
+    private static int parseByteCount(String token) {
+        try {
+            return Math.max(Integer.parseInt(token), -1);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void printReports(List<Report> reports, PrintStream out) {
+        for (Report report : reports) {
+            out.println("report " + report.getType() + " " + report.getStage() + " " + report.getLine() + " "
+                    + report.getColumn() + " " + String.valueOf(report.getMessage()).replace('\n', ' '));
+        }
+    }
+
+    // Reads bytes up to a newline, so that "source" payloads can follow on the same stream
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+
+        if (b == -1 && line.size() == 0) {
+            return null;
+        }
+
+        return line.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,63 @@
+package pt.up.fe.comp2023;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * Output of a successful compilation: the class file bytes plus the intermediate OLLIR and Jasmin code, which are
+ * only kept in debug mode.
+ */
+public class CompiledClass {
+
+    private final String className;
+    private final byte[] classBytes;
+    private final String ollirCode;
+    private final String jasminCode;
+
+    public CompiledClass(String className, byte[] classBytes, String ollirCode, String jasminCode) {
+        this.className = className;
+        this.classBytes = classBytes;
+        this.ollirCode = ollirCode;
+        this.jasminCode = jasminCode;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] getClassBytes() {
+        return classBytes;
+    }
+
+    /**
+     * Null unless the class was compiled with the debug option, like {@link #getJasminCode()}.
+     */
+    public String getOllirCode() {
+        return ollirCode;
+    }
+
+    /**
+     * Null unless the class was compiled with the debug option.
+     */
+    public String getJasminCode() {
+        return jasminCode;
+    }
+
+    /**
+     * Writes the class file into the given folder, returning the written file.
+     */
+    public File write(File outputDir) {
+        File classFile = new File(outputDir, className + ".class");
+
+        try {
+            Files.createDirectories(outputDir.toPath());
+            Files.write(classFile.toPath(), classBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return classFile;
+    }
+}
@@ -1,19 +1,17 @@
 package pt.up.fe.comp2023;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.jasmin.JasminBackend;
-import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp2023.analysis.Analysis;
-import pt.up.fe.comp2023.jasmin.MyJasminBackend;
-import pt.up.fe.comp2023.ollir.Optimization;
-import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.specs.util.SpecsLogs;
 import pt.up.fe.specs.util.SpecsSystem;
 
@@ -23,6 +21,18 @@ public class Launcher {
         // Setups console logging and other things
         SpecsSystem.programStandardInit();
 
+        // Batch mode compiles every given file or folder in this same JVM
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        // Daemon mode keeps the compiler warm and answers requests until told to shut down
+        if (args.length > 0 && args[0].equals("--daemon")) {
+            runDaemon(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         // Parse arguments as a map with predefined options
         var config = parseArgs(args);
 
@@ -35,52 +45,85 @@ public class Launcher {
             throw new RuntimeException("Expected a path to an existing input file, got '" + inputFile + "'.");
         }
 
-        // Read contents of input file
-        String code = SpecsIo.read(inputFile);
-
-        // Instantiate JmmParser
-        SimpleParser parser = new SimpleParser();
-        // Parse stage
-        JmmParserResult parserResult = parser.parse(code, config);
+        Pipeline pipeline = new Pipeline(config);
 
-        showErrors(parserResult.getReports());
+        CompiledClass compiledClass;
+        try {
+            // The input file is memory-mapped and lexed in place, not read into a String
+            compiledClass = pipeline.compile(inputFile.toPath());
+        } catch (CompilationException e) {
+            showErrors(e.getReports());
 
-
-        if(!parserResult.getReports().isEmpty()){
-            return;
+            // Syntax errors were already reported, there is nothing more to do
+            if (e.getStage() == Stage.SYNTATIC) {
+                return;
+            }
+            throw e;
         }
 
-        // Instantiate Analysis
-        Analysis analysis = new Analysis();
-        JmmSemanticsResult semanticsResult = analysis.semanticAnalysis(parserResult);
-        showErrors(semanticsResult.getReports());
+        compiledClass.write(new File("programg.class"));
 
-        if(!semanticsResult.getReports().isEmpty()){
-            throw new RuntimeException("Semantic Errors Found");
-        }
-
-        Optimization optimizer = new Optimization();
-        semanticsResult = optimizer.optimize(semanticsResult);
 
-        var ollirResult = optimizer.toOllir(semanticsResult);
+    }
 
-        if (!ollirResult.getReports().isEmpty()){
-            throw new RuntimeException("Error generating Ollir");
+    private static void runBatch(String[] args) {
+        Map<String, String> config = defaultConfig();
+        File outputDir = new File("classes");
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> paths = new ArrayList<>();
+
+        for (String arg : args) {
+            if (parseCommonOption(arg, config)) {
+                continue;
+            }
+
+            if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--output=")) {
+                outputDir = new File(arg.substring("--output=".length()));
+            } else {
+                paths.add(arg);
+            }
         }
-        ollirResult= optimizer.optimize(ollirResult);
 
+        List<File> inputs = BatchCompiler.collectInputs(paths);
+        if (inputs.isEmpty()) {
+            throw new RuntimeException("Expected at least one .jmm file to compile.");
+        }
 
-        JasminBackend jasminBackend = new MyJasminBackend();
-
-        var jasminResult = jasminBackend.toJasmin(ollirResult);
+        BatchCompiler batchCompiler = new BatchCompiler(config, outputDir, threads);
+        int failures = BatchCompiler.printSummary(batchCompiler.compile(inputs));
 
-        if (!jasminResult.getReports().isEmpty()){
-            throw new RuntimeException("Error generating Jasmin code");
+        if (failures > 0) {
+            throw new RuntimeException("Batch compilation failed for " + failures + " file(s)");
         }
+    }
 
-        jasminResult.compile(new File("programg.class"));
+    private static void runDaemon(String[] args) {
+        Map<String, String> config = defaultConfig();
+        String endpoint = null;
 
+        for (String arg : args) {
+            if (!parseCommonOption(arg, config)) {
+                endpoint = arg;
+            }
+        }
 
+        CompileDaemon daemon = new CompileDaemon(config, 20);
+
+        try {
+            if (endpoint == null) {
+                daemon.serveStdin();
+            } else if (endpoint.startsWith("--port=")) {
+                daemon.serveTcp(Integer.parseInt(endpoint.substring("--port=".length())));
+            } else if (endpoint.startsWith("--socket=")) {
+                daemon.serveUnixSocket(Path.of(endpoint.substring("--socket=".length())));
+            } else {
+                throw new RuntimeException("Expected --port=<port>, --socket=<path> or no option for stdin, got '" + endpoint + "'.");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     private static void showErrors(List<Report> reportList){
@@ -93,14 +136,68 @@ public class Launcher {
     private static Map<String, String> parseArgs(String[] args) {
         SpecsLogs.info("Executing with args: " + Arrays.toString(args));
 
+        Map<String, String> config = defaultConfig();
+        List<String> inputs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (!parseCommonOption(arg, config)) {
+                inputs.add(arg);
+            }
+        }
+
         // Check if there is at least one argument
-        if (args.length != 1) {
+        if (inputs.size() != 1) {
             throw new RuntimeException("Expected a single argument, a path to an existing input file.");
         }
 
         // Create config
+        config.put("inputFile", inputs.get(0));
+
+        return config;
+    }
+
+    /**
+     * Handles the options shared by every mode: --cache=DIR enables the compilation cache,
+     * --cache-size=MB bounds its size, --profile=FILE appends a JSON profile line per compilation
+     * to the file ("-" for stderr), --classpath=DIRS sets the folders with the class files of
+     * the imported classes and --register-allocator=graph|linearScan picks the register allocator
+     * instead of choosing it by method size.
+     */
+    private static boolean parseCommonOption(String arg, Map<String, String> config) {
+        if (arg.startsWith("--cache=")) {
+            config.put("cacheDir", arg.substring("--cache=".length()));
+            return true;
+        }
+
+        if (arg.startsWith("--cache-size=")) {
+            config.put("cacheSize", arg.substring("--cache-size=".length()));
+            return true;
+        }
+
+        if (arg.startsWith("--classpath=")) {
+            config.put("classpath", arg.substring("--classpath=".length()));
+            return true;
+        }
+
+        if (arg.startsWith("--profile=")) {
+            config.put("profile", arg.substring("--profile=".length()));
+            return true;
+        }
+
+        if (arg.startsWith("--register-allocator=")) {
+            String allocator = arg.substring("--register-allocator=".length());
+            if (!allocator.equals("graph") && !allocator.equals("linearScan")) {
+                throw new RuntimeException("Expected --register-allocator=graph or --register-allocator=linearScan, got '" + arg + "'.");
+            }
+            config.put("registerAllocator", allocator);
+            return true;
+        }
+
+        return false;
+    }
+
+    private static Map<String, String> defaultConfig() {
         Map<String, String> config = new HashMap<>();
-        config.put("inputFile", args[0]);
         config.put("optimize", "true");
         config.put("registerAllocation", "0");
         config.put("debug", "false");
@@ -0,0 +1,189 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lexer input over a memory-mapped UTF-8 source file, so a large file is never read into a String nor copied into
+ * the char array of an ANTLRInputStream.
+ * <p>
+ * Sources are almost always ASCII, in which case each byte of the mapping is a character and the lexer reads the
+ * mapping directly. Otherwise the file is decoded once into a char buffer, like ANTLRInputStream would, with
+ * malformed input replaced as SpecsIo.read does.
+ */
+public class MappedCharStream implements CharStream {
+
+    private static final long NON_ASCII_BYTES = 0x8080808080808080L;
+
+    private final ByteBuffer bytes;
+    // Decoded contents, only for files that are not ASCII
+    private final CharBuffer chars;
+    private final int size;
+    private final String sourceName;
+
+    private int position = 0;
+
+    private MappedCharStream(ByteBuffer bytes, CharBuffer chars, String sourceName) {
+        this.bytes = bytes;
+        this.chars = chars;
+        this.size = chars != null ? chars.limit() : bytes.limit();
+        this.sourceName = sourceName;
+    }
+
+    /**
+     * Maps the given file. The mapping stays valid after the file is closed and is released when the stream is
+     * garbage collected.
+     */
+    public static MappedCharStream open(Path file) {
+        ByteBuffer bytes;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length > Integer.MAX_VALUE) {
+                throw new RuntimeException("File '" + file + "' is too large to be compiled (" + length + " bytes)");
+            }
+
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read file '" + file + "'", e);
+        }
+
+        CharBuffer chars = isAscii(bytes) ? null : decode(bytes);
+
+        return new MappedCharStream(bytes, chars, file.toString());
+    }
+
+    private static boolean isAscii(ByteBuffer bytes) {
+        int limit = bytes.limit();
+        int index = 0;
+
+        for (; index + Long.BYTES <= limit; index += Long.BYTES) {
+            if ((bytes.getLong(index) & NON_ASCII_BYTES) != 0) {
+                return false;
+            }
+        }
+
+        for (; index < limit; index++) {
+            if (bytes.get(index) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static CharBuffer decode(ByteBuffer bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(bytes.duplicate());
+        } catch (CharacterCodingException e) {
+            // Not thrown when errors are replaced
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Raw contents of the file, as a new read-only view from its start.
+     */
+    public ByteBuffer getBytes() {
+        return bytes.asReadOnlyBuffer().position(0);
+    }
+
+    private int charAt(int index) {
+        return chars != null ? chars.get(index) : bytes.get(index);
+    }
+
+    @Override
+    public void consume() {
+        if (position >= size) {
+            throw new IllegalStateException("cannot consume EOF");
+        }
+
+        position++;
+    }
+
+    @Override
+    public int LA(int i) {
+        if (i == 0) {
+            return 0;
+        }
+
+        // LA(-1) is the last consumed character
+        int index = i > 0 ? position + i - 1 : position + i;
+        if (index < 0 || index >= size) {
+            return IntStream.EOF;
+        }
+
+        return charAt(index);
+    }
+
+    @Override
+    public int mark() {
+        // The whole file is always available
+        return -1;
+    }
+
+    @Override
+    public void release(int marker) {
+    }
+
+    @Override
+    public int index() {
+        return position;
+    }
+
+    @Override
+    public void seek(int index) {
+        position = Math.max(0, Math.min(index, size));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Override
+    public String getText(Interval interval) {
+        int start = interval.a;
+        int stop = Math.min(interval.b, size - 1);
+
+        if (start < 0 || start >= size || stop < start) {
+            return "";
+        }
+
+        int count = stop - start + 1;
+
+        if (chars != null) {
+            return chars.subSequence(start, start + count).toString();
+        }
+
+        byte[] text = new byte[count];
+        bytes.get(start, text);
+
+        return new String(text, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return getText(Interval.of(0, size - 1));
+    }
+}
@@ -0,0 +1,154 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.ANTLRErrorStrategy;
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ConsoleErrorListener;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+
+/**
+ * Per-thread lexer and parser instances, reset for each input instead of being allocated again.
+ * <p>
+ * The prediction DFAs are static in the generated lexer and parser, so every instance of every thread shares them
+ * and they stay warm between compilations; only the instances themselves (and their token buffer) are per thread,
+ * so reusing them needs no locking. Usage:
+ * <pre>
+ * try (ParserPool.Lease lease = ParserPool.acquire(new ANTLRInputStream(code), true)) {
+ *     lease.getParser().program();
+ * }
+ * </pre>
+ */
+public class ParserPool {
+
+    private static final ThreadLocal<ParserPool> POOLS = ThreadLocal.withInitial(ParserPool::new);
+
+    // Input of idle lexers, nothing ever reads it
+    private static final CharStream NO_INPUT = new ANTLRInputStream("");
+
+    // Created on the first lease, the generated parser reads the first token as soon as it is built
+    private JavammLexer lexer;
+    private ReusableTokenStream tokens;
+    private JavammParser parser;
+
+    private boolean inUse = false;
+
+    /**
+     * Returns the lexer and parser of the calling thread, ready to parse the given input from its start. If they are
+     * already leased (a nested parse), new instances are returned instead.
+     *
+     * @param sll if true, the parser uses SLL prediction and gives up at the first syntax error, otherwise it uses
+     *            the default LL prediction, error recovery and console error reporting
+     */
+    public static Lease acquire(CharStream input, boolean sll) {
+        ParserPool pool = POOLS.get();
+
+        if (pool.inUse) {
+            return newLease(input, sll);
+        }
+
+        pool.inUse = true;
+        input.seek(0);
+        pool.reset(input);
+        configure(pool.parser, sll);
+
+        return new Lease(pool, pool.lexer, pool.parser);
+    }
+
+    /**
+     * Returns new lexer and parser instances, outside the pool.
+     */
+    public static Lease newLease(CharStream input, boolean sll) {
+        input.seek(0);
+        JavammLexer lexer = new JavammLexer(input);
+        JavammParser parser = new JavammParser(new CommonTokenStream(lexer));
+        configure(parser, sll);
+
+        return new Lease(null, lexer, parser);
+    }
+
+    private void reset(CharStream input) {
+        if (parser == null) {
+            lexer = new JavammLexer(input);
+            tokens = new ReusableTokenStream(lexer);
+            parser = new JavammParser(tokens);
+            return;
+        }
+
+        lexer.setInputStream(input);
+        tokens.reset(lexer);
+        // Also resets the parser state, including the syntax error count
+        parser.setTokenStream(tokens);
+    }
+
+    private static void configure(JavammParser parser, boolean sll) {
+        ANTLRErrorStrategy errorStrategy;
+
+        parser.removeErrorListeners();
+
+        if (sll) {
+            parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+            errorStrategy = new BailErrorStrategy();
+        } else {
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            parser.addErrorListener(ConsoleErrorListener.INSTANCE);
+            errorStrategy = new DefaultErrorStrategy();
+        }
+
+        parser.setErrorHandler(errorStrategy);
+    }
+
+    private void release() {
+        // Drops the last input, which may be a large mapped file, and its tokens; the buffer keeps its capacity
+        lexer.setInputStream(NO_INPUT);
+        tokens.reset(lexer);
+        inUse = false;
+    }
+
+    public static class Lease implements AutoCloseable {
+
+        private final ParserPool pool;
+        private final JavammLexer lexer;
+        private final JavammParser parser;
+
+        private Lease(ParserPool pool, JavammLexer lexer, JavammParser parser) {
+            this.pool = pool;
+            this.lexer = lexer;
+            this.parser = parser;
+        }
+
+        public JavammLexer getLexer() {
+            return lexer;
+        }
+
+        public JavammParser getParser() {
+            return parser;
+        }
+
+        @Override
+        public void close() {
+            if (pool != null) {
+                pool.release();
+            }
+        }
+    }
+
+    /**
+     * In this ANTLR version, setTokenSource does not clear the end-of-file flag, so a reused stream would not read
+     * any token of the next input.
+     */
+    private static class ReusableTokenStream extends CommonTokenStream {
+
+        ReusableTokenStream(TokenSource tokenSource) {
+            super(tokenSource);
+        }
+
+        void reset(TokenSource tokenSource) {
+            setTokenSource(tokenSource);
+            fetchedEOF = false;
+        }
+    }
+}
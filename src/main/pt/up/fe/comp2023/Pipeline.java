@@ -0,0 +1,199 @@
+package pt.up.fe.comp2023;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CharStream;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.analysis.Analysis;
+import pt.up.fe.comp2023.cache.CompilationCache;
+import pt.up.fe.comp2023.jasmin.ClassFileResult;
+import pt.up.fe.comp2023.jasmin.MyJasminBackend;
+import pt.up.fe.comp2023.ollir.Optimization;
+import pt.up.fe.comp2023.profiling.CompilationProfile;
+import pt.up.fe.comp2023.profiling.Profiler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Runs the whole compilation pipeline (parse, analysis, optimization, OLLIR, class file) over a single source.
+ * Every call creates its own stage instances, so one pipeline can be used from several threads at once.
+ */
+public class Pipeline {
+
+    private static final Object PROFILE_LOCK = new Object();
+
+    // Default size limit of the compilation cache, when "cacheSize" (in MB) is not given
+    private static final long DEFAULT_CACHE_MB = 256;
+
+    private final Map<String, String> config;
+    private final CompilationCache cache;
+
+    public Pipeline(Map<String, String> config) {
+        this.config = config;
+
+        String cacheDir = config.get("cacheDir");
+        if (cacheDir == null) {
+            this.cache = null;
+        } else {
+            long cacheMb = Long.parseLong(config.getOrDefault("cacheSize", Long.toString(DEFAULT_CACHE_MB)));
+            this.cache = CompilationCache.open(Path.of(cacheDir), cacheMb * 1024 * 1024);
+        }
+    }
+
+    public Map<String, String> getConfig() {
+        return config;
+    }
+
+    public CompiledClass compile(String code) {
+        return compile(code, config.get("inputFile"));
+    }
+
+    /**
+     * Compiles the given code into a class. When a cache folder is configured ("cacheDir"), previous results for
+     * the same code and options are returned without running any stage. When "profile" is configured, the
+     * measurements of every phase are written as one JSON line to that file ("-" for stderr).
+     *
+     * @param sourceName name of the input, only used to identify the profile
+     * @throws CompilationException if any stage reports errors
+     */
+    public CompiledClass compile(String code, String sourceName) {
+        return compile(new ANTLRInputStream(code), () -> CompilationCache.computeKey(code, config), sourceName);
+    }
+
+    /**
+     * Compiles the given source file, which is memory-mapped instead of being read into a String, like
+     * {@link #compile(String, String)}.
+     */
+    public CompiledClass compile(Path file) {
+        MappedCharStream input = MappedCharStream.open(file);
+        return compile(input, () -> CompilationCache.computeKey(input.getBytes(), config), file.toString());
+    }
+
+    /**
+     * @param cacheKey computes the cache key of the input, only called when the cache is enabled
+     */
+    private CompiledClass compile(CharStream input, Supplier<String> cacheKey, String sourceName) {
+        String profileOutput = config.get("profile");
+        if (profileOutput == null) {
+            return compileCached(input, cacheKey, null);
+        }
+
+        CompilationProfile profile = new CompilationProfile(sourceName);
+        long start = System.nanoTime();
+
+        Profiler.start(profile);
+        try {
+            CompiledClass compiledClass = compileCached(input, cacheKey, profile);
+            profile.setClassName(compiledClass.getClassName());
+            return compiledClass;
+        } finally {
+            Profiler.stop();
+            profile.setTotalWallNanos(System.nanoTime() - start);
+            writeProfile(profile, profileOutput);
+        }
+    }
+
+    private CompiledClass compileCached(CharStream input, Supplier<String> cacheKey, CompilationProfile profile) {
+        if (cache == null) {
+            return compileUncached(input);
+        }
+
+        String key = cacheKey.get();
+
+        CompiledClass compiledClass;
+        try (var ignored = Profiler.phase("cacheLookup")) {
+            compiledClass = cache.get(key);
+        }
+
+        if (compiledClass != null) {
+            if (profile != null) {
+                profile.setCacheHit(true);
+            }
+            return compiledClass;
+        }
+
+        compiledClass = compileUncached(input);
+
+        try (var ignored = Profiler.phase("cacheStore")) {
+            cache.put(key, compiledClass);
+        }
+
+        return compiledClass;
+    }
+
+    private static void writeProfile(CompilationProfile profile, String output) {
+        String json = profile.toJson();
+
+        if (output.equals("-")) {
+            System.err.println(json);
+            return;
+        }
+
+        // Several pipelines may share the same profile file in batch mode
+        synchronized (PROFILE_LOCK) {
+            try {
+                Files.writeString(Path.of(output), json + System.lineSeparator(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Could not write compilation profile: " + e.getMessage());
+            }
+        }
+    }
+
+    private CompiledClass compileUncached(CharStream input) {
+        // Parse stage
+        SimpleParser parser = new SimpleParser();
+        JmmParserResult parserResult = parser.parse(input, config);
+
+        if (!parserResult.getReports().isEmpty()) {
+            throw new CompilationException("Syntax Errors Found", Stage.SYNTATIC, parserResult.getReports());
+        }
+
+        // Semantic stage
+        Analysis analysis = new Analysis();
+        JmmSemanticsResult semanticsResult = analysis.semanticAnalysis(parserResult);
+
+        if (!semanticsResult.getReports().isEmpty()) {
+            throw new CompilationException("Semantic Errors Found", Stage.SEMANTIC, semanticsResult.getReports());
+        }
+
+        // Optimization and OLLIR stages
+        Optimization optimizer = new Optimization();
+        semanticsResult = optimizer.optimize(semanticsResult);
+
+        var ollirResult = optimizer.toOllir(semanticsResult);
+
+        if (!ollirResult.getReports().isEmpty()) {
+            throw new CompilationException("Error generating Ollir", Stage.LLIR, ollirResult.getReports());
+        }
+        ollirResult = optimizer.optimize(ollirResult);
+
+        // Methods that did not fit in the allowed registers are all reported at once, before any code is generated
+        if (!ollirResult.getReports().isEmpty()) {
+            throw new CompilationException("Register allocation failed", Stage.OPTIMIZATION, ollirResult.getReports());
+        }
+
+        // Backend stage
+        MyJasminBackend jasminBackend = new MyJasminBackend();
+
+        ClassFileResult classFileResult = jasminBackend.toClassFile(ollirResult);
+
+        if (!classFileResult.getReports().isEmpty()) {
+            throw new CompilationException("Error generating the class file", Stage.GENERATION, classFileResult.getReports());
+        }
+
+        // The Jasmin code is only a readable view of the class, it is not needed to build it
+        String jasminCode = null;
+        if ("true".equals(config.get("debug"))) {
+            jasminCode = new MyJasminBackend().toJasmin(ollirResult).getJasminCode();
+        }
+
+        return new CompiledClass(classFileResult.getClassName(), classFileResult.getClassBytes(),
+                ollirResult.getOllirCode(), jasminCode);
+    }
+}
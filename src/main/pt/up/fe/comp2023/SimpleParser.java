@@ -1,8 +1,11 @@
 package pt.up.fe.comp2023;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
-import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ast.antlr.AntlrParser;
 import pt.up.fe.comp.jmm.ast.antlr.ThrowingErrorListener;
 import pt.up.fe.comp.jmm.parser.JmmParser;
@@ -10,10 +13,14 @@ import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.ast.AstBuilder;
+import pt.up.fe.comp2023.ast.AstNode;
+import pt.up.fe.comp2023.profiling.Profiler;
 
 
 import java.util.Collections;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Copyright 2022 SPeCS.
@@ -37,37 +44,96 @@ public class SimpleParser implements JmmParser {
 
     @Override
     public JmmParserResult parse(String jmmCode, String startingRule, Map<String, String> config) {
+        return parse(new ANTLRInputStream(jmmCode), startingRule, config);
+    }
+
+    /**
+     * Parses the given input, for instance a {@link MappedCharStream} over a file, without needing the code as a String.
+     */
+    public JmmParserResult parse(CharStream input, Map<String, String> config) {
+        return parse(input, getDefaultRule(), config);
+    }
+
+    public JmmParserResult parse(CharStream input, String startingRule, Map<String, String> config) {
+        try (var ignored = Profiler.phase("parse")) {
+            return parseInput(input, startingRule, config);
+        }
+    }
+
+    private JmmParserResult parseInput(CharStream input, String startingRule, Map<String, String> config) {
 
+        // Most inputs parse with SLL prediction alone, which never needs the slower full-context prediction
+        if (!"false".equals(config.get("sllParsing"))) {
+            Optional<JmmNode> root = parseSll(input, startingRule, config);
+            if (root.isPresent()) {
+                return new JmmParserResult(root.get(), Collections.emptyList(), config);
+            }
 
-        // Convert code string into a character stream
-        var input = new ANTLRInputStream(jmmCode);
+            Profiler.count("parseFallbacks", 1);
+        }
 
-        // Transform characters into tokens using the lexer
-        var lex = new pt.up.fe.comp2023.JavammLexer(input);
-        // Wrap lexer around a token stream
-        var tokens = new CommonTokenStream(lex);
-        // Transforms tokens into a parse tree
-        var parser = new pt.up.fe.comp2023.JavammParser(tokens);
+        try (ParserPool.Lease lease = lease(input, false, config)) {
+            var lex = lease.getLexer();
+            var parser = lease.getParser();
 
-        try {
-            // Convert ANTLR CST to JmmNode AST
-            return AntlrParser.parse(lex, parser, startingRule)
-                    // If there were no errors and a root node was generated, create a JmmParserResult with the node
-                    .map(root -> new JmmParserResult(root, Collections.emptyList(), config))
-                    // If there were errors, create an error JmmParserResult without root node
-                    .orElseGet(() -> {
+            try {
+                // Build the AST from the parse
+                return parseAst(lex, parser, startingRule, config)
+                        // If there were no errors and a root node was generated, create a JmmParserResult with the node
+                        .map(root -> new JmmParserResult(root, Collections.emptyList(), config))
+                        // If there were errors, create an error JmmParserResult without root node
+                        .orElseGet(() -> {
 
-                        return  JmmParserResult.newError(new Report(ReportType.ERROR, Stage.SYNTATIC, -1,
-                                "There were " + parser.getNumberOfSyntaxErrors() +" syntax errors during parsing, terminating "));
+                            return  JmmParserResult.newError(new Report(ReportType.ERROR, Stage.SYNTATIC, -1,
+                                    "There were " + parser.getNumberOfSyntaxErrors() +" syntax errors during parsing, terminating "));
 
-                    });
+                        });
 
 
-        } catch (Exception e) {
+            } catch (Exception e) {
 
-            //There was an uncaught exception during parsing, create an error JmmParserResult without root node
-            return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing " + parser.getNumberOfSyntaxErrors(), e));
+                //There was an uncaught exception during parsing, create an error JmmParserResult without root node
+                return JmmParserResult.newError(Report.newError(Stage.SYNTATIC, -1, -1, "Exception during parsing " + parser.getNumberOfSyntaxErrors(), e));
+            }
         }
     }
 
+    /**
+     * Parses in SLL mode, giving up at the first syntax error instead of recovering. An empty result means the
+     * input is either invalid or needs full LL prediction, and must be parsed again in the default mode, which also
+     * produces the error messages.
+     */
+    private Optional<JmmNode> parseSll(CharStream input, String startingRule, Map<String, String> config) {
+        try (ParserPool.Lease lease = lease(input, true, config)) {
+            return parseAst(lease.getLexer(), lease.getParser(), startingRule, config);
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Builds the AST during the parse, without a parse tree, unless the "directAst" option is false, in which case the
+     * parse tree is built and then converted.
+     */
+    private Optional<JmmNode> parseAst(Lexer lex, Parser parser, String startingRule, Map<String, String> config) {
+        if ("false".equals(config.get("directAst"))) {
+            parser.setBuildParseTree(true);
+            return AntlrParser.parse(lex, parser, startingRule).map(AstNode::fromJmmNode);
+        }
+
+        return AstBuilder.parse(lex, parser, startingRule);
+    }
+
+    /**
+     * Lexer and parser for the given input, reused from the pool of the current thread unless the "parserPool" option
+     * is false.
+     */
+    private ParserPool.Lease lease(CharStream input, boolean sll, Map<String, String> config) {
+        if ("false".equals(config.get("parserPool"))) {
+            return ParserPool.newLease(input, sll);
+        }
+
+        return ParserPool.acquire(input, sll);
+    }
+
 }
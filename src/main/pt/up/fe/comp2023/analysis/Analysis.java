@@ -2,8 +2,11 @@ package pt.up.fe.comp2023.analysis;
 
 import pt.up.fe.comp.jmm.analysis.JmmAnalysis;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.profiling.CompilationProfile;
+import pt.up.fe.comp2023.profiling.Profiler;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -15,15 +18,77 @@ public class Analysis implements JmmAnalysis {
         this.symbolTable = new SimpleSymbolTable();
         List<Report> reportList = new ArrayList<>();
 
-        SymbolTableVisitor symbolTableVisitor = new SymbolTableVisitor(symbolTable);
-        symbolTableVisitor.visit(jmmParserResult.getRootNode(), reportList);
+        try (var ignored = Profiler.phase("symbolTable")) {
+            SymbolTableVisitor symbolTableVisitor = new SymbolTableVisitor(symbolTable);
+            symbolTableVisitor.visit(jmmParserResult.getRootNode(), reportList);
+        }
+
+        try (var ignored = Profiler.phase("importResolution")) {
+            ClassIndex classIndex = ClassIndex.forConfig(jmmParserResult.getConfig());
+            symbolTable.resolveImports(classIndex);
+            classIndex.save();
+        }
+
+        // Nothing changes the table from here on
+        symbolTable.freeze();
+
+        try (var ignored = Profiler.phase("nameResolution")) {
+            NameResolver nameResolver = new NameResolver(symbolTable);
+            nameResolver.visit(jmmParserResult.getRootNode(), reportList);
+        }
 
         if (reportList.isEmpty()) {
-            TypeVisitor typeVisitor = new TypeVisitor(symbolTable);
-            typeVisitor.visit(jmmParserResult.getRootNode(), reportList);
+            try (var ignored = Profiler.phase("typeCheck")) {
+                if ("true".equals(jmmParserResult.getConfig().get("parallelTypeCheck"))) {
+                    reportList.addAll(typeCheckMethodsInParallel(jmmParserResult.getRootNode()));
+                } else {
+                    TypeVisitor typeVisitor = new TypeVisitor(symbolTable);
+                    typeVisitor.visit(jmmParserResult.getRootNode(), reportList);
+                }
+            }
         }
 
         return new JmmSemanticsResult(jmmParserResult, symbolTable, reportList);
     }
 
+    /**
+     * Type checks every method on its own, in parallel, which gives the same reports as visiting the whole tree since
+     * the type checker has nothing to check outside the methods. Each method only reads the frozen symbol table and
+     * writes to the nodes of its own body, and the reports are merged in source order.
+     * <p>
+     * Called from a thread of a ForkJoinPool, such as the one of the batch compiler, the methods are checked by the
+     * threads of that pool instead of competing with it from the common pool. The work done on the pool threads is
+     * recorded in the profile of this compilation.
+     */
+    private List<Report> typeCheckMethodsInParallel(JmmNode root) {
+        List<JmmNode> methods = new ArrayList<>();
+        collectMethods(root, methods);
+
+        CompilationProfile profile = Profiler.current();
+
+        return methods.parallelStream()
+                .map(method -> Profiler.runAs(profile, "typeCheck", () -> typeCheckMethod(method)))
+                .flatMap(List::stream)
+                .toList();
+    }
+
+    private List<Report> typeCheckMethod(JmmNode method) {
+        List<Report> reports = new ArrayList<>();
+
+        TypeVisitor typeVisitor = new TypeVisitor(symbolTable);
+        typeVisitor.visit(method, reports);
+
+        return reports;
+    }
+
+    private static void collectMethods(JmmNode node, List<JmmNode> methods) {
+        if (node.getKind().equals("MethodDeclaration")) {
+            methods.add(node);
+            return;
+        }
+
+        for (JmmNode child : node.getChildren())
+            collectMethods(child, methods);
+    }
+
 }
@@ -0,0 +1,75 @@
+package pt.up.fe.comp2023.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+
+/**
+ * What a name refers to inside a method, as resolved by {@link SimpleSymbolTable#resolve(String, String)}.
+ */
+public class Binding {
+
+    public enum Kind {
+        LOCAL,
+        PARAMETER,
+        FIELD,
+        IMPORT
+    }
+
+    private final Kind kind;
+    private final Symbol symbol;
+    private final int parameterIndex;
+
+    private Binding(Kind kind, Symbol symbol, int parameterIndex) {
+        this.kind = kind;
+        this.symbol = symbol;
+        this.parameterIndex = parameterIndex;
+    }
+
+    static Binding local(Symbol symbol) {
+        return new Binding(Kind.LOCAL, symbol, -1);
+    }
+
+    /**
+     * @param parameterIndex OLLIR index of the parameter, starting at 1
+     */
+    static Binding parameter(Symbol symbol, int parameterIndex) {
+        return new Binding(Kind.PARAMETER, symbol, parameterIndex);
+    }
+
+    static Binding field(Symbol symbol) {
+        return new Binding(Kind.FIELD, symbol, -1);
+    }
+
+    /**
+     * Imported class, whose symbol has the class as its type and its simple name as its name.
+     */
+    static Binding imported(Symbol symbol) {
+        return new Binding(Kind.IMPORT, symbol, -1);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Symbol getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * OLLIR index of the parameter (starting at 1), or -1 if the name is not a parameter.
+     */
+    public int getParameterIndex() {
+        return parameterIndex;
+    }
+
+    /**
+     * True for locals, parameters and fields, which {@link SimpleSymbolTable#getVariable(String, String)} returns.
+     */
+    public boolean isVariable() {
+        return kind != Kind.IMPORT;
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + symbol;
+    }
+}
@@ -0,0 +1,400 @@
+package pt.up.fe.comp2023.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Signatures of the methods of the compiled classes a program can import, read from the class files in the folders
+ * of the "classpath" option (by default the folder where the tests run the generated classes).
+ * <p>
+ * A class file is parsed the first time it is looked up and kept with its modification time and size, so later
+ * compilations only check the file attributes and parse it again if it changed. When a cache folder is configured
+ * ("cacheDir") the parsed classes are also stored there, and reused by later compiler processes.
+ */
+public class ClassIndex {
+
+    public static final String DEFAULT_CLASSPATH = "libs-jmm/compiled";
+
+    // Bump when the index file format changes, so old files are ignored
+    private static final int FORMAT_VERSION = 1;
+    private static final String INDEX_FILE = "signatures.index";
+
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_BRIDGE = 0x0040;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    private static final Map<String, ClassIndex> INDEXES = new ConcurrentHashMap<>();
+
+    /**
+     * Method of an imported class. Types that do not exist in Java--, such as long or int[][], are null.
+     */
+    public record Method(String name, List<Type> parameters, Type returnType, boolean isStatic) {
+    }
+
+    private record ClassEntry(long modified, long size, String superName, List<MethodEntry> methods) {
+    }
+
+    private record MethodEntry(String name, String descriptor, int access) {
+    }
+
+    private final List<Path> roots;
+    // Null when the index is only kept in memory
+    private final Path indexFile;
+    private final Map<Path, ClassEntry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty = false;
+
+    private ClassIndex(List<Path> roots, Path indexFile) {
+        this.roots = roots;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Returns the index of the classpath of the given options, shared by every compilation of this process.
+     */
+    public static ClassIndex forConfig(Map<String, String> config) {
+        String classpath = config.getOrDefault("classpath", DEFAULT_CLASSPATH);
+        String cacheDir = config.get("cacheDir");
+
+        return INDEXES.computeIfAbsent(classpath + File.pathSeparator + cacheDir, key -> {
+            List<Path> roots = new ArrayList<>();
+            for (String folder : classpath.split(File.pathSeparator)) {
+                if (!folder.isEmpty())
+                    roots.add(Path.of(folder).toAbsolutePath().normalize());
+            }
+
+            ClassIndex index = new ClassIndex(roots, cacheDir == null ? null : Path.of(cacheDir).resolve(INDEX_FILE));
+            index.load();
+            return index;
+        });
+    }
+
+    /**
+     * Methods of the given class and of the super classes found on the classpath, by name. Constructors and private
+     * methods are left out, and a method overridden by a subclass is only listed once.
+     *
+     * @param className qualified name, as written in the import
+     * @return null if the class is not on the classpath
+     */
+    public Map<String, List<Method>> getMethods(String className) {
+        String internalName = className.replace('.', '/');
+        ClassEntry entry = find(internalName);
+        if (entry == null)
+            return null;
+
+        Map<String, List<Method>> methods = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        Set<String> visitedClasses = new HashSet<>();
+
+        while (entry != null && visitedClasses.add(internalName)) {
+            for (MethodEntry method : entry.methods()) {
+                // Name and parameters, without the return type
+                String key = method.name() + method.descriptor().substring(0, method.descriptor().indexOf(')') + 1);
+                if (seen.add(key))
+                    methods.computeIfAbsent(method.name(), name -> new ArrayList<>()).add(toMethod(method));
+            }
+
+            internalName = entry.superName();
+            entry = internalName.isEmpty() ? null : find(internalName);
+        }
+
+        return methods;
+    }
+
+    /**
+     * Super class of the given class, both as internal names.
+     *
+     * @return null if the class is not on the classpath or has no super class
+     */
+    public String getSuperClass(String internalName) {
+        ClassEntry entry = find(internalName);
+        return entry == null || entry.superName().isEmpty() ? null : entry.superName();
+    }
+
+    /**
+     * Hash of the names, sizes and modification times of every class file on the classpath, which changes whenever
+     * a class that could be imported changes.
+     */
+    public String fingerprint() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            for (Path root : roots) {
+                if (!Files.isDirectory(root))
+                    continue;
+
+                List<String> files = new ArrayList<>();
+                try (Stream<Path> paths = Files.walk(root)) {
+                    paths.filter(path -> path.toString().endsWith(".class")).forEach(path -> {
+                        try {
+                            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                            files.add(root.relativize(path) + ":" + attributes.size() + ":"
+                                    + attributes.lastModifiedTime().toMillis());
+                        } catch (IOException e) {
+                            // deleted meanwhile
+                        }
+                    });
+                }
+
+                files.sort(null);
+                digest.update((root + "\n").getBytes(StandardCharsets.UTF_8));
+                for (String file : files)
+                    digest.update((file + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Stores the classes parsed since the index was loaded, if a cache folder is configured.
+     */
+    public synchronized void save() {
+        if (indexFile == null || !dirty)
+            return;
+
+        dirty = false;
+
+        try {
+            Files.createDirectories(indexFile.getParent());
+
+            Path temp = Files.createTempFile(indexFile.getParent(), INDEX_FILE, ".tmp");
+            Files.write(temp, encode());
+
+            try {
+                Files.move(temp, indexFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // Like the compilation cache, failing to store the index must not fail the compilation
+            System.err.println("Could not store the signature index: " + e.getMessage());
+        }
+    }
+
+    private ClassEntry find(String internalName) {
+        for (Path root : roots) {
+            Path file = root.resolve(internalName + ".class");
+
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                continue;
+            }
+
+            long modified = attributes.lastModifiedTime().toMillis();
+            long size = attributes.size();
+
+            ClassEntry entry = entries.get(file);
+            if (entry != null && entry.modified() == modified && entry.size() == size)
+                return entry;
+
+            try {
+                entry = parse(Files.readAllBytes(file), modified, size);
+            } catch (IOException e) {
+                // Unreadable or not a class file, the class is treated as not found
+                return null;
+            }
+
+            entries.put(file, entry);
+            dirty = true;
+            return entry;
+        }
+
+        return null;
+    }
+
+    private static ClassEntry parse(byte[] bytes, long modified, long size) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        if (in.readInt() != 0xCAFEBABE)
+            throw new IOException("Not a class file");
+
+        // minor and major version
+        in.skipNBytes(4);
+
+        int constantCount = in.readUnsignedShort();
+        String[] texts = new String[constantCount];
+        int[] classNames = new int[constantCount];
+
+        for (int i = 1; i < constantCount; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> texts[i] = in.readUTF();
+                case 7 -> classNames[i] = in.readUnsignedShort();
+                case 8, 16, 19, 20 -> in.skipNBytes(2);
+                case 15 -> in.skipNBytes(3);
+                case 3, 4, 9, 10, 11, 12, 17, 18 -> in.skipNBytes(4);
+                case 5, 6 -> {
+                    // long and double take two entries
+                    in.skipNBytes(8);
+                    i++;
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+
+        // access flags and this class
+        in.skipNBytes(4);
+        int superIndex = in.readUnsignedShort();
+        String superName = superIndex == 0 ? "" : texts[classNames[superIndex]];
+
+        int interfaceCount = in.readUnsignedShort();
+        in.skipNBytes(2L * interfaceCount);
+
+        int fieldCount = in.readUnsignedShort();
+        for (int i = 0; i < fieldCount; i++) {
+            in.skipNBytes(6);
+            skipAttributes(in);
+        }
+
+        List<MethodEntry> methods = new ArrayList<>();
+        int methodCount = in.readUnsignedShort();
+        for (int i = 0; i < methodCount; i++) {
+            int access = in.readUnsignedShort();
+            String name = texts[in.readUnsignedShort()];
+            String descriptor = texts[in.readUnsignedShort()];
+            skipAttributes(in);
+
+            if ((access & (ACC_PRIVATE | ACC_BRIDGE | ACC_SYNTHETIC)) != 0 || name.startsWith("<"))
+                continue;
+
+            methods.add(new MethodEntry(name, descriptor, access));
+        }
+
+        return new ClassEntry(modified, size, superName, methods);
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int attributeCount = in.readUnsignedShort();
+        for (int i = 0; i < attributeCount; i++) {
+            in.skipNBytes(2);
+            in.skipNBytes(in.readInt() & 0xFFFFFFFFL);
+        }
+    }
+
+    private static Method toMethod(MethodEntry entry) {
+        String descriptor = entry.descriptor();
+        List<Type> parameters = new ArrayList<>();
+
+        int index = 1;
+        while (descriptor.charAt(index) != ')') {
+            int end = index;
+            while (descriptor.charAt(end) == '[')
+                end++;
+            end = descriptor.charAt(end) == 'L' ? descriptor.indexOf(';', end) + 1 : end + 1;
+
+            parameters.add(toType(descriptor.substring(index, end)));
+            index = end;
+        }
+
+        Type returnType = toType(descriptor.substring(index + 1));
+
+        return new Method(entry.name(), parameters, returnType, (entry.access() & ACC_STATIC) != 0);
+    }
+
+    private static Type toType(String descriptor) {
+        boolean isArray = descriptor.startsWith("[");
+        String element = isArray ? descriptor.substring(1) : descriptor;
+
+        String name = switch (element.charAt(0)) {
+            case 'I' -> SemanticHelper.INT;
+            case 'Z' -> SemanticHelper.BOOL;
+            case 'V' -> isArray ? null : SemanticHelper.VOID;
+            // Simple name, after the package if there is one
+            case 'L' -> element.substring(Math.max(element.lastIndexOf('/'), 0) + 1, element.length() - 1);
+            // Other primitives and arrays of arrays
+            default -> null;
+        };
+
+        return name == null ? null : Types.of(name, isArray);
+    }
+
+    private void load() {
+        if (indexFile == null)
+            return;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(indexFile)))) {
+            if (in.readInt() != FORMAT_VERSION)
+                return;
+
+            int classCount = in.readInt();
+            for (int i = 0; i < classCount; i++) {
+                Path file = Path.of(in.readUTF());
+                long modified = in.readLong();
+                long size = in.readLong();
+                String superName = in.readUTF();
+
+                List<MethodEntry> methods = new ArrayList<>();
+                int methodCount = in.readInt();
+                for (int j = 0; j < methodCount; j++)
+                    methods.add(new MethodEntry(in.readUTF(), in.readUTF(), in.readInt()));
+
+                entries.put(file, new ClassEntry(modified, size, superName, methods));
+            }
+        } catch (NoSuchFileException e) {
+            // first compilation with this cache folder
+        } catch (IOException e) {
+            // A corrupted index is rebuilt from the class files
+            entries.clear();
+        }
+    }
+
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Map<Path, ClassEntry> snapshot = new HashMap<>(entries);
+
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<Path, ClassEntry> entry : snapshot.entrySet()) {
+                ClassEntry classEntry = entry.getValue();
+
+                out.writeUTF(entry.getKey().toString());
+                out.writeLong(classEntry.modified());
+                out.writeLong(classEntry.size());
+                out.writeUTF(classEntry.superName());
+
+                out.writeInt(classEntry.methods().size());
+                for (MethodEntry method : classEntry.methods()) {
+                    out.writeUTF(method.name());
+                    out.writeUTF(method.descriptor());
+                    out.writeInt(method.access());
+                }
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,64 @@
+package pt.up.fe.comp2023.analysis;
+
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.ast.AstNode;
+
+import java.util.List;
+
+/**
+ * Resolves every identifier of the AST once, after the symbol table is built, and stores the {@link Binding} in its
+ * node, so the later stages read it with {@link SemanticHelper#getBinding(SimpleSymbolTable, JmmNode)} instead of
+ * searching the scopes again. Identifiers that are not declared are reported here.
+ */
+public class NameResolver extends PreorderJmmVisitor<List<Report>, Integer> {
+
+    private final SimpleSymbolTable symbolTable;
+
+    public NameResolver(SimpleSymbolTable symbolTable){
+        buildVisitor();
+        this.symbolTable = symbolTable;
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit("Variable", this::dealWithVariable);
+
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    private Integer dealWithVariable(JmmNode jmmNode, List<Report> reports) {
+        String varName = jmmNode.get("var");
+        Binding binding = resolve(jmmNode, varName);
+
+        if (binding == null) {
+            String error_msg = "Variable " + varName +  " is not declared";
+            reports.add(SemanticHelper.createReport(jmmNode, error_msg));
+            return 1;
+        }
+
+        if (jmmNode instanceof AstNode node)
+            node.setBinding(binding);
+
+        return 0;
+    }
+
+    /**
+     * Same rules as {@link SemanticHelper#findVariable}: locals and parameters first, then fields, which static
+     * methods cannot use, then imported classes.
+     */
+    private Binding resolve(JmmNode jmmNode, String varName) {
+        Binding binding = symbolTable.resolve(jmmNode.get("methodName"), varName);
+
+        if (binding != null && binding.getKind() == Binding.Kind.FIELD &&
+                !jmmNode.getOptional("isStatic").orElse("").equals(SemanticHelper.FALSE))
+            return symbolTable.resolveImport(varName);
+
+        return binding;
+    }
+
+    private Integer defaultVisit(JmmNode jmmNode, List<Report> reports) {
+        return 0;
+    }
+}
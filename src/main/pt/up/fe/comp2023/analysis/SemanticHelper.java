@@ -6,7 +6,9 @@ import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.ast.AstNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class SemanticHelper {
@@ -28,12 +30,17 @@ public class SemanticHelper {
     public static final String STATIC = "static";
 
     public static Report createReport( JmmNode jmmNode, String error_msg ){
+        if (jmmNode instanceof AstNode node)
+            return (Report.newError(Stage.SEMANTIC, node.getLineStart(), node.getColStart(), error_msg, new Exception(error_msg)));
 
         return (Report.newError(Stage.SEMANTIC, Integer.parseInt(jmmNode.get("lineStart")),
                 Integer.parseInt(jmmNode.get("colStart")), error_msg, new Exception(error_msg)));
     }
 
     public static boolean findVariable(SymbolTable symbolTable, JmmNode jmmNode, String varName){
+        if (symbolTable instanceof SimpleSymbolTable table)
+            return findVariable(table, jmmNode, varName);
+
         // find in local variables and method parameters
         if (containVariable(symbolTable.getLocalVariables(jmmNode.get("methodName")), varName) ||
                 containVariable(symbolTable.getParameters(jmmNode.get("methodName")), varName))
@@ -47,6 +54,13 @@ public class SemanticHelper {
         return false;
 
     }
+
+    private static boolean findVariable(SimpleSymbolTable symbolTable, JmmNode jmmNode, String varName){
+        if (symbolTable.resolveInMethod(jmmNode.get("methodName"), varName) != null)
+            return true;
+
+        return jmmNode.getOptional("isStatic").orElse("").equals(FALSE) && symbolTable.hasField(varName);
+    }
 /*
     public static boolean findVariable(SymbolTable symbolTable, JmmNode jmmNode, String varName){
         if(jmmNode.getJmmChild(0).getKind().equals("mainDeclaration")){
@@ -59,6 +73,9 @@ public class SemanticHelper {
     }
 */
     public static boolean sameType(JmmNode jmmNode, Type type){
+        if (jmmNode instanceof AstNode node)
+            return sameType(node, type);
+
         if (!jmmNode.get("type").equals(type.getName()) &&  !jmmNode.get("type").equals(ANY) && !type.getName().equals(ANY)  )
             return false;
 
@@ -67,13 +84,109 @@ public class SemanticHelper {
 
     }
 
+    private static boolean sameType(AstNode node, Type type){
+        // Types are shared instances, so matching types are usually the same object
+        if (node.getType() == type)
+            return true;
+
+        String typeName = node.getTypeName();
+        if (!typeName.equals(type.getName()) && !typeName.equals(ANY) && !type.getName().equals(ANY))
+            return false;
+
+        return node.isArray() == type.isArray() || node.isMaybeArray();
+    }
+
     public static boolean sameType(JmmNode jmmNode1, JmmNode jmmNode2){
+        if (jmmNode2 instanceof AstNode node2 && node2.getType() != null)
+            return sameType(jmmNode1, node2.getType());
+
         //Type type1 = new Type(jmmNode1.get("type"), jmmNode1.get("isArray").equals(TRUE));
-        Type type2 = new Type(jmmNode2.get("type"), jmmNode2.get("isArray").equals(TRUE));
+        Type type2 = Types.of(jmmNode2.get("type"), jmmNode2.get("isArray").equals(TRUE));
 
         return sameType(jmmNode1, type2);
     }
 
+    /**
+     * Sets the type of an expression node.
+     */
+    public static void putType(JmmNode jmmNode, Type type){
+        if (jmmNode instanceof AstNode node) {
+            node.setType(type);
+            return;
+        }
+
+        jmmNode.put("type", type.getName());
+        jmmNode.put("isArray", Boolean.toString(type.isArray()));
+    }
+
+    /**
+     * Sets the type of an expression whose type is unknown, such as a call to an imported method.
+     */
+    public static void putAnyType(JmmNode jmmNode){
+        if (jmmNode instanceof AstNode node) {
+            node.setAnyType();
+            return;
+        }
+
+        jmmNode.put("type", ANY);
+        jmmNode.put("isArray", MAYBE);
+    }
+
+    /**
+     * Copies the type of an expression node to another.
+     */
+    public static void copyType(JmmNode from, JmmNode to){
+        if (from instanceof AstNode fromNode && to instanceof AstNode toNode) {
+            toNode.copyType(fromNode);
+            return;
+        }
+
+        to.put("type", from.get("type"));
+        to.put("isArray", from.get("isArray"));
+    }
+
+    /**
+     * Returns what the given VariableId refers to, as resolved by {@link NameResolver}, or null if it is not declared.
+     */
+    public static Binding getBinding(SimpleSymbolTable symbolTable, JmmNode variableId){
+        if (variableId instanceof AstNode node && node.getBinding() != null)
+            return node.getBinding();
+
+        return symbolTable.resolve(variableId.get("methodName"), variableId.get("var"));
+    }
+
+    /**
+     * Returns the method of an imported class called by the given FunctionCall, found from the types of the object and
+     * of the arguments, or null if it is not known.
+     */
+    public static ClassIndex.Method findImportedMethod(SimpleSymbolTable symbolTable, JmmNode functionCall){
+        JmmNode object = functionCall.getJmmChild(0);
+        Type objectType = getKnownType(object);
+        if (objectType == null || objectType.isArray())
+            return null;
+
+        List<Type> argumentTypes = new ArrayList<>();
+        for (JmmNode argument : functionCall.getJmmChild(1).getChildren())
+            argumentTypes.add(getKnownType(argument));
+
+        return symbolTable.findImportedMethod(objectType.getName(), functionCall.get("method"), argumentTypes);
+    }
+
+    /**
+     * Type of an expression node, or null if it is unknown.
+     */
+    private static Type getKnownType(JmmNode jmmNode){
+        if (jmmNode instanceof AstNode node)
+            return node.getType() == null || node.getTypeName().equals(ANY) ? null : node.getType();
+
+        String type = jmmNode.getOptional("type").orElse(ANY);
+        String isArray = jmmNode.getOptional("isArray").orElse(MAYBE);
+        if (type.equals(ANY) || isArray.equals(MAYBE))
+            return null;
+
+        return Types.of(type, isArray.equals(TRUE));
+    }
+
     public static boolean containVariable(List<Symbol> symbols, String var){
         if ( symbols == null)
             return false;
@@ -92,7 +205,7 @@ public class SemanticHelper {
                 type.getName().equals(SemanticHelper.STRING)||
                 type.getName().equals(symbolTable.className)||
                 type.getName().equals(symbolTable.classSuper)||
-                symbolTable.getImportsNames().contains(type.getName()) ;
+                symbolTable.isImportName(type.getName()) ;
     }
 
 }
@@ -12,12 +12,25 @@ public class SimpleSymbolTable implements SymbolTable {
     List<String> importsNames;
     String className;
     String classSuper;
+    private Type classType;
+    private Type classArrayType;
+    private Type superType;
+    private Type superArrayType;
     List<Symbol> fields;
     Map<String, Type> methods;
     Map<String, List<String>> methodModifiers;
     Map<String, List<Symbol>> methodParameters;
     Map<String, List<Symbol>> methodLocalVariables;
 
+    // Name lookups: locals and parameters of each method, then fields, then imported classes by simple name
+    Map<String, Map<String, Binding>> methodScopes;
+    Map<String, Binding> fieldScope;
+    Map<String, Binding> importScope;
+    // Methods of the imported classes found on the classpath, by simple class name
+    Map<String, Map<String, List<ClassIndex.Method>>> importedMethods;
+
+    private boolean frozen = false;
+
     public SimpleSymbolTable(){
         imports = new ArrayList<>();
         importsNames = new ArrayList<>();
@@ -26,8 +39,38 @@ public class SimpleSymbolTable implements SymbolTable {
         methods = new HashMap<>();
         methodParameters = new HashMap<>();
         methodLocalVariables = new HashMap<>();
+        methodScopes = new HashMap<>();
+        fieldScope = new HashMap<>();
+        importScope = new HashMap<>();
+        importedMethods = new HashMap<>();
+    }
 
-
+    /**
+     * Makes the table read-only once it is built, any later change throws UnsupportedOperationException. The
+     * collections are never written again, so threads started after this call can read the table without locking.
+     */
+    public void freeze(){
+        if (frozen)
+            return;
+
+        imports = Collections.unmodifiableList(imports);
+        importsNames = Collections.unmodifiableList(importsNames);
+        fields = Collections.unmodifiableList(fields);
+        methods = Collections.unmodifiableMap(methods);
+
+        methodModifiers.replaceAll((method, modifiers) -> Collections.unmodifiableList(modifiers));
+        methodModifiers = Collections.unmodifiableMap(methodModifiers);
+        methodParameters.replaceAll((method, parameters) -> Collections.unmodifiableList(parameters));
+        methodParameters = Collections.unmodifiableMap(methodParameters);
+        methodLocalVariables.replaceAll((method, locals) -> Collections.unmodifiableList(locals));
+        methodLocalVariables = Collections.unmodifiableMap(methodLocalVariables);
+
+        methodScopes.replaceAll((method, scope) -> Collections.unmodifiableMap(scope));
+        methodScopes = Collections.unmodifiableMap(methodScopes);
+        fieldScope = Collections.unmodifiableMap(fieldScope);
+        importScope = Collections.unmodifiableMap(importScope);
+        importedMethods = Collections.unmodifiableMap(importedMethods);
+        frozen = true;
     }
 
     @Override
@@ -83,24 +126,108 @@ public class SimpleSymbolTable implements SymbolTable {
 
     public boolean addImport(String importStr) {
         String importName = getNameFromImport(importStr);
-        if (imports.contains(importStr) || importsNames.contains(importName))
+        if (importScope.containsKey(importName))
             return false;
         imports.add(importStr);
         importsNames.add(importName);
+        importScope.put(importName, Binding.imported(new Symbol(Types.of(importName, false), importName)));
+        return true;
+    }
+
+    public boolean isImportName(String name) {
+        return importScope.containsKey(name);
+    }
+
+    /**
+     * Reads the signatures of the imported classes that are on the classpath of the index.
+     */
+    public void resolveImports(ClassIndex classIndex) {
+        for (int i = 0; i < imports.size(); i++) {
+            Map<String, List<ClassIndex.Method>> methods = classIndex.getMethods(imports.get(i));
+            if (methods != null)
+                importedMethods.put(importsNames.get(i), methods);
+        }
+    }
+
+    /**
+     * Finds the method called on an object of the given class, when the class is imported or the method is inherited
+     * from an imported super class. Overloads are chosen by the number of arguments and by the types of the
+     * arguments that are known.
+     *
+     * @param argumentTypes types of the arguments, null for the ones that are unknown
+     * @return null if the class is not on the classpath or no single method matches
+     */
+    public ClassIndex.Method findImportedMethod(String className, String methodName, List<Type> argumentTypes) {
+        if (className.equals(this.className)) {
+            if (methodExists(methodName) || classSuper.isEmpty())
+                return null;
+            className = classSuper;
+        }
+
+        Map<String, List<ClassIndex.Method>> methods = importedMethods.get(className);
+        if (methods == null)
+            return null;
+
+        ClassIndex.Method found = null;
+        for (ClassIndex.Method method : methods.getOrDefault(methodName, List.of())) {
+            if (!acceptsArguments(method, argumentTypes))
+                continue;
+            if (found != null)
+                return null;
+            found = method;
+        }
+
+        return found;
+    }
+
+    private static boolean acceptsArguments(ClassIndex.Method method, List<Type> argumentTypes) {
+        if (method.parameters().size() != argumentTypes.size())
+            return false;
+
+        for (int i = 0; i < argumentTypes.size(); i++) {
+            Type argumentType = argumentTypes.get(i);
+            if (argumentType != null && !argumentType.equals(method.parameters().get(i)))
+                return false;
+        }
+
         return true;
     }
 
     public void setClassName(String name) {
         this.className = name;
+        this.classType = Types.of(name, false);
+        this.classArrayType = Types.of(name, true);
     }
 
 
     public void setClassSuper(String extendedClass) {
         this.classSuper = extendedClass;
+        this.superType = Types.of(extendedClass, false);
+        this.superArrayType = Types.of(extendedClass, true);
+    }
+
+    public Type getClassType() {
+        return classType;
+    }
+
+    public Type getClassArrayType() {
+        return classArrayType;
+    }
+
+    /**
+     * Type of the super class, named by an empty string if the class does not extend another.
+     */
+    public Type getSuperType() {
+        return superType;
+    }
+
+    public Type getSuperArrayType() {
+        return superArrayType;
     }
 
     public boolean addMethodVariables(String methodName, Symbol field) {
-        if (methodLocalVariables.get(methodName).contains(field))
+        Binding previous = methodScopes.get(methodName).putIfAbsent(field.getName(), Binding.local(field));
+        if (previous != null)
             return false;
 
         this.methodLocalVariables.get(methodName).add(field);
@@ -108,10 +235,14 @@ public class SimpleSymbolTable implements SymbolTable {
     }
 
     public boolean addMethodParameters(String methodName, Symbol parameter){
-        if (this.methodParameters.get(methodName).contains(parameter))
+        List<Symbol> parameters = this.methodParameters.get(methodName);
+
+        Binding previous = methodScopes.get(methodName).putIfAbsent(parameter.getName(),
+                Binding.parameter(parameter, parameters.size() + 1));
+        if (previous != null)
             return false;
 
-        this.methodParameters.get(methodName).add(parameter);
+        parameters.add(parameter);
         return true;
     }
 
@@ -124,93 +255,89 @@ public class SimpleSymbolTable implements SymbolTable {
         this.methodLocalVariables.put(methodName, new ArrayList<>());
         this.methodParameters.put(methodName, new ArrayList<>());
         this.methodModifiers.put(methodName, new ArrayList<>());
+        this.methodScopes.put(methodName, new HashMap<>());
 
         return false;
     }
 
     public boolean addField(Symbol e){
-        if (fields.contains(e))
+        if (fieldScope.putIfAbsent(e.getName(), Binding.field(e)) != null)
             return false;
 
         this.fields.add(e);
         return true;
     }
 
-    public Symbol getVariable(String method, String varName){
+    public boolean hasField(String varName){
+        return fieldScope.containsKey(varName);
+    }
 
-        for (Symbol symbol : methodLocalVariables.get(method))
-            if (symbol.getName().equals(varName))
-                return symbol;
+    /**
+     * Returns what the given name refers to inside the method: a local or parameter of the method, else a field,
+     * else an imported class, or null if it is none of them.
+     */
+    public Binding resolve(String method, String name){
+        Map<String, Binding> scope = methodScopes.get(method);
+        if (scope != null) {
+            Binding binding = scope.get(name);
+            if (binding != null)
+                return binding;
+        }
 
-        for (Symbol symbol : methodParameters.get(method))
-            if (symbol.getName().equals(varName))
-                return symbol;
+        Binding binding = fieldScope.get(name);
+        if (binding != null)
+            return binding;
 
-        for (Symbol symbol : fields)
-            if (symbol.getName().equals(varName))
-                return symbol;
+        return importScope.get(name);
+    }
 
-        return null;
+    /**
+     * Returns the imported class with the given simple name, or null if there is none.
+     */
+    public Binding resolveImport(String name){
+        return importScope.get(name);
     }
 
-    public String getOllirLikeReference(String method, String var){
-        List<Symbol> parameters = methodParameters.get(method);
+    /**
+     * Returns the local or parameter of the method with the given name, or null if there is none.
+     */
+    public Binding resolveInMethod(String method, String name){
+        Map<String, Binding> scope = methodScopes.get(method);
 
-        int id = -1;
+        return scope == null ? null : scope.get(name);
+    }
 
-        for(int i = 0; i < parameters.size(); i++){
-            if(parameters.get(i).getName().equals(var)){
-                id = i +1;
-                break;
-            }
-        }
+    public Symbol getVariable(String method, String varName){
+        Binding binding = resolve(method, varName);
 
-        return id == -1 ? "" : "$" + id + ".";
+        return binding != null && binding.isVariable() ? binding.getSymbol() : null;
     }
 
-    public boolean isField(String method, String varName){
-
-        boolean found = false;
+    public String getOllirLikeReference(String method, String var){
+        int id = getParameterIndex(method, var);
 
-        for (Symbol symbol : getLocalVariables(method))
-            if (symbol.getName().equals(varName))
-                found = true;
+        return id == -1 ? "" : "$" + id + ".";
+    }
 
-        for (Symbol symbol : getParameters(method))
-            if (symbol.getName().equals(varName))
-                found = true;
+    /**
+     * Returns the OLLIR index of the given parameter (starting at 1), or -1 if the variable is not a parameter.
+     */
+    public int getParameterIndex(String method, String var){
+        Binding binding = resolveInMethod(method, var);
 
-        if(found)
-            return false;
+        return binding == null ? -1 : binding.getParameterIndex();
+    }
 
-        for (Symbol symbol : fields)
-            if (symbol.getName().equals(varName))
-                found = true;
+    public boolean isField(String method, String varName){
+        Binding binding = resolve(method, varName);
 
-        return found;
+        return binding != null && binding.getKind() == Binding.Kind.FIELD;
     }
 
     public boolean isImportedClass(String method, String var){
-        List<Symbol> params = getParameters(method);
-        List<Symbol> local = getLocalVariables(method);
-
-        for (Symbol symbol : local)
-            if (symbol.getName().equals(var))
-                return false;
-
-        for (Symbol symbol : params)
-            if (symbol.getName().equals(var))
-                return false;
+        Binding binding = resolve(method, var);
 
-        for (Symbol symbol : fields)
-            if (symbol.getName().equals(var))
-                return false;
-
-        for(String importName : getImports())
-            if(importName.endsWith(var))
-                return true;
-
-        return false;
+        return binding != null && binding.getKind() == Binding.Kind.IMPORT;
     }
 
     public boolean methodExists(String method){
@@ -25,7 +25,6 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<List<Report>, Integer
         addVisit("MethodDeclaration", this::dealWithMethods);
         addVisit("MainDeclaration", this::dealWithMain);
         addVisit("Param", this::dealWithParam);
-        addVisit("Variable", this::dealWithVariable);
         addVisit("This", this::dealWithThis);
         addVisit("Type", this::dealWithType);
 
@@ -36,7 +35,7 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<List<Report>, Integer
 
     private Integer dealWithType(JmmNode jmmNode, List<Report> reports) {
         if (jmmNode.get("isClass").equals(SemanticHelper.TRUE) && !
-                (symbolTable.getImportsNames().contains(jmmNode.get("name")) ||
+                (symbolTable.isImportName(jmmNode.get("name")) ||
                 jmmNode.get("name").equals(SemanticHelper.STRING) ||
                 jmmNode.get("name").equals(symbolTable.className) ||
                 jmmNode.get("name").equals(symbolTable.classSuper) )){
@@ -85,7 +84,7 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<List<Report>, Integer
 
     private Integer dealWithVars(JmmNode jmmNode, List<Report> reports) {
         JmmNode typeNode = jmmNode.getJmmChild(0);
-        Type type = new Type(typeNode.get("name"), (Boolean) typeNode.getObject("isArray"));
+        Type type = Types.of(typeNode.get("name"), (Boolean) typeNode.getObject("isArray"));
         Symbol varName = new Symbol(type, jmmNode.get("var"));
 
         // fields
@@ -108,7 +107,7 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<List<Report>, Integer
 
         //boolean createReport = !symbolTable.getMethodModifiers(methodName).contains(SemanticHelper.STATIC) && SemanticHelper.containVariable(symbolTable.fields, varName.getName());
 
-        if (SemanticHelper.containVariable(symbolTable.getParameters(methodName), varName.getName()) ||
+        if (symbolTable.getParameterIndex(methodName, varName.getName()) != -1 ||
                 !symbolTable.addMethodVariables(methodName, varName)){
             reports.add(SemanticHelper.createReport(jmmNode, "Variable '"+ varName.getName() +"' is already defined"));
             return 1;
@@ -123,7 +122,7 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<List<Report>, Integer
 
         if (jmmNode.getOptional("methodName").isPresent()) {
             JmmNode typeNode = jmmNode.getJmmChild(0);
-            Type type = new Type(typeNode.get("name"), (Boolean) typeNode.getObject("isArray"));
+            Type type = Types.of(typeNode.get("name"), (Boolean) typeNode.getObject("isArray"));
 
             if (!(SemanticHelper.isValidType(type, symbolTable) || type.getName().equals(SemanticHelper.VOID))){
                 reports.add(SemanticHelper.createReport(jmmNode, "Invalid type '"+ type.getName() + "'"));
@@ -153,13 +152,13 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<List<Report>, Integer
             return 1;
         }
 
-        Type returnType = new Type("void", false);
+        Type returnType = Types.VOID;
         if (symbolTable.addMethod("main", returnType)){
             reports.add(SemanticHelper.createReport(jmmNode, "The main method is already declared."));
             return 1;
         }
 
-        Type stringType = new Type("String", true);
+        Type stringType = Types.of(SemanticHelper.STRING, true);
         Symbol symbol = new Symbol(stringType, jmmNode.get("name"));
         symbolTable.addMethodParameters("main", symbol);
         symbolTable.addMethodModifiers("main", SemanticHelper.STATIC);
@@ -173,7 +172,7 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<List<Report>, Integer
         String method = jmmNode.getJmmParent().getJmmParent().get("methodName");
         JmmNode typeNode = jmmNode.getJmmChild(0);
 
-        Type type = new Type(typeNode.get("name"), (Boolean) typeNode.getObject("isArray"));
+        Type type = Types.of(typeNode.get("name"), (Boolean) typeNode.getObject("isArray"));
         Symbol varName = new Symbol(type, jmmNode.get("var"));
 
         if (!SemanticHelper.isValidType(type, symbolTable)){
@@ -224,21 +223,4 @@ public class SymbolTableVisitor extends PreorderJmmVisitor<List<Report>, Integer
 
         return  errors;
     }
-
-    private Integer dealWithVariable(JmmNode jmmNode, List<Report> reports) {
-        String varName = jmmNode.get("var");
-
-        // find in variables
-        if (SemanticHelper.findVariable(symbolTable, jmmNode, varName))
-            return defaultVisit(jmmNode, reports);
-
-        // find in imports
-        if (symbolTable.importsNames.contains(varName))
-            return defaultVisit(jmmNode, reports);
-
-        String error_msg = "Variable " + varName +  " is not declared";
-        reports.add(SemanticHelper.createReport(jmmNode, error_msg));
-
-        return  1 ;
-    }
 }
\ No newline at end of file
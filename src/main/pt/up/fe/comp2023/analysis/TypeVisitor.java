@@ -50,8 +50,7 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
         JmmNode child = jmmNode.getJmmChild(0);
 
         if (child.get("isArray").equals(SemanticHelper.TRUE)){
-            jmmNode.put("type", SemanticHelper.INT);
-            jmmNode.put("isArray", SemanticHelper.FALSE);
+            SemanticHelper.putType(jmmNode, Types.INT);
             return 0;
         }
 
@@ -63,9 +62,8 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
         JmmNode child = jmmNode.getJmmChild(0);
 
         // if is int[expr]
-        if (SemanticHelper.sameType(child, new Type(SemanticHelper.INT, false))){
-            jmmNode.put("type", SemanticHelper.INT);
-            jmmNode.put("isArray", SemanticHelper.TRUE);
+        if (SemanticHelper.sameType(child, Types.INT)){
+            SemanticHelper.putType(jmmNode, Types.INT_ARRAY);
             return 0;
         }
 
@@ -77,8 +75,7 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
         JmmNode child = jmmNode.getJmmChild(0);
 
         if (child.get("isClass").equals(SemanticHelper.TRUE)) {
-            jmmNode.put("type", child.get("name"));
-            jmmNode.put("isArray", SemanticHelper.FALSE);
+            SemanticHelper.putType(jmmNode, Types.of(child.get("name"), false));
             return 0;
         }
 
@@ -97,10 +94,9 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
 
         // When calling methods of the class declared in the code, verify if the types of arguments of the
         // call are compatible with the types in the method declaration
-        if (!object.get("type").equals(SemanticHelper.ANY) && SemanticHelper.sameType(object, new Type(symbolTable.className, false) )){
-            if (symbolTable.getMethods().contains(methodName)){
-                jmmNode.put("type", symbolTable.getReturnType(methodName).getName());
-                jmmNode.put("isArray", Boolean.toString(symbolTable.getReturnType(methodName).isArray()));
+        if (!object.get("type").equals(SemanticHelper.ANY) && SemanticHelper.sameType(object, symbolTable.getClassType() )){
+            if (symbolTable.methodExists(methodName)){
+                SemanticHelper.putType(jmmNode, symbolTable.getReturnType(methodName));
 
                 JmmNode args = jmmNode.getJmmChild(1);
 
@@ -134,8 +130,14 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
 
         }
 
-        jmmNode.put("type", SemanticHelper.ANY);
-        jmmNode.put("isArray", SemanticHelper.MAYBE);
+        // Methods of imported classes are only typed when their class file is on the classpath
+        ClassIndex.Method importedMethod = SemanticHelper.findImportedMethod(symbolTable, jmmNode);
+        if (importedMethod != null && importedMethod.returnType() != null) {
+            SemanticHelper.putType(jmmNode, importedMethod.returnType());
+            return 0;
+        }
+
+        SemanticHelper.putAnyType(jmmNode);
         return 0;
     }
 
@@ -143,8 +145,7 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
         JmmNode child = jmmNode.getJmmChild(0);
         if(child.getOptional("type").isEmpty() || child.getOptional("isArray").isEmpty())
             return 1;
-        jmmNode.put("type", child.get("type"));
-        jmmNode.put("isArray", child.get("isArray"));
+        SemanticHelper.copyType(child, jmmNode);
 
         return 0;
     }
@@ -178,21 +179,12 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
     }
 
     private Integer dealWithVariableId(JmmNode jmmNode, List<Report> reports) {
-        String varName = jmmNode.get("var");
-
-        Symbol var = symbolTable.getVariable(jmmNode.get("methodName"), varName);
+        Binding binding = SemanticHelper.getBinding(symbolTable, jmmNode);
 
-        if (var == null){
-            if (symbolTable.getImportsNames().contains(varName)){
-                jmmNode.put("type", varName);
-                jmmNode.put("isArray", SemanticHelper.FALSE);
-                return 0;
-            }
+        if (binding == null)
             return 1;
-        }
 
-        jmmNode.put("type", var.getType().getName());
-        jmmNode.put("isArray", Boolean.toString(var.getType().isArray()));
+        SemanticHelper.putType(jmmNode, binding.getSymbol().getType());
         return 0;
     }
 
@@ -230,9 +222,9 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
         if (importList.contains(leftExpr.get("type")) && leftExpr.get("isArray").equals(SemanticHelper.TRUE) &&
                 importList.contains(rightExpr.get("type")) && rightExpr.get("isArray").equals(SemanticHelper.FALSE) )
             return 0;
-        Type classType = new Type(symbolTable.className, false);
-        Type classTypeArr = new Type(symbolTable.className, true);
-        Type superTypeArr = new Type(symbolTable.classSuper, true);
+        Type classType = symbolTable.getClassType();
+        Type classTypeArr = symbolTable.getClassArrayType();
+        Type superTypeArr = symbolTable.getSuperArrayType();
 
         // accept if rightExpr is class and left is this class type or the super
         if ( SemanticHelper.sameType(rightExpr, classType) &&
@@ -245,7 +237,7 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
             return 0;
 
         // accept if the type of both is the same
-        Type leftType = new Type(leftExpr.get("type"), false);
+        Type leftType = Types.of(leftExpr.get("type"), false);
         if ( SemanticHelper.sameType(rightExpr, leftType))
             return 0;
 
@@ -255,8 +247,7 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
     }
 
     private boolean verifyArrayAccess(JmmNode jmmNode, List<Report> reports, JmmNode leftExpr, JmmNode indexExpr) {
-        jmmNode.put("type", leftExpr.get("type"));
-        jmmNode.put("isArray", SemanticHelper.FALSE);
+        SemanticHelper.putType(jmmNode, Types.of(leftExpr.get("type"), false));
 
         if ( !leftExpr.get("isArray").equals(SemanticHelper.TRUE)){
             String error_msg = "Array access is done over an array";
@@ -264,7 +255,7 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
             return true;
         }
 
-        if ( !SemanticHelper.sameType(indexExpr, new Type(SemanticHelper.INT, false)) ){
+        if ( !SemanticHelper.sameType(indexExpr, Types.INT) ){
             String error_msg = "Array access index must be an integer";
             reports.add(SemanticHelper.createReport(jmmNode, error_msg));
             return true;
@@ -288,14 +279,14 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
             return 0;
 
         // accept if rightExpr is this class and left is this class type or the super
-        if (SemanticHelper.sameType(rightExpr, new Type(symbolTable.className, false)) &&
-                (SemanticHelper.sameType(leftExpr, new Type(symbolTable.classSuper, false)) ||
-                SemanticHelper.sameType(leftExpr, new Type(symbolTable.className, false))) )
+        if (SemanticHelper.sameType(rightExpr, symbolTable.getClassType()) &&
+                (SemanticHelper.sameType(leftExpr, symbolTable.getSuperType()) ||
+                SemanticHelper.sameType(leftExpr, symbolTable.getClassType())) )
             return 0;
 
         // accept if rightExpr is this class type and the left is the super
-        if (SemanticHelper.sameType(rightExpr, new Type(symbolTable.className, false)) &&
-                SemanticHelper.sameType(leftExpr, new Type(symbolTable.classSuper, false)) )
+        if (SemanticHelper.sameType(rightExpr, symbolTable.getClassType()) &&
+                SemanticHelper.sameType(leftExpr, symbolTable.getSuperType()) )
             return 0;
 
 
@@ -317,8 +308,7 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
             return -1;
         }
 
-        jmmNode.put("type", child.get("type"));
-        jmmNode.put("isArray", child.get("isArray"));
+        SemanticHelper.copyType(child, jmmNode);
         return 0;
     }
 
@@ -328,27 +318,23 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
         if (child.getOptional("type").isEmpty() || child.getOptional("isArray").isEmpty()){
             return -1;
         }
-        jmmNode.put("type", child.get("type"));
-        jmmNode.put("isArray", child.get("isArray"));
+        SemanticHelper.copyType(child, jmmNode);
         // todo
         return 0;
     }
 
     private Integer dealWithThis(JmmNode jmmNode, List<Report> reports) {
-        jmmNode.put("type", symbolTable.className);
-        jmmNode.put("isArray", SemanticHelper.FALSE);
+        SemanticHelper.putType(jmmNode, symbolTable.getClassType());
         return 0;
     }
 
     private Integer dealWithInt(JmmNode jmmNode, List<Report> reports) {
-        jmmNode.put("type", SemanticHelper.INT);
-        jmmNode.put("isArray", SemanticHelper.FALSE);
+        SemanticHelper.putType(jmmNode, Types.INT);
         return 0;
     }
 
     private Integer dealWithBoolean(JmmNode jmmNode, List<Report> reports) {
-        jmmNode.put("type", SemanticHelper.BOOL);
-        jmmNode.put("isArray", SemanticHelper.FALSE);
+        SemanticHelper.putType(jmmNode, Types.BOOL);
         return 0;
     }
 
@@ -358,16 +344,14 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
 
         if (verifyArrayAccess(jmmNode, reports, leftExpr, indexExpr)) return 1;
 
-        jmmNode.put("type", leftExpr.get("type"));
-        jmmNode.put("isArray", SemanticHelper.FALSE);
+        SemanticHelper.putType(jmmNode, Types.of(leftExpr.get("type"), false));
         return 0;
     }
 
 
 
     private Integer dealWithLogicalBinaryOP(JmmNode jmmNode, List<Report> reports) {
-        jmmNode.put("type", SemanticHelper.BOOL);
-        jmmNode.put("isArray", SemanticHelper.FALSE);
+        SemanticHelper.putType(jmmNode, Types.BOOL);
 
         JmmNode leftExpr = jmmNode.getJmmChild(0);
         String operator = jmmNode.get("op");
@@ -379,8 +363,8 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
         }
 
         if (operator.equals("&&")){
-            if ( !SemanticHelper.sameType(leftExpr, new Type(SemanticHelper.BOOL, false)) ||
-                    !SemanticHelper.sameType(rightExpr, new Type(SemanticHelper.BOOL, false)) ){
+            if ( !SemanticHelper.sameType(leftExpr, Types.BOOL) ||
+                    !SemanticHelper.sameType(rightExpr, Types.BOOL) ){
                 String error_msg = "Operator '"+ operator +"' must be applied to integers";
                 reports.add(SemanticHelper.createReport(jmmNode, error_msg));
                 return 1;
@@ -388,8 +372,8 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
             return 0;
         }
 
-        if ( !SemanticHelper.sameType(leftExpr, new Type(SemanticHelper.INT, false)) ||
-                !SemanticHelper.sameType(rightExpr, new Type(SemanticHelper.INT, false)) ){
+        if ( !SemanticHelper.sameType(leftExpr, Types.INT) ||
+                !SemanticHelper.sameType(rightExpr, Types.INT) ){
             String error_msg = "Operator '"+ operator +"' must be applied to integers";
             reports.add(SemanticHelper.createReport(jmmNode, error_msg));
             return 1;
@@ -399,15 +383,14 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
     }
 
     private Integer dealWithArithmetics(JmmNode jmmNode, List<Report> reports) {
-        jmmNode.put("type", SemanticHelper.INT);
-        jmmNode.put("isArray", SemanticHelper.FALSE);
+        SemanticHelper.putType(jmmNode, Types.INT);
 
         JmmNode leftExpr = jmmNode.getJmmChild(0);
         String operator = jmmNode.get("op");
         JmmNode rightExpr = jmmNode.getJmmChild(1);
 
-        if ( !SemanticHelper.sameType(leftExpr, new Type(SemanticHelper.INT, false)) ||
-                !SemanticHelper.sameType(rightExpr, new Type(SemanticHelper.INT, false)) ){
+        if ( !SemanticHelper.sameType(leftExpr, Types.INT) ||
+                !SemanticHelper.sameType(rightExpr, Types.INT) ){
             String error_msg = "Operator '"+ operator +"' must be applied to ints";
             reports.add(SemanticHelper.createReport(jmmNode, error_msg));
             return 1;
@@ -417,12 +400,11 @@ public class TypeVisitor extends PostorderJmmVisitor<List<Report>, Integer> {
     }
 
     private Integer dealWithNeg(JmmNode jmmNode, List<Report> reports) {
-        jmmNode.put("type", SemanticHelper.BOOL);
-        jmmNode.put("isArray", SemanticHelper.FALSE);
+        SemanticHelper.putType(jmmNode, Types.BOOL);
 
         JmmNode child = jmmNode.getJmmChild(0);
 
-        if (SemanticHelper.sameType(child, new Type(SemanticHelper.BOOL, false)) ){
+        if (SemanticHelper.sameType(child, Types.BOOL) ){
             return  0;
         }
 
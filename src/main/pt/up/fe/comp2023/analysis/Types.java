@@ -0,0 +1,90 @@
+package pt.up.fe.comp2023.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared instances of {@link Type}, so nodes and symbols with the same type point to the same object instead of each
+ * holding its own copy.
+ * <p>
+ * Every type created by the compiler comes from here, so two equal types are usually the same object, and reference
+ * equality is a fast path before comparing names. The OLLIR suffix of each type is computed once, when the type is
+ * first seen.
+ * <p>
+ * The entries are shared by every compilation of the process. Class names differ from program to program, so once
+ * there are {@link #MAX_ENTRIES} of them the class types are dropped and created again when seen, which keeps a
+ * long-running daemon from holding every class name it ever compiled. The built-in types are always kept.
+ */
+public class Types {
+
+    private record Entry(Type type, String ollirSuffix) {
+    }
+
+    private static final int MAX_ENTRIES = 4096;
+    private static final Set<String> BUILT_IN = Set.of(SemanticHelper.INT, SemanticHelper.BOOL, SemanticHelper.VOID,
+            SemanticHelper.STRING);
+
+    private static final Map<String, Entry> SCALARS = new ConcurrentHashMap<>();
+    private static final Map<String, Entry> ARRAYS = new ConcurrentHashMap<>();
+
+    public static final Type INT = of(SemanticHelper.INT, false);
+    public static final Type INT_ARRAY = of(SemanticHelper.INT, true);
+    public static final Type BOOL = of(SemanticHelper.BOOL, false);
+    public static final Type VOID = of(SemanticHelper.VOID, false);
+    public static final Type STRING_ARRAY = of(SemanticHelper.STRING, true);
+
+    public static Type of(String name, boolean isArray) {
+        return entry(name, isArray).type();
+    }
+
+    /**
+     * Shared copy of the given type name.
+     */
+    public static String name(String name) {
+        return of(name, false).getName();
+    }
+
+    /**
+     * Shared instance equal to the given type, which may have been created elsewhere.
+     */
+    public static Type canonical(Type type) {
+        return of(type.getName(), type.isArray());
+    }
+
+    /**
+     * OLLIR type suffix, such as ".i32" or ".array.i32".
+     */
+    public static String ollirSuffix(Type type) {
+        return entry(type.getName(), type.isArray()).ollirSuffix();
+    }
+
+    private static Entry entry(String name, boolean isArray) {
+        Map<String, Entry> types = isArray ? ARRAYS : SCALARS;
+        Entry entry = types.get(name);
+        if (entry != null)
+            return entry;
+
+        if (types.size() >= MAX_ENTRIES)
+            types.keySet().removeIf(key -> !BUILT_IN.contains(key));
+
+        return types.computeIfAbsent(name, key -> create(key, isArray));
+    }
+
+    private static Entry create(String name, boolean isArray) {
+        return new Entry(new Type(name, isArray), computeOllirSuffix(name, isArray));
+    }
+
+    private static String computeOllirSuffix(String name, boolean isArray) {
+        return switch (name) {
+            case SemanticHelper.VOID -> ".V";
+            case SemanticHelper.BOOL -> ".bool";
+            case SemanticHelper.INT -> isArray ? ".array.i32" : ".i32";
+            // Strings only appear as the parameter of main
+            case SemanticHelper.STRING -> ".array.String";
+            default -> "." + name;
+        };
+    }
+}
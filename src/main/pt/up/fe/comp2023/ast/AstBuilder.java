@@ -0,0 +1,241 @@
+package pt.up.fe.comp2023.ast;
+
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.antlr.ThrowingErrorListener;
+import pt.up.fe.comp2023.JavammParser;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Builds the AST while the parser runs, from its rule enter and exit events, so the parser does not need to build a
+ * parse tree that is then walked again to be converted. The nodes and attributes are the same as the ones produced by
+ * {@link pt.up.fe.comp.jmm.ast.antlr.AntlrParser}.
+ * <p>
+ * Finished nodes are kept on a stack: when a rule is exited, the nodes pushed since it was entered become the
+ * children of its node. In the left-recursive expression rule, the parser enters the context of a binary operation,
+ * array access, length or call after its left operand was already exited, so that operand becomes its first child.
+ */
+public class AstBuilder implements ParseTreeListener {
+
+    // Kind of each context class, null for the classes of rules with labeled alternatives
+    private static final ClassValue<NodeKind> KINDS = new ClassValue<>() {
+        @Override
+        protected NodeKind computeValue(Class<?> contextClass) {
+            String name = contextClass.getSimpleName();
+            return NodeKind.lookup(name.substring(0, name.length() - "Context".length()));
+        }
+    };
+
+    private final TokenStream tokens;
+
+    private final List<AstNode> nodes = new ArrayList<>();
+    private int[] marks = new int[64];
+    private int depth = 0;
+
+    private ParserRuleContext lastExited;
+    private boolean failed = false;
+
+    // Identifiers repeat a lot, the nodes share one copy of each
+    private final Map<String, String> names = new HashMap<>();
+
+    public AstBuilder(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parses with the given rule and returns the AST, or an empty result if there were syntax errors.
+     */
+    public static Optional<JmmNode> parse(Lexer lexer, Parser parser, String ruleName) {
+        lexer.removeErrorListeners();
+        lexer.addErrorListener(new ThrowingErrorListener());
+
+        AstBuilder builder = new AstBuilder(parser.getTokenStream());
+        parser.setBuildParseTree(false);
+        parser.addParseListener(builder);
+
+        try {
+            invoke(parser, ruleName);
+        } finally {
+            parser.removeParseListener(builder);
+        }
+
+        if (parser.getNumberOfSyntaxErrors() > 0) {
+            return Optional.empty();
+        }
+
+        return Optional.of(builder.getRoot());
+    }
+
+    private static void invoke(Parser parser, String ruleName) {
+        if (parser instanceof JavammParser javammParser && ruleName.equals("program")) {
+            javammParser.program();
+            return;
+        }
+
+        try {
+            parser.getClass().getMethod(ruleName).invoke(parser);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not call rule '" + ruleName + "'", e);
+        }
+    }
+
+    public AstNode getRoot() {
+        if (failed || nodes.size() != 1) {
+            throw new RuntimeException("Could not build the AST from the parser events");
+        }
+
+        return nodes.get(0);
+    }
+
+    @Override
+    public void enterEveryRule(ParserRuleContext ctx) {
+        if (failed) {
+            return;
+        }
+
+        int mark = nodes.size();
+        if (lastExited != null && lastExited.parent == ctx) {
+            mark--;
+        }
+
+        if (depth == marks.length) {
+            marks = Arrays.copyOf(marks, depth * 2);
+        }
+
+        marks[depth++] = mark;
+    }
+
+    @Override
+    public void exitEveryRule(ParserRuleContext ctx) {
+        if (failed) {
+            return;
+        }
+
+        NodeKind kind = KINDS.get(ctx.getClass());
+
+        // Only happens while recovering from a syntax error, the result is discarded then
+        if (kind == null || depth == 0) {
+            failed = true;
+            return;
+        }
+
+        int mark = marks[--depth];
+
+        AstNode node = new AstNode(kind);
+        setPosition(node, ctx);
+        addAttributes(node, ctx);
+
+        List<AstNode> children = nodes.subList(mark, nodes.size());
+        for (AstNode child : children) {
+            node.add(child);
+        }
+        children.clear();
+
+        nodes.add(node);
+        lastExited = ctx;
+    }
+
+    @Override
+    public void visitTerminal(TerminalNode node) {
+    }
+
+    @Override
+    public void visitErrorNode(ErrorNode node) {
+    }
+
+    private void setPosition(AstNode node, ParserRuleContext ctx) {
+        Token start = ctx.start;
+        // In the expression rule, contexts are exited before the parser sets their stop token, which is the last one
+        // consumed so far
+        Token stop = ctx.stop != null ? ctx.stop : tokens.LT(-1);
+
+        // Same as the source interval of the context: a rule that matched nothing ends at the previous token
+        if (stop == null || stop.getTokenIndex() < start.getTokenIndex()) {
+            stop = start.getTokenIndex() > 0 ? tokens.get(start.getTokenIndex() - 1) : start;
+        }
+
+        node.setPosition(start.getLine(), start.getCharPositionInLine(), stop.getLine(),
+                stop.getCharPositionInLine());
+    }
+
+    private void addAttributes(AstNode node, ParserRuleContext ctx) {
+        switch (node.getNodeKind()) {
+            case IMPORT_DECLARATION -> {
+                var importDeclaration = (JavammParser.ImportDeclarationContext) ctx;
+
+                List<String> importClass = new ArrayList<>(importDeclaration.importClass.size());
+                for (Token token : importDeclaration.importClass) {
+                    importClass.add(name(token));
+                }
+
+                node.putObject("importClass", importClass);
+                put(node, "ID", importDeclaration.ID);
+            }
+            case CLASS_DECLARATION -> {
+                var classDeclaration = (JavammParser.ClassDeclarationContext) ctx;
+                put(node, "name", classDeclaration.name);
+                put(node, "extendedClass", classDeclaration.extendedClass);
+            }
+            case METHOD_DECLARATION -> {
+                var methodDeclaration = (JavammParser.MethodDeclarationContext) ctx;
+                node.putObject("isStatic", methodDeclaration.isStatic);
+                put(node, "methodName", methodDeclaration.methodName);
+            }
+            case MAIN_DECLARATION -> {
+                var mainDeclaration = (JavammParser.MainDeclarationContext) ctx;
+                put(node, "methodName", mainDeclaration.methodName);
+                put(node, "typeName", mainDeclaration.typeName);
+                put(node, "name", mainDeclaration.name);
+            }
+            case TYPE -> {
+                var type = (JavammParser.TypeContext) ctx;
+                node.putObject("isArray", type.isArray);
+                node.putObject("isClass", type.isClass);
+                put(node, "name", type.name);
+            }
+            case VAR_DECLARATION -> put(node, "var", ((JavammParser.VarDeclarationContext) ctx).var);
+            case PARAM -> put(node, "var", ((JavammParser.ParamContext) ctx).var);
+            case VARIABLE_ID -> put(node, "var", ((JavammParser.VariableIdContext) ctx).var);
+            case FUNCTION_CALL -> put(node, "method", ((JavammParser.FunctionCallContext) ctx).method);
+            case ARITHMETIC_BINARY_OP -> put(node, "op", ((JavammParser.ArithmeticBinaryOPContext) ctx).op);
+            case LOGICAL_BINARY_OP -> put(node, "op", ((JavammParser.LogicalBinaryOPContext) ctx).op);
+            case INT -> put(node, "value", ((JavammParser.IntContext) ctx).value);
+            case BOOLEAN -> put(node, "value", ((JavammParser.BooleanContext) ctx).value);
+            default -> {
+            }
+        }
+    }
+
+    private void put(AstNode node, String attribute, Token token) {
+        if (token != null) {
+            node.put(attribute, name(token));
+        }
+    }
+
+    private String name(Token token) {
+        String text = token.getText();
+        String name = names.putIfAbsent(text, text);
+
+        return name != null ? name : text;
+    }
+}
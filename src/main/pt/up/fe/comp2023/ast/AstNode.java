@@ -0,0 +1,520 @@
+package pt.up.fe.comp2023.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.analysis.Binding;
+import pt.up.fe.comp2023.analysis.SemanticHelper;
+import pt.up.fe.comp2023.analysis.Types;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Node of the AST with its facts kept in typed fields instead of a map of strings: the kind is a {@link NodeKind},
+ * positions and literal values are ints, the type of an expression is a shared {@link Type} and each identifier can
+ * point to the {@link Binding} it was resolved to.
+ * <p>
+ * The node also implements {@link JmmNode}, mapping the attribute names used by the parser and the visitors
+ * ("type", "isArray", "value", "methodName", "lineStart", ...) to those fields, so code written against JmmNode keeps
+ * working. Attributes without a field of their own are kept in a map, created only for the nodes that need it.
+ */
+public class AstNode implements JmmNode {
+
+    private static final byte ABSENT = -1;
+    private static final byte FALSE = 0;
+    private static final byte TRUE = 1;
+    private static final byte MAYBE = 2;
+
+    private static final String LINE_START = "lineStart";
+    private static final String COL_START = "colStart";
+    private static final String LINE_END = "lineEnd";
+    private static final String COL_END = "colEnd";
+
+    private final NodeKind kind;
+    private AstNode parent;
+    private final List<JmmNode> children = new ArrayList<>(2);
+
+    private int lineStart = -1;
+    private int colStart = -1;
+    private int lineEnd = -1;
+    private int colEnd = -1;
+
+    // Identifier or operator, the attribute it stands for depends on the kind
+    private String text;
+
+    // Value of Int and Boolean literals, booleans are 0 or 1
+    private int value;
+    private boolean hasValue = false;
+
+    private String typeName;
+    private byte isArray = ABSENT;
+    private Type type;
+
+    private byte isClass = ABSENT;
+    private byte isStatic = ABSENT;
+    private String methodName;
+
+    private Binding binding;
+
+    private Map<String, Object> attributes;
+
+    public AstNode(NodeKind kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * Copies the given tree, as produced by {@link pt.up.fe.comp.jmm.ast.antlr.AntlrParser}.
+     */
+    public static AstNode fromJmmNode(JmmNode jmmNode) {
+        AstNode node = new AstNode(NodeKind.fromName(jmmNode.getKind()));
+
+        for (String attribute : jmmNode.getAttributes()) {
+            Object value = jmmNode.getObject(attribute);
+
+            // The parser also stores the child of Var nodes as their "name", the child is already copied as such
+            if (value instanceof JmmNode) {
+                continue;
+            }
+
+            node.putObject(attribute, value);
+        }
+
+        for (JmmNode child : jmmNode.getChildren()) {
+            node.add(fromJmmNode(child));
+        }
+
+        return node;
+    }
+
+    public NodeKind getNodeKind() {
+        return kind;
+    }
+
+    public AstNode getParent() {
+        return parent;
+    }
+
+    public AstNode getChild(int index) {
+        return (AstNode) children.get(index);
+    }
+
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    public int getColStart() {
+        return colStart;
+    }
+
+    public void setPosition(int lineStart, int colStart, int lineEnd, int colEnd) {
+        this.lineStart = lineStart;
+        this.colStart = colStart;
+        this.lineEnd = lineEnd;
+        this.colEnd = colEnd;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean hasValue() {
+        return hasValue;
+    }
+
+    public int getIntValue() {
+        if (!hasValue) {
+            return Integer.parseInt(get("value"));
+        }
+
+        return value;
+    }
+
+    public boolean getBoolValue() {
+        if (!hasValue) {
+            return get("value").equals(SemanticHelper.TRUE);
+        }
+
+        return value != 0;
+    }
+
+    public void setValue(int value) {
+        this.value = value;
+        this.hasValue = true;
+    }
+
+    public void setValue(boolean value) {
+        setValue(value ? 1 : 0);
+    }
+
+    /**
+     * Type of the expression, null if it was not computed or if it is unknown whether it is an array.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    public boolean isArray() {
+        return isArray == TRUE;
+    }
+
+    public boolean isMaybeArray() {
+        return isArray == MAYBE;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+        this.typeName = type.getName();
+        this.isArray = type.isArray() ? TRUE : FALSE;
+    }
+
+    /**
+     * Type of an expression whose type is unknown, such as a call to an imported method.
+     */
+    public void setAnyType() {
+        this.typeName = SemanticHelper.ANY;
+        this.isArray = MAYBE;
+        this.type = null;
+    }
+
+    public void copyType(AstNode other) {
+        this.typeName = other.typeName;
+        this.isArray = other.isArray;
+        this.type = other.type;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public boolean isStatic() {
+        return isStatic == TRUE;
+    }
+
+    public boolean isClass() {
+        return isClass == TRUE;
+    }
+
+    /**
+     * Local, parameter, field or imported class an identifier refers to, once resolved, or null.
+     */
+    public Binding getBinding() {
+        return binding;
+    }
+
+    public void setBinding(Binding binding) {
+        this.binding = binding;
+    }
+
+    @Override
+    public String getKind() {
+        return kind.getName();
+    }
+
+    @Override
+    public Collection<String> getHierarchy() {
+        return kind.getHierarchy();
+    }
+
+    @Override
+    public Collection<String> getAttributes() {
+        List<String> names = new ArrayList<>();
+
+        if (lineStart != -1) names.add(LINE_START);
+        if (colStart != -1) names.add(COL_START);
+        if (lineEnd != -1) names.add(LINE_END);
+        if (colEnd != -1) names.add(COL_END);
+        if (text != null) names.add(kind.getTextAttribute());
+        if (hasValue) names.add("value");
+        if (typeName != null) names.add("type");
+        if (isArray != ABSENT) names.add("isArray");
+        if (isClass != ABSENT) names.add("isClass");
+        if (isStatic != ABSENT) names.add("isStatic");
+        if (methodName != null) names.add("methodName");
+        if (attributes != null) names.addAll(attributes.keySet());
+
+        return names;
+    }
+
+    @Override
+    public boolean hasAttribute(String attribute) {
+        return getOptionalObject(attribute).isPresent();
+    }
+
+    @Override
+    public void putObject(String attribute, Object value) {
+        if (attribute.equals(kind.getTextAttribute())) {
+            text = value.toString();
+            return;
+        }
+
+        switch (attribute) {
+            case LINE_START -> lineStart = Integer.parseInt(value.toString());
+            case COL_START -> colStart = Integer.parseInt(value.toString());
+            case LINE_END -> lineEnd = Integer.parseInt(value.toString());
+            case COL_END -> colEnd = Integer.parseInt(value.toString());
+            case "type" -> {
+                typeName = Types.name(value.toString());
+                updateType();
+            }
+            case "isArray" -> {
+                isArray = toFlag(value);
+                updateType();
+            }
+            case "isClass" -> isClass = toFlag(value);
+            case "isStatic" -> isStatic = toFlag(value);
+            case "methodName" -> methodName = value.toString();
+            case "value" -> putValue(value);
+            default -> putAttribute(attribute, value);
+        }
+    }
+
+    private void putValue(Object value) {
+        if (kind == NodeKind.BOOLEAN) {
+            setValue(value.toString().equals(SemanticHelper.TRUE));
+            return;
+        }
+
+        if (kind == NodeKind.INT) {
+            try {
+                setValue(Integer.parseInt(value.toString()));
+                return;
+            } catch (NumberFormatException e) {
+                // Out of range, kept as written
+            }
+        }
+
+        hasValue = false;
+        putAttribute("value", value);
+    }
+
+    private void putAttribute(String attribute, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>(4);
+        }
+
+        attributes.put(attribute, value);
+    }
+
+    private void updateType() {
+        type = typeName != null && (isArray == TRUE || isArray == FALSE) ? Types.of(typeName, isArray == TRUE) : null;
+    }
+
+    private static byte toFlag(Object value) {
+        if (value instanceof Boolean bool) {
+            return bool ? TRUE : FALSE;
+        }
+
+        String string = value.toString();
+
+        if (string.equals(SemanticHelper.TRUE)) {
+            return TRUE;
+        }
+
+        return string.equals(SemanticHelper.MAYBE) ? MAYBE : FALSE;
+    }
+
+    private static Object fromFlag(byte flag) {
+        return switch (flag) {
+            case TRUE -> Boolean.TRUE;
+            case FALSE -> Boolean.FALSE;
+            case MAYBE -> SemanticHelper.MAYBE;
+            default -> null;
+        };
+    }
+
+    @Override
+    public Object getObject(String attribute) {
+        return getOptionalObject(attribute).orElseThrow(
+                () -> new NullPointerException("Node " + getKind() + " does not contain attribute '" + attribute + "'"));
+    }
+
+    @Override
+    public Optional<Object> getOptionalObject(String attribute) {
+        return Optional.ofNullable(find(attribute));
+    }
+
+    private Object find(String attribute) {
+        if (attribute.equals(kind.getTextAttribute())) {
+            return text;
+        }
+
+        return switch (attribute) {
+            case LINE_START -> position(lineStart);
+            case COL_START -> position(colStart);
+            case LINE_END -> position(lineEnd);
+            case COL_END -> position(colEnd);
+            case "type" -> typeName;
+            case "isArray" -> fromFlag(isArray);
+            case "isClass" -> fromFlag(isClass);
+            case "isStatic" -> fromFlag(isStatic);
+            case "methodName" -> methodName;
+            case "value" -> hasValue ? valueString() : attribute(attribute);
+            default -> attribute(attribute);
+        };
+    }
+
+    private String valueString() {
+        if (kind == NodeKind.BOOLEAN) {
+            return value != 0 ? SemanticHelper.TRUE : SemanticHelper.FALSE;
+        }
+
+        return Integer.toString(value);
+    }
+
+    private Object attribute(String attribute) {
+        return attributes == null ? null : attributes.get(attribute);
+    }
+
+    private static String position(int position) {
+        return position == -1 ? null : Integer.toString(position);
+    }
+
+    @Override
+    public String get(String attribute) {
+        return getObject(attribute).toString();
+    }
+
+    @Override
+    public JmmNode getJmmParent() {
+        return parent;
+    }
+
+    @Override
+    public List<JmmNode> getChildren() {
+        return new ArrayList<>(children);
+    }
+
+    @Override
+    public JmmNode getJmmChild(int index) {
+        return children.get(index);
+    }
+
+    @Override
+    public int getNumChildren() {
+        return children.size();
+    }
+
+    @Override
+    public void add(JmmNode child, int index) {
+        AstNode node = asAstNode(child);
+
+        children.add(index, node);
+        node.parent = this;
+    }
+
+    @Override
+    public void setChild(JmmNode newNode, int index) {
+        AstNode node = asAstNode(newNode);
+        AstNode currentChild = getChild(index);
+
+        // Same behaviour as JmmNodeImpl: if the new node had a parent, the replaced child takes its place there
+        AstNode newNodeParent = node.parent;
+        int newNodeCurrentIndex = newNodeParent != null ? node.getIndexOfSelf() : -1;
+
+        children.set(index, node);
+        node.parent = this;
+        currentChild.parent = null;
+
+        if (newNodeParent != null) {
+            newNodeParent.children.set(newNodeCurrentIndex, currentChild);
+            currentChild.parent = newNodeParent;
+        }
+    }
+
+    @Override
+    public JmmNode removeJmmChild(int index) {
+        if (index >= children.size()) {
+            System.out.println("[WARNING] Tried to remove child at index " + index + ", but node only has "
+                    + children.size() + " children");
+            return null;
+        }
+
+        AstNode removedChild = (AstNode) children.remove(index);
+        removedChild.parent = null;
+        return removedChild;
+    }
+
+    @Override
+    public int removeJmmChild(JmmNode node) {
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == node) {
+                removeJmmChild(i);
+                return i;
+            }
+        }
+
+        System.out.println("[WARNING] Tried to remove child from node, but could not find it.\nChild:" + node
+                + "\nParent:" + this);
+        return -1;
+    }
+
+    @Override
+    public void delete() {
+        if (parent == null) {
+            System.out.println("[WARNING] Tried to remove itself from the tree, but node has no parent");
+            return;
+        }
+
+        parent.removeJmmChild(this);
+    }
+
+    @Override
+    public int getIndexOfSelf() {
+        if (parent == null) {
+            return -1;
+        }
+
+        for (int i = 0; i < parent.children.size(); i++) {
+            if (parent.children.get(i) == this) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    @Override
+    public void removeParent() {
+        parent = null;
+    }
+
+    @Override
+    public void setParent(JmmNode parent) {
+        this.parent = parent == null ? null : asAstNode(parent);
+    }
+
+    private static AstNode asAstNode(JmmNode node) {
+        if (!(node instanceof AstNode astNode)) {
+            throw new RuntimeException(AstNode.class.getName() + " can only have children of its class, found "
+                    + node.getClass().getName());
+        }
+
+        return astNode;
+    }
+
+    @Override
+    public String toString() {
+        // Positions are left out, as in JmmNodeImpl
+        List<String> shown = getAttributes().stream()
+                .filter(attribute -> !attribute.equals(LINE_START) && !attribute.equals(COL_START)
+                        && !attribute.equals(LINE_END) && !attribute.equals(COL_END))
+                .toList();
+
+        if (shown.isEmpty()) {
+            return getKind();
+        }
+
+        return getKind() + shown.stream()
+                .map(attribute -> attribute + ": " + get(attribute))
+                .collect(Collectors.joining(", ", " (", ")"));
+    }
+}
@@ -0,0 +1,111 @@
+package pt.up.fe.comp2023.ast;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kinds of the nodes of the AST, one for each rule and alternative label of the grammar.
+ */
+public enum NodeKind {
+    PROGRAM("Program"),
+    IMPORT_DECLARATION("ImportDeclaration"),
+    CLASS_DECLARATION("ClassDeclaration", "name"),
+    METHODS("Methods"),
+    VAR_DECLARATION("VarDeclaration", "var"),
+    METHOD_DECLARATION("MethodDeclaration"),
+    VAR_DECLARATIONS("VarDeclarations"),
+    STATEMENTS("Statements"),
+    RETURN_STATEMENT("ReturnStatement"),
+    PARAMS("Params"),
+    PARAM("Param", "var"),
+    MAIN_DECLARATION("MainDeclaration", "name"),
+    TYPE("Type", "name"),
+    BLOCK("Block", null, "Statement"),
+    IF("If", null, "Statement"),
+    WHILE("While", null, "Statement"),
+    LINE("Line", null, "Statement"),
+    ASSIGN("Assign", null, "Statement"),
+    ARRAY_ASSIGN("ArrayAssign", null, "Statement"),
+    PARENTHESIS("Parenthesis", null, "Expression"),
+    ARRAY("Array", null, "Expression"),
+    LENGTH("Length", null, "Expression"),
+    FUNCTION_CALL("FunctionCall", "method", "Expression"),
+    NEG("Neg", null, "Expression"),
+    ARITHMETIC_BINARY_OP("ArithmeticBinaryOP", "op", "Expression"),
+    LOGICAL_BINARY_OP("LogicalBinaryOP", "op", "Expression"),
+    NEW_ARRAY("NewArray", null, "Expression"),
+    NEW("New", null, "Expression"),
+    BOOLEAN("Boolean", null, "Expression"),
+    VAR("Var", null, "Expression"),
+    INT("Int", null, "Expression"),
+    THIS("This", null, "Expression"),
+    ARGS("Args"),
+    VARIABLE_ID("VariableId", "var", "Variable");
+
+    private static final Map<String, NodeKind> BY_NAME = new HashMap<>();
+
+    static {
+        for (NodeKind kind : values()) {
+            BY_NAME.put(kind.name, kind);
+        }
+    }
+
+    private final String name;
+    private final String textAttribute;
+    private final List<String> hierarchy;
+
+    NodeKind(String name) {
+        this(name, null);
+    }
+
+    NodeKind(String name, String textAttribute) {
+        this.name = name;
+        this.textAttribute = textAttribute;
+        this.hierarchy = List.of(name);
+    }
+
+    /**
+     * Kind of a labeled alternative, whose nodes also have the name of the rule in their hierarchy.
+     */
+    NodeKind(String name, String textAttribute, String rule) {
+        this.name = name;
+        this.textAttribute = textAttribute;
+        this.hierarchy = List.of(name, rule);
+    }
+
+    /**
+     * Name of the kind, as returned by {@link pt.up.fe.comp.jmm.ast.JmmNode#getKind()}.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Attribute holding the identifier or operator of nodes of this kind, or null if they have none.
+     */
+    public String getTextAttribute() {
+        return textAttribute;
+    }
+
+    public List<String> getHierarchy() {
+        return hierarchy;
+    }
+
+    public static NodeKind fromName(String name) {
+        NodeKind kind = lookup(name);
+
+        if (kind == null) {
+            throw new RuntimeException("Unknown node kind '" + name + "'");
+        }
+
+        return kind;
+    }
+
+    /**
+     * Kind with the given name, or null if there is none.
+     */
+    public static NodeKind lookup(String name) {
+        return BY_NAME.get(name);
+    }
+}
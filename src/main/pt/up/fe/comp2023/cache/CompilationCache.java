@@ -0,0 +1,251 @@
+package pt.up.fe.comp2023.cache;
+
+import pt.up.fe.comp2023.CompiledClass;
+import pt.up.fe.comp2023.analysis.ClassIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of compiled classes, addressed by a hash of the source code, of the options that change the
+ * generated code and of the class files that can be imported.
+ * <p>
+ * Entries are written to a temporary file and atomically renamed, so readers in other processes either see a
+ * complete entry or none. Hits refresh the entry modification time, and when the folder grows over its size limit
+ * the least recently used entries are deleted while holding a file lock shared by all compiler processes.
+ */
+public class CompilationCache {
+
+    // Bump when the generated code or the entry format changes, so old entries are never reused
+    private static final int FORMAT_VERSION = 10;
+    private static final String[] KEY_OPTIONS = {"optimize", "registerAllocation", "registerAllocator", "debug"};
+    private static final String ENTRY_EXTENSION = ".entry";
+
+    private static final Map<Path, CompilationCache> CACHES = new ConcurrentHashMap<>();
+
+    private final Path folder;
+    private final long maxBytes;
+    private final AtomicLong bytesSinceEviction;
+
+    private CompilationCache(Path folder, long maxBytes) {
+        this.folder = folder;
+        this.maxBytes = maxBytes;
+        // Forces a size check on the first write
+        this.bytesSinceEviction = new AtomicLong(maxBytes);
+    }
+
+    /**
+     * Returns the cache stored in the given folder, shared by every pipeline of this process.
+     */
+    public static CompilationCache open(Path folder, long maxBytes) {
+        return CACHES.computeIfAbsent(folder.toAbsolutePath().normalize(), path -> {
+            try {
+                Files.createDirectories(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new CompilationCache(path, maxBytes);
+        });
+    }
+
+    public static String computeKey(String code, Map<String, String> config) {
+        return computeKey(ByteBuffer.wrap(code.getBytes(StandardCharsets.UTF_8)), config);
+    }
+
+    /**
+     * Same as {@link #computeKey(String, Map)}, for code given as its UTF-8 bytes, such as a mapped source file.
+     */
+    public static String computeKey(ByteBuffer code, Map<String, String> config) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(("jmm-cache-" + FORMAT_VERSION + "\n").getBytes(StandardCharsets.UTF_8));
+            for (String option : KEY_OPTIONS) {
+                digest.update((option + "=" + config.getOrDefault(option, "") + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            // The signatures of imported classes change the generated code
+            digest.update(("classes=" + ClassIndex.forConfig(config).fingerprint() + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(code);
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Returns the entry with the given key, or null if it is not in the cache (or was evicted meanwhile).
+     */
+    public CompiledClass get(String key) {
+        Path entry = folder.resolve(key + ENTRY_EXTENSION);
+
+        try {
+            byte[] bytes = Files.readAllBytes(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return decode(bytes);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // A corrupted or concurrently deleted entry is just a miss
+            return null;
+        }
+    }
+
+    public void put(String key, CompiledClass compiledClass) {
+        byte[] bytes = encode(compiledClass);
+
+        try {
+            Path temp = Files.createTempFile(folder, key, ".tmp");
+            Files.write(temp, bytes);
+
+            Path entry = folder.resolve(key + ENTRY_EXTENSION);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // The cache is only an accelerator, failing to store an entry must not fail the compilation
+            System.err.println("Could not store compilation cache entry: " + e.getMessage());
+            return;
+        }
+
+        // Only rescan the folder after about a tenth of the limit was written by this process
+        if (bytesSinceEviction.addAndGet(bytes.length) >= maxBytes / 10) {
+            bytesSinceEviction.set(0);
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache fits in its size limit.
+     */
+    public void evict() {
+        try (FileChannel lockChannel = FileChannel.open(folder.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock ignored = lockChannel.lock()) {
+
+            List<Path> entries = new ArrayList<>();
+            try (Stream<Path> files = Files.list(folder)) {
+                files.filter(path -> path.toString().endsWith(ENTRY_EXTENSION)).forEach(entries::add);
+            }
+
+            List<long[]> infos = new ArrayList<>();
+            long totalBytes = 0;
+            for (int i = 0; i < entries.size(); i++) {
+                try {
+                    long size = Files.size(entries.get(i));
+                    long modified = Files.getLastModifiedTime(entries.get(i)).toMillis();
+                    infos.add(new long[]{i, size, modified});
+                    totalBytes += size;
+                } catch (NoSuchFileException e) {
+                    // deleted by another process
+                }
+            }
+
+            if (totalBytes <= maxBytes) {
+                return;
+            }
+
+            infos.sort(Comparator.comparingLong(info -> info[2]));
+            for (long[] info : infos) {
+                if (totalBytes <= maxBytes) {
+                    break;
+                }
+                Files.deleteIfExists(entries.get((int) info[0]));
+                totalBytes -= info[1];
+            }
+        } catch (IOException e) {
+            System.err.println("Could not evict compilation cache entries: " + e.getMessage());
+        }
+    }
+
+    private static byte[] encode(CompiledClass compiledClass) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(FORMAT_VERSION);
+            writeBytes(out, compiledClass.getClassName().getBytes(StandardCharsets.UTF_8));
+            writeBytes(out, compiledClass.getClassBytes());
+            writeText(out, compiledClass.getOllirCode());
+            writeText(out, compiledClass.getJasminCode());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static CompiledClass decode(byte[] bytes) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unexpected cache entry version");
+            }
+
+            String className = new String(readBytes(in), StandardCharsets.UTF_8);
+            byte[] classBytes = readBytes(in);
+            String ollirCode = readText(in);
+            String jasminCode = readText(in);
+
+            return new CompiledClass(className, classBytes, ollirCode, jasminCode);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes text that may be null, as the OLLIR and Jasmin code are without the debug option. Since "debug" is part
+     * of the key, an entry read back has the text exactly when the compilation asked for it.
+     */
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        writeBytes(out, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
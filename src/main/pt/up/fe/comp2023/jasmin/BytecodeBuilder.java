@@ -0,0 +1,343 @@
+package pt.up.fe.comp2023.jasmin;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Bytecode of a single method. Branches to labels that are not placed yet are patched when the code is finished,
+ * widening the ones too far for a 16-bit offset, and the types of the locals and of the operand stack are computed by following every path through the code.
+ * They give the maximum stack depth and the stack map frames needed by the type-checking verifier.
+ */
+public class BytecodeBuilder {
+
+    private static final int NOP = 0x00;
+    private static final int ATHROW = 0xbf;
+    private static final int IFEQ = 0x99;
+    private static final int GOTO_W = 0xc8;
+
+    // opcode and 16-bit offset of a branch, opcode and 32-bit offset of goto_w
+    private static final int BRANCH_SIZE = 3;
+    private static final int GOTO_W_SIZE = 5;
+
+    enum Flow {
+        // continues to the next instruction
+        NEXT,
+        // goto
+        JUMP,
+        // conditional branch, continues to the target or to the next instruction
+        BRANCH,
+        // return, the method ends
+        END
+    }
+
+    /**
+     * Changes the frame as the instruction does when it runs.
+     */
+    interface Effect {
+        void apply(Frame frame);
+    }
+
+    private record Insn(int offset, Effect effect, Flow flow, String target) {
+    }
+
+    private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+    private final List<Insn> instructions = new ArrayList<>();
+    private final Map<String, Integer> labels = new HashMap<>();
+
+    private int maxLocals = 0;
+
+    // Results of finish
+    private byte[] bytecode;
+    private int maxStack;
+    private SortedMap<Integer, Frame> frames;
+    private int[] offsets;
+
+    /**
+     * Starts a new instruction with the given opcode. Its operands are written with {@link #u1} and {@link #u2}.
+     */
+    public void begin(int opcode, Effect effect, Flow flow) {
+        instructions.add(new Insn(code.size(), effect, flow, null));
+        code.write(opcode);
+    }
+
+    public void branch(int opcode, Effect effect, Flow flow, String label) {
+        instructions.add(new Insn(code.size(), effect, flow, label));
+        code.write(opcode);
+        // the offset is patched in finish
+        u2(0);
+    }
+
+    public void label(String label) {
+        if (labels.putIfAbsent(label, code.size()) != null) {
+            throw new JasminException("ERROR: DUPLICATED LABEL " + label);
+        }
+    }
+
+    public void u1(int value) {
+        code.write(value);
+    }
+
+    public void u2(int value) {
+        code.write(value >> 8);
+        code.write(value);
+    }
+
+    public void useLocal(int register) {
+        if (register < 0 || register > 0xFFFF) {
+            throw new JasminException("ERROR: INVALID LOCAL VARIABLE " + register);
+        }
+        maxLocals = Math.max(maxLocals, register + 1);
+    }
+
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public byte[] getCode() {
+        return bytecode;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Stack map frames by bytecode offset: one for each branch target and for each block of unreachable code.
+     */
+    public SortedMap<Integer, Frame> getFrames() {
+        return frames;
+    }
+
+    /**
+     * Offset of the given instruction, counted by {@link #nextInstruction}, in the finished code. Only known once
+     * {@link #finish} has placed the branches, which is when the effects run.
+     */
+    public int getOffset(int instruction) {
+        return offsets[instruction];
+    }
+
+    /**
+     * Index the next instruction begun will have.
+     */
+    public int nextInstruction() {
+        return instructions.size();
+    }
+
+    /**
+     * Resolves the branch offsets and computes the frames, starting from the frame of the method entry. Objects of
+     * different classes that reach the same instruction are merged with the given hierarchy.
+     */
+    public void finish(Frame initialFrame, ClassHierarchy hierarchy) {
+        byte[] emitted = code.toByteArray();
+
+        Map<Integer, Integer> indexOfOffset = new HashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexOfOffset.put(instructions.get(i).offset(), i);
+        }
+
+        int[] targets = new int[instructions.size()];
+        for (int i = 0; i < instructions.size(); i++) {
+            Insn insn = instructions.get(i);
+            if (insn.target() == null) continue;
+
+            Integer target = indexOfOffset.get(labelOffset(insn.target()));
+            if (target == null) {
+                throw new JasminException("ERROR: LABEL " + insn.target() + " DOES NOT MARK AN INSTRUCTION");
+            }
+            targets[i] = target;
+        }
+
+        boolean[] far = placeBranches(emitted.length, targets);
+        bytecode = writeBranches(emitted, targets, far);
+
+        Frame[] frameBefore = new Frame[instructions.size()];
+        boolean[] isTarget = new boolean[instructions.size()];
+
+        Deque<Integer> worklist = new ArrayDeque<>();
+        maxStack = 0;
+
+        if (!instructions.isEmpty()) {
+            frameBefore[0] = initialFrame.copy();
+            worklist.push(0);
+        }
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.pop();
+            Insn insn = instructions.get(index);
+
+            Frame frame = frameBefore[index].copy();
+            try {
+                insn.effect().apply(frame);
+            } catch (JasminException e) {
+                throw new JasminException(e.getMessage() + " AT OFFSET " + offsets[index]);
+            }
+            maxStack = Math.max(maxStack, frame.getStackSize());
+
+            List<Integer> successors = new ArrayList<>(2);
+            if (insn.flow() == Flow.NEXT || insn.flow() == Flow.BRANCH) {
+                if (index + 1 >= instructions.size()) {
+                    throw new JasminException("ERROR: CODE FALLS OFF THE END OF THE METHOD");
+                }
+                successors.add(index + 1);
+            }
+            if (insn.flow() == Flow.JUMP || insn.flow() == Flow.BRANCH) {
+                successors.add(targets[index]);
+                isTarget[targets[index]] = true;
+            }
+            // the opposite condition jumps over the goto_w, to the next instruction
+            if (insn.flow() == Flow.BRANCH && far[index]) {
+                isTarget[index + 1] = true;
+            }
+
+            for (int successor : successors) {
+                if (frameBefore[successor] == null) {
+                    frameBefore[successor] = frame.copy();
+                    worklist.push(successor);
+                } else if (frameBefore[successor].merge(frame, hierarchy)) {
+                    worklist.push(successor);
+                }
+            }
+        }
+
+        frames = new TreeMap<>();
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (frameBefore[i] != null) {
+                if (isTarget[i]) {
+                    frames.put(offsets[i], frameBefore[i]);
+                }
+                continue;
+            }
+
+            // Unreachable code cannot be typed, so it is replaced by nops and an athrow of a value it does not have
+            int end = i;
+            while (end < instructions.size() && frameBefore[end] == null) {
+                end++;
+            }
+
+            int startOffset = offsets[i];
+            int endOffset = offsets[end];
+
+            for (int offset = startOffset; offset < endOffset - 1; offset++) {
+                bytecode[offset] = NOP;
+            }
+            bytecode[endOffset - 1] = (byte) ATHROW;
+
+            Frame deadFrame = new Frame(0);
+            deadFrame.push(VerificationType.object("java/lang/Throwable"));
+            frames.put(startOffset, deadFrame);
+            maxStack = Math.max(maxStack, 1);
+
+            i = end - 1;
+        }
+    }
+
+    /**
+     * Lays out the instructions, widening the branches whose target is further than a 16-bit offset reaches until
+     * none is. Widening only makes the code longer, so it stops once no branch changes. Returns which branches are
+     * wide.
+     */
+    private boolean[] placeBranches(int emittedLength, int[] targets) {
+        boolean[] far = new boolean[instructions.size()];
+        boolean changed = true;
+
+        while (changed) {
+            changed = false;
+            offsets = layout(emittedLength, far);
+
+            for (int i = 0; i < instructions.size(); i++) {
+                if (instructions.get(i).target() == null || far[i]) continue;
+
+                int offset = offsets[targets[i]] - offsets[i];
+                if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                    far[i] = true;
+                    changed = true;
+                }
+            }
+        }
+
+        return far;
+    }
+
+    /**
+     * Offsets of the instructions, and of the end of the code after them, with the given branches widened.
+     */
+    private int[] layout(int emittedLength, boolean[] far) {
+        int[] layout = new int[instructions.size() + 1];
+        int offset = 0;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Insn insn = instructions.get(i);
+            int next = i + 1 < instructions.size() ? instructions.get(i + 1).offset() : emittedLength;
+
+            layout[i] = offset;
+            offset += next - insn.offset();
+            if (far[i]) {
+                offset += insn.flow() == Flow.JUMP ? GOTO_W_SIZE - BRANCH_SIZE : GOTO_W_SIZE;
+            }
+        }
+        layout[instructions.size()] = offset;
+
+        return layout;
+    }
+
+    /**
+     * Copies the emitted code to its final offsets, with the offsets of the branches. A wide goto becomes goto_w, and
+     * a wide conditional branch the opposite condition jumping over a goto_w to the target.
+     */
+    private byte[] writeBranches(byte[] emitted, int[] targets, boolean[] far) {
+        byte[] result = new byte[offsets[instructions.size()]];
+
+        for (int i = 0; i < instructions.size(); i++) {
+            Insn insn = instructions.get(i);
+            int at = offsets[i];
+
+            if (insn.target() == null) {
+                int next = i + 1 < instructions.size() ? instructions.get(i + 1).offset() : emitted.length;
+                System.arraycopy(emitted, insn.offset(), result, at, next - insn.offset());
+                continue;
+            }
+
+            int opcode = emitted[insn.offset()] & 0xFF;
+
+            if (!far[i]) {
+                result[at] = (byte) opcode;
+                putS2(result, at + 1, offsets[targets[i]] - at);
+                continue;
+            }
+
+            if (insn.flow() == Flow.BRANCH) {
+                // ifeq and ifne, iflt and ifge, and so on, are next to each other
+                result[at] = (byte) (((opcode - IFEQ) ^ 1) + IFEQ);
+                putS2(result, at + 1, BRANCH_SIZE + GOTO_W_SIZE);
+                at += BRANCH_SIZE;
+            }
+
+            result[at] = (byte) GOTO_W;
+            putS2(result, at + 1, (offsets[targets[i]] - at) >> 16);
+            putS2(result, at + 3, offsets[targets[i]] - at);
+        }
+
+        return result;
+    }
+
+    private static void putS2(byte[] bytes, int at, int value) {
+        bytes[at] = (byte) (value >> 8);
+        bytes[at + 1] = (byte) value;
+    }
+
+    private int labelOffset(String label) {
+        Integer offset = labels.get(label);
+        if (offset == null) {
+            throw new JasminException("ERROR: UNDEFINED LABEL " + label);
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,588 @@
+package pt.up.fe.comp2023.jasmin;
+
+import org.specs.comp.ollir.AccessModifiers;
+import pt.up.fe.comp2023.analysis.ClassIndex;
+import pt.up.fe.comp2023.jasmin.BytecodeBuilder.Effect;
+import pt.up.fe.comp2023.jasmin.BytecodeBuilder.Flow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the generated class directly as a class file, without going through the Jasmin assembler.
+ * <p>
+ * The classes target Java 8 (version 52) and carry a StackMapTable with the types at every branch target, so the
+ * JVM loads them with the type-checking verifier instead of inferring the types itself. Unlike the Jasmin text,
+ * the stack and locals limits are computed from the emitted bytecode, for constructors too. Objects of different
+ * classes that reach the same branch target are merged to the closest class both extend, found in the compiled class,
+ * the {@link ClassIndex} of the classpath or the JDK.
+ */
+public class ClassFileEmitter implements JasminEmitter {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 52;
+    private static final int MINOR_VERSION = 0;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int WIDE = 0xc4;
+    private static final int IINC = 0x84;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int NEW = 0xbb;
+    private static final int NEWARRAY = 0xbc;
+    private static final int T_INT = 10;
+
+    private static final int SAME_LOCALS_1_STACK_ITEM = 64;
+    private static final int SAME_LOCALS_1_STACK_ITEM_EXTENDED = 247;
+    // chop_frame and append_frame are counted from here
+    private static final int SAME_FRAME_EXTENDED = 251;
+    private static final int FULL_FRAME = 255;
+
+    // opcode, popped values, pushed ints
+    private static final Map<String, int[]> SIMPLE_OPCODES = Map.ofEntries(
+            Map.entry("iconst_m1", new int[]{0x02, 0, 1}),
+            Map.entry("iconst_0", new int[]{0x03, 0, 1}),
+            Map.entry("iconst_1", new int[]{0x04, 0, 1}),
+            Map.entry("iconst_2", new int[]{0x05, 0, 1}),
+            Map.entry("iconst_3", new int[]{0x06, 0, 1}),
+            Map.entry("iconst_4", new int[]{0x07, 0, 1}),
+            Map.entry("iconst_5", new int[]{0x08, 0, 1}),
+            Map.entry("iaload", new int[]{0x2e, 2, 1}),
+            Map.entry("iastore", new int[]{0x4f, 3, 0}),
+            Map.entry("pop", new int[]{0x57, 1, 0}),
+            Map.entry("iadd", new int[]{0x60, 2, 1}),
+            Map.entry("isub", new int[]{0x64, 2, 1}),
+            Map.entry("imul", new int[]{0x68, 2, 1}),
+            Map.entry("idiv", new int[]{0x6c, 2, 1}),
+            Map.entry("iand", new int[]{0x7e, 2, 1}),
+            Map.entry("ior", new int[]{0x80, 2, 1}),
+            Map.entry("ireturn", new int[]{0xac, 1, 0}),
+            Map.entry("areturn", new int[]{0xb0, 1, 0}),
+            Map.entry("return", new int[]{0xb1, 0, 0}),
+            Map.entry("arraylength", new int[]{0xbe, 1, 1})
+    );
+
+    // opcode, popped values
+    private static final Map<String, int[]> JUMP_OPCODES = Map.ofEntries(
+            Map.entry("ifeq", new int[]{0x99, 1}),
+            Map.entry("ifne", new int[]{0x9a, 1}),
+            Map.entry("iflt", new int[]{0x9b, 1}),
+            Map.entry("ifge", new int[]{0x9c, 1}),
+            Map.entry("ifgt", new int[]{0x9d, 1}),
+            Map.entry("ifle", new int[]{0x9e, 1}),
+            Map.entry("if_icmpeq", new int[]{0x9f, 2}),
+            Map.entry("if_icmpne", new int[]{0xa0, 2}),
+            Map.entry("if_icmplt", new int[]{0xa1, 2}),
+            Map.entry("if_icmpge", new int[]{0xa2, 2}),
+            Map.entry("if_icmpgt", new int[]{0xa3, 2}),
+            Map.entry("if_icmple", new int[]{0xa4, 2}),
+            Map.entry("goto", new int[]{0xa7, 0})
+    );
+
+    // long form opcode, first short form opcode (for registers 0 to 3)
+    private static final Map<String, int[]> LOCAL_OPCODES = Map.of(
+            "iload", new int[]{0x15, 0x1a},
+            "aload", new int[]{0x19, 0x2a},
+            "istore", new int[]{0x36, 0x3b},
+            "astore", new int[]{0x3a, 0x4b}
+    );
+
+    private static final Map<String, Integer> INVOKE_OPCODES = Map.of(
+            "invokevirtual", 0xb6,
+            "invokespecial", 0xb7,
+            "invokestatic", 0xb8
+    );
+
+    private final ClassIndex classIndex;
+    private final ConstantPool constantPool = new ConstantPool();
+
+    private final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+    private final DataOutputStream fieldsOut = new DataOutputStream(fields);
+    private final DataOutputStream methodsOut = new DataOutputStream(methods);
+
+    private int accessFlags;
+    private String className;
+    private String superClassName;
+    private int thisClass;
+    private int superClass;
+    private int fieldCount = 0;
+    private int methodCount = 0;
+
+    // Method being emitted
+    private int methodAccessFlags;
+    private boolean isStaticMethod;
+    private String methodName;
+    private String methodDescriptor;
+    private BytecodeBuilder code;
+
+    /**
+     * @param classIndex classes of the classpath, or null to only know the compiled class and the JDK
+     */
+    public ClassFileEmitter(ClassIndex classIndex) {
+        this.classIndex = classIndex;
+    }
+
+    public byte[] toByteArray() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeShort(MINOR_VERSION);
+            out.writeShort(MAJOR_VERSION);
+            constantPool.write(out);
+            out.writeShort(accessFlags);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            // interfaces
+            out.writeShort(0);
+            out.writeShort(fieldCount);
+            fields.writeTo(out);
+            out.writeShort(methodCount);
+            methods.writeTo(out);
+            // attributes
+            out.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void beginClass(AccessModifiers accessModifier, String className, String superClassName) {
+        this.accessFlags = translateAccessModifier(accessModifier) | ACC_SUPER;
+        this.className = className;
+        this.superClassName = superClassName;
+        this.thisClass = constantPool.classRef(className);
+        this.superClass = constantPool.classRef(superClassName);
+    }
+
+    @Override
+    public void field(AccessModifiers accessModifier, boolean isStatic, boolean isFinal, String name, String descriptor) {
+        try {
+            fieldsOut.writeShort(translateAccessModifier(accessModifier)
+                    | (isStatic ? ACC_STATIC : 0) | (isFinal ? ACC_FINAL : 0));
+            fieldsOut.writeShort(constantPool.utf8(name));
+            fieldsOut.writeShort(constantPool.utf8(descriptor));
+            // attributes
+            fieldsOut.writeShort(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        fieldCount++;
+    }
+
+    @Override
+    public void beginMethod(AccessModifiers accessModifier, boolean isStatic, boolean isFinal, String name, String descriptor) {
+        this.methodAccessFlags = translateAccessModifier(accessModifier)
+                | (isStatic ? ACC_STATIC : 0) | (isFinal ? ACC_FINAL : 0);
+        this.isStaticMethod = isStatic;
+        this.methodName = name;
+        this.methodDescriptor = descriptor;
+        this.code = new BytecodeBuilder();
+
+        // the arguments always take the first locals, even if they are never used
+        int argumentSlots = countArguments(descriptor) + (isStatic ? 0 : 1);
+        if (argumentSlots > 0) {
+            code.useLocal(argumentSlots - 1);
+        }
+    }
+
+    @Override
+    public void endMethod(boolean isConstructor, int stackLimit, int localsLimit) {
+        Frame initialFrame = createInitialFrame();
+        code.finish(initialFrame, this::getSuperClass);
+
+        byte[] bytecode = code.getCode();
+        if (bytecode.length > 0xFFFF) {
+            throw new JasminException("ERROR: METHOD " + methodName + " IS TOO LARGE");
+        }
+
+        byte[] stackMapTable = writeStackMapTable(initialFrame);
+
+        try {
+            methodsOut.writeShort(methodAccessFlags);
+            methodsOut.writeShort(constantPool.utf8(methodName));
+            methodsOut.writeShort(constantPool.utf8(methodDescriptor));
+            methodsOut.writeShort(1);
+
+            // Code attribute
+            int attributesLength = stackMapTable == null ? 0 : 6 + stackMapTable.length;
+
+            methodsOut.writeShort(constantPool.utf8("Code"));
+            methodsOut.writeInt(12 + bytecode.length + attributesLength);
+            methodsOut.writeShort(code.getMaxStack());
+            methodsOut.writeShort(code.getMaxLocals());
+            methodsOut.writeInt(bytecode.length);
+            methodsOut.write(bytecode);
+            // exception table
+            methodsOut.writeShort(0);
+
+            if (stackMapTable == null) {
+                methodsOut.writeShort(0);
+            } else {
+                methodsOut.writeShort(1);
+                methodsOut.writeShort(constantPool.utf8("StackMapTable"));
+                methodsOut.writeInt(stackMapTable.length);
+                methodsOut.write(stackMapTable);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        methodCount++;
+        this.code = null;
+    }
+
+    private String getSuperClass(String name) {
+        if (name.equals("java/lang/Object")) {
+            return null;
+        }
+        if (name.equals(className)) {
+            return superClassName;
+        }
+        if (name.startsWith("[")) {
+            return "java/lang/Object";
+        }
+
+        String superName = classIndex == null ? null : classIndex.getSuperClass(name);
+        if (superName != null) {
+            return superName;
+        }
+
+        try {
+            Class<?> superClass = Class.forName(name.replace('/', '.'), false, ClassLoader.getPlatformClassLoader()).getSuperclass();
+            return superClass == null ? null : superClass.getName().replace('.', '/');
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Frame at the method entry: "this" (not yet initialized in constructors) and the arguments.
+     */
+    private Frame createInitialFrame() {
+        Frame frame = new Frame(code.getMaxLocals());
+        int register = 0;
+
+        if (!isStaticMethod) {
+            frame.setLocal(register++, methodName.equals("<init>") ?
+                    VerificationType.UNINITIALIZED_THIS : VerificationType.object(className));
+        }
+
+        for (String argument : splitArguments(methodDescriptor)) {
+            frame.setLocal(register++, VerificationType.fromDescriptor(argument));
+        }
+
+        return frame;
+    }
+
+    /**
+     * Writes the frames using the smallest frame type that describes each of them, relative to the previous one.
+     * Returns null when the method has no branches.
+     */
+    private byte[] writeStackMapTable(Frame initialFrame) {
+        if (code.getFrames().isEmpty()) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeShort(code.getFrames().size());
+
+            List<VerificationType> previousLocals = initialFrame.getDeclaredLocals();
+            int previousOffset = -1;
+
+            for (Map.Entry<Integer, Frame> entry : code.getFrames().entrySet()) {
+                int offsetDelta = entry.getKey() - previousOffset - 1;
+                List<VerificationType> locals = entry.getValue().getDeclaredLocals();
+                List<VerificationType> stack = entry.getValue().getStack();
+
+                int localsDifference = locals.size() - previousLocals.size();
+                boolean sameLocals = locals.equals(previousLocals);
+
+                if (sameLocals && stack.isEmpty()) {
+                    if (offsetDelta < 64) {
+                        out.writeByte(offsetDelta);
+                    } else {
+                        out.writeByte(SAME_FRAME_EXTENDED);
+                        out.writeShort(offsetDelta);
+                    }
+                } else if (sameLocals && stack.size() == 1) {
+                    if (offsetDelta < 64) {
+                        out.writeByte(SAME_LOCALS_1_STACK_ITEM + offsetDelta);
+                    } else {
+                        out.writeByte(SAME_LOCALS_1_STACK_ITEM_EXTENDED);
+                        out.writeShort(offsetDelta);
+                    }
+                    stack.get(0).write(out, constantPool);
+                } else if (stack.isEmpty() && localsDifference < 0 && localsDifference >= -3
+                        && previousLocals.subList(0, locals.size()).equals(locals)) {
+                    out.writeByte(SAME_FRAME_EXTENDED + localsDifference);
+                    out.writeShort(offsetDelta);
+                } else if (stack.isEmpty() && localsDifference > 0 && localsDifference <= 3
+                        && locals.subList(0, previousLocals.size()).equals(previousLocals)) {
+                    out.writeByte(SAME_FRAME_EXTENDED + localsDifference);
+                    out.writeShort(offsetDelta);
+                    for (VerificationType local : locals.subList(previousLocals.size(), locals.size())) {
+                        local.write(out, constantPool);
+                    }
+                } else {
+                    out.writeByte(FULL_FRAME);
+                    out.writeShort(offsetDelta);
+                    out.writeShort(locals.size());
+                    for (VerificationType local : locals) {
+                        local.write(out, constantPool);
+                    }
+                    out.writeShort(stack.size());
+                    for (VerificationType value : stack) {
+                        value.write(out, constantPool);
+                    }
+                }
+
+                previousLocals = locals;
+                previousOffset = entry.getKey();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void label(String label) {
+        code.label(label);
+    }
+
+    @Override
+    public void instruction(String opcode) {
+        int[] info = SIMPLE_OPCODES.get(opcode);
+        if (info == null) {
+            throw new JasminException("ERROR: INSTRUCTION NOT SUPPORTED: " + opcode);
+        }
+
+        Flow flow = opcode.endsWith("return") ? Flow.END : Flow.NEXT;
+        code.begin(info[0], popPush(info[1], info[2] == 1 ? VerificationType.INTEGER : null), flow);
+    }
+
+    @Override
+    public void localInstruction(String opcode, int register, String descriptor) {
+        int[] info = LOCAL_OPCODES.get(opcode);
+        if (info == null) {
+            throw new JasminException("ERROR: INSTRUCTION NOT SUPPORTED: " + opcode);
+        }
+
+        code.useLocal(register);
+
+        Effect effect = switch (opcode) {
+            case "iload" -> frame -> frame.push(VerificationType.INTEGER);
+            case "aload" -> frame -> frame.push(frame.getLocal(register));
+            case "istore" -> frame -> {
+                frame.pop();
+                frame.setLocal(register, VerificationType.INTEGER);
+            };
+            default -> frame -> {
+                // the declared type of the variable, so that paths storing different subclasses still agree
+                VerificationType value = frame.pop();
+                frame.setLocal(register, value.isUninitialized() ? value : VerificationType.fromDescriptor(descriptor));
+            };
+        };
+
+        if (register <= 3) {
+            code.begin(info[1] + register, effect, Flow.NEXT);
+        } else if (register <= 0xFF) {
+            code.begin(info[0], effect, Flow.NEXT);
+            code.u1(register);
+        } else {
+            code.begin(WIDE, effect, Flow.NEXT);
+            code.u1(info[0]);
+            code.u2(register);
+        }
+    }
+
+    @Override
+    public void iinc(int register, int increment) {
+        code.useLocal(register);
+
+        Effect effect = frame -> {
+        };
+
+        if (register <= 0xFF && increment >= Byte.MIN_VALUE && increment <= Byte.MAX_VALUE) {
+            code.begin(IINC, effect, Flow.NEXT);
+            code.u1(register);
+            code.u1(increment);
+        } else if (increment >= Short.MIN_VALUE && increment <= Short.MAX_VALUE) {
+            code.begin(WIDE, effect, Flow.NEXT);
+            code.u1(IINC);
+            code.u2(register);
+            code.u2(increment);
+        } else {
+            throw new JasminException("ERROR: VALUE FOR IINC OUT OF BOUNDS");
+        }
+    }
+
+    @Override
+    public void intInstruction(String opcode, int value) {
+        Effect effect = popPush(0, VerificationType.INTEGER);
+
+        switch (opcode) {
+            case "bipush" -> {
+                code.begin(0x10, effect, Flow.NEXT);
+                code.u1(value);
+            }
+            case "sipush" -> {
+                code.begin(0x11, effect, Flow.NEXT);
+                code.u2(value);
+            }
+            default -> throw new JasminException("ERROR: INSTRUCTION NOT SUPPORTED: " + opcode);
+        }
+    }
+
+    @Override
+    public void ldc(int value) {
+        loadConstant(constantPool.integer(value), VerificationType.INTEGER);
+    }
+
+    @Override
+    public void ldc(String literal) {
+        if (literal.length() >= 2 && literal.startsWith("\"") && literal.endsWith("\"")) {
+            literal = literal.substring(1, literal.length() - 1);
+        }
+        loadConstant(constantPool.string(literal), VerificationType.object("java/lang/String"));
+    }
+
+    private void loadConstant(int index, VerificationType type) {
+        if (index <= 0xFF) {
+            code.begin(LDC, popPush(0, type), Flow.NEXT);
+            code.u1(index);
+        } else {
+            code.begin(LDC_W, popPush(0, type), Flow.NEXT);
+            code.u2(index);
+        }
+    }
+
+    @Override
+    public void jump(String opcode, String label) {
+        int[] info = JUMP_OPCODES.get(opcode);
+        if (info == null) {
+            throw new JasminException("ERROR: INSTRUCTION NOT SUPPORTED: " + opcode);
+        }
+
+        code.branch(info[0], popPush(info[1], null), opcode.equals("goto") ? Flow.JUMP : Flow.BRANCH, label);
+    }
+
+    @Override
+    public void invoke(String opcode, String owner, String name, String descriptor) {
+        Integer opcodeValue = INVOKE_OPCODES.get(opcode);
+        if (opcodeValue == null) {
+            throw new JasminException("ERROR: INSTRUCTION NOT SUPPORTED: " + opcode);
+        }
+
+        int arguments = countArguments(descriptor);
+        String returnType = descriptor.substring(descriptor.indexOf(')') + 1);
+
+        Effect effect = frame -> {
+            frame.pop(arguments);
+
+            if (!opcode.equals("invokestatic")) {
+                VerificationType receiver = frame.pop();
+
+                if (name.equals("<init>") && receiver.isUninitialized()) {
+                    frame.initialize(receiver, VerificationType.object(receiver.equals(VerificationType.UNINITIALIZED_THIS) ? className : owner));
+                }
+            }
+
+            if (!returnType.equals("V")) {
+                frame.push(VerificationType.fromDescriptor(returnType));
+            }
+        };
+
+        code.begin(opcodeValue, effect, Flow.NEXT);
+        code.u2(constantPool.methodRef(owner, name, descriptor));
+    }
+
+    @Override
+    public void fieldInstruction(String opcode, String owner, String name, String descriptor) {
+        switch (opcode) {
+            case "getfield" -> code.begin(0xb4, popPush(1, VerificationType.fromDescriptor(descriptor)), Flow.NEXT);
+            case "putfield" -> code.begin(0xb5, popPush(2, null), Flow.NEXT);
+            default -> throw new JasminException("ERROR: INSTRUCTION NOT SUPPORTED: " + opcode);
+        }
+
+        code.u2(constantPool.fieldRef(owner, name, descriptor));
+    }
+
+    @Override
+    public void newObject(String className) {
+        // the offset of the new is only final once the branches are placed
+        BytecodeBuilder builder = code;
+        int instruction = builder.nextInstruction();
+        code.begin(NEW, frame -> frame.push(VerificationType.uninitialized(builder.getOffset(instruction))), Flow.NEXT);
+        code.u2(constantPool.classRef(className));
+    }
+
+    @Override
+    public void newArray(String elementType) {
+        if (!elementType.equals("int")) {
+            throw new JasminException("ERROR: ONLY INT ARRAYS ARE SUPPORTED");
+        }
+
+        code.begin(NEWARRAY, popPush(1, VerificationType.object("[I")), Flow.NEXT);
+        code.u1(T_INT);
+    }
+
+    private static Effect popPush(int pops, VerificationType push) {
+        return frame -> {
+            frame.pop(pops);
+            if (push != null) {
+                frame.push(push);
+            }
+        };
+    }
+
+    private static int countArguments(String descriptor) {
+        return splitArguments(descriptor).size();
+    }
+
+    /**
+     * Descriptors of the arguments of a method descriptor. J-- has no long or double values, so each argument
+     * takes a single local and a single stack slot.
+     */
+    private static List<String> splitArguments(String descriptor) {
+        List<String> arguments = new ArrayList<>();
+        int i = 1;
+
+        while (descriptor.charAt(i) != ')') {
+            int start = i;
+            while (descriptor.charAt(i) == '[') i++;
+            if (descriptor.charAt(i) == 'L') i = descriptor.indexOf(';', i);
+            i++;
+            arguments.add(descriptor.substring(start, i));
+        }
+
+        return arguments;
+    }
+
+    private static int translateAccessModifier(AccessModifiers accessModifier) {
+        return switch (accessModifier) {
+            case PUBLIC, DEFAULT -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+        };
+    }
+}
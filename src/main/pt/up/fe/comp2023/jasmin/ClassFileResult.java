@@ -0,0 +1,33 @@
+package pt.up.fe.comp2023.jasmin;
+
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.List;
+
+/**
+ * Class file written directly by {@link MyJasminBackend#toClassFile}. The bytes are null when generation failed.
+ */
+public class ClassFileResult {
+
+    private final String className;
+    private final byte[] classBytes;
+    private final List<Report> reports;
+
+    public ClassFileResult(String className, byte[] classBytes, List<Report> reports) {
+        this.className = className;
+        this.classBytes = classBytes;
+        this.reports = reports;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] getClassBytes() {
+        return classBytes;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+}
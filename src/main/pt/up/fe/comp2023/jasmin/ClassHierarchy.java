@@ -0,0 +1,39 @@
+package pt.up.fe.comp2023.jasmin;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Super classes of the classes a method uses, to merge the types of objects that reach an instruction from different
+ * paths.
+ */
+public interface ClassHierarchy {
+
+    /**
+     * Internal name of the super class of the given class, or null for java/lang/Object and for classes that are not
+     * known.
+     */
+    String getSuperClass(String className);
+
+    /**
+     * Closest class both classes extend, or null when that cannot be told because a super class is not known.
+     */
+    default String getCommonSuperClass(String first, String second) {
+        Set<String> ancestors = new HashSet<>();
+        String className = first;
+        while (className != null && ancestors.add(className)) {
+            className = getSuperClass(className);
+        }
+
+        Set<String> visited = new HashSet<>();
+        className = second;
+        while (className != null && visited.add(className)) {
+            if (ancestors.contains(className)) {
+                return className;
+            }
+            className = getSuperClass(className);
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,124 @@
+package pt.up.fe.comp2023.jasmin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Types of the local variables and of the operand stack before an instruction.
+ */
+public class Frame {
+
+    private final List<VerificationType> locals;
+    private final List<VerificationType> stack;
+
+    public Frame(int maxLocals) {
+        this.locals = new ArrayList<>(Collections.nCopies(maxLocals, VerificationType.TOP));
+        this.stack = new ArrayList<>();
+    }
+
+    private Frame(List<VerificationType> locals, List<VerificationType> stack) {
+        this.locals = new ArrayList<>(locals);
+        this.stack = new ArrayList<>(stack);
+    }
+
+    public Frame copy() {
+        return new Frame(locals, stack);
+    }
+
+    public VerificationType getLocal(int register) {
+        return locals.get(register);
+    }
+
+    public void setLocal(int register, VerificationType type) {
+        locals.set(register, type);
+    }
+
+    public void push(VerificationType type) {
+        stack.add(type);
+    }
+
+    public VerificationType pop() {
+        if (stack.isEmpty()) {
+            throw new JasminException("ERROR: STACK UNDERFLOW");
+        }
+        return stack.remove(stack.size() - 1);
+    }
+
+    public void pop(int count) {
+        for (int i = 0; i < count; i++) {
+            pop();
+        }
+    }
+
+    public int getStackSize() {
+        return stack.size();
+    }
+
+    public List<VerificationType> getStack() {
+        return stack;
+    }
+
+    /**
+     * Locals without the trailing unused ones, as they are written in a stack map frame.
+     */
+    public List<VerificationType> getDeclaredLocals() {
+        int size = locals.size();
+        while (size > 0 && locals.get(size - 1).equals(VerificationType.TOP)) {
+            size--;
+        }
+        return locals.subList(0, size);
+    }
+
+    /**
+     * Replaces every occurrence of an uninitialized object, once its constructor is called.
+     */
+    public void initialize(VerificationType uninitialized, VerificationType initialized) {
+        Collections.replaceAll(locals, uninitialized, initialized);
+        Collections.replaceAll(stack, uninitialized, initialized);
+    }
+
+    /**
+     * Merges the frame of another path into this one. Locals that differ become unusable, objects of different
+     * classes on the stack become the closest class both extend, and the merge fails when the hierarchy cannot tell
+     * which one that is. Returns whether this frame changed.
+     */
+    public boolean merge(Frame other, ClassHierarchy hierarchy) {
+        if (stack.size() != other.stack.size()) {
+            throw new JasminException("ERROR: INCONSISTENT STACK HEIGHT");
+        }
+
+        boolean changed = false;
+
+        for (int i = 0; i < locals.size(); i++) {
+            if (!locals.get(i).equals(other.locals.get(i)) && !locals.get(i).equals(VerificationType.TOP)) {
+                locals.set(i, VerificationType.TOP);
+                changed = true;
+            }
+        }
+
+        for (int i = 0; i < stack.size(); i++) {
+            VerificationType mine = stack.get(i);
+            VerificationType theirs = other.stack.get(i);
+
+            if (mine.equals(theirs)) continue;
+
+            if (!mine.isObject() || !theirs.isObject()) {
+                throw new JasminException("ERROR: INCONSISTENT STACK TYPES " + mine + " AND " + theirs);
+            }
+
+            String common = hierarchy.getCommonSuperClass(mine.className(), theirs.className());
+            if (common == null) {
+                throw new JasminException("ERROR: NO KNOWN COMMON SUPER CLASS OF " + mine.className() + " AND " + theirs.className());
+            }
+
+            VerificationType merged = VerificationType.object(common);
+            if (!mine.equals(merged)) {
+                stack.set(i, merged);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+}
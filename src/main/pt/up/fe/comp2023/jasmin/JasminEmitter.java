@@ -0,0 +1,55 @@
+package pt.up.fe.comp2023.jasmin;
+
+import org.specs.comp.ollir.AccessModifiers;
+
+/**
+ * Receives the class generated by {@link MyJasminBackend}, one declaration or instruction at a time.
+ * Instructions use the Jasmin mnemonics, so the same code selection can be written as Jasmin text
+ * ({@link JasminTextEmitter}) or directly as a class file ({@link ClassFileEmitter}).
+ */
+public interface JasminEmitter {
+
+    void beginClass(AccessModifiers accessModifier, String className, String superClassName);
+
+    void field(AccessModifiers accessModifier, boolean isStatic, boolean isFinal, String name, String descriptor);
+
+    void beginMethod(AccessModifiers accessModifier, boolean isStatic, boolean isFinal, String name, String descriptor);
+
+    /**
+     * Ends the current method. The limits are the ones computed by the backend, constructors have none.
+     */
+    void endMethod(boolean isConstructor, int stackLimit, int localsLimit);
+
+    void label(String label);
+
+    /**
+     * Instruction without operands, such as iadd, iconst_1 or ireturn.
+     */
+    void instruction(String opcode);
+
+    /**
+     * iload, istore, aload or astore of the given local variable, whose declared type has the given descriptor.
+     */
+    void localInstruction(String opcode, int register, String descriptor);
+
+    void iinc(int register, int increment);
+
+    /**
+     * bipush or sipush.
+     */
+    void intInstruction(String opcode, int value);
+
+    void ldc(int value);
+
+    void ldc(String literal);
+
+    void jump(String opcode, String label);
+
+    void invoke(String opcode, String owner, String name, String descriptor);
+
+    void fieldInstruction(String opcode, String owner, String name, String descriptor);
+
+    void newObject(String className);
+
+    void newArray(String elementType);
+}
@@ -0,0 +1,127 @@
+package pt.up.fe.comp2023.jasmin;
+
+import org.specs.comp.ollir.AccessModifiers;
+
+/**
+ * Writes the generated class as Jasmin assembly.
+ */
+public class JasminTextEmitter implements JasminEmitter {
+
+    private final StringBuilder code = new StringBuilder();
+
+    // Instructions of the current method, written after its limits once they are known
+    private StringBuilder methodCode = new StringBuilder();
+
+    public String getCode() {
+        return code.toString();
+    }
+
+    @Override
+    public void beginClass(AccessModifiers accessModifier, String className, String superClassName) {
+        code.append(".class ").append(translateAccessModifier(accessModifier)).append(className).append("\n");
+        code.append(".super ").append(superClassName).append("\n");
+        code.append("\n");
+    }
+
+    @Override
+    public void field(AccessModifiers accessModifier, boolean isStatic, boolean isFinal, String name, String descriptor) {
+        code.append(".field ").append(translateAccessModifier(accessModifier));
+
+        if (isStatic) code.append("static ");
+        if (isFinal) code.append("final ");
+
+        code.append(name).append(" ").append(descriptor).append("\n");
+    }
+
+    @Override
+    public void beginMethod(AccessModifiers accessModifier, boolean isStatic, boolean isFinal, String name, String descriptor) {
+        code.append("\n")
+                .append(".method ")
+                .append(translateAccessModifier(accessModifier));
+
+        if (isStatic) code.append("static ");
+        if (isFinal) code.append("final ");
+
+        code.append(name).append(descriptor).append("\n");
+
+        methodCode = new StringBuilder();
+    }
+
+    @Override
+    public void endMethod(boolean isConstructor, int stackLimit, int localsLimit) {
+        if (!isConstructor) {
+            code.append("\t.limit stack ").append(stackLimit).append("\n")
+                    .append("\t.limit locals ").append(localsLimit).append("\n");
+        }
+
+        code.append(methodCode).append(".end method\n");
+    }
+
+    @Override
+    public void label(String label) {
+        methodCode.append(label).append(":\n");
+    }
+
+    @Override
+    public void instruction(String opcode) {
+        methodCode.append("\t").append(opcode).append("\n");
+    }
+
+    @Override
+    public void localInstruction(String opcode, int register, String descriptor) {
+        methodCode.append("\t").append(opcode).append(register <= 3 ? "_" : " ").append(register).append("\n");
+    }
+
+    @Override
+    public void iinc(int register, int increment) {
+        methodCode.append("\tiinc ").append(register).append(" ").append(increment).append("\n");
+    }
+
+    @Override
+    public void intInstruction(String opcode, int value) {
+        methodCode.append("\t").append(opcode).append(" ").append(value).append("\n");
+    }
+
+    @Override
+    public void ldc(int value) {
+        methodCode.append("\tldc ").append(value).append("\n");
+    }
+
+    @Override
+    public void ldc(String literal) {
+        methodCode.append("\tldc ").append(literal).append("\n");
+    }
+
+    @Override
+    public void jump(String opcode, String label) {
+        methodCode.append("\t").append(opcode).append(" ").append(label).append("\n");
+    }
+
+    @Override
+    public void invoke(String opcode, String owner, String name, String descriptor) {
+        methodCode.append("\t").append(opcode).append(" ").append(owner).append("/").append(name).append(descriptor).append("\n");
+    }
+
+    @Override
+    public void fieldInstruction(String opcode, String owner, String name, String descriptor) {
+        methodCode.append("\t").append(opcode).append(" ").append(owner).append("/").append(name).append(" ").append(descriptor).append("\n");
+    }
+
+    @Override
+    public void newObject(String className) {
+        methodCode.append("\tnew ").append(className).append("\n");
+    }
+
+    @Override
+    public void newArray(String elementType) {
+        methodCode.append("\tnewarray ").append(elementType).append("\n");
+    }
+
+    private String translateAccessModifier(AccessModifiers accessModifier) {
+        return switch (accessModifier) {
+            case PUBLIC, DEFAULT -> "public ";
+            case PRIVATE -> "private ";
+            case PROTECTED -> "protected ";
+        };
+    }
+}
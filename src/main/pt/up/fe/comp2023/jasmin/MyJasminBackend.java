@@ -6,14 +6,20 @@ import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.analysis.ClassIndex;
+import pt.up.fe.comp2023.profiling.Profiler;
 
 import java.util.*;
 
+/**
+ * Selects the JVM instructions for an OLLIR class. The instructions go to a {@link JasminEmitter}, either as
+ * Jasmin text ({@link #toJasmin}) or straight into a class file ({@link #toClassFile}).
+ */
 public class MyJasminBackend implements JasminBackend {
 
     ClassUnit classUnit = null;
 
-    String jasminCode;
+    JasminEmitter emitter;
 
     String superClassName;
 
@@ -24,13 +30,23 @@ public class MyJasminBackend implements JasminBackend {
 
     @Override
     public JasminResult toJasmin(OllirResult ollirResult) {
+        try (var ignored = Profiler.phase("jasmin")) {
+            return generate(ollirResult);
+        }
+    }
+
+    private JasminResult generate(OllirResult ollirResult) {
 
         this.classUnit = ollirResult.getOllirClass();
 
         List<Report> reports = ollirResult.getReports();
 
+        JasminTextEmitter textEmitter = new JasminTextEmitter();
+        String jasminCode;
+
         try {
-            this.jasminCode = generateJasmin();
+            generateClass(textEmitter);
+            jasminCode = textEmitter.getCode();
         }
         catch (Exception e) {
             Report report = Report.newError(Stage.GENERATION, 0, 0, e.getMessage(), e);
@@ -48,83 +64,74 @@ public class MyJasminBackend implements JasminBackend {
 
     }
 
-    private String generateJasmin() {
+    /**
+     * Writes the class file directly, without generating and assembling the Jasmin code.
+     */
+    public ClassFileResult toClassFile(OllirResult ollirResult) {
+        try (var ignored = Profiler.phase("classFile")) {
 
-        StringBuilder jasminBuilder = new StringBuilder();
+            this.classUnit = ollirResult.getOllirClass();
 
-        jasminBuilder.append(".class ")
-                .append(translateAccessModifier(this.classUnit.getClassAccessModifier()))
-                .append(this.classUnit.getClassName())
-                .append("\n");
+            List<Report> reports = new ArrayList<>(ollirResult.getReports());
 
-        this.superClassName = this.classUnit.getSuperClass();
+            ClassFileEmitter classFileEmitter = new ClassFileEmitter(ClassIndex.forConfig(ollirResult.getConfig()));
 
-        jasminBuilder.append(".super ");
+            try {
+                generateClass(classFileEmitter);
+            }
+            catch (Exception e) {
+                reports.add(Report.newError(Stage.GENERATION, 0, 0, e.getMessage(), e));
+                return new ClassFileResult(this.classUnit.getClassName(), null, reports);
+            }
 
-        if (this.superClassName != null) jasminBuilder.append(this.superClassName).append("\n");
-        else {
-            jasminBuilder.append("java/lang/Object").append("\n");
-            this.superClassName = "java/lang/Object";
+            return new ClassFileResult(this.classUnit.getClassName(), classFileEmitter.toByteArray(), reports);
         }
+    }
 
-        jasminBuilder.append("\n");
+    private void generateClass(JasminEmitter emitter) {
 
-        for (Field field : this.classUnit.getFields()) {
-            jasminBuilder.append(".field ")
-                    .append(translateAccessModifier(field.getFieldAccessModifier()));
+        this.emitter = emitter;
+        this.labelNumber = 0;
 
-            if (field.isStaticField()) {
-                jasminBuilder.append("static ");
-            }
+        this.superClassName = this.classUnit.getSuperClass();
 
-            if (field.isFinalField()) {
-                jasminBuilder.append("final ");
-            }
+        if (this.superClassName == null) {
+            this.superClassName = "java/lang/Object";
+        }
 
-            jasminBuilder.append(field.getFieldName()).append(" ")
-                    .append(translateType(field.getFieldType())).append("\n");
+        emitter.beginClass(this.classUnit.getClassAccessModifier(), this.classUnit.getClassName(), this.superClassName);
+
+        for (Field field : this.classUnit.getFields()) {
+            emitter.field(field.getFieldAccessModifier(), field.isStaticField(), field.isFinalField(),
+                    field.getFieldName(), translateType(field.getFieldType()));
         }
 
         for (Method method : this.classUnit.getMethods()) {
 
-            jasminBuilder.append(generateMethodHeader(method));
+            generateMethodHeader(method);
 
-            jasminBuilder.append(generateMethodBody(method));
+            generateMethodBody(method);
 
         }
-
-        return jasminBuilder.toString();
     }
 
-    private String generateMethodHeader(Method method) {
-
-        StringBuilder methodHeader = new StringBuilder();
-
-        methodHeader.append("\n")
-                .append(".method ")
-                .append(translateAccessModifier(method.getMethodAccessModifier()));
+    private void generateMethodHeader(Method method) {
 
-        if (method.isStaticMethod()) methodHeader.append("static ");
-        if (method.isFinalMethod()) methodHeader.append("final ");
-        if (method.isConstructMethod()) methodHeader.append("<init>");
-        else methodHeader.append(method.getMethodName());
-
-        methodHeader.append("(");
+        StringBuilder descriptor = new StringBuilder("(");
 
         for (Element param : method.getParams()) {
-            methodHeader.append(translateType(param.getType()));
+            descriptor.append(translateType(param.getType()));
         }
 
-        methodHeader.append(")")
-                .append(translateType(method.getReturnType()))
-                .append("\n");
+        descriptor.append(")").append(translateType(method.getReturnType()));
 
-        return methodHeader.toString();
-    }
+        String name = method.isConstructMethod() ? "<init>" : method.getMethodName();
 
-    private String generateMethodBody(Method method) {
+        emitter.beginMethod(method.getMethodAccessModifier(), method.isStaticMethod(), method.isFinalMethod(),
+                name, descriptor.toString());
+    }
 
-        StringBuilder methodBody = new StringBuilder();
+    private void generateMethodBody(Method method) {
 
         int maxLocals = -1;
         for (Descriptor var : method.getVarTable().values()) {
@@ -138,22 +145,13 @@ public class MyJasminBackend implements JasminBackend {
         this.stackPointer = 0;
         this.stackLimit = 0;
 
-        String instructions = generateMethodInstructions(method);
-
-        if (!method.isConstructMethod()) {
-            methodBody.append("\t.limit stack ").append(this.stackLimit).append("\n")
-                    .append("\t.limit locals ").append(maxLocals+1).append("\n");
-        }
-
-        methodBody.append(instructions);
+        generateMethodInstructions(method);
 
-        return methodBody.toString();
+        emitter.endMethod(method.isConstructMethod(), this.stackLimit, maxLocals + 1);
 
     }
 
-    private String generateMethodInstructions(Method method) {
-
-        StringBuilder methodInstructions = new StringBuilder();
+    private void generateMethodInstructions(Method method) {
 
         List<Instruction> instructionList = method.getInstructions();
 
@@ -161,15 +159,15 @@ public class MyJasminBackend implements JasminBackend {
 
             for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
                 if (label.getValue().equals(instruction)) {
-                    methodInstructions.append(label.getKey()).append(":\n");
+                    emitter.label(label.getKey());
                 }
             }
 
-            methodInstructions.append(generateInstruction(instruction, method.getVarTable()));
+            generateInstruction(instruction, method.getVarTable());
 
             if (instruction.getInstType() == InstructionType.CALL
                     && ((CallInstruction) instruction).getReturnType().getTypeOfElement() != ElementType.VOID) {
-                methodInstructions.append("\tpop\n");
+                emitter.instruction("pop");
                 updateStackLimits(-1);
             }
 
@@ -180,17 +178,13 @@ public class MyJasminBackend implements JasminBackend {
         boolean checkReturnInstruction = instructionList.size() > 0 && lastInstructionType == InstructionType.RETURN;
 
         if (!checkReturnInstruction && method.getReturnType().getTypeOfElement() == ElementType.VOID) {
-            methodInstructions.append("\treturn\n");
+            emitter.instruction("return");
         }
-
-        methodInstructions.append(".end method\n");
-
-        return methodInstructions.toString();
     }
 
-    private String generateInstruction(Instruction instruction, HashMap<String, Descriptor> varTable) {
+    private void generateInstruction(Instruction instruction, HashMap<String, Descriptor> varTable) {
 
-        return switch (instruction.getInstType()) {
+        switch (instruction.getInstType()) {
             case ASSIGN -> generateAssignInstruction((AssignInstruction) instruction, varTable);
             case CALL -> generateCallInstruction((CallInstruction) instruction, varTable);
             case GOTO -> generateGoToInstruction((GotoInstruction) instruction);
@@ -201,19 +195,18 @@ public class MyJasminBackend implements JasminBackend {
             case UNARYOPER -> generateUnaryOperationInstruction((UnaryOpInstruction) instruction, varTable);
             case BINARYOPER -> generateBinaryOperationInstruction((BinaryOpInstruction) instruction, varTable);
             case NOPER -> generatePushToStack(((SingleOpInstruction) instruction).getSingleOperand(), varTable);
-        };
+        }
     }
 
-    private String generateAssignInstruction(AssignInstruction instruction, HashMap<String, Descriptor> varTable) {
-        StringBuilder assignBuilder = new StringBuilder();
+    private void generateAssignInstruction(AssignInstruction instruction, HashMap<String, Descriptor> varTable) {
 
         Operand dest = (Operand) instruction.getDest();
 
         if (dest instanceof ArrayOperand array) {
             updateStackLimits(1);
 
-            assignBuilder.append("\taload").append(generateVarNumber(array.getName(), varTable)).append("\n");
-            assignBuilder.append(generatePushToStack(array.getIndexOperands().get(0), varTable));
+            emitter.localInstruction("aload", getVarNumber(array.getName(), varTable), translateType(varTable.get(array.getName()).getVarType()));
+            generatePushToStack(array.getIndexOperands().get(0), varTable);
 
         } else {
 
@@ -231,7 +224,9 @@ public class MyJasminBackend implements JasminBackend {
                     if (!checkLeftLiteral && checkRightLiteral) {
                         literalElement = (LiteralElement) binaryOp.getRightOperand();
                         operand = (Operand) binaryOp.getLeftOperand();
-                    } else if (checkLeftLiteral && !checkRightLiteral) {
+                    } else if (checkLeftLiteral && !checkRightLiteral
+                            && binaryOp.getOperation().getOpType() == OperationType.ADD) {
+                        // c - x is not an increment of x
                         literalElement = (LiteralElement) binaryOp.getLeftOperand();
                         operand = (Operand) binaryOp.getRightOperand();
                     }
@@ -240,56 +235,44 @@ public class MyJasminBackend implements JasminBackend {
                         if (operand.getName().equals(dest.getName())) {
 
                             int integerValue = Integer.parseInt((literalElement).getLiteral());
+                            int increment = binaryOp.getOperation().getOpType() == OperationType.SUB ?
+                                    -integerValue : integerValue;
 
-                            if (binaryOp.getOperation().getOpType() == OperationType.SUB) {
-                                if (integerValue <= 128)
-                                    return "\tiinc " + varTable.get(operand.getName()).getVirtualReg() + " -" + integerValue + "\n";
-                                else throw new JasminException("ERROR: VALUE FOR IINC OUT OF BOUNDS");
+                            // iinc only takes a signed byte, larger increments are computed on the stack
+                            if (increment >= -128 && increment <= 127) {
+                                emitter.iinc(varTable.get(operand.getName()).getVirtualReg(), increment);
+                                return;
                             }
-                            else if (integerValue <= 127) {
-                                return "\tiinc " + varTable.get(operand.getName()).getVirtualReg() + " " + integerValue + "\n";
-                            }
-                            else throw new JasminException("ERROR: VALUE FOR IINC OUT OF BOUNDS");
                         }
                     }
                 }
             }
         }
 
-        assignBuilder.append(generateInstruction(instruction.getRhs(), varTable));
-        assignBuilder.append(generateStore(dest, varTable));
-
-        return assignBuilder.toString();
+        generateInstruction(instruction.getRhs(), varTable);
+        generateStore(dest, varTable);
 
     }
 
-    private String generateCallInstruction(CallInstruction instruction, HashMap<String, Descriptor> varTable) {
-        StringBuilder callBuilder = new StringBuilder();
+    private void generateCallInstruction(CallInstruction instruction, HashMap<String, Descriptor> varTable) {
 
         int variation = 0;
 
         switch (instruction.getInvocationType()) {
             case invokevirtual -> {
-                callBuilder.append(generatePushToStack(instruction.getFirstArg(), varTable));
+                generatePushToStack(instruction.getFirstArg(), varTable);
 
                 variation = 1;
 
                 for (Element element : instruction.getListOfOperands()) {
-                    callBuilder.append(generatePushToStack(element, varTable));
+                    generatePushToStack(element, varTable);
                     variation++;
                 }
 
-                callBuilder.append("\tinvokevirtual ")
-                        .append(convertClassName(((ClassType) instruction.getFirstArg().getType()).getName()))
-                        .append("/")
-                        .append(((LiteralElement) instruction.getSecondArg()).getLiteral().replace("\"", ""))
-                        .append("(");
-
-                for (Element element : instruction.getListOfOperands()) {
-                    callBuilder.append(translateType(element.getType()));
-                }
-
-                callBuilder.append(")").append(translateType(instruction.getReturnType())).append("\n");
+                emitter.invoke("invokevirtual",
+                        convertClassName(((ClassType) instruction.getFirstArg().getType()).getName()),
+                        ((LiteralElement) instruction.getSecondArg()).getLiteral().replace("\"", ""),
+                        generateDescriptor(instruction));
 
                 if (instruction.getReturnType().getTypeOfElement() != ElementType.VOID) {
                     variation--;
@@ -297,25 +280,17 @@ public class MyJasminBackend implements JasminBackend {
 
             }
             case invokespecial -> {
-                callBuilder.append(generatePushToStack(instruction.getFirstArg(), varTable));
+                generatePushToStack(instruction.getFirstArg(), varTable);
 
                 variation = 1;
-                callBuilder.append("\tinvokespecial ");
 
+                String owner;
                 if (instruction.getFirstArg().getType().getTypeOfElement() == ElementType.THIS)
-                    callBuilder.append(this.superClassName);
+                    owner = this.superClassName;
                 else
-                    callBuilder.append(convertClassName(((ClassType) instruction.getFirstArg().getType()).getName()));
-
-                callBuilder.append("/").append("<init>(");
-
-                for (Element element : instruction.getListOfOperands()) {
-                    callBuilder.append(translateType(element.getType()));
-                }
+                    owner = convertClassName(((ClassType) instruction.getFirstArg().getType()).getName());
 
-                callBuilder.append(")")
-                        .append(translateType(instruction.getReturnType()))
-                        .append("\n");
+                emitter.invoke("invokespecial", owner, "<init>", generateDescriptor(instruction));
 
                 if (instruction.getReturnType().getTypeOfElement() != ElementType.VOID) {
                     variation--;
@@ -327,23 +302,14 @@ public class MyJasminBackend implements JasminBackend {
                 variation = 0;
 
                 for (Element element : instruction.getListOfOperands()) {
-                    callBuilder.append(generatePushToStack(element, varTable));
+                    generatePushToStack(element, varTable);
                     variation++;
                 }
 
-                callBuilder.append("\tinvokestatic ")
-                        .append(convertClassName(((Operand) instruction.getFirstArg()).getName()))
-                        .append("/")
-                        .append(((LiteralElement) instruction.getSecondArg()).getLiteral().replace("\"", ""))
-                        .append("(");
-
-                for (Element element : instruction.getListOfOperands()) {
-                    callBuilder.append(translateType(element.getType()));
-                }
-
-                callBuilder.append(")")
-                        .append(translateType(instruction.getReturnType()))
-                        .append("\n");
+                emitter.invoke("invokestatic",
+                        convertClassName(((Operand) instruction.getFirstArg()).getName()),
+                        ((LiteralElement) instruction.getSecondArg()).getLiteral().replace("\"", ""),
+                        generateDescriptor(instruction));
 
                 if (instruction.getReturnType().getTypeOfElement() != ElementType.VOID) {
                     variation--;
@@ -357,23 +323,20 @@ public class MyJasminBackend implements JasminBackend {
                 switch (instruction.getReturnType().getTypeOfElement()) {
                     case OBJECTREF -> {
                         for (Element element : instruction.getListOfOperands()) {
-                            callBuilder.append(generatePushToStack(element, varTable));
+                            generatePushToStack(element, varTable);
                             variation++;
                         }
 
-                        callBuilder.append("\tnew ")
-                                .append(convertClassName(((Operand) instruction.getFirstArg()).getName()))
-                                .append("\n");
+                        emitter.newObject(convertClassName(((Operand) instruction.getFirstArg()).getName()));
                     }
                     case ARRAYREF -> {
                         for (Element element : instruction.getListOfOperands()) {
-                            callBuilder.append(generatePushToStack(element, varTable));
+                            generatePushToStack(element, varTable);
                             variation++;
                         }
 
-                        callBuilder.append("\tnewarray ");
                         if (instruction.getListOfOperands().get(0).getType().getTypeOfElement()== ElementType.INT32) {
-                            callBuilder.append("int\n");
+                            emitter.newArray("int");
                         } else {
                             throw new JasminException("ERROR: ONLY INT ARRAYS ARE SUPPORTED");
                         }
@@ -383,25 +346,33 @@ public class MyJasminBackend implements JasminBackend {
 
             }
             case arraylength -> {
-                callBuilder.append(generatePushToStack(instruction.getFirstArg(), varTable));
-                callBuilder.append("\tarraylength\n");
+                generatePushToStack(instruction.getFirstArg(), varTable);
+                emitter.instruction("arraylength");
             }
-            case ldc -> callBuilder.append(generatePushToStack(instruction.getFirstArg(), varTable));
+            case ldc -> generatePushToStack(instruction.getFirstArg(), varTable);
             default -> throw new JasminException("ERROR: CALL INSTRUCTION NOT RECOGNIZED: " + instruction.getInvocationType().toString() + "\n");
         }
 
         updateStackLimits(-variation);
-
-        return callBuilder.toString();
     }
 
-    private String generateGoToInstruction(GotoInstruction instruction) {
-        return "\tgoto " + instruction.getLabel() + "\n";
+    private String generateDescriptor(CallInstruction instruction) {
+        StringBuilder descriptor = new StringBuilder("(");
+
+        for (Element element : instruction.getListOfOperands()) {
+            descriptor.append(translateType(element.getType()));
+        }
+
+        descriptor.append(")").append(translateType(instruction.getReturnType()));
+
+        return descriptor.toString();
     }
 
-    private String generateCondBranchInstruction(CondBranchInstruction instruction, HashMap<String, Descriptor> varTable) {
-        StringBuilder condBranchBuilder = new StringBuilder();
+    private void generateGoToInstruction(GotoInstruction instruction) {
+        emitter.jump("goto", instruction.getLabel());
+    }
 
+    private void generateCondBranchInstruction(CondBranchInstruction instruction, HashMap<String, Descriptor> varTable) {
         Instruction condition;
 
         if (instruction instanceof SingleOpCondInstruction singleOpCondInstruction) {
@@ -420,7 +391,7 @@ public class MyJasminBackend implements JasminBackend {
             case UNARYOPER -> {
                 UnaryOpInstruction unaryOpInstruction = (UnaryOpInstruction) condition;
                 if (unaryOpInstruction.getOperation().getOpType() == OperationType.NOTB) {
-                    condBranchBuilder.append(generatePushToStack(unaryOpInstruction.getOperand(), varTable));
+                    generatePushToStack(unaryOpInstruction.getOperand(), varTable);
                     operationToAdd = "ifeq";
                 }
                 else throw new JasminException("ERROR: INVALID UNARY OPERATOR");
@@ -450,10 +421,10 @@ public class MyJasminBackend implements JasminBackend {
                         }
 
                         if (numberToCompare != null && numberToCompare == 0) {
-                            condBranchBuilder.append(generatePushToStack(element, varTable));
+                            generatePushToStack(element, varTable);
                         } else {
-                            condBranchBuilder.append(generatePushToStack(leftElement, varTable))
-                                    .append(generatePushToStack(rightElement, varTable));
+                            generatePushToStack(leftElement, varTable);
+                            generatePushToStack(rightElement, varTable);
 
                             operationToAdd = "if_icmplt";
                         }
@@ -480,10 +451,10 @@ public class MyJasminBackend implements JasminBackend {
                         }
 
                         if (numberToCompare != null && numberToCompare == 0) {
-                            condBranchBuilder.append(generatePushToStack(element, varTable));
+                            generatePushToStack(element, varTable);
                         } else {
-                            condBranchBuilder.append(generatePushToStack(leftElement, varTable))
-                                    .append(generatePushToStack(rightElement, varTable));
+                            generatePushToStack(leftElement, varTable);
+                            generatePushToStack(rightElement, varTable);
 
                             operationToAdd = "if_icmple";
                         }
@@ -511,10 +482,10 @@ public class MyJasminBackend implements JasminBackend {
                         }
 
                         if (numberToCompare != null && numberToCompare == 0) {
-                            condBranchBuilder.append(generatePushToStack(element, varTable));
+                            generatePushToStack(element, varTable);
                         } else {
-                            condBranchBuilder.append(generatePushToStack(leftElement, varTable))
-                                    .append(generatePushToStack(rightElement, varTable));
+                            generatePushToStack(leftElement, varTable);
+                            generatePushToStack(rightElement, varTable);
 
                             operationToAdd = "if_icmpgt";
                         }
@@ -541,16 +512,16 @@ public class MyJasminBackend implements JasminBackend {
                         }
 
                         if (numberToCompare != null && numberToCompare == 0) {
-                            condBranchBuilder.append(generatePushToStack(element, varTable));
+                            generatePushToStack(element, varTable);
                         } else {
-                            condBranchBuilder.append(generatePushToStack(leftElement, varTable))
-                                    .append(generatePushToStack(rightElement, varTable));
+                            generatePushToStack(leftElement, varTable);
+                            generatePushToStack(rightElement, varTable);
 
                             operationToAdd = "if_icmpge";
                         }
                     }
                     case ANDB -> {
-                        condBranchBuilder.append(generateInstruction(condition, varTable));
+                        generateInstruction(condition, varTable);
                         operationToAdd = "ifne";
                     }
                     default ->
@@ -558,12 +529,12 @@ public class MyJasminBackend implements JasminBackend {
                 }
             }
             default -> {
-                condBranchBuilder.append(generateInstruction(condition, varTable));
+                generateInstruction(condition, varTable);
                 operationToAdd = "ifne";
             }
         }
 
-        condBranchBuilder.append("\t").append(operationToAdd).append(" ").append(instruction.getLabel()).append("\n");
+        emitter.jump(operationToAdd, instruction.getLabel());
 
         if (operationToAdd.equals("if_icmplt") || operationToAdd.equals("if_icmpgt")
                 || operationToAdd.equals("if_icmple") || operationToAdd.equals("if_icmpge")) {
@@ -571,71 +542,61 @@ public class MyJasminBackend implements JasminBackend {
         } else {
             updateStackLimits(-1);
         }
-
-        return condBranchBuilder.toString();
     }
 
-    private String generateReturnInstruction(ReturnInstruction instruction, HashMap<String, Descriptor> varTable) {
-        StringBuilder returnBuilder = new StringBuilder();
+    private void generateReturnInstruction(ReturnInstruction instruction, HashMap<String, Descriptor> varTable) {
 
-        if (instruction.hasReturnValue()) returnBuilder.append(generatePushToStack(instruction.getOperand(), varTable));
+        if (instruction.hasReturnValue()) generatePushToStack(instruction.getOperand(), varTable);
 
-        returnBuilder.append("\t");
+        String prefix = "";
 
         if (instruction.getOperand() != null) {
             ElementType typeOfElement = instruction.getOperand().getType().getTypeOfElement();
 
             if (typeOfElement == ElementType.BOOLEAN || typeOfElement == ElementType.INT32) {
-                returnBuilder.append("i");
+                prefix = "i";
             } else {
-                returnBuilder.append("a");
+                prefix = "a";
             }
         }
 
-        returnBuilder.append("return\n");
-
-        return returnBuilder.toString();
+        emitter.instruction(prefix + "return");
     }
 
-    private String generatePutFieldInstruction(PutFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
+    private void generatePutFieldInstruction(PutFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
 
-        String putInstruction = generatePushToStack(instruction.getFirstOperand(), varTable) +
-                generatePushToStack(instruction.getThirdOperand(), varTable) + "\tputfield " +
-                convertClassName(((Operand) instruction.getFirstOperand()).getName()) + "/" +
-                ((Operand) instruction.getSecondOperand()).getName() + " " +
-                translateType(instruction.getSecondOperand().getType()) + "\n";
+        generatePushToStack(instruction.getFirstOperand(), varTable);
+        generatePushToStack(instruction.getThirdOperand(), varTable);
 
-        updateStackLimits(-2);
+        emitter.fieldInstruction("putfield", convertClassName(((Operand) instruction.getFirstOperand()).getName()),
+                ((Operand) instruction.getSecondOperand()).getName(),
+                translateType(instruction.getSecondOperand().getType()));
 
-        return putInstruction;
+        updateStackLimits(-2);
     }
 
-    private String generateGetFieldInstruction(GetFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
+    private void generateGetFieldInstruction(GetFieldInstruction instruction, HashMap<String, Descriptor> varTable) {
+
+        generatePushToStack(instruction.getFirstOperand(), varTable);
 
-        return generatePushToStack(instruction.getFirstOperand(), varTable) +
-                "\tgetfield " + convertClassName(((Operand) instruction.getFirstOperand()).getName()) + "/" +
-                ((Operand) instruction.getSecondOperand()).getName() + " "
-                + translateType(instruction.getSecondOperand().getType()) + "\n";
+        emitter.fieldInstruction("getfield", convertClassName(((Operand) instruction.getFirstOperand()).getName()),
+                ((Operand) instruction.getSecondOperand()).getName(),
+                translateType(instruction.getSecondOperand().getType()));
     }
 
-    private String generateUnaryOperationInstruction(UnaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
-        StringBuilder unaryOpBuilder = new StringBuilder();
+    private void generateUnaryOperationInstruction(UnaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
 
-        unaryOpBuilder.append(generatePushToStack(instruction.getOperand(), varTable))
-                .append("\t").append(translateOperationType(instruction.getOperation()));
+        generatePushToStack(instruction.getOperand(), varTable);
+
+        String operation = translateOperationType(instruction.getOperation());
 
         if (instruction.getOperation().getOpType() == OperationType.NOTB) {
-            unaryOpBuilder.append(pushComparisonResultToStack());
+            pushComparisonResultToStack(operation);
         }
         else throw new JasminException("ERROR: INVALID UNARY OPERATOR");
-
-        unaryOpBuilder.append("\n");
-
-        return unaryOpBuilder.toString();
     }
 
-    private String generateBinaryOperationInstruction(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
-        StringBuilder binaryOpBuilder = new StringBuilder();
+    private void generateBinaryOperationInstruction(BinaryOpInstruction instruction, HashMap<String, Descriptor> varTable) {
 
         Element leftElement = instruction.getLeftOperand();
         Element rightElement = instruction.getRightOperand();
@@ -650,19 +611,18 @@ public class MyJasminBackend implements JasminBackend {
                         || operationType == OperationType.GTE;
 
 
-        binaryOpBuilder.append(generatePushToStack(leftElement, varTable))
-                .append(generatePushToStack(rightElement, varTable))
-                .append("\t").append(translateOperationType(instruction.getOperation()));
+        generatePushToStack(leftElement, varTable);
+        generatePushToStack(rightElement, varTable);
+
+        String operation = translateOperationType(instruction.getOperation());
 
         if (isComparison) {
-            binaryOpBuilder.append(pushComparisonResultToStack());
+            pushComparisonResultToStack(operation);
+        } else {
+            emitter.instruction(operation);
         }
 
-        binaryOpBuilder.append("\n");
-
         updateStackLimits(-1);
-
-        return binaryOpBuilder.toString();
     }
 
     private String translateOperationType(Operation operation) {
@@ -693,54 +653,47 @@ public class MyJasminBackend implements JasminBackend {
         }
     }
 
-    private String generateStore(Operand dest, HashMap<String, Descriptor> varTable) {
-
-        StringBuilder storeBuilder = new StringBuilder();
+    private void generateStore(Operand dest, HashMap<String, Descriptor> varTable) {
 
         switch (dest.getType().getTypeOfElement()) {
             case INT32, BOOLEAN -> {
                 if (varTable.get(dest.getName()).getVarType().getTypeOfElement() == ElementType.ARRAYREF) {
-                    storeBuilder.append("\tiastore").append("\n");
+                    emitter.instruction("iastore");
                     updateStackLimits(-3);
                 } else {
-                    storeBuilder.append("\tistore").append(generateVarNumber(dest.getName(), varTable)).append("\n");
+                    emitter.localInstruction("istore", getVarNumber(dest.getName(), varTable), translateVarType(dest));
                     updateStackLimits(-1);
                 }
 
 
             }
             case OBJECTREF, STRING, ARRAYREF, THIS -> {
-                storeBuilder.append("\tastore").append(generateVarNumber(dest.getName(), varTable)).append("\n");
+                emitter.localInstruction("astore", getVarNumber(dest.getName(), varTable), translateVarType(dest));
                 updateStackLimits(-1);
             }
             default -> throw new JasminException("ERROR: GENERATE STORE NOT RECOGNIZED " + dest.getType().getTypeOfElement() + "\n");
         }
 
-        return storeBuilder.toString();
-
     }
 
-    private String generatePushToStack(Element element, HashMap<String, Descriptor> varTable) {
-
-        StringBuilder pushToStackBuilder = new StringBuilder();
+    private void generatePushToStack(Element element, HashMap<String, Descriptor> varTable) {
 
         if (element instanceof ArrayOperand operand) {
 
-            pushToStackBuilder.append("\taload")
-                    .append(generateVarNumber(operand.getName(), varTable)).append("\n");
+            emitter.localInstruction("aload", getVarNumber(operand.getName(), varTable), translateType(varTable.get(operand.getName()).getVarType()));
             updateStackLimits(1);
 
-            pushToStackBuilder.append(generatePushToStack(operand.getIndexOperands().get(0), varTable));
-            pushToStackBuilder.append("\tiaload");
+            generatePushToStack(operand.getIndexOperands().get(0), varTable);
+            emitter.instruction("iaload");
 
             updateStackLimits(-1);
         }
         else if (element instanceof Operand operand) {
             switch (operand.getType().getTypeOfElement()) {
                 case INT32, BOOLEAN ->
-                        pushToStackBuilder.append("\tiload").append(generateVarNumber(operand.getName(), varTable));
+                        emitter.localInstruction("iload", getVarNumber(operand.getName(), varTable), translateVarType(operand));
                 case OBJECTREF, STRING, ARRAYREF, THIS ->
-                        pushToStackBuilder.append("\taload").append(generateVarNumber(operand.getName(), varTable));
+                        emitter.localInstruction("aload", getVarNumber(operand.getName(), varTable), translateVarType(operand));
                 default -> throw new JasminException("ERROR: PUSH TO STACK TYPE NOT RECOGNIZED " + operand.getType().getTypeOfElement() + "\n");
             }
 
@@ -754,24 +707,18 @@ public class MyJasminBackend implements JasminBackend {
 
                 int parsedInt = Integer.parseInt(literal);
 
-                if (parsedInt >= -1 && parsedInt <= 5) pushToStackBuilder.append("\ticonst_");
-                else if (parsedInt >= -128 && parsedInt <= 127) pushToStackBuilder.append("\tbipush ");
-                else if (parsedInt >= -32768 && parsedInt <= 32767) pushToStackBuilder.append("\tsipush ");
-                else pushToStackBuilder.append("\tldc ");
-
-                if (parsedInt == -1) pushToStackBuilder.append("m1");
-                else pushToStackBuilder.append(parsedInt);
+                if (parsedInt == -1) emitter.instruction("iconst_m1");
+                else if (parsedInt >= 0 && parsedInt <= 5) emitter.instruction("iconst_" + parsedInt);
+                else if (parsedInt >= -128 && parsedInt <= 127) emitter.intInstruction("bipush", parsedInt);
+                else if (parsedInt >= -32768 && parsedInt <= 32767) emitter.intInstruction("sipush", parsedInt);
+                else emitter.ldc(parsedInt);
 
             }
-            else pushToStackBuilder.append("\tldc ").append(literal);
+            else emitter.ldc(literal);
 
             updateStackLimits(1);
 
         }
-
-        pushToStackBuilder.append("\n");
-
-        return pushToStackBuilder.toString();
     }
 
     private void updateStackLimits(int variation) {
@@ -812,40 +759,29 @@ public class MyJasminBackend implements JasminBackend {
         }
     }
 
-    private String pushComparisonResultToStack() {
-        return " LABELX" + this.labelNumber + "\n"
-                + "\ticonst_0\n"
-                + "\tgoto SKIPX" + this.labelNumber + "\n"
-                + "LABELX" + this.labelNumber + ":\n"
-                + "\ticonst_1\n"
-                + "SKIPX" + this.labelNumber++ + ":";
-    }
-
-    private String generateVarNumber(String varName, HashMap<String, Descriptor> varTable) {
-
-        if (varName.equals("this")) {
-            return "_0";
+    private String translateVarType(Element element) {
+        if (element.getType().getTypeOfElement() == ElementType.THIS) {
+            return "L" + this.classUnit.getClassName() + ";";
         }
 
-        int varNumber = varTable.get(varName).getVirtualReg();
-
-        StringBuilder stringBuilder = new StringBuilder();
+        return translateType(element.getType());
+    }
 
-        if (varNumber <= 3) stringBuilder.append("_");
-        else stringBuilder.append(" ");
+    private void pushComparisonResultToStack(String operation) {
+        emitter.jump(operation, "LABELX" + this.labelNumber);
+        emitter.instruction("iconst_0");
+        emitter.jump("goto", "SKIPX" + this.labelNumber);
+        emitter.label("LABELX" + this.labelNumber);
+        emitter.instruction("iconst_1");
+        emitter.label("SKIPX" + this.labelNumber++);
+    }
 
-        stringBuilder.append(varNumber);
+    private int getVarNumber(String varName, HashMap<String, Descriptor> varTable) {
 
-        return stringBuilder.toString();
-    }
+        if (varName.equals("this")) {
+            return 0;
+        }
 
-    private String translateAccessModifier(AccessModifiers accessModifier) {
-        return switch (accessModifier) {
-            case PUBLIC, DEFAULT -> "public ";
-            case PRIVATE -> "private ";
-            case PROTECTED -> "protected ";
-        };
+        return varTable.get(varName).getVirtualReg();
     }
 }
-
-
@@ -0,0 +1,59 @@
+package pt.up.fe.comp2023.jasmin;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Type of a local variable or stack slot, as written in a stack map frame. Objects keep their internal class name
+ * (or array descriptor), uninitialized objects the offset of the "new" instruction that created them.
+ */
+public record VerificationType(int tag, String className, int offset) {
+
+    private static final int ITEM_TOP = 0;
+    private static final int ITEM_INTEGER = 1;
+    private static final int ITEM_UNINITIALIZED_THIS = 6;
+    private static final int ITEM_OBJECT = 7;
+    private static final int ITEM_UNINITIALIZED = 8;
+
+    public static final VerificationType TOP = new VerificationType(ITEM_TOP, null, 0);
+    public static final VerificationType INTEGER = new VerificationType(ITEM_INTEGER, null, 0);
+    public static final VerificationType UNINITIALIZED_THIS = new VerificationType(ITEM_UNINITIALIZED_THIS, null, 0);
+
+    public static VerificationType object(String className) {
+        return new VerificationType(ITEM_OBJECT, className, 0);
+    }
+
+    public static VerificationType uninitialized(int offset) {
+        return new VerificationType(ITEM_UNINITIALIZED, null, offset);
+    }
+
+    /**
+     * Type of a value with the given field descriptor.
+     */
+    public static VerificationType fromDescriptor(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'I', 'Z', 'B', 'C', 'S' -> INTEGER;
+            case 'L' -> object(descriptor.substring(1, descriptor.length() - 1));
+            case '[' -> object(descriptor);
+            default -> throw new JasminException("ERROR: TYPE NOT SUPPORTED IN STACK MAP FRAMES: " + descriptor);
+        };
+    }
+
+    public boolean isObject() {
+        return tag == ITEM_OBJECT;
+    }
+
+    public boolean isUninitialized() {
+        return tag == ITEM_UNINITIALIZED || tag == ITEM_UNINITIALIZED_THIS;
+    }
+
+    public void write(DataOutputStream out, ConstantPool constantPool) throws IOException {
+        out.writeByte(tag);
+
+        if (tag == ITEM_OBJECT) {
+            out.writeShort(constantPool.classRef(className));
+        } else if (tag == ITEM_UNINITIALIZED) {
+            out.writeShort(offset);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.Type;
+
+/**
+ * Same as {@link OllirMode}, for {@link OllirBuilder}: the expected type of the expression, if known, and whether
+ * its value must be stored in a temporary variable.
+ */
+public class OllirBuildMode {
+    private final Type type;
+    private final boolean needTempVar;
+
+    public OllirBuildMode(Type type, boolean needTempVar){
+        this.type = type;
+        this.needTempVar = needTempVar;
+    }
+
+    public OllirBuildMode(boolean needTempVar){
+        this(null, needTempVar);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isNeedTempVar() {
+        return needTempVar;
+    }
+}
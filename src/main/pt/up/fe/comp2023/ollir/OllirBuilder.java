@@ -0,0 +1,732 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.AccessModifiers;
+import org.specs.comp.ollir.ArrayOperand;
+import org.specs.comp.ollir.ArrayType;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.BinaryOpInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.CallType;
+import org.specs.comp.ollir.ClassType;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.Element;
+import org.specs.comp.ollir.ElementType;
+import org.specs.comp.ollir.Field;
+import org.specs.comp.ollir.GetFieldInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.LiteralElement;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OpCondInstruction;
+import org.specs.comp.ollir.OpInstruction;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.Operation;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.PutFieldInstruction;
+import org.specs.comp.ollir.ReturnInstruction;
+import org.specs.comp.ollir.SingleOpCondInstruction;
+import org.specs.comp.ollir.SingleOpInstruction;
+import org.specs.comp.ollir.Type;
+import org.specs.comp.ollir.UnaryOpInstruction;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.analysis.Binding;
+import pt.up.fe.comp2023.analysis.ClassIndex;
+import pt.up.fe.comp2023.analysis.SemanticHelper;
+import pt.up.fe.comp2023.analysis.SimpleSymbolTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Builds the OLLIR {@link ClassUnit} directly from the annotated AST, without going through OLLIR text.
+ * <p>
+ * Generates the same instructions, temporaries and labels as {@link OllirVisitor}, and the same objects the OLLIR
+ * parser would create when reading that text. Expressions are returned as instructions; plain values (variables,
+ * literals and temporaries) are returned wrapped in a {@link SingleOpInstruction}.
+ */
+public class OllirBuilder extends AJmmVisitor<OllirBuildMode, Instruction> {
+    private final SimpleSymbolTable symbolTable;
+    private final ClassUnit classUnit;
+    private final List<String> pendingLabels;
+    private Method currentMethod;
+    private int tempVarNum;
+    private int whileNum;
+    private int ifNum;
+
+    public OllirBuilder(SymbolTable symbolTable){
+        this.symbolTable = (SimpleSymbolTable) symbolTable;
+        this.classUnit = new ClassUnit();
+        this.pendingLabels = new ArrayList<>();
+        this.tempVarNum = 0;
+        this.whileNum = 0;
+        this.ifNum = 0;
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit("Program", this::dealWithProgram);
+        addVisit("ClassDeclaration", this::dealWithClass);
+        addVisit("MethodDeclaration", this::dealWithMethods);
+        addVisit("MainDeclaration", this::dealWithMain);
+        addVisit("Block", this::dealWithBlock);
+        addVisit("If", this::dealWithIf);
+        addVisit("While", this::dealWithWhile);
+        addVisit("Line", this::dealWithLine);
+        addVisit("Assign", this::dealWithAssign);
+        addVisit("ArrayAssign", this::dealWithArrayAssign);
+        addVisit("Neg", this::dealWithNeg);
+        addVisit("ArithmeticBinaryOP", this::dealWithBinaryOP);
+        addVisit("LogicalBinaryOP", this::dealWithBinaryOP);
+        addVisit("Array", this::dealWithArray);
+        addVisit("Length", this::dealWithLength);
+        addVisit("FunctionCall", this::dealWithFunctionCall);
+        addVisit("New", this::dealWithNews);
+        addVisit("NewArray", this::dealWithNews);
+        addVisit("Parenthesis", this::dealWithParenthesis);
+        addVisit("Boolean", this::dealWithBoolean);
+        addVisit("Var", this::dealWithVar);
+        addVisit("Int", this::dealWithInt);
+        addVisit("This", this::dealWithThis);
+        addVisit("VariableId", this::dealWithVariable);
+        addVisit("ReturnStatement", this::dealWithReturn);
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    /**
+     * Returns the class built by visiting the program, with its var tables already built (as the OLLIR parser does).
+     */
+    public ClassUnit getClassUnit(){
+        classUnit.buildVarTables();
+        return classUnit;
+    }
+
+    private Instruction defaultVisit(JmmNode jmmNode, OllirBuildMode mode) {
+        return null;
+    }
+
+    private void addInstruction(Instruction instruction){
+        for(String label : pendingLabels){
+            currentMethod.addLabel(label, instruction);
+        }
+        pendingLabels.clear();
+
+        currentMethod.addInstr(instruction);
+    }
+
+    private void addLabel(String label){
+        pendingLabels.add(label);
+    }
+
+    private int getAndAddTempVar(JmmNode node){
+        JmmNode method = getCurrentMethod(node);
+
+        while(true) {
+            this.tempVarNum++;
+            if(!SemanticHelper.findVariable(symbolTable, method, "t" + tempVarNum)){
+                return this.tempVarNum;
+            }
+        }
+    }
+
+    private Operand storeInTemp(JmmNode jmmNode, Type type, Instruction value){
+        int tempVar = getAndAddTempVar(jmmNode);
+
+        addInstruction(new AssignInstruction(new Operand("t" + tempVar, type), type, value));
+
+        return new Operand("t" + tempVar, type);
+    }
+
+    private Element getIndexIntoReg(Element index, JmmNode jmmNode){
+        if(!index.isLiteral())
+            return index;
+
+        return storeInTemp(jmmNode, new Type(ElementType.INT32), new SingleOpInstruction(index));
+    }
+
+    private static JmmNode getCurrentMethod(JmmNode node){
+        Optional<JmmNode> method = node.getAncestor("MethodDeclaration");
+
+        if(method.isPresent() && method.get().getJmmChild(0).getKind().equals("MainDeclaration"))
+            return method.get().getJmmChild(0);
+
+        return method.orElse(null);
+    }
+
+    private static Element getOperand(Instruction instruction){
+        return ((SingleOpInstruction) instruction).getSingleOperand();
+    }
+
+    private Operand getThis(){
+        return new Operand("this", new ClassType(ElementType.THIS, symbolTable.getClassName()));
+    }
+
+    private Operand getVariableOperand(Binding binding, Type type){
+        Operand operand = new Operand(binding.getSymbol().getName(), type);
+
+        int paramId = binding.getParameterIndex();
+        if(paramId != -1)
+            operand.setParamId(paramId);
+
+        return operand;
+    }
+
+    private boolean isField(JmmNode variableId){
+        Binding binding = SemanticHelper.getBinding(symbolTable, variableId);
+
+        return binding != null && binding.getKind() == Binding.Kind.FIELD;
+    }
+
+    private Instruction dealWithProgram(JmmNode jmmNode, OllirBuildMode mode) {
+        for(String importString : symbolTable.getImports()){
+            classUnit.addImport(importString);
+        }
+
+        visit(jmmNode.getJmmChild(jmmNode.getNumChildren()-1));
+        return null;
+    }
+
+    private Instruction dealWithClass(JmmNode jmmNode, OllirBuildMode mode) {
+        classUnit.setClassName(symbolTable.getClassName());
+        String superClass = symbolTable.getSuper();
+
+        if(!Objects.equals(superClass, "")){
+            classUnit.setSuperClass(superClass);
+        }
+
+        for(Symbol symbol : symbolTable.getFields()){
+            Field field = new Field();
+            field.setFieldName(symbol.getName());
+            field.setFieldType(getOllirType(symbol.getType()));
+            classUnit.addField(field);
+        }
+
+        currentMethod = new Method(classUnit);
+        currentMethod.setConstructMethod();
+        addInstruction(new CallInstruction(CallType.invokespecial, getThis(), getMethodLiteral("<init>"),
+                new ArrayList<>(), new Type(ElementType.VOID)));
+        currentMethod.setReturnType(new Type(ElementType.VOID));
+        currentMethod.setMethodName(symbolTable.getClassName());
+        classUnit.addMethod(currentMethod);
+
+        for(JmmNode method : jmmNode.getJmmChild(1).getChildren()){
+            visit(method);
+        }
+
+        return null;
+    }
+
+    private Method newMethod(String methodName, boolean isStatic){
+        Method method = new Method(classUnit);
+        method.setMethodAccessModifier(AccessModifiers.PUBLIC);
+        if(isStatic)
+            method.setStaticMethod();
+
+        int paramId = isStatic ? 0 : 1;
+        for(Symbol param : symbolTable.getParameters(methodName)){
+            Operand operand = new Operand(param.getName(), getOllirType(param.getType()));
+            operand.setParamId(paramId++);
+            method.addParam(operand);
+        }
+
+        method.setReturnType(getOllirType(symbolTable.getReturnType(methodName)));
+        method.setMethodName(methodName);
+
+        return method;
+    }
+
+    private Instruction dealWithMethods(JmmNode jmmNode, OllirBuildMode mode) {
+        if(jmmNode.getJmmChild(0).getKind().equals("MainDeclaration"))
+            visit(jmmNode.getJmmChild(0));
+        else{
+            String methodName = jmmNode.get("methodName");
+
+            currentMethod = newMethod(methodName, false);
+
+            List<JmmNode> statements = jmmNode.getJmmChild(jmmNode.getNumChildren()-2).getChildren();
+
+            for(JmmNode node : statements){
+                visit(node);
+            }
+
+            JmmNode returnNode = jmmNode.getJmmChild(jmmNode.getNumChildren()-1);
+            visit(returnNode);
+
+            classUnit.addMethod(currentMethod);
+        }
+        return null;
+    }
+
+    private Instruction dealWithMain(JmmNode jmmNode, OllirBuildMode mode) {
+        currentMethod = newMethod("main", true);
+
+        List<JmmNode> statements = jmmNode.getJmmChild(1).getChildren();
+
+        for(JmmNode node : statements){
+            visit(node);
+        }
+
+        ReturnInstruction returnInstruction = new ReturnInstruction();
+        returnInstruction.setReturnType(new Type(ElementType.VOID));
+        addInstruction(returnInstruction);
+
+        classUnit.addMethod(currentMethod);
+        return null;
+    }
+
+    private Instruction dealWithReturn(JmmNode jmmNode, OllirBuildMode mode) {
+        String methodName = getCurrentMethod(jmmNode).get("methodName");
+
+        Element returnValue = getOperand(visit(jmmNode.getJmmChild(0)));
+
+        ReturnInstruction returnInstruction = new ReturnInstruction(returnValue);
+        returnInstruction.setReturnType(getOllirType(symbolTable.getReturnType(methodName)));
+        addInstruction(returnInstruction);
+
+        return null;
+    }
+
+    private Instruction dealWithBlock(JmmNode jmmNode, OllirBuildMode mode) {
+        for(JmmNode child : jmmNode.getChildren()){
+            visit(child);
+        }
+
+        return null;
+    }
+
+    private CondBranchInstruction getCondition(JmmNode condition, boolean notAssignToTemp){
+        Instruction instruction = visit(condition, new OllirBuildMode(new Type(ElementType.BOOLEAN), !notAssignToTemp));
+
+        if(instruction instanceof SingleOpInstruction singleOpInstruction)
+            return new SingleOpCondInstruction(singleOpInstruction);
+
+        if(instruction instanceof OpInstruction opInstruction)
+            return new OpCondInstruction(opInstruction);
+
+        // Field reads and calls cannot be used directly as a condition
+        Operand temp = storeInTemp(condition, new Type(ElementType.BOOLEAN), instruction);
+        return new SingleOpCondInstruction(new SingleOpInstruction(temp));
+    }
+
+    private Instruction dealWithIf(JmmNode jmmNode, OllirBuildMode mode) {
+        JmmNode condition = jmmNode.getJmmChild(0);
+        JmmNode trueBlock = jmmNode.getJmmChild(1);
+        JmmNode falseBlock = jmmNode.getJmmChild(2);
+
+        int ifThenElseNum = ifNum++;
+
+        String conditionKind = condition.getKind();
+
+        boolean notAssignToTemp = conditionKind.equals("ArithmeticBinaryOP") || conditionKind.equals("LogicalBinaryOP")
+                || conditionKind.equals("Boolean") || conditionKind.equals("Neg") || (conditionKind.equals("Var") && isField(condition.getJmmChild(0)));
+
+        CondBranchInstruction branch = getCondition(condition, notAssignToTemp);
+        branch.setLabel("ifTrue" + ifThenElseNum);
+        addInstruction(branch);
+
+        visit(falseBlock);
+        addInstruction(new GotoInstruction("endIf" + ifThenElseNum));
+
+        addLabel("ifTrue" + ifThenElseNum);
+        visit(trueBlock);
+
+        addLabel("endIf" + ifThenElseNum);
+
+        return null;
+    }
+
+    private Instruction dealWithWhile(JmmNode jmmNode, OllirBuildMode mode) {
+        JmmNode condition = jmmNode.getJmmChild(0);
+        JmmNode block = jmmNode.getJmmChild(1);
+
+        int loopNum = whileNum++;
+
+        String conditionKind = condition.getKind();
+
+        boolean notAssignToTemp = conditionKind.equals("ArithmeticBinaryOP") || conditionKind.equals("LogicalBinaryOP")
+                || conditionKind.equals("Boolean") || conditionKind.equals("Neg") || conditionKind.equals("Var");
+
+        addLabel("whileCondition" + loopNum);
+
+        CondBranchInstruction branch = getCondition(condition, notAssignToTemp);
+        branch.setLabel("whileBody" + loopNum);
+        addInstruction(branch);
+        addInstruction(new GotoInstruction("endWhile" + loopNum));
+
+        addLabel("whileBody" + loopNum);
+        visit(block);
+        addInstruction(new GotoInstruction("whileCondition" + loopNum));
+
+        addLabel("endWhile" + loopNum);
+
+        return null;
+    }
+
+    private Instruction dealWithLine(JmmNode jmmNode, OllirBuildMode mode) {
+        visit(jmmNode.getJmmChild(0));
+        return null;
+    }
+
+    private Instruction dealWithAssign(JmmNode jmmNode, OllirBuildMode mode) {
+        JmmNode variable = jmmNode.getJmmChild(0);
+        Operand var = (Operand) getOperand(visit(variable, new OllirBuildMode(false)));
+
+        Binding binding = SemanticHelper.getBinding(symbolTable, variable);
+        Type type = getOllirType(binding.getSymbol().getType());
+
+        if(binding.getKind() == Binding.Kind.FIELD){
+            Element child = getOperand(visit(jmmNode.getJmmChild(1), new OllirBuildMode(type, true)));
+
+            addInstruction(new PutFieldInstruction(getThis(), var, child, new Type(ElementType.VOID)));
+        }
+        else{
+            Instruction child = visit(jmmNode.getJmmChild(1), new OllirBuildMode(type, false));
+
+            addInstruction(new AssignInstruction(var, type, child));
+        }
+
+        return null;
+    }
+
+    private Instruction dealWithArrayAssign(JmmNode jmmNode, OllirBuildMode mode){
+        Operand array = (Operand) getOperand(visit(jmmNode.getJmmChild(0), new OllirBuildMode(false)));
+
+        String varName = array.getName();
+
+        Element index = getOperand(visit(jmmNode.getJmmChild(1), new OllirBuildMode(new Type(ElementType.INT32), true)));
+        Element indexReg = getIndexIntoReg(index, jmmNode);
+
+        Type type = new Type(ElementType.INT32);
+
+        // The OLLIR text drops the parameter index of the array being written
+        ArrayOperand var = new ArrayOperand(varName, type, List.of(indexReg));
+
+        if(isField(jmmNode.getJmmChild(0))){
+            Element val = getOperand(visit(jmmNode.getJmmChild(2), new OllirBuildMode(type, true)));
+
+            addInstruction(new PutFieldInstruction(getThis(), var, val, new Type(ElementType.VOID)));
+        }
+        else{
+            Instruction val = visit(jmmNode.getJmmChild(2), new OllirBuildMode(type, false));
+
+            addInstruction(new AssignInstruction(var, type, val));
+        }
+
+        return null;
+    }
+
+    private Instruction dealWithNeg(JmmNode jmmNode, OllirBuildMode mode) {
+        Element child = getOperand(visit(jmmNode.getJmmChild(0), new OllirBuildMode(new Type(ElementType.BOOLEAN), true)));
+
+        Instruction operation = new UnaryOpInstruction(new Operation(OperationType.NOTB, new Type(ElementType.BOOLEAN)), child);
+
+        if(mode == null || mode.isNeedTempVar()){
+            return new SingleOpInstruction(storeInTemp(jmmNode, new Type(ElementType.BOOLEAN), operation));
+        }
+        else {
+            return operation;
+        }
+    }
+
+    private Instruction dealWithBinaryOP(JmmNode jmmNode, OllirBuildMode mode){
+        String operator = jmmNode.get("op");
+
+        Type returnType = getReturnType(operator);
+
+        Type assignmentType = getOperandType(operator);
+
+        Element left = getOperand(visit(jmmNode.getJmmChild(0), new OllirBuildMode(assignmentType, true)));
+        Element right = getOperand(visit(jmmNode.getJmmChild(1), new OllirBuildMode(assignmentType, true)));
+
+        Instruction operation = new BinaryOpInstruction(left, new Operation(getOperator(operator), returnType), right);
+
+        if(mode == null || mode.isNeedTempVar()){
+            return new SingleOpInstruction(storeInTemp(jmmNode, returnType, operation));
+        } else{
+            return operation;
+        }
+    }
+
+    private Instruction dealWithArray(JmmNode jmmNode, OllirBuildMode mode) {
+        Operand child = (Operand) getOperand(visit(jmmNode.getJmmChild(0), new OllirBuildMode(getIntArrayType(), true)));
+
+        Element index = getOperand(visit(jmmNode.getJmmChild(1), new OllirBuildMode(new Type(ElementType.INT32), true)));
+        Element indexReg = getIndexIntoReg(index, jmmNode);
+
+        ArrayOperand op = new ArrayOperand(child.getName(), new Type(ElementType.INT32), List.of(indexReg));
+        if(child.isParameter())
+            op.setParamId(child.getParamId());
+
+        if(mode == null || mode.isNeedTempVar()){
+            return new SingleOpInstruction(storeInTemp(jmmNode, new Type(ElementType.INT32), new SingleOpInstruction(op)));
+        }
+        return new SingleOpInstruction(op);
+    }
+
+    private Instruction dealWithLength(JmmNode jmmNode, OllirBuildMode mode) {
+        Element child = getOperand(visit(jmmNode.getJmmChild(0), new OllirBuildMode(getIntArrayType(), true)));
+
+        Instruction op = new CallInstruction(CallType.arraylength, child, new Type(ElementType.INT32));
+
+        if(mode == null || mode.isNeedTempVar()){
+            return new SingleOpInstruction(storeInTemp(jmmNode, new Type(ElementType.INT32), op));
+        }
+        return op;
+    }
+
+    private Instruction dealWithFunctionCall(JmmNode jmmNode, OllirBuildMode mode) {
+        JmmNode varNode = jmmNode;
+
+        String varKind = varNode.getJmmChild(0).getKind();
+
+        if(varKind.equals("Parenthesis")){
+            varNode = varNode.getJmmChild(0);
+            varKind = varNode.getJmmChild(0).getKind();
+        }
+
+        Element firstArg;
+        CallType invokeType = CallType.invokevirtual;
+        // Class of the object the method is invoked on, used to find the return type when it is not known
+        String invokeeClass = "";
+
+        if(varKind.equals("This")){
+            firstArg = getThis();
+            invokeeClass = symbolTable.getClassName();
+        }
+        else if(varKind.equals("FunctionCall") || varKind.equals("New") || varKind.equals("NewArray")){
+            firstArg = getOperand(visit(varNode.getJmmChild(0)));
+            if(firstArg.getType() instanceof ClassType classType)
+                invokeeClass = classType.getName();
+        }
+        else{
+            JmmNode variable = varNode.getJmmChild(0).getJmmChild(0);
+            String name = variable.get("var");
+            Binding binding = SemanticHelper.getBinding(symbolTable, variable);
+
+            if(binding != null && binding.isVariable()){
+                Symbol var = binding.getSymbol();
+                // The OLLIR text does not carry the parameter index of the invokee
+                firstArg = new Operand(name, getOllirType(var.getType()));
+                if(!var.getType().isArray())
+                    invokeeClass = var.getType().getName();
+            }
+            else{
+                invokeType = CallType.invokestatic;
+                firstArg = new Operand(name, new ClassType(ElementType.CLASS, symbolTable.getClassName()));
+                if(binding != null)
+                    invokeeClass = name;
+            }
+        }
+
+        String methodName = jmmNode.get("method");
+        ClassIndex.Method importedMethod = SemanticHelper.findImportedMethod(symbolTable, jmmNode);
+
+        Type returnType;
+        if(importedMethod != null && importedMethod.returnType() != null){
+            // The signature in the class file is exact, the context of the call is only a guess
+            returnType = getOllirType(importedMethod.returnType());
+        }
+        else if(mode == null || mode.getType() == null){
+            if(invokeeClass.equals(symbolTable.getClassName())){
+                pt.up.fe.comp.jmm.analysis.table.Type retType = symbolTable.getReturnType(methodName);
+
+                if(retType == null){
+                    returnType = new Type(ElementType.VOID);
+                } else{
+                    returnType = getOllirType(retType);
+                }
+            } else {
+                returnType = new Type(ElementType.VOID);
+            }
+        } else {
+            returnType = mode.getType();
+        }
+
+        List<Symbol> params = symbolTable.getParameters(methodName);
+
+        int argNum = 0;
+
+        ArrayList<Element> args = new ArrayList<>();
+
+        for(JmmNode arg : jmmNode.getJmmChild(1).getChildren()){
+            if(importedMethod != null){
+                pt.up.fe.comp.jmm.analysis.table.Type paramType = importedMethod.parameters().get(argNum);
+                OllirBuildMode argMode = paramType != null ? new OllirBuildMode(getOllirType(paramType), true) : new OllirBuildMode(true);
+                args.add(getOperand(visit(arg, argMode)));
+                argNum++;
+                continue;
+            }
+            if(symbolTable.methodExists(methodName)){
+                Symbol param = params.get(argNum);
+                if(param != null){
+                    Type argType = getOllirType(param.getType());
+                    args.add(getOperand(visit(arg, new OllirBuildMode(argType, true))));
+                    argNum++;
+                    continue;
+                }
+            }
+            args.add(getOperand(visit(arg, new OllirBuildMode(true))));
+            argNum++;
+        }
+
+        Instruction op = new CallInstruction(invokeType, firstArg, getMethodLiteral(methodName), args, returnType);
+
+        if(mode == null || mode.isNeedTempVar()){
+            int tempVar = getAndAddTempVar(jmmNode);
+
+            if(returnType.getTypeOfElement() != ElementType.VOID){
+                addInstruction(new AssignInstruction(new Operand("t" + tempVar, returnType), returnType, op));
+            } else {
+                addInstruction(op);
+            }
+
+            return new SingleOpInstruction(new Operand("t" + tempVar, returnType));
+        }else{
+            return op;
+        }
+    }
+
+    private Instruction dealWithNews(JmmNode jmmNode, OllirBuildMode mode) {
+        boolean isArrayNew = jmmNode.getKind().equals("NewArray");
+
+        Type type;
+        ArrayList<Element> args = new ArrayList<>();
+        Operand newFirstArg;
+
+        if(isArrayNew){
+            type = getIntArrayType();
+            args.add(getOperand(visit(jmmNode.getJmmChild(0))));
+            newFirstArg = new Operand("array", new ArrayType());
+        }
+        else{
+            String className = jmmNode.getJmmChild(0).get("name");
+            type = new ClassType(ElementType.OBJECTREF, className);
+            newFirstArg = new Operand(className, new ClassType(ElementType.OBJECTREF, className));
+        }
+
+        Operand temp = storeInTemp(jmmNode, type, new CallInstruction(CallType.NEW, newFirstArg, args, type));
+
+        if(!isArrayNew)
+            addInstruction(new CallInstruction(CallType.invokespecial, temp, getMethodLiteral("<init>"),
+                    new ArrayList<>(), new Type(ElementType.VOID)));
+
+        return new SingleOpInstruction(new Operand(temp.getName(), type));
+    }
+
+    private Instruction dealWithParenthesis(JmmNode jmmNode, OllirBuildMode mode) {
+        return visit(jmmNode.getJmmChild(0));
+    }
+
+    private Instruction dealWithBoolean(JmmNode jmmNode, OllirBuildMode mode) {
+        return new SingleOpInstruction(new LiteralElement(OllirVisitor.getBoolValue(jmmNode.get("value")), new Type(ElementType.BOOLEAN)));
+    }
+
+    private Instruction dealWithVar(JmmNode jmmNode, OllirBuildMode mode) {
+        jmmNode = jmmNode.getJmmChild(0);
+        String name = jmmNode.get("var");
+
+        Binding binding = SemanticHelper.getBinding(symbolTable, jmmNode);
+        Type type = getOllirType(binding.getSymbol().getType());
+
+        if(binding.getKind() == Binding.Kind.FIELD){
+            Instruction operation = new GetFieldInstruction(getThis(), new Operand(name, type), type);
+
+            if(mode == null || mode.isNeedTempVar()){
+                return new SingleOpInstruction(storeInTemp(jmmNode, type, operation));
+            }else{
+                return operation;
+            }
+        }
+
+        return new SingleOpInstruction(getVariableOperand(binding, type));
+    }
+
+    private Instruction dealWithInt(JmmNode jmmNode, OllirBuildMode mode) {
+        return new SingleOpInstruction(new LiteralElement(jmmNode.get("value"), new Type(ElementType.INT32)));
+    }
+
+    private Instruction dealWithThis(JmmNode jmmNode, OllirBuildMode mode) {
+        return new SingleOpInstruction(new Operand("this", new ClassType(ElementType.OBJECTREF, symbolTable.getClassName())));
+    }
+
+    private Instruction dealWithVariable(JmmNode jmmNode, OllirBuildMode mode){
+        Binding binding = SemanticHelper.getBinding(symbolTable, jmmNode);
+        Type type = getOllirType(binding.getSymbol().getType());
+
+        return new SingleOpInstruction(getVariableOperand(binding, type));
+    }
+
+    private static LiteralElement getMethodLiteral(String methodName){
+        // The OLLIR parser keeps the quotes of the method name
+        return new LiteralElement("\"" + methodName + "\"", new Type(ElementType.STRING));
+    }
+
+    private static ArrayType getIntArrayType(){
+        ArrayType type = new ArrayType();
+        type.setNumDimensions(1);
+        type.setTypeOfElements(ElementType.INT32);
+        return type;
+    }
+
+    public static Type getOllirType(pt.up.fe.comp.jmm.analysis.table.Type type){
+        switch(type.getName()){
+            case "void" -> {
+                return new Type(ElementType.VOID);
+            }
+            case "boolean"->{
+                return new Type(ElementType.BOOLEAN);
+            }
+            case "int" ->{
+                if(type.isArray()){
+                    return getIntArrayType();
+                }
+                else{
+                    return new Type(ElementType.INT32);
+                }
+            }
+            case "String"->{
+                ArrayType arrayType = new ArrayType();
+                arrayType.setNumDimensions(1);
+                arrayType.setTypeOfElements(ElementType.STRING);
+                arrayType.setElementClass("String");
+                return arrayType;
+            }
+            default -> {
+                return new ClassType(ElementType.OBJECTREF, type.getName());
+            }
+        }
+    }
+
+    public static OperationType getOperator(String operator){
+        return switch (operator){
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "&&" -> OperationType.ANDB;
+            case "<" -> OperationType.LTH;
+            default -> throw new RuntimeException("Invalid operator '" + operator + "'");
+        };
+    }
+
+    public static Type getReturnType(String operator){
+        return switch(operator){
+            case "+", "-", "*", "/" -> new Type(ElementType.INT32);
+            case "&&", "<" -> new Type(ElementType.BOOLEAN);
+            default -> throw new RuntimeException("Invalid operator '" + operator + "'");
+        };
+    }
+
+    public static Type getOperandType(String operator){
+        return switch(operator){
+            case "+", "<", "-", "*", "/" -> new Type(ElementType.INT32);
+            case "&&"-> new Type(ElementType.BOOLEAN);
+            default -> throw new RuntimeException("Invalid operator '" + operator + "'");
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the OllirResult of a ClassUnit built by {@link OllirBuilder}.
+ * <p>
+ * The public constructors of OllirResult all parse OLLIR text, so the result is a subclass that returns the built
+ * class and the stage's data from its getters. The constructor it has to call parses an empty class, which takes
+ * microseconds, instead of the program.
+ */
+public class OllirResultFactory {
+
+    private static final String EMPTY_CLASS = "Empty {\n}\n";
+
+    private OllirResultFactory() {
+    }
+
+    /**
+     * @param ollirCode textual OLLIR of the class, kept as the result's OLLIR code, or null when it was not generated
+     */
+    public static OllirResult create(JmmSemanticsResult semanticsResult, String ollirCode, ClassUnit classUnit) {
+        return new BuiltOllirResult(ollirCode, classUnit, semanticsResult.getSymbolTable(),
+                new ArrayList<>(semanticsResult.getReports()), semanticsResult.getConfig());
+    }
+
+    private static class BuiltOllirResult extends OllirResult {
+
+        private final String ollirCode;
+        private final ClassUnit ollirClass;
+        private final SymbolTable symbolTable;
+        private final List<Report> reports;
+        private final Map<String, String> config;
+
+        BuiltOllirResult(String ollirCode, ClassUnit ollirClass, SymbolTable symbolTable, List<Report> reports,
+                         Map<String, String> config) {
+            super(EMPTY_CLASS, config);
+
+            this.ollirCode = ollirCode;
+            this.ollirClass = ollirClass;
+            this.symbolTable = symbolTable;
+            this.reports = reports;
+            this.config = config;
+        }
+
+        @Override
+        public String getOllirCode() {
+            return ollirCode;
+        }
+
+        @Override
+        public ClassUnit getOllirClass() {
+            return ollirClass;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable() {
+            return symbolTable;
+        }
+
+        @Override
+        public List<Report> getReports() {
+            return reports;
+        }
+
+        @Override
+        public Map<String, String> getConfig() {
+            return config;
+        }
+    }
+}
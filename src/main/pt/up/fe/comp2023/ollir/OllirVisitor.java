@@ -5,8 +5,11 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.analysis.Binding;
+import pt.up.fe.comp2023.analysis.ClassIndex;
 import pt.up.fe.comp2023.analysis.SimpleSymbolTable;
 import pt.up.fe.comp2023.analysis.SemanticHelper;
+import pt.up.fe.comp2023.analysis.Types;
 
 import java.util.*;
 import java.util.stream.Collectors;
@@ -263,7 +266,7 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
         String conditionKind = condition.getKind();
 
         boolean notAssignToTemp = conditionKind.equals("ArithmeticBinaryOP") || conditionKind.equals("LogicalBinaryOP")
-                || conditionKind.equals("Boolean") || conditionKind.equals("Neg") || (conditionKind.equals("Var") && ((SimpleSymbolTable)symbolTable).isField(getCurrentMethod(jmmNode).get("methodName"), condition.getJmmChild(0).get("var")));
+                || conditionKind.equals("Boolean") || conditionKind.equals("Neg") || (conditionKind.equals("Var") && isField(condition.getJmmChild(0)));
 
         String conditionRegOrExpression = visit(condition, new OllirMode(".bool", !notAssignToTemp));
 
@@ -327,19 +330,16 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
     }
 
     private String dealWithAssign(JmmNode jmmNode, OllirMode ollirMode) {
-        String var = visit(jmmNode.getJmmChild(0), new OllirMode(false));
-
-        String varName = getOllirNameNoTypeOrParam(var);
+        JmmNode variable = jmmNode.getJmmChild(0);
+        String var = visit(variable, new OllirMode(false));
 
         String type;
 
-        JmmNode method = getCurrentMethod(jmmNode);
-
-        String methodName = method.get("methodName");
+        Binding binding = getBinding(variable);
 
-        type = getOllirType(((SimpleSymbolTable) symbolTable).getVariable(methodName, varName).getType());
+        type = getOllirType(binding.getSymbol().getType());
 
-        if(((SimpleSymbolTable) symbolTable).isField(methodName, varName)){
+        if(binding.getKind() == Binding.Kind.FIELD){
             String child = visit(jmmNode.getJmmChild(1), new OllirMode(type, true));
 
             code.append(getIndentation()).append("putfield(this, ").append(var).append(", ").append(child).append(").V;\n");
@@ -368,11 +368,7 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
 
         String type = ".i32";
 
-        JmmNode method = getCurrentMethod(jmmNode);
-
-        String methodName = method.get("methodName");
-
-        if(((SimpleSymbolTable) symbolTable).isField(methodName, varName)){
+        if(isField(jmmNode.getJmmChild(0))){
             String val = visit(jmmNode.getJmmChild(2), new OllirMode(type, true));
 
             code.append(getIndentation()).append("putfield(this, ").append(var).append(", ").append(val).append(").V;\n");
@@ -483,8 +479,7 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
         }
 
         String firstArg;
-
-        JmmNode method = getCurrentMethod(jmmNode);
+        boolean isImportedClass = false;
 
         if(varKind.equals("This")){
             firstArg = "this";
@@ -493,21 +488,27 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
             firstArg = visit(varNode.getJmmChild(0));
         }
         else{
-            firstArg = varNode.getJmmChild(0).getJmmChild(0).get("var");
-            Symbol var = ((SimpleSymbolTable)symbolTable).getVariable(method.get("methodName"), firstArg);
-            if(var != null){
-                firstArg += getOllirType(((SimpleSymbolTable)symbolTable).getVariable(method.get("methodName"), firstArg).getType());
+            JmmNode variable = varNode.getJmmChild(0).getJmmChild(0);
+            firstArg = variable.get("var");
+            Binding binding = getBinding(variable);
+            if(binding != null && binding.isVariable()){
+                firstArg += getOllirType(binding.getSymbol().getType());
             }
+            isImportedClass = binding != null && binding.getKind() == Binding.Kind.IMPORT;
         }
         String invokeType = getInvoke(firstArg, symbolTable);
         String methodName = jmmNode.get("method");
+        ClassIndex.Method importedMethod = SemanticHelper.findImportedMethod((SimpleSymbolTable) symbolTable, jmmNode);
 
         String returnType;
-        if(ollirMode == null || ollirMode.getType() == null){
+        if(importedMethod != null && importedMethod.returnType() != null){
+            returnType = getOllirType(importedMethod.returnType());
+        }
+        else if(ollirMode == null || ollirMode.getType() == null){
             String type;
             if(firstArg.equals("this")){
                 type = symbolTable.getClassName();
-            } else if(((SimpleSymbolTable)symbolTable).isImportedClass(method.get("methodName"), firstArg)){
+            } else if(isImportedClass){
                 type = firstArg;
             }else{
                 type = getOllirNameNoParam(firstArg);
@@ -535,6 +536,13 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
         List<String> args = new ArrayList<>();
 
         for(JmmNode arg : jmmNode.getJmmChild(1).getChildren()){
+            if(importedMethod != null){
+                Type paramType = importedMethod.parameters().get(argNum);
+                OllirMode argMode = paramType != null ? new OllirMode(getOllirType(paramType), true) : new OllirMode(true);
+                args.add(visit(arg, argMode));
+                argNum++;
+                continue;
+            }
             if(((SimpleSymbolTable)symbolTable).methodExists(methodName)){
                 Symbol param = params.get(argNum);
                 if(param != null){
@@ -626,14 +634,11 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
         String name = jmmNode.get("var");
         String type;
 
-        JmmNode method = getCurrentMethod(jmmNode);
-
-
-        String methodName = method.get("methodName");
+        Binding binding = getBinding(jmmNode);
 
-        type = getOllirType(((SimpleSymbolTable)symbolTable).getVariable(methodName, name).getType());
+        type = getOllirType(binding.getSymbol().getType());
 
-        if(((SimpleSymbolTable)symbolTable).isField(methodName, name)){
+        if(binding.getKind() == Binding.Kind.FIELD){
             String operation = "getfield(this, " + name + type + ")" + type;
 
             if(ollirMode == null || ollirMode.isNeedTempVar()){
@@ -646,9 +651,7 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
                 return operation;
             }
         }
-        String reference = ((SimpleSymbolTable)symbolTable).getOllirLikeReference(methodName, name);
-
-        return reference + name + type;
+        return getOllirLikeReference(binding) + name + type;
     }
 
     private String dealWithInt(JmmNode jmmNode, OllirMode ollirMode) {
@@ -663,16 +666,27 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
         String name = jmmNode.get("var");
         String type;
 
-        JmmNode method = getCurrentMethod(jmmNode);
+        Binding binding = getBinding(jmmNode);
 
+        type = getOllirType(binding.getSymbol().getType());
 
-        String methodName = method.get("methodName");
+        return getOllirLikeReference(binding) + name + type;
+    }
 
-        type = getOllirType(((SimpleSymbolTable)symbolTable).getVariable(methodName, name).getType());
+    private Binding getBinding(JmmNode variableId){
+        return SemanticHelper.getBinding((SimpleSymbolTable) symbolTable, variableId);
+    }
 
-        String reference = ((SimpleSymbolTable)symbolTable).getOllirLikeReference(methodName, name);
+    private boolean isField(JmmNode variableId){
+        Binding binding = getBinding(variableId);
 
-        return reference + name + type;
+        return binding != null && binding.getKind() == Binding.Kind.FIELD;
+    }
+
+    private static String getOllirLikeReference(Binding binding){
+        int id = binding.getParameterIndex();
+
+        return id == -1 ? "" : "$" + id + ".";
     }
 
 
@@ -681,28 +695,7 @@ public class OllirVisitor extends AJmmVisitor<OllirMode, String> {
     }
 
     public static String getOllirType(Type type){
-        switch(type.getName()){
-            case "void" -> {
-                return ".V";
-            }
-            case "boolean"->{
-                return ".bool";
-            }
-            case "int" ->{
-                if(type.isArray()){
-                    return ".array.i32";
-                }
-                else{
-                    return ".i32";
-                }
-            }
-            case "String"->{
-                return ".array.String";
-            }
-            default -> {
-                return "." + type.getName();
-            }
-        }
+        return Types.ollirSuffix(type);
     }
 
     public static String getInvoke(String invokee, SymbolTable symbolTable){
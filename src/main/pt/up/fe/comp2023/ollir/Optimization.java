@@ -1,56 +1,210 @@
 package pt.up.fe.comp2023.ollir;
 
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.otimization.ConstantPropagation.SparseConstantPropagation;
 import pt.up.fe.comp2023.otimization.Constants.ConstFolding;
-import pt.up.fe.comp2023.otimization.Constants.ConstPropagationVisitor;
 import pt.up.fe.comp2023.otimization.Constants.DeadCodeVisitor;
 import pt.up.fe.comp2023.otimization.RegisterAllocation.RegisterAllocation;
+import pt.up.fe.comp2023.profiling.AstPassEvent;
+import pt.up.fe.comp2023.profiling.Profiler;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 public class Optimization implements JmmOptimization {
+
+    // Bounds the rounds over a single method, in case the passes keep undoing each other
+    private static final int MAX_ITERATIONS_PER_METHOD = 100;
+
     @Override
     public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
 
         if (!semanticsResult.getConfig().containsKey("optimize") || !semanticsResult.getConfig().get("optimize").equals("true"))
             return JmmOptimization.super.optimize(semanticsResult);
 
-        ConstPropagationVisitor constPropagationVisitor = new ConstPropagationVisitor();
+        // Constants are propagated later, over the OLLIR of each method
         ConstFolding constFolding = new ConstFolding();
         DeadCodeVisitor deadCodeVisitor = new DeadCodeVisitor(semanticsResult.getSymbolTable());
 
-        boolean modifications ;
-        do {
-            modifications = constPropagationVisitor.visit(semanticsResult.getRootNode());
-            System.out.println(modifications);
-            modifications = constFolding.visit(semanticsResult.getRootNode()) || modifications;
-            System.out.println(modifications);
-            modifications = deadCodeVisitor.visit(semanticsResult.getRootNode()) || modifications;
+        List<Pass> passes = List.of(
+                new Pass("ConstFolding", constFolding::visit),
+                new Pass("DeadCode", deadCodeVisitor::visit));
+
+        // The passes only look inside one method, so a method that did not change in a round is already optimal and
+        // is not visited again. Each round only goes over the methods changed by the previous one.
+        List<JmmNode> worklist = getMethods(semanticsResult.getRootNode());
+        Map<JmmNode, Integer> methodIterations = new IdentityHashMap<>();
+        int rounds = 0;
+
+        while (!worklist.isEmpty()) {
+            List<JmmNode> changedMethods = new ArrayList<>();
+
+            try (var ignored = Profiler.phase("optimizeIteration", ++rounds)) {
+                for (JmmNode method : worklist) {
+                    if (!runPasses(passes, method))
+                        continue;
+
+                    if (methodIterations.merge(method, 1, Integer::sum) < MAX_ITERATIONS_PER_METHOD)
+                        changedMethods.add(method);
+                    else
+                        Profiler.count("optimizationCappedMethods", 1);
+                }
+            }
+
+            worklist = changedMethods;
+        }
 
-            System.out.println("END");
-        }while (modifications);
+        Profiler.count("optimizationIterations", rounds);
+        for (Pass pass : passes)
+            pass.report();
 
         return JmmOptimization.super.optimize(semanticsResult);
     }
 
+    private static List<JmmNode> getMethods(JmmNode root) {
+        List<JmmNode> methods = new ArrayList<>();
+
+        for (JmmNode node : root.getChildren()) {
+            if (!node.getKind().equals("ClassDeclaration"))
+                continue;
+
+            for (JmmNode child : node.getChildren()) {
+                if (child.getKind().equals("Methods"))
+                    methods.addAll(child.getChildren());
+            }
+        }
+
+        return methods;
+    }
+
+    /**
+     * Runs every pass once over the method, returning whether any of them changed it.
+     */
+    private static boolean runPasses(List<Pass> passes, JmmNode method) {
+        boolean modifications = false;
+
+        for (Pass pass : passes)
+            modifications = pass.run(method) || modifications;
+
+        return modifications;
+    }
+
+    /**
+     * AST pass with the number of methods it ran over, how many of them it changed and the time it took, reported as
+     * profile counters.
+     */
+    private static class Pass {
+        private final String name;
+        private final Function<JmmNode, Boolean> visitor;
+        private long runs = 0;
+        private long changes = 0;
+        private long nanos = 0;
+
+        Pass(String name, Function<JmmNode, Boolean> visitor) {
+            this.name = name;
+            this.visitor = visitor;
+        }
+
+        /**
+         * Runs the pass over a method, emitting an {@link AstPassEvent} while Flight Recorder is recording.
+         */
+        boolean run(JmmNode method) {
+            long start = System.nanoTime();
+            boolean changed = visit(method);
+            nanos += System.nanoTime() - start;
+
+            runs++;
+            if (changed)
+                changes++;
+
+            return changed;
+        }
+
+        private boolean visit(JmmNode method) {
+            AstPassEvent event = new AstPassEvent();
+            if (!event.isEnabled())
+                return visitor.apply(method);
+
+            event.pass = name;
+            event.method = getMethodName(method);
+            event.nodesBefore = countNodes(method);
+            event.begin();
+
+            boolean changed = visitor.apply(method);
+
+            event.end();
+            event.nodesAfter = countNodes(method);
+            event.changed = changed || event.nodesBefore != event.nodesAfter;
+            event.commit();
+
+            return changed;
+        }
+
+        void report() {
+            Profiler.count("pass" + name + "Runs", runs);
+            Profiler.count("pass" + name + "Changes", changes);
+            Profiler.count("pass" + name + "Nanos", nanos);
+        }
+    }
+
+    private static String getMethodName(JmmNode method) {
+        if (method.getNumChildren() > 0 && method.getJmmChild(0).getKind().equals("MainDeclaration"))
+            return "main";
+
+        return method.getOptional("methodName").orElse("?");
+    }
+
+    private static int countNodes(JmmNode node) {
+        int count = 1;
+        for (JmmNode child : node.getChildren())
+            count += countNodes(child);
+        return count;
+    }
+
+    /**
+     * Builds the OLLIR class directly from the AST. The textual OLLIR is only a debug dump: it is generated and printed
+     * when the debug option is set, and otherwise {@link OllirResult#getOllirCode()} is null.
+     */
     @Override
     public OllirResult toOllir(JmmSemanticsResult jmmSemanticsResult) {
         System.out.println("Generating OLLIR ...");
 
-        OllirVisitor ollirVisitor = new OllirVisitor(jmmSemanticsResult.getSymbolTable());
-        ollirVisitor.visit(jmmSemanticsResult.getRootNode());
+        String ollirCode = null;
+        if ("true".equals(jmmSemanticsResult.getConfig().get("debug"))) {
+            try (var ignored = Profiler.phase("ollirDump")) {
+                OllirVisitor ollirVisitor = new OllirVisitor(jmmSemanticsResult.getSymbolTable());
+                ollirVisitor.visit(jmmSemanticsResult.getRootNode());
+
+                ollirCode = ollirVisitor.getCode();
+            }
+
+            System.out.println("ollir: \n" + ollirCode);
+        }
 
-        String ollirCode = ollirVisitor.getCode();
+        ClassUnit classUnit;
+        try (var ignored = Profiler.phase("ollirGeneration")) {
+            OllirBuilder ollirBuilder = new OllirBuilder(jmmSemanticsResult.getSymbolTable());
+            ollirBuilder.visit(jmmSemanticsResult.getRootNode());
 
-        System.out.println("ollir: \n" + ollirCode);
+            classUnit = ollirBuilder.getClassUnit();
+        }
 
-        return new OllirResult(jmmSemanticsResult, ollirCode, Collections.emptyList());
+        return OllirResultFactory.create(jmmSemanticsResult, ollirCode, classUnit);
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
+        if ("true".equals(ollirResult.getConfig().get("optimize")))
+            propagateConstants(ollirResult.getOllirClass());
+
         String localVariablesN = ollirResult.getConfig().get("registerAllocation");
         int localVariables = localVariablesN == null ? -1 : Integer.parseInt(localVariablesN);
 
@@ -59,10 +213,25 @@ public class Optimization implements JmmOptimization {
 
         System.out.println("Optimizing OLLIR ... with n= " + localVariables);
 
-        RegisterAllocation registerAllocation = new RegisterAllocation(ollirResult);
-        registerAllocation.otimize(localVariables);
+        try (var ignored = Profiler.phase("registerAllocation")) {
+            RegisterAllocation registerAllocation = new RegisterAllocation(ollirResult);
+            registerAllocation.otimize(localVariables);
+        }
 
         return ollirResult;
 
     }
+
+    private static void propagateConstants(ClassUnit classUnit) {
+        try (var ignored = Profiler.phase("constantPropagation")) {
+            for (Method method : classUnit.getMethods()) {
+                SparseConstantPropagation propagation = new SparseConstantPropagation(method);
+                propagation.optimize();
+
+                Profiler.count("propagatedConstants", propagation.getPropagatedConstants());
+                Profiler.count("foldedBranches", propagation.getFoldedBranches());
+                Profiler.count("removedInstructions", propagation.getRemovedInstructions());
+            }
+        }
+    }
 }
@@ -0,0 +1,403 @@
+package pt.up.fe.comp2023.otimization.ConstantPropagation;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.otimization.ControlFlow.BasicBlock;
+import pt.up.fe.comp2023.otimization.ControlFlow.ControlFlowGraph;
+import pt.up.fe.comp2023.otimization.ControlFlow.InstructionReads;
+import pt.up.fe.comp2023.otimization.ControlFlow.Instructions;
+
+import java.util.*;
+
+/**
+ * Sparse conditional constant propagation (Wegman and Zadeck) over the SSA form of an OLLIR method.
+ * <p>
+ * Every value starts as undefined and is only lowered, to a constant and then to unknown, so the analysis finishes
+ * after a number of steps linear in the size of the method. Only the edges a branch can take with the values known so
+ * far are followed, which lets constants flow through loops and past branches that are never taken.
+ * <p>
+ * The method is then rewritten: reads of constants become literals, assignments of constants and branches with a
+ * constant condition are folded, unreachable blocks are dropped and so are the assignments of constants that are no
+ * longer read.
+ */
+public class SparseConstantPropagation {
+
+    private static final int UNDEFINED = 0;
+    private static final int CONSTANT = 1;
+    private static final int UNKNOWN = 2;
+
+    private final Method method;
+    private final ControlFlowGraph cfg;
+    private final SsaForm ssa;
+    private final Map<Instruction, BasicBlock> blockOf;
+    private final int[] states;
+    private final int[] constants;
+    private final boolean[] executableEdges;
+    private final boolean[] reachedBlocks;
+    private final Deque<BasicBlock.Edge> edgeWorklist;
+    private final Deque<Integer> valueWorklist;
+
+    private int propagatedConstants = 0;
+    private int foldedBranches = 0;
+    private int removedInstructions = 0;
+
+    public SparseConstantPropagation(Method method) {
+        this.method = method;
+        this.cfg = new ControlFlowGraph(method);
+        this.ssa = new SsaForm(cfg);
+        this.blockOf = new IdentityHashMap<>();
+        this.states = new int[ssa.getNumberOfValues()];
+        this.constants = new int[ssa.getNumberOfValues()];
+        this.executableEdges = new boolean[cfg.getEdges().size()];
+        this.reachedBlocks = new boolean[cfg.getBlocks().size()];
+        this.edgeWorklist = new ArrayDeque<>();
+        this.valueWorklist = new ArrayDeque<>();
+
+        // The variables hold whatever the caller passed when the method starts
+        Arrays.fill(states, 0, ssa.getNumberOfVariables(), UNKNOWN);
+
+        for (BasicBlock block : cfg.getBlocks()) {
+            for (Instruction instruction : block.getInstructions())
+                blockOf.put(instruction, block);
+        }
+    }
+
+    public int getPropagatedConstants() {
+        return propagatedConstants;
+    }
+
+    public int getFoldedBranches() {
+        return foldedBranches;
+    }
+
+    public int getRemovedInstructions() {
+        return removedInstructions;
+    }
+
+    /**
+     * Analyses and rewrites the method, returning whether it changed.
+     */
+    public boolean optimize() {
+        if (cfg.getBlocks().isEmpty())
+            return false;
+
+        analyze();
+        rewrite();
+
+        return propagatedConstants + foldedBranches + removedInstructions > 0;
+    }
+
+    private void analyze() {
+        reachedBlocks[cfg.getEntry().getId()] = true;
+        visitBlock(cfg.getEntry());
+
+        while (!edgeWorklist.isEmpty() || !valueWorklist.isEmpty()) {
+            while (!edgeWorklist.isEmpty()) {
+                BasicBlock.Edge edge = edgeWorklist.poll();
+                BasicBlock target = edge.to();
+
+                if (reachedBlocks[target.getId()]) {
+                    for (SsaForm.Phi phi : ssa.getPhis(target))
+                        evaluatePhi(phi);
+                } else {
+                    reachedBlocks[target.getId()] = true;
+                    visitBlock(target);
+                }
+            }
+
+            while (!valueWorklist.isEmpty()) {
+                int value = valueWorklist.poll();
+
+                for (SsaForm.Phi phi : ssa.getPhiUsers(value)) {
+                    if (reachedBlocks[phi.getBlock().getId()])
+                        evaluatePhi(phi);
+                }
+
+                for (Instruction instruction : ssa.getInstructionUsers(value)) {
+                    if (reachedBlocks[blockOf.get(instruction).getId()])
+                        evaluateInstruction(instruction);
+                }
+            }
+        }
+    }
+
+    private void visitBlock(BasicBlock block) {
+        for (SsaForm.Phi phi : ssa.getPhis(block))
+            evaluatePhi(phi);
+
+        for (Instruction instruction : block.getInstructions())
+            evaluateInstruction(instruction);
+
+        // Branches choose their edges when evaluated, every other block always leaves through all of its edges
+        if (block.getLastInstruction().getInstType() != InstructionType.BRANCH) {
+            for (BasicBlock.Edge edge : block.getSuccessors())
+                markExecutable(edge);
+        }
+    }
+
+    private void markExecutable(BasicBlock.Edge edge) {
+        if (executableEdges[edge.id()])
+            return;
+
+        executableEdges[edge.id()] = true;
+        edgeWorklist.add(edge);
+    }
+
+    private void evaluatePhi(SsaForm.Phi phi) {
+        // Values reaching the entry block from the start of the method are unknown
+        if (phi.getBlock() == cfg.getEntry()) {
+            setValue(phi.getValue(), UNKNOWN, 0);
+            return;
+        }
+
+        int state = UNDEFINED;
+        int constant = 0;
+
+        for (BasicBlock.Edge edge : phi.getBlock().getPredecessors()) {
+            if (!executableEdges[edge.id()])
+                continue;
+
+            int operand = phi.getOperand(edge);
+            int operandState = states[operand];
+
+            if (operandState == UNKNOWN || (operandState == CONSTANT && state == CONSTANT && constants[operand] != constant)) {
+                state = UNKNOWN;
+                break;
+            }
+
+            if (operandState == CONSTANT) {
+                state = CONSTANT;
+                constant = constants[operand];
+            }
+        }
+
+        setValue(phi.getValue(), state, constant);
+    }
+
+    private void evaluateInstruction(Instruction instruction) {
+        int definition = ssa.getDefinition(instruction);
+        if (definition >= 0) {
+            long result = evaluate(((AssignInstruction) instruction).getRhs(), instruction);
+            setValue(definition, (int) (result >> 32), (int) result);
+            return;
+        }
+
+        if (instruction.getInstType() != InstructionType.BRANCH)
+            return;
+
+        CondBranchInstruction branch = (CondBranchInstruction) instruction;
+        List<BasicBlock.Edge> successors = blockOf.get(instruction).getSuccessors();
+        long condition = evaluate(branch.getCondition(), instruction);
+
+        switch ((int) (condition >> 32)) {
+            case CONSTANT -> {
+                // The taken edge comes first, the fallthrough second
+                int edge = (int) condition != 0 ? 0 : 1;
+                if (edge < successors.size())
+                    markExecutable(successors.get(edge));
+            }
+            case UNKNOWN -> successors.forEach(this::markExecutable);
+            default -> {
+            }
+        }
+    }
+
+    private void setValue(int value, int state, int constant) {
+        // Values only ever go down the lattice
+        if (state < states[value] || (state == states[value] && (state != CONSTANT || constant == constants[value])))
+            return;
+        if (states[value] == CONSTANT && state == CONSTANT)
+            state = UNKNOWN;
+
+        states[value] = state;
+        constants[value] = constant;
+        valueWorklist.add(value);
+    }
+
+    /**
+     * Value of an operation, packed as the lattice state in the high half and the constant in the low half.
+     */
+    private long evaluate(Instruction operation, Instruction owner) {
+        switch (operation.getInstType()) {
+            case NOPER -> {
+                return evaluate(((SingleOpInstruction) operation).getSingleOperand(), owner);
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOpInstruction = (UnaryOpInstruction) operation;
+                long operand = evaluate(unaryOpInstruction.getOperand(), owner);
+
+                if (unaryOpInstruction.getOperation().getOpType() != OperationType.NOTB)
+                    return pack(UNKNOWN, 0);
+                if ((int) (operand >> 32) != CONSTANT)
+                    return operand;
+                return pack(CONSTANT, (int) operand == 0 ? 1 : 0);
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOpInstruction = (BinaryOpInstruction) operation;
+                return evaluateBinary(binaryOpInstruction.getOperation().getOpType(),
+                        evaluate(binaryOpInstruction.getLeftOperand(), owner),
+                        evaluate(binaryOpInstruction.getRightOperand(), owner));
+            }
+            default -> {
+                // Calls, field reads and array accesses
+                return pack(UNKNOWN, 0);
+            }
+        }
+    }
+
+    private long evaluate(Element element, Instruction owner) {
+        if (element instanceof LiteralElement literalElement) {
+            ElementType type = element.getType().getTypeOfElement();
+            if (type != ElementType.INT32 && type != ElementType.BOOLEAN)
+                return pack(UNKNOWN, 0);
+
+            try {
+                return pack(CONSTANT, Integer.parseInt(literalElement.getLiteral()));
+            } catch (NumberFormatException e) {
+                return pack(UNKNOWN, 0);
+            }
+        }
+
+        for (SsaForm.Use use : ssa.getUses(owner)) {
+            if (use.getElement() == element)
+                return pack(states[use.getValue()], constants[use.getValue()]);
+        }
+
+        return pack(UNKNOWN, 0);
+    }
+
+    private static long evaluateBinary(OperationType operation, long left, long right) {
+        int leftState = (int) (left >> 32);
+        int rightState = (int) (right >> 32);
+        int leftConstant = (int) left;
+        int rightConstant = (int) right;
+
+        // false && x is false whatever x is
+        if (operation == OperationType.ANDB
+                && ((leftState == CONSTANT && leftConstant == 0) || (rightState == CONSTANT && rightConstant == 0)))
+            return pack(CONSTANT, 0);
+
+        if (leftState == UNKNOWN || rightState == UNKNOWN)
+            return pack(UNKNOWN, 0);
+        if (leftState == UNDEFINED || rightState == UNDEFINED)
+            return pack(UNDEFINED, 0);
+
+        int result;
+        switch (operation) {
+            case ADD -> result = leftConstant + rightConstant;
+            case SUB -> result = leftConstant - rightConstant;
+            case MUL -> result = leftConstant * rightConstant;
+            case DIV -> {
+                // Left for the division to throw at run time
+                if (rightConstant == 0)
+                    return pack(UNKNOWN, 0);
+                result = leftConstant / rightConstant;
+            }
+            case AND, ANDB -> result = leftConstant & rightConstant;
+            case OR, ORB -> result = leftConstant | rightConstant;
+            case XOR -> result = leftConstant ^ rightConstant;
+            case LTH -> result = leftConstant < rightConstant ? 1 : 0;
+            case GTH -> result = leftConstant > rightConstant ? 1 : 0;
+            case LTE -> result = leftConstant <= rightConstant ? 1 : 0;
+            case GTE -> result = leftConstant >= rightConstant ? 1 : 0;
+            case EQ -> result = leftConstant == rightConstant ? 1 : 0;
+            case NEQ -> result = leftConstant != rightConstant ? 1 : 0;
+            default -> {
+                return pack(UNKNOWN, 0);
+            }
+        }
+
+        return pack(CONSTANT, result);
+    }
+
+    private static long pack(int state, int constant) {
+        return ((long) state << 32) | (constant & 0xFFFFFFFFL);
+    }
+
+    private void rewrite() {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Instruction> replacements = new IdentityHashMap<>();
+
+        for (Instruction instruction : instructions) {
+            if (!reachedBlocks[blockOf.get(instruction).getId()]) {
+                replacements.put(instruction, null);
+                continue;
+            }
+
+            Instruction replacement = rewrite(instruction);
+            if (replacement != instruction)
+                replacements.put(instruction, replacement);
+        }
+
+        // Assignments of constants whose variable is no longer read anywhere
+        Set<String> readVariables = new HashSet<>();
+        for (Instruction instruction : instructions) {
+            Instruction current = replacements.getOrDefault(instruction, instruction);
+            if (current != null)
+                InstructionReads.visit(current, (element, replacement) -> {
+                    if (SsaForm.isTracked(element))
+                        readVariables.add(((Operand) element).getName());
+                });
+        }
+        for (Instruction instruction : instructions) {
+            Instruction current = replacements.getOrDefault(instruction, instruction);
+            if (current != null && isConstantAssignment(current)
+                    && !readVariables.contains(SsaForm.getAssignedVariable(current)))
+                replacements.put(instruction, null);
+        }
+
+        if (replacements.isEmpty())
+            return;
+
+        // A removed instruction that was reached is a branch never taken, which falls through to the next one that
+        // stays, so that one takes its labels
+        removedInstructions += Instructions.rewrite(method, instruction -> replacements.getOrDefault(instruction, instruction));
+    }
+
+    /**
+     * Returns the instruction that takes the place of the given reached one: itself, with its reads of constants
+     * replaced, a new instruction, or null when it is removed.
+     */
+    private Instruction rewrite(Instruction instruction) {
+        int definition = ssa.getDefinition(instruction);
+        if (definition >= 0 && states[definition] == CONSTANT) {
+            AssignInstruction assignInstruction = (AssignInstruction) instruction;
+            if (isConstantAssignment(assignInstruction))
+                return instruction;
+
+            propagatedConstants++;
+            Element dest = assignInstruction.getDest();
+            return new AssignInstruction(dest, assignInstruction.getTypeOfAssign(),
+                    new SingleOpInstruction(newLiteral(constants[definition], dest.getType())));
+        }
+
+        if (instruction.getInstType() == InstructionType.BRANCH) {
+            long condition = evaluate(((CondBranchInstruction) instruction).getCondition(), instruction);
+
+            if ((int) (condition >> 32) == CONSTANT) {
+                foldedBranches++;
+                return (int) condition != 0 ? new GotoInstruction(((CondBranchInstruction) instruction).getLabel()) : null;
+            }
+        }
+
+        for (SsaForm.Use use : ssa.getUses(instruction)) {
+            if (use.isReplaceable() && states[use.getValue()] == CONSTANT) {
+                use.replace(newLiteral(constants[use.getValue()], use.getElement().getType()));
+                propagatedConstants++;
+            }
+        }
+
+        return instruction;
+    }
+
+    private static boolean isConstantAssignment(Instruction instruction) {
+        if (SsaForm.getAssignedVariable(instruction) == null)
+            return false;
+
+        Instruction rhs = ((AssignInstruction) instruction).getRhs();
+        return rhs.getInstType() == InstructionType.NOPER && ((SingleOpInstruction) rhs).getSingleOperand().isLiteral();
+    }
+
+    private static LiteralElement newLiteral(int constant, Type type) {
+        return new LiteralElement(String.valueOf(constant), new Type(type.getTypeOfElement()));
+    }
+}
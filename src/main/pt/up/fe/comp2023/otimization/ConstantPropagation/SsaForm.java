@@ -0,0 +1,340 @@
+package pt.up.fe.comp2023.otimization.ConstantPropagation;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.otimization.ControlFlow.BasicBlock;
+import pt.up.fe.comp2023.otimization.ControlFlow.ControlFlowGraph;
+import pt.up.fe.comp2023.otimization.ControlFlow.InstructionReads;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * SSA numbering of the int and boolean variables of a method, kept beside the OLLIR instructions instead of rewriting
+ * them: every assignment to one of those variables defines a new value, every read is bound to the value that reaches
+ * it, and the values that meet at a join point are merged by a phi.
+ * <p>
+ * Phis are placed at the iterated dominance frontiers of the assignments (Cytron et al.) and the names are bound by a
+ * walk over the dominator tree. Values 0 to n-1 are the values the n variables have when the method starts.
+ */
+public class SsaForm {
+
+    private final ControlFlowGraph cfg;
+    private final Map<String, Integer> variables;
+    private final List<String> variableNames;
+    private final Map<Instruction, List<Use>> uses;
+    private final Map<Instruction, Integer> definitions;
+    private final List<List<Phi>> phis;
+    private final List<List<Instruction>> instructionUsers;
+    private final List<List<Phi>> phiUsers;
+    private int numberOfValues;
+
+    public SsaForm(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        this.variables = new HashMap<>();
+        this.variableNames = new ArrayList<>();
+        this.uses = new IdentityHashMap<>();
+        this.definitions = new IdentityHashMap<>();
+        this.phis = new ArrayList<>();
+        this.instructionUsers = new ArrayList<>();
+        this.phiUsers = new ArrayList<>();
+
+        for (int i = 0; i < cfg.getBlocks().size(); i++)
+            phis.add(new ArrayList<>());
+
+        collectVariables();
+        numberOfValues = variableNames.size();
+        placePhis();
+        rename();
+        collectUsers();
+    }
+
+    public int getNumberOfValues() {
+        return numberOfValues;
+    }
+
+    public int getNumberOfVariables() {
+        return variableNames.size();
+    }
+
+    public String getVariableName(int variable) {
+        return variableNames.get(variable);
+    }
+
+    /**
+     * Reads of tracked variables by the instruction, empty when it reads none.
+     */
+    public List<Use> getUses(Instruction instruction) {
+        return uses.getOrDefault(instruction, Collections.emptyList());
+    }
+
+    /**
+     * Value defined by the instruction, or -1 when it does not assign a tracked variable.
+     */
+    public int getDefinition(Instruction instruction) {
+        return definitions.getOrDefault(instruction, -1);
+    }
+
+    public List<Phi> getPhis(BasicBlock block) {
+        return phis.get(block.getId());
+    }
+
+    public List<Instruction> getInstructionUsers(int value) {
+        return instructionUsers.get(value);
+    }
+
+    public List<Phi> getPhiUsers(int value) {
+        return phiUsers.get(value);
+    }
+
+    /**
+     * Whether the element is a variable this form numbers: a local or parameter of type int or boolean. Arrays,
+     * objects and fields can change behind the method's back and are left out.
+     */
+    public static boolean isTracked(Element element) {
+        if (element.isLiteral() || !(element instanceof Operand) || element instanceof ArrayOperand)
+            return false;
+
+        ElementType type = element.getType().getTypeOfElement();
+        return type == ElementType.INT32 || type == ElementType.BOOLEAN;
+    }
+
+    /**
+     * Name of the tracked variable assigned by the instruction, or null.
+     */
+    public static String getAssignedVariable(Instruction instruction) {
+        Operand assigned = InstructionReads.getAssigned(instruction);
+        return assigned != null && isTracked(assigned) ? assigned.getName() : null;
+    }
+
+    private void collectVariables() {
+        for (Instruction instruction : cfg.getMethod().getInstructions()) {
+            String assigned = getAssignedVariable(instruction);
+            if (assigned != null)
+                addVariable(assigned);
+
+            InstructionReads.visit(instruction, (element, replacement) -> {
+                if (isTracked(element))
+                    addVariable(((Operand) element).getName());
+            });
+        }
+    }
+
+    private void addVariable(String name) {
+        if (variables.putIfAbsent(name, variableNames.size()) == null)
+            variableNames.add(name);
+    }
+
+    private void placePhis() {
+        List<List<BasicBlock>> assignedIn = new ArrayList<>();
+        for (int i = 0; i < variableNames.size(); i++)
+            assignedIn.add(new ArrayList<>());
+
+        for (BasicBlock block : cfg.getReversePostOrder()) {
+            for (Instruction instruction : block.getInstructions()) {
+                String assigned = getAssignedVariable(instruction);
+                if (assigned == null)
+                    continue;
+
+                List<BasicBlock> blocks = assignedIn.get(variables.get(assigned));
+                if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != block)
+                    blocks.add(block);
+            }
+        }
+
+        // Marks are stamped with the variable, so they never need clearing between variables
+        int[] hasPhi = new int[cfg.getBlocks().size()];
+        int[] queued = new int[cfg.getBlocks().size()];
+        Arrays.fill(hasPhi, -1);
+        Arrays.fill(queued, -1);
+
+        Deque<BasicBlock> worklist = new ArrayDeque<>();
+        for (int variable = 0; variable < variableNames.size(); variable++) {
+            for (BasicBlock block : assignedIn.get(variable)) {
+                queued[block.getId()] = variable;
+                worklist.add(block);
+            }
+
+            while (!worklist.isEmpty()) {
+                BasicBlock block = worklist.poll();
+
+                for (BasicBlock frontier : block.getDominanceFrontier()) {
+                    if (hasPhi[frontier.getId()] == variable)
+                        continue;
+
+                    hasPhi[frontier.getId()] = variable;
+                    phis.get(frontier.getId()).add(new Phi(frontier, variable, frontier.getPredecessors().size()));
+
+                    if (queued[frontier.getId()] != variable) {
+                        queued[frontier.getId()] = variable;
+                        worklist.add(frontier);
+                    }
+                }
+            }
+        }
+    }
+
+    private void rename() {
+        if (cfg.getBlocks().isEmpty())
+            return;
+
+        List<Deque<Integer>> stacks = new ArrayList<>();
+        for (int variable = 0; variable < variableNames.size(); variable++) {
+            Deque<Integer> stack = new ArrayDeque<>();
+            stack.push(variable);
+            stacks.add(stack);
+        }
+
+        // Iterative walk over the dominator tree, so deep trees do not overflow the stack. A block is pushed twice:
+        // first to bind its names, then as null to pop the values it defined.
+        List<BasicBlock> worklist = new ArrayList<>();
+        Deque<List<Integer>> defined = new ArrayDeque<>();
+        worklist.add(cfg.getEntry());
+
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.remove(worklist.size() - 1);
+
+            if (block == null) {
+                for (int variable : defined.pop())
+                    stacks.get(variable).pop();
+                continue;
+            }
+
+            List<Integer> definedHere = new ArrayList<>();
+
+            for (Phi phi : getPhis(block)) {
+                phi.value = numberOfValues++;
+                stacks.get(phi.variable).push(phi.value);
+                definedHere.add(phi.variable);
+            }
+
+            for (Instruction instruction : block.getInstructions()) {
+                List<Use> instructionUses = new ArrayList<>();
+
+                InstructionReads.visit(instruction, (element, replacement) -> {
+                    if (!isTracked(element))
+                        return;
+
+                    int variable = variables.get(((Operand) element).getName());
+                    instructionUses.add(new Use(element, variable, stacks.get(variable).peek(), replacement));
+                });
+
+                if (!instructionUses.isEmpty())
+                    uses.put(instruction, instructionUses);
+
+                String assigned = getAssignedVariable(instruction);
+                if (assigned != null) {
+                    int variable = variables.get(assigned);
+                    int value = numberOfValues++;
+
+                    definitions.put(instruction, value);
+                    stacks.get(variable).push(value);
+                    definedHere.add(variable);
+                }
+            }
+
+            for (BasicBlock.Edge edge : block.getSuccessors()) {
+                for (Phi phi : getPhis(edge.to()))
+                    phi.operands[edge.predecessorIndex()] = stacks.get(phi.variable).peek();
+            }
+
+            defined.push(definedHere);
+            worklist.add(null);
+            worklist.addAll(block.getDominatorChildren());
+        }
+    }
+
+    private void collectUsers() {
+        for (int value = 0; value < numberOfValues; value++) {
+            instructionUsers.add(new ArrayList<>());
+            phiUsers.add(new ArrayList<>());
+        }
+
+        for (Map.Entry<Instruction, List<Use>> entry : uses.entrySet()) {
+            for (Use use : entry.getValue())
+                instructionUsers.get(use.getValue()).add(entry.getKey());
+        }
+
+        for (List<Phi> blockPhis : phis) {
+            for (Phi phi : blockPhis) {
+                for (int operand : phi.operands) {
+                    if (operand >= 0)
+                        phiUsers.get(operand).add(phi);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read of a tracked variable by an instruction, bound to the value that reaches it.
+     */
+    public static class Use {
+        private final Element element;
+        private final int variable;
+        private final int value;
+        private final Consumer<Element> replacement;
+
+        Use(Element element, int variable, int value, Consumer<Element> replacement) {
+            this.element = element;
+            this.variable = variable;
+            this.value = value;
+            this.replacement = replacement;
+        }
+
+        public Element getElement() {
+            return element;
+        }
+
+        public int getVariable() {
+            return variable;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public boolean isReplaceable() {
+            return replacement != null;
+        }
+
+        /**
+         * Puts the given element in place of the read, in the instruction it came from.
+         */
+        public void replace(Element element) {
+            replacement.accept(element);
+        }
+    }
+
+    /**
+     * Merge of the values of a variable that reach the start of a block, one operand per predecessor edge. Operands
+     * coming from blocks unreachable from the entry are -1.
+     */
+    public static class Phi {
+        private final BasicBlock block;
+        private final int variable;
+        private final int[] operands;
+        private int value;
+
+        Phi(BasicBlock block, int variable, int numberOfPredecessors) {
+            this.block = block;
+            this.variable = variable;
+            this.operands = new int[numberOfPredecessors];
+            Arrays.fill(operands, -1);
+        }
+
+        public BasicBlock getBlock() {
+            return block;
+        }
+
+        public int getVariable() {
+            return variable;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public int getOperand(BasicBlock.Edge edge) {
+            return operands[edge.predecessorIndex()];
+        }
+    }
+}
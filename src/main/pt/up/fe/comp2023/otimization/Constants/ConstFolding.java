@@ -1,9 +1,7 @@
 package pt.up.fe.comp2023.otimization.Constants;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 import pt.up.fe.comp.jmm.ast.PostorderJmmVisitor;
-import pt.up.fe.comp2023.analysis.SemanticHelper;
 
 public class ConstFolding extends PostorderJmmVisitor<Object, Boolean> {
 
@@ -29,11 +27,11 @@ public class ConstFolding extends PostorderJmmVisitor<Object, Boolean> {
 
         JmmNode expr = jmmNode.getJmmChild(0);
         if (expr.getKind().equals("Boolean")) {
-            JmmNode result = Utils.createNode(Boolean.parseBoolean(expr.get("value")), expr);
+            JmmNode result = Utils.createNode(Utils.getBoolValue(expr), expr);
             jmmNode.replace(result);
             modifications = true;
         }else if (expr.getKind().equals("Int")) {
-            int value = Integer.parseInt(expr.get("value"));
+            int value = Utils.getIntValue(expr);
             JmmNode result = Utils.createNode(value, expr);
             jmmNode.replace(result);
             modifications = true;
@@ -46,7 +44,7 @@ public class ConstFolding extends PostorderJmmVisitor<Object, Boolean> {
 
         JmmNode expr = jmmNode.getJmmChild(0);
         if (expr.getKind().equals("Boolean") ) {
-            boolean value = expr.get("value").equals(SemanticHelper.TRUE);
+            boolean value = Utils.getBoolValue(expr);
 
             JmmNode result =  Utils.createNode(!value, expr);
             jmmNode.replace(result);
@@ -66,8 +64,8 @@ public class ConstFolding extends PostorderJmmVisitor<Object, Boolean> {
             case "&&" -> {
                 // if both are constant booleans
                 if (left.getKind().equals("Boolean") && right.getKind().equals("Boolean")) {
-                    Boolean leftValue = left.get("value").equals(SemanticHelper.TRUE);
-                    Boolean rightValue = right.get("value").equals(SemanticHelper.TRUE);
+                    Boolean leftValue = Utils.getBoolValue(left);
+                    Boolean rightValue = Utils.getBoolValue(right);
 
                     JmmNode result =  Utils.createNode(leftValue && rightValue, left);
                     jmmNode.replace(result);
@@ -79,8 +77,8 @@ public class ConstFolding extends PostorderJmmVisitor<Object, Boolean> {
             case "<" -> {
                 // if both are int constants
                 if (left.getKind().equals("Int") && right.getKind().equals("Int")){
-                    int leftValue = Integer.parseInt(left.get("value"));
-                    int rightValue = Integer.parseInt(right.get("value"));
+                    int leftValue = Utils.getIntValue(left);
+                    int rightValue = Utils.getIntValue(right);
 
                     JmmNode result = Utils.createNode(leftValue<rightValue , left);
                     jmmNode.replace(result);
@@ -127,12 +125,12 @@ public class ConstFolding extends PostorderJmmVisitor<Object, Boolean> {
 
     private Integer getValue(JmmNode jmmNode){
         if (jmmNode.getKind().equals("Int"))
-            return Integer.parseInt(jmmNode.get("value"));
+            return Utils.getIntValue(jmmNode);
 
         if (jmmNode.getKind().equals("Parenthesis")){
             JmmNode child = jmmNode.getJmmChild(0);
             if (child.getKind().equals("Int"))
-                return Integer.parseInt(child.get("value"));
+                return Utils.getIntValue(child);
         }
 
         return null;
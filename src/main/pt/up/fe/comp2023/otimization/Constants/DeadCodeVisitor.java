@@ -1,10 +1,11 @@
 package pt.up.fe.comp2023.otimization.Constants;
 
-import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.AJmmVisitor;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2023.analysis.Binding;
 import pt.up.fe.comp2023.analysis.SemanticHelper;
+import pt.up.fe.comp2023.analysis.SimpleSymbolTable;
 
 import java.util.HashMap;
 import java.util.Iterator;
@@ -40,7 +41,7 @@ public class DeadCodeVisitor extends AJmmVisitor<Object, Boolean> {
         JmmNode code = jmmNode.getJmmChild(1);
 
         if ( condition.getKind().equals("Boolean")){
-            if (condition.get("value").equals(SemanticHelper.FALSE)){
+            if (!Utils.getBoolValue(condition)){
                 jmmNode.getJmmParent().removeJmmChild(jmmNode);
                 return true ;
             }
@@ -49,7 +50,13 @@ public class DeadCodeVisitor extends AJmmVisitor<Object, Boolean> {
         assignValue.clear();
         used.clear();
 
-        return visitAll(code, o);
+        boolean modification = visitAll(code, o);
+
+        // The condition and the next iteration may read anything assigned in the body
+        assignValue.clear();
+        used.clear();
+
+        return modification;
     }
 
     private Boolean visitIf(JmmNode jmmNode, Object o) {
@@ -58,12 +65,12 @@ public class DeadCodeVisitor extends AJmmVisitor<Object, Boolean> {
         JmmNode codeElse = jmmNode.getJmmChild(2);
 
         if ( condition.getKind().equals("Boolean")){
-            if (condition.get("value").equals(SemanticHelper.TRUE)){
+            if (Utils.getBoolValue(condition)){
                 jmmNode.replace(codeIf);
                 return true ;
             }
 
-            if (condition.get("value").equals(SemanticHelper.FALSE)){
+            if (!Utils.getBoolValue(condition)){
                 jmmNode.replace(codeElse);
                 return true ;
             }
@@ -72,7 +79,14 @@ public class DeadCodeVisitor extends AJmmVisitor<Object, Boolean> {
 
         assignValue.clear();
         used.clear();
-        return visitAll(jmmNode, o);
+        boolean modification = visit(condition, o);
+        modification = visit(codeIf, o) || modification;
+
+        // Only one of the branches runs, so an assignment in one does not overwrite an assignment in the other
+        assignValue.clear();
+        used.clear();
+
+        return visit(codeElse, o) || modification;
     }
 
     private Boolean visitAll(JmmNode jmmNode, Object o) {
@@ -101,28 +115,17 @@ public class DeadCodeVisitor extends AJmmVisitor<Object, Boolean> {
 
     private Boolean visitAssign(JmmNode jmmNode, Object o) {
 
-        String varName = jmmNode.getJmmChild(0).get("var");
+        JmmNode variable = jmmNode.getJmmChild(0);
+        String varName = variable.get("var");
         JmmNode rhs = jmmNode.getJmmChild(1);
 
-        String methodName = jmmNode.get("methodName");
-
-        boolean modification = visitAll(rhs, o);
+        // visit, not visitAll, so that a variable alone on the right, as in b = a, counts as a read
+        boolean modification = visit(rhs, o);
 
         // verificar se é local
-        boolean isLocal = false;
-        for (Symbol var : symbolTable.getLocalVariables(methodName)){
-            if (var.getName().equals(varName)){
-                isLocal = true;
-                break;
-            }
-        }
-
-        for (Symbol var : symbolTable.getParameters(methodName)){
-            if (var.getName().equals(varName)){
-                isLocal = true;
-                break;
-            }
-        }
+        Binding binding = SemanticHelper.getBinding((SimpleSymbolTable) symbolTable, variable);
+        boolean isLocal = binding != null &&
+                (binding.getKind() == Binding.Kind.LOCAL || binding.getKind() == Binding.Kind.PARAMETER);
         if (!isLocal)
             return modification;
 
@@ -1,31 +1,48 @@
 package pt.up.fe.comp2023.otimization.Constants;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
-import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
 import pt.up.fe.comp2023.analysis.SemanticHelper;
+import pt.up.fe.comp2023.analysis.Types;
+import pt.up.fe.comp2023.ast.AstNode;
+import pt.up.fe.comp2023.ast.NodeKind;
 
 public class Utils {
 
-    public static JmmNode createNode(String kind, String value, String type, String isArray, String methodName , String isStatic){
-        JmmNode result = new JmmNodeImpl(kind);
-        result.put("value", value);
-        result.put("type", type);
-        result.put("isArray", isArray);
-        if (methodName != null)
-            result.put("methodName", methodName);
-        if (isStatic != null)
-            result.put("isStatic", isStatic);
+    private static AstNode createNode(NodeKind kind, JmmNode oldNode){
+        AstNode result = new AstNode(kind);
+        result.put("methodName", oldNode.get("methodName"));
+        result.put("isStatic", oldNode.get("isStatic"));
 
         return result;
     }
 
     public static JmmNode createNode(boolean value, JmmNode oldNode){
-        return createNode("Boolean", Boolean.toString(value), SemanticHelper.BOOL, SemanticHelper.FALSE,
-                oldNode.get("methodName"), oldNode.get("isStatic"));
+        AstNode result = createNode(NodeKind.BOOLEAN, oldNode);
+        result.setValue(value);
+        result.setType(Types.BOOL);
+
+        return result;
     }
 
     public static JmmNode createNode(int value, JmmNode oldNode){
-        return createNode("Int", Integer.toString(value), SemanticHelper.INT, SemanticHelper.FALSE,
-                oldNode.get("methodName"), oldNode.get("isStatic"));
+        AstNode result = createNode(NodeKind.INT, oldNode);
+        result.setValue(value);
+        result.setType(Types.INT);
+
+        return result;
+    }
+
+    public static int getIntValue(JmmNode jmmNode){
+        if (jmmNode instanceof AstNode node)
+            return node.getIntValue();
+
+        return Integer.parseInt(jmmNode.get("value"));
+    }
+
+    public static boolean getBoolValue(JmmNode jmmNode){
+        if (jmmNode instanceof AstNode node)
+            return node.getBoolValue();
+
+        return jmmNode.get("value").equals(SemanticHelper.TRUE);
     }
 }
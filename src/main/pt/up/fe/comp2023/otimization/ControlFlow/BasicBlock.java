@@ -0,0 +1,89 @@
+package pt.up.fe.comp2023.otimization.ControlFlow;
+
+import org.specs.comp.ollir.Instruction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BasicBlock {
+
+    private final int id;
+    private final List<Instruction> instructions;
+    private final List<Edge> successors;
+    private final List<Edge> predecessors;
+    private final List<BasicBlock> dominatorChildren;
+    private final List<BasicBlock> dominanceFrontier;
+    private BasicBlock immediateDominator;
+    private int loopDepth;
+
+    public BasicBlock(int id) {
+        this.id = id;
+        this.instructions = new ArrayList<>();
+        this.successors = new ArrayList<>();
+        this.predecessors = new ArrayList<>();
+        this.dominatorChildren = new ArrayList<>();
+        this.dominanceFrontier = new ArrayList<>();
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    public Instruction getLastInstruction() {
+        return instructions.get(instructions.size() - 1);
+    }
+
+    /**
+     * Outgoing edges, in the same order as {@link Instruction#getSuccessors()}: the branch target before the fallthrough.
+     */
+    public List<Edge> getSuccessors() {
+        return successors;
+    }
+
+    public List<Edge> getPredecessors() {
+        return predecessors;
+    }
+
+    /**
+     * Null for the entry block and for blocks that cannot be reached from it.
+     */
+    public BasicBlock getImmediateDominator() {
+        return immediateDominator;
+    }
+
+    void setImmediateDominator(BasicBlock immediateDominator) {
+        this.immediateDominator = immediateDominator;
+    }
+
+    public List<BasicBlock> getDominatorChildren() {
+        return dominatorChildren;
+    }
+
+    public List<BasicBlock> getDominanceFrontier() {
+        return dominanceFrontier;
+    }
+
+    /**
+     * Number of loops the block is in, 0 outside loops and for blocks that cannot be reached from the entry.
+     */
+    public int getLoopDepth() {
+        return loopDepth;
+    }
+
+    void setLoopDepth(int loopDepth) {
+        this.loopDepth = loopDepth;
+    }
+
+    /**
+     * Control flow edge. The same pair of blocks may be joined by two edges, when a branch targets its own fallthrough.
+     *
+     * @param id index of the edge in the graph
+     * @param predecessorIndex position of the edge in the predecessors of its target
+     */
+    public record Edge(int id, BasicBlock from, BasicBlock to, int predecessorIndex) {
+    }
+}
@@ -0,0 +1,301 @@
+package pt.up.fe.comp2023.otimization.ControlFlow;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Basic blocks of a method, with the dominator tree, the dominance frontiers and the loop depth of the blocks reachable
+ * from the entry.
+ * <p>
+ * The edges follow the same rules as {@link Method#buildCFG()}, but are kept apart from the instructions: buildCFG
+ * appends to the successors of each instruction instead of replacing them, and the register allocation builds it
+ * again after the instructions have been rewritten.
+ */
+public class ControlFlowGraph {
+
+    private final Method method;
+    private final List<BasicBlock> blocks;
+    private final List<BasicBlock.Edge> edges;
+    private final List<BasicBlock> reversePostOrder;
+
+    public ControlFlowGraph(Method method) {
+        this.method = method;
+        this.blocks = new ArrayList<>();
+        this.edges = new ArrayList<>();
+
+        buildBlocks();
+        this.reversePostOrder = computeReversePostOrder();
+        computeDominators();
+        computeDominanceFrontiers();
+        computeLoopDepths();
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public List<BasicBlock.Edge> getEdges() {
+        return edges;
+    }
+
+    public BasicBlock getEntry() {
+        return blocks.get(0);
+    }
+
+    /**
+     * Blocks reachable from the entry, each after all of its dominators.
+     */
+    public List<BasicBlock> getReversePostOrder() {
+        return reversePostOrder;
+    }
+
+    private void buildBlocks() {
+        List<Instruction> instructions = method.getInstructions();
+        int size = instructions.size();
+
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < size; i++)
+            indexes.put(instructions.get(i), i);
+
+        // A block starts at the first instruction, at every labelled instruction and after every jump
+        boolean[] leaders = new boolean[size + 1];
+        leaders[0] = true;
+        for (Instruction labelled : method.getLabels().values()) {
+            Integer index = indexes.get(labelled);
+            if (index != null)
+                leaders[index] = true;
+        }
+        for (int i = 0; i < size; i++) {
+            InstructionType type = instructions.get(i).getInstType();
+            if (type == InstructionType.BRANCH || type == InstructionType.GOTO || type == InstructionType.RETURN)
+                leaders[i + 1] = true;
+        }
+
+        BasicBlock[] blockOf = new BasicBlock[size];
+        BasicBlock current = null;
+        for (int i = 0; i < size; i++) {
+            if (leaders[i]) {
+                current = new BasicBlock(blocks.size());
+                blocks.add(current);
+            }
+            current.getInstructions().add(instructions.get(i));
+            blockOf[i] = current;
+        }
+
+        for (int i = 0; i < blocks.size(); i++) {
+            BasicBlock block = blocks.get(i);
+            BasicBlock next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+            Instruction last = block.getLastInstruction();
+
+            switch (last.getInstType()) {
+                case GOTO -> addEdge(block, blockOf[getLabelIndex(((GotoInstruction) last).getLabel(), indexes)]);
+                case BRANCH -> {
+                    addEdge(block, blockOf[getLabelIndex(((CondBranchInstruction) last).getLabel(), indexes)]);
+                    if (next != null)
+                        addEdge(block, next);
+                }
+                case RETURN -> {
+                }
+                default -> {
+                    if (next != null)
+                        addEdge(block, next);
+                }
+            }
+        }
+    }
+
+    private int getLabelIndex(String label, Map<Instruction, Integer> indexes) {
+        Instruction target = method.getLabels().get(label);
+        Integer index = target == null ? null : indexes.get(target);
+
+        if (index == null)
+            throw new RuntimeException("Label " + label + " is not defined in method " + method.getMethodName());
+
+        return index;
+    }
+
+    private void addEdge(BasicBlock from, BasicBlock to) {
+        BasicBlock.Edge edge = new BasicBlock.Edge(edges.size(), from, to, to.getPredecessors().size());
+
+        edges.add(edge);
+        from.getSuccessors().add(edge);
+        to.getPredecessors().add(edge);
+    }
+
+    private List<BasicBlock> computeReversePostOrder() {
+        List<BasicBlock> postOrder = new ArrayList<>();
+        if (blocks.isEmpty())
+            return postOrder;
+
+        // Iterative depth first search, so long chains of blocks do not overflow the stack
+        boolean[] visited = new boolean[blocks.size()];
+        Deque<BasicBlock> stack = new ArrayDeque<>();
+        Deque<Integer> nextSuccessor = new ArrayDeque<>();
+
+        visited[0] = true;
+        stack.push(getEntry());
+        nextSuccessor.push(0);
+
+        while (!stack.isEmpty()) {
+            BasicBlock block = stack.peek();
+            int successor = nextSuccessor.pop();
+
+            if (successor == block.getSuccessors().size()) {
+                stack.pop();
+                postOrder.add(block);
+                continue;
+            }
+
+            nextSuccessor.push(successor + 1);
+
+            BasicBlock next = block.getSuccessors().get(successor).to();
+            if (!visited[next.getId()]) {
+                visited[next.getId()] = true;
+                stack.push(next);
+                nextSuccessor.push(0);
+            }
+        }
+
+        Collections.reverse(postOrder);
+        return postOrder;
+    }
+
+    /**
+     * Dominators by Cooper, Harvey and Kennedy's iterative algorithm, which intersects the immediate dominators of the
+     * predecessors walking up the tree in reverse postorder numbers.
+     */
+    private void computeDominators() {
+        if (reversePostOrder.isEmpty())
+            return;
+
+        int[] order = new int[blocks.size()];
+        Arrays.fill(order, -1);
+        for (int i = 0; i < reversePostOrder.size(); i++)
+            order[reversePostOrder.get(i).getId()] = i;
+
+        BasicBlock[] dominators = new BasicBlock[blocks.size()];
+        BasicBlock entry = getEntry();
+        dominators[entry.getId()] = entry;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (BasicBlock block : reversePostOrder) {
+                if (block == entry)
+                    continue;
+
+                BasicBlock dominator = null;
+                for (BasicBlock.Edge edge : block.getPredecessors()) {
+                    BasicBlock predecessor = edge.from();
+                    if (dominators[predecessor.getId()] == null)
+                        continue;
+
+                    dominator = dominator == null ? predecessor : intersect(predecessor, dominator, dominators, order);
+                }
+
+                if (dominators[block.getId()] != dominator) {
+                    dominators[block.getId()] = dominator;
+                    changed = true;
+                }
+            }
+        }
+
+        for (BasicBlock block : reversePostOrder) {
+            if (block == entry)
+                continue;
+
+            BasicBlock dominator = dominators[block.getId()];
+            block.setImmediateDominator(dominator);
+            dominator.getDominatorChildren().add(block);
+        }
+    }
+
+    private static BasicBlock intersect(BasicBlock first, BasicBlock second, BasicBlock[] dominators, int[] order) {
+        while (first != second) {
+            while (order[first.getId()] > order[second.getId()])
+                first = dominators[first.getId()];
+            while (order[second.getId()] > order[first.getId()])
+                second = dominators[second.getId()];
+        }
+
+        return first;
+    }
+
+    private void computeDominanceFrontiers() {
+        for (BasicBlock block : reversePostOrder) {
+            if (block.getPredecessors().size() < 2)
+                continue;
+
+            for (BasicBlock.Edge edge : block.getPredecessors()) {
+                BasicBlock runner = edge.from();
+                if (runner != getEntry() && runner.getImmediateDominator() == null)
+                    continue; // unreachable predecessor
+
+                while (runner != null && runner != block.getImmediateDominator()) {
+                    if (!runner.getDominanceFrontier().contains(block))
+                        runner.getDominanceFrontier().add(block);
+                    runner = runner.getImmediateDominator();
+                }
+            }
+        }
+    }
+
+    /**
+     * Every edge to a block that dominates its source closes a natural loop: the header and the blocks that reach the
+     * source without going through the header. The edges back to the same header make up a single loop.
+     */
+    private void computeLoopDepths() {
+        Map<BasicBlock, boolean[]> loops = new LinkedHashMap<>();
+
+        for (BasicBlock.Edge edge : edges) {
+            BasicBlock header = edge.to();
+            if (!dominates(header, edge.from()))
+                continue;
+
+            boolean[] body = loops.computeIfAbsent(header, block -> new boolean[blocks.size()]);
+            body[header.getId()] = true;
+
+            Deque<BasicBlock> worklist = new ArrayDeque<>();
+            if (!body[edge.from().getId()]) {
+                body[edge.from().getId()] = true;
+                worklist.push(edge.from());
+            }
+
+            while (!worklist.isEmpty()) {
+                BasicBlock block = worklist.pop();
+                for (BasicBlock.Edge predecessor : block.getPredecessors()) {
+                    BasicBlock from = predecessor.from();
+                    if (!body[from.getId()] && dominates(header, from)) {
+                        body[from.getId()] = true;
+                        worklist.push(from);
+                    }
+                }
+            }
+        }
+
+        for (boolean[] body : loops.values()) {
+            for (BasicBlock block : blocks) {
+                if (body[block.getId()])
+                    block.setLoopDepth(block.getLoopDepth() + 1);
+            }
+        }
+    }
+
+    private boolean dominates(BasicBlock dominator, BasicBlock block) {
+        if (block != getEntry() && block.getImmediateDominator() == null)
+            return false; // unreachable block
+
+        for (BasicBlock runner = block; runner != null; runner = runner.getImmediateDominator()) {
+            if (runner == dominator)
+                return true;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+package pt.up.fe.comp2023.otimization.ControlFlow;
+
+import org.specs.comp.ollir.*;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Walks the elements an OLLIR instruction reads. Field names and the names of called methods are not reads.
+ */
+public class InstructionReads {
+
+    /**
+     * Calls the visitor with every element the instruction reads, in evaluation order, along with a way to replace
+     * that element in the instruction. The replacement is null where the backend needs a variable, such as arrays,
+     * array indexes and the object of a call or field access.
+     * <p>
+     * Accessing an array element reads the array and its indexes, also when the element is the one assigned.
+     */
+    public static void visit(Instruction instruction, BiConsumer<Element, Consumer<Element>> visitor) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                AssignInstruction assignInstruction = (AssignInstruction) instruction;
+                if (assignInstruction.getDest() instanceof ArrayOperand arrayOperand)
+                    visitElement(arrayOperand, null, visitor);
+                visit(assignInstruction.getRhs(), visitor);
+            }
+            case NOPER -> {
+                SingleOpInstruction singleOpInstruction = (SingleOpInstruction) instruction;
+                visitElement(singleOpInstruction.getSingleOperand(), singleOpInstruction::setSingleOperand, visitor);
+            }
+            case BINARYOPER -> {
+                BinaryOpInstruction binaryOpInstruction = (BinaryOpInstruction) instruction;
+                visitElement(binaryOpInstruction.getLeftOperand(), binaryOpInstruction::setLeftOperand, visitor);
+                visitElement(binaryOpInstruction.getRightOperand(), binaryOpInstruction::setRightOperand, visitor);
+            }
+            case UNARYOPER -> {
+                UnaryOpInstruction unaryOpInstruction = (UnaryOpInstruction) instruction;
+                visitElement(unaryOpInstruction.getOperand(), unaryOpInstruction::setOperand, visitor);
+            }
+            case BRANCH -> visit(((CondBranchInstruction) instruction).getCondition(), visitor);
+            case RETURN -> {
+                ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
+                if (returnInstruction.hasReturnValue())
+                    visitElement(returnInstruction.getOperand(), returnInstruction::setOperand, visitor);
+            }
+            case PUTFIELD -> {
+                PutFieldInstruction putFieldInstruction = (PutFieldInstruction) instruction;
+                visitElement(putFieldInstruction.getFirstOperand(), null, visitor);
+                visitElement(putFieldInstruction.getThirdOperand(), putFieldInstruction::setThirdOperand, visitor);
+            }
+            case GETFIELD -> visitElement(((GetFieldInstruction) instruction).getFirstOperand(), null, visitor);
+            case CALL -> {
+                CallInstruction callInstruction = (CallInstruction) instruction;
+                visitElement(callInstruction.getFirstArg(), null, visitor);
+
+                List<Element> operands = callInstruction.getListOfOperands();
+                if (operands == null)
+                    break;
+                for (int i = 0; i < operands.size(); i++) {
+                    int index = i;
+                    visitElement(operands.get(i), element -> operands.set(index, element), visitor);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Variable assigned by the instruction, or null. Assigning an array element does not assign the array.
+     */
+    public static Operand getAssigned(Instruction instruction) {
+        if (instruction.getInstType() != InstructionType.ASSIGN)
+            return null;
+
+        Element dest = ((AssignInstruction) instruction).getDest();
+        return dest instanceof Operand operand && !(dest instanceof ArrayOperand) ? operand : null;
+    }
+
+    private static void visitElement(Element element, Consumer<Element> replacement,
+                                     BiConsumer<Element, Consumer<Element>> visitor) {
+        if (element == null)
+            return;
+
+        if (element instanceof ArrayOperand arrayOperand) {
+            visitor.accept(arrayOperand, null);
+            for (Element index : arrayOperand.getIndexOperands())
+                visitElement(index, null, visitor);
+        } else {
+            visitor.accept(element, replacement);
+        }
+    }
+}
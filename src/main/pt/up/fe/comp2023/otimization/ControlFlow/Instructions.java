@@ -0,0 +1,57 @@
+package pt.up.fe.comp2023.otimization.ControlFlow;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Rewriting of the instruction list of a method that keeps its labels pointing at instructions that are still there.
+ */
+public class Instructions {
+
+    /**
+     * Replaces every instruction of the method with the one the function returns for it, removing the ones it returns
+     * null for. A removed instruction hands its labels to the next instruction that stays, and labels with none left
+     * after them are dropped. Returns the number of instructions removed.
+     */
+    public static int rewrite(Method method, UnaryOperator<Instruction> rewrite) {
+        List<Instruction> instructions = method.getInstructions();
+        Map<Instruction, Instruction> labelTargets = new IdentityHashMap<>();
+        List<Instruction> rewritten = new ArrayList<>();
+        Instruction next = null;
+        int removed = 0;
+
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            Instruction instruction = instructions.get(i);
+            Instruction current = rewrite.apply(instruction);
+
+            if (current != null) {
+                next = current;
+                rewritten.add(current);
+            } else {
+                removed++;
+            }
+
+            labelTargets.put(instruction, next);
+        }
+        Collections.reverse(rewritten);
+
+        Iterator<Map.Entry<String, Instruction>> labels = method.getLabels().entrySet().iterator();
+        while (labels.hasNext()) {
+            Map.Entry<String, Instruction> label = labels.next();
+            Instruction target = labelTargets.get(label.getValue());
+
+            if (target == null)
+                labels.remove();
+            else
+                label.setValue(target);
+        }
+
+        instructions.clear();
+        instructions.addAll(rewritten);
+
+        return removed;
+    }
+}
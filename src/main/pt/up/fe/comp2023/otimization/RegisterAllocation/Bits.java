@@ -0,0 +1,59 @@
+package pt.up.fe.comp2023.otimization.RegisterAllocation;
+
+import java.util.function.IntConsumer;
+
+/**
+ * Operations on sets of variable numbers stored as {@code long[]}, one bit per variable.
+ */
+public class Bits {
+
+    public static long[] create(int size) {
+        return new long[(size + 63) >>> 6];
+    }
+
+    public static boolean get(long[] set, int bit) {
+        return (set[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    public static void set(long[] set, int bit) {
+        set[bit >>> 6] |= 1L << bit;
+    }
+
+    public static void clear(long[] set, int bit) {
+        set[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /**
+     * Adds the other set to the first one, returning whether it grew.
+     */
+    public static boolean or(long[] set, long[] other) {
+        boolean changed = false;
+
+        for (int i = 0; i < set.length; i++) {
+            long merged = set[i] | other[i];
+            if (merged != set[i]) {
+                set[i] = merged;
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    public static int count(long[] set) {
+        int count = 0;
+        for (long word : set)
+            count += Long.bitCount(word);
+        return count;
+    }
+
+    public static void forEach(long[] set, IntConsumer action) {
+        for (int i = 0; i < set.length; i++) {
+            long word = set[i];
+            while (word != 0) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+}
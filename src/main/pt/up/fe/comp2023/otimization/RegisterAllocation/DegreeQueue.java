@@ -0,0 +1,106 @@
+package pt.up.fe.comp2023.otimization.RegisterAllocation;
+
+import java.util.Arrays;
+
+/**
+ * Nodes of a graph bucketed by their current degree, each bucket a doubly linked list over arrays. Taking the node of
+ * least degree and lowering the degree of a neighbour are constant time, amortised over the whole simplification.
+ */
+public class DegreeQueue {
+
+    private final int[] degrees;
+    private final int[] heads;
+    private final int[] next;
+    private final int[] previous;
+    private final boolean[] queued;
+    private int size;
+    private int minDegree;
+
+    /**
+     * Queue with every node of the graph, at the given degrees.
+     */
+    public DegreeQueue(int[] degrees) {
+        int maxDegree = 0;
+        for (int degree : degrees)
+            maxDegree = Math.max(maxDegree, degree);
+
+        this.degrees = degrees.clone();
+        this.heads = new int[maxDegree + 1];
+        this.next = new int[degrees.length];
+        this.previous = new int[degrees.length];
+        this.queued = new boolean[degrees.length];
+        this.minDegree = 0;
+
+        Arrays.fill(heads, -1);
+        for (int node = degrees.length - 1; node >= 0; node--)
+            link(node);
+        size = degrees.length;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int node) {
+        return queued[node];
+    }
+
+    public int getDegree(int node) {
+        return degrees[node];
+    }
+
+    /**
+     * Least degree of a node still in the queue, which must not be empty.
+     */
+    public int getMinDegree() {
+        while (heads[minDegree] == -1)
+            minDegree++;
+        return minDegree;
+    }
+
+    /**
+     * Removes and returns a node of least degree.
+     */
+    public int poll() {
+        int node = heads[getMinDegree()];
+        remove(node);
+        return node;
+    }
+
+    public void remove(int node) {
+        unlink(node);
+        size--;
+    }
+
+    /**
+     * Lowers the degree of a node still in the queue, after one of its neighbours left the graph.
+     */
+    public void decrement(int node) {
+        unlink(node);
+        degrees[node]--;
+        link(node);
+        minDegree = Math.min(minDegree, degrees[node]);
+    }
+
+    private void link(int node) {
+        int head = heads[degrees[node]];
+
+        next[node] = head;
+        previous[node] = -1;
+        if (head != -1)
+            previous[head] = node;
+        heads[degrees[node]] = node;
+        queued[node] = true;
+    }
+
+    private void unlink(int node) {
+        if (previous[node] != -1)
+            next[previous[node]] = next[node];
+        else
+            heads[degrees[node]] = next[node];
+
+        if (next[node] != -1)
+            previous[next[node]] = previous[node];
+        queued[node] = false;
+    }
+}
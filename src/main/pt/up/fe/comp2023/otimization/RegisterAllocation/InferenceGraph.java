@@ -1,126 +1,362 @@
 package pt.up.fe.comp2023.otimization.RegisterAllocation;
 
 import org.specs.comp.ollir.*;
-import pt.up.fe.specs.util.collections.MultiMap;
 
 import java.util.*;
 
+/**
+ * Interference graph over the variables numbered by the liveness analysis. Edges are kept twice: in a triangular bit
+ * matrix, to test whether two variables interfere in constant time, and in an adjacency array per variable, to walk
+ * the neighbours of a node in time proportional to its degree.
+ * <p>
+ * Copies between two variables are kept as moves. Coloring first coalesces the two variables of a move into a single
+ * node when that cannot make the graph harder to color, so they end up in the same register and the copy can go.
+ */
 public class InferenceGraph {
 
-    private final Map<Instruction,LivenessData> livenessData;
+    private final LivenessAnalysis livenessAnalysis;
     private final Method method;
     private final HashMap<String, Descriptor> vartable;
-    private final Map<String, Set<String>> graph;
+    private final int size;
+    private final long[] matrix;
+    private final int[][] adjacency;
+    private final int[] degrees;
+    private final List<Integer> spilled;
+    private final List<int[]> moves;
+    private final int[] alias;
+    private int edges;
+    private int coalesced;
     private int minColors;
 
     public InferenceGraph(LivenessAnalysis livenessAnalysis) {
-        this.livenessData = livenessAnalysis.getLivenessData();
+        this.livenessAnalysis = livenessAnalysis;
         this.method = livenessAnalysis.getMethod();
         this.vartable = method.getVarTable();
-        this.graph = new HashMap<>();
+        this.size = livenessAnalysis.getNumberOfVariables();
+        this.matrix = new long[(int) (((long) size * (size - 1) / 2 + 63) >>> 6)];
+        this.adjacency = new int[size][];
+        this.degrees = new int[size];
+        this.spilled = new ArrayList<>();
+        this.moves = new ArrayList<>();
+        this.alias = new int[size];
+        this.edges = 0;
+        this.coalesced = 0;
         this.minColors = -1;
+
+        for (int node = 0; node < size; node++)
+            alias[node] = node;
     }
 
     public void build() {
 
-        // create a node for each variable
-        for (String var : vartable.keySet()) {
-            Descriptor varDescriptor = vartable.get(var);
-            if (varDescriptor.getScope().equals(VarScope.LOCAL) && !varDescriptor.getVarType().getTypeOfElement().equals(ElementType.THIS))
-                graph.put(var, new HashSet<>());
-            else {
-                if (varDescriptor.getVirtualReg() > minColors)
-                    minColors = varDescriptor.getVirtualReg();
-            }
-        }
-        minColors+=1;
+        // parameters and this keep their registers, the locals go after them
+        minColors = livenessAnalysis.getReservedRegisters();
 
-        // each node is connected to nodes that are live at the same time
-        for (Instruction instruction : method.getInstructions()) {
-            LivenessData data = livenessData.get(instruction);
+        for (int node = 0; node < size; node++)
+            adjacency[node] = new int[4];
 
-            Set<String> out_def = new HashSet<>(data.getOut());
-            out_def.addAll(data.getDef());
+        // a variable interferes with everything live after each of its assignments, except the variable it copies
+        livenessAnalysis.forEachInstruction((instruction, in, out, def) -> {
+            if (def < 0)
+                return;
 
-            addEdges(out_def);
-            addEdges(data.getIn());
+            int source = getMoveSource(instruction);
+            if (source >= 0)
+                moves.add(new int[]{def, source});
 
-        }
+            Bits.forEach(out, var -> {
+                if (var != source)
+                    addEdge(def, var);
+            });
+        });
+
+        // variables read before any assignment are all live when the method starts
+        long[] liveAtEntry = livenessAnalysis.getLiveAtEntry();
+        Bits.forEach(liveAtEntry, var1 -> Bits.forEach(liveAtEntry, var2 -> addEdge(var1, var2)));
+    }
+
+    /**
+     * Variable copied by an assignment of a single variable, or -1.
+     */
+    private int getMoveSource(Instruction instruction) {
+        if (!(instruction instanceof AssignInstruction assignInstruction)
+                || !(assignInstruction.getRhs() instanceof SingleOpInstruction singleOpInstruction))
+            return -1;
+
+        Element operand = singleOpInstruction.getSingleOperand();
+        if (!(operand instanceof Operand) || operand instanceof ArrayOperand)
+            return -1;
+
+        return livenessAnalysis.getVariableNumber(((Operand) operand).getName());
+    }
+
+    public void addEdge(int var1, int var2) {
+        if (var1 == var2 || interferes(var1, var2))
+            return;
+
+        long bit = matrixIndex(var1, var2);
+        matrix[(int) (bit >>> 6)] |= 1L << bit;
+
+        addNeighbor(var1, var2);
+        addNeighbor(var2, var1);
+        edges++;
+    }
 
+    public boolean interferes(int var1, int var2) {
+        if (var1 == var2)
+            return false;
 
+        long bit = matrixIndex(var1, var2);
+        return (matrix[(int) (bit >>> 6)] & (1L << bit)) != 0;
     }
 
-    private void addEdges(Set<String> alive){
-        for (String var1 : alive) {
-            Set<String> var1Set = graph.get(var1);
+    private static long matrixIndex(int var1, int var2) {
+        int high = Math.max(var1, var2);
+        int low = Math.min(var1, var2);
 
-            for (String var2 : alive)
-                if (!var1.equals(var2))
-                    var1Set.add(var2);
+        return (long) high * (high - 1) / 2 + low;
+    }
+
+    private void addNeighbor(int node, int neighbor) {
+        if (degrees[node] == adjacency[node].length)
+            adjacency[node] = Arrays.copyOf(adjacency[node], adjacency[node].length * 2);
+
+        adjacency[node][degrees[node]++] = neighbor;
+    }
+
+    private void removeNeighbor(int node, int neighbor) {
+        for (int i = 0; i < degrees[node]; i++) {
+            if (adjacency[node][i] == neighbor) {
+                adjacency[node][i] = adjacency[node][--degrees[node]];
+                return;
+            }
         }
     }
 
-    public int colorize(int maxRegisters) {
-        Stack<String> stack = new Stack<>();
+    public int getNumberOfNodes() {
+        return size;
+    }
 
-        Set<String> nodes = new HashSet<>(graph.keySet());
+    public int getNumberOfEdges() {
+        return edges;
+    }
 
+    public int getNumberOfCoalesced() {
+        return coalesced;
+    }
 
-        while (!nodes.isEmpty()) {
-            String minNode = getMinNode(nodes);
-            stack.push(minNode);
-            nodes.remove(minNode);
+    /**
+     * Colors the graph with Briggs' optimistic coloring, with at most {@code maxRegisters} registers in the method, or
+     * as few as it can when that is 0. Parameters and this keep theirs, so the locals get what is left.
+     * <p>
+     * The moves are coalesced first. Simplification takes nodes with fewer neighbours than there are registers. When none is left, the node with the
+     * lowest spill cost per neighbour is taken anyway, in the hope its neighbours end up sharing registers. Any node
+     * select then finds no register for is spilled: it still gets the lowest register above the limit, so the var
+     * table is always left with a valid allocation. Returns the number of registers used.
+     */
+    public int colorize(int maxRegisters, double[] spillCosts) {
+        int registers = maxRegisters > 0 ? maxRegisters - minColors : size;
+
+        // never against more registers than simplification needs now, so coalescing cannot make it need more
+        double[] costs = spillCosts.clone();
+        coalesce(Math.min(registers, getDegeneracy() + 1), costs);
+
+        // simplify: take the node with fewest neighbours left in the graph while it has fewer than there are registers
+        DegreeQueue queue = new DegreeQueue(degrees);
+        for (int node = 0; node < size; node++) {
+            if (alias[node] != node)
+                queue.remove(node);
         }
 
+        int[] stack = new int[size];
+        int top = 0;
 
-        // inicialize registers
-        for (String var : graph.keySet()) {
-            vartable.get(var).setVirtualReg(-1);
+        while (!queue.isEmpty()) {
+            int node;
+            if (queue.getMinDegree() < registers) {
+                node = queue.poll();
+            } else {
+                node = getSpillCandidate(queue, costs);
+                queue.remove(node);
+            }
+            stack[top++] = node;
+
+            for (int i = 0; i < degrees[node]; i++) {
+                int neighbor = adjacency[node][i];
+                if (queue.contains(neighbor))
+                    queue.decrement(neighbor);
+            }
         }
 
+        int[] colors = new int[size];
+        Arrays.fill(colors, -1);
+
         int numberRegisters = minColors;
+        spilled.clear();
 
-        while (!stack.isEmpty()){
-            String var = stack.pop();
-            Set<String> neighbors = graph.get(var);
+        // select: each node takes the lowest register none of its colored neighbours has
+        boolean[] taken = new boolean[size + 1];
+        while (top > 0){
+            int var = stack[--top];
 
-            int color = minColors;
+            for (int i = 0; i < degrees[var]; i++){
+                int neighborColor = colors[adjacency[var][i]];
+                if (neighborColor >= 0)
+                    taken[neighborColor - minColors] = true;
+            }
+
+            int color = 0;
+            while (taken[color])
+                color++;
+            colors[var] = color + minColors;
+            numberRegisters = Math.max(numberRegisters, colors[var] + 1);
 
-            for (String neighbor : neighbors){
-                int neighborColor = vartable.get(neighbor).getVirtualReg();
-                color = Math.max(color, neighborColor+1);
+            for (int i = 0; i < degrees[var]; i++){
+                int neighborColor = colors[adjacency[var][i]];
+                if (neighborColor >= 0)
+                    taken[neighborColor - minColors] = false;
             }
+        }
+
+        // coalesced variables share the register of the node they were merged into
+        for (int var = 0; var < size; var++) {
+            int node = find(var);
+            colors[var] = colors[node];
 
-            vartable.get(var).setVirtualReg(color);
+            if (colors[node] - minColors >= registers)
+                spilled.add(var);
+
+            vartable.get(livenessAnalysis.getVariableName(var)).setVirtualReg(colors[var]);
         }
 
         return numberRegisters;
     }
 
-    private String getMinNode(Set<String> nodes){
-        String minNode = null;
-        int min = Integer.MAX_VALUE;
+    /**
+     * Largest degree a node has when simplification takes it, always taking one of least degree. Simplifying never
+     * blocks with one more register than that.
+     */
+    private int getDegeneracy() {
+        DegreeQueue queue = new DegreeQueue(degrees);
+        int degeneracy = 0;
+
+        while (!queue.isEmpty()) {
+            degeneracy = Math.max(degeneracy, queue.getMinDegree());
+            int node = queue.poll();
+
+            for (int i = 0; i < degrees[node]; i++) {
+                int neighbor = adjacency[node][i];
+                if (queue.contains(neighbor))
+                    queue.decrement(neighbor);
+            }
+        }
 
-        for (String node : nodes){
-            int neighborgs = getNumberNeigh(node, nodes);
+        return degeneracy;
+    }
 
-            if (neighborgs < min){
-                min = neighborgs;
-                minNode = node;
+    /**
+     * Conservative coalescing: the two nodes of a move that do not interfere are merged when the Briggs test or the
+     * George test shows the merged node can still be simplified with the given number of registers.
+     */
+    private void coalesce(int registers, double[] costs) {
+        for (int[] move : moves) {
+            int node1 = find(move[0]);
+            int node2 = find(move[1]);
+
+            if (node1 == node2 || interferes(node1, node2))
+                continue;
+
+            if (briggs(node1, node2, registers) || george(node1, node2, registers)) {
+                merge(node1, node2);
+                costs[node1] += costs[node2];
+            } else if (george(node2, node1, registers)) {
+                merge(node2, node1);
+                costs[node2] += costs[node1];
             }
         }
+    }
 
-        return minNode;
+    /**
+     * Whether the merged node would have fewer than {@code registers} neighbours of significant degree.
+     */
+    private boolean briggs(int node1, int node2, int registers) {
+        int significant = 0;
+
+        for (int i = 0; i < degrees[node1]; i++) {
+            int neighbor = adjacency[node1][i];
+            // a neighbour of both loses one of them in the merge
+            int degree = interferes(neighbor, node2) ? degrees[neighbor] - 1 : degrees[neighbor];
+            if (degree >= registers)
+                significant++;
+        }
+        for (int i = 0; i < degrees[node2]; i++) {
+            int neighbor = adjacency[node2][i];
+            if (!interferes(neighbor, node1) && degrees[neighbor] >= registers)
+                significant++;
+        }
+
+        return significant < registers;
     }
 
-    private int getNumberNeigh(String node, Set<String> validNodes){
-        int size = 0;
-        for (String neighbor : graph.get(node))
-            if (!validNodes.contains(neighbor))
-                size++;
-        return size;
+    /**
+     * Whether every neighbour of the merged node already interferes with the one it goes into, or has insignificant
+     * degree.
+     */
+    private boolean george(int into, int merged, int registers) {
+        for (int i = 0; i < degrees[merged]; i++) {
+            int neighbor = adjacency[merged][i];
+            if (!interferes(neighbor, into) && degrees[neighbor] >= registers)
+                return false;
+        }
 
+        return true;
     }
 
+    /**
+     * Moves the edges of the merged node to the one it goes into, leaving it without neighbours.
+     */
+    private void merge(int into, int merged) {
+        alias[merged] = into;
+        coalesced++;
+
+        for (int i = 0; i < degrees[merged]; i++) {
+            int neighbor = adjacency[merged][i];
+            removeNeighbor(neighbor, merged);
+            edges--;
+            addEdge(into, neighbor);
+        }
+        degrees[merged] = 0;
+    }
+
+    private int find(int node) {
+        while (alias[node] != node)
+            node = alias[node];
+        return node;
+    }
+
+    private int getSpillCandidate(DegreeQueue queue, double[] spillCosts) {
+        int candidate = -1;
+        double candidateCost = Double.POSITIVE_INFINITY;
+
+        for (int node = 0; node < size; node++) {
+            if (!queue.contains(node))
+                continue;
+
+            double cost = spillCosts[node] / Math.max(1, queue.getDegree(node));
+            if (candidate < 0 || cost < candidateCost) {
+                candidate = node;
+                candidateCost = cost;
+            }
+        }
+
+        return candidate;
+    }
+
+    /**
+     * Variables the last coloring could not fit in the registers.
+     */
+    public List<Integer> getSpilledVariables() {
+        return spilled;
+    }
 
 }
@@ -0,0 +1,648 @@
+package pt.up.fe.comp2023.otimization.RegisterAllocation;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.otimization.ControlFlow.BasicBlock;
+import pt.up.fe.comp2023.otimization.ControlFlow.ControlFlowGraph;
+import pt.up.fe.comp2023.otimization.ControlFlow.InstructionReads;
+
+import java.util.*;
+
+/**
+ * Linear scan register allocation, for methods too large to build an interference graph for. Each variable gets a
+ * live interval over the positions of the instructions in the order of the method: instruction {@code i} reads its
+ * operands at position {@code 2i} and assigns at {@code 2i + 1}. The intervals keep the holes where the variable is
+ * dead, and are given registers in order of their start, in a single pass.
+ * <p>
+ * An interval that only fits in a register for a while is split in two: the second part is another variable, with
+ * a copy from the first where the split happens, or the literal again for a constant. Intervals are only split before instructions no jump goes past, so
+ * every path to the second part goes through the copy and no path leads back from it. When the registers run out,
+ * the interval whose next use is furthest away goes to the spill array of {@link SpillCode}, from the last such
+ * point before it is needed. Since the array takes a register of its own, the allocation is done again with one
+ * register less when anything other than a constant, which is rematerialized, is spilled.
+ */
+public class LinearScan {
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final LivenessAnalysis livenessAnalysis;
+    private final SpillCode spillCode;
+    private final Method method;
+    private final HashMap<String, Descriptor> vartable;
+    private final List<Instruction> instructions;
+    private final int[] previousSplit;
+    private final int[] parts;
+    private final List<Interval> intervals;
+    private final List<Interval> inMemory;
+    private final Map<String, LiteralElement> constants;
+    private final int minColors;
+    private int maxRegister;
+    private int splits;
+    private int nextId;
+
+    public LinearScan(LivenessAnalysis livenessAnalysis, SpillCode spillCode) {
+        this.livenessAnalysis = livenessAnalysis;
+        this.spillCode = spillCode;
+        this.method = livenessAnalysis.getMethod();
+        this.vartable = method.getVarTable();
+        this.instructions = method.getInstructions();
+        this.previousSplit = new int[instructions.size() + 1];
+        this.parts = new int[livenessAnalysis.getNumberOfVariables()];
+        this.intervals = new ArrayList<>();
+        this.inMemory = new ArrayList<>();
+        this.constants = spillCode.getConstants();
+        this.minColors = livenessAnalysis.getReservedRegisters();
+
+        findSplitPositions();
+    }
+
+    public int getNumberOfIntervals() {
+        return intervals.size();
+    }
+
+    public int getNumberOfSplits() {
+        return splits;
+    }
+
+    public int getNumberOfSpilled() {
+        return inMemory.size();
+    }
+
+    /**
+     * Allocates registers with at most {@code maxRegisters} in the method, or without a limit when that is 0, and
+     * rewrites the method with the splits and spills. Returns the number of registers used, or -1, leaving the method
+     * as it was, when the variables that cannot be spilled do not fit.
+     */
+    public int allocate(int maxRegisters) {
+        int registers = maxRegisters > 0 ? maxRegisters - minColors : NONE;
+
+        buildIntervals();
+        boolean fits = scan(registers);
+
+        if (fits && inMemory.stream().allMatch(this::isRematerialized)) {
+            apply(-1);
+            return minColors + maxRegister + 1;
+        }
+        if (!fits || registers < 1)
+            return -1;
+
+        // the spill array keeps the last register for the whole method
+        buildIntervals();
+        if (!scan(registers - 1))
+            return -1;
+
+        apply(registers - 1);
+        return minColors + registers;
+    }
+
+    /**
+     * An interval may be split before instruction {@code k} when no edge of the control flow graph goes past that
+     * point: forward jumps over it, and backward jumps from after it to it or before it. Keeps, for each instruction,
+     * the last such point up to it.
+     */
+    private void findSplitPositions() {
+        ControlFlowGraph cfg = livenessAnalysis.getControlFlowGraph();
+        Map<Instruction, Integer> indexes = getIndexes();
+        int[] crossings = new int[instructions.size() + 2];
+
+        for (BasicBlock.Edge edge : cfg.getEdges()) {
+            int from = indexes.get(edge.from().getLastInstruction());
+            int to = indexes.get(edge.to().getInstructions().get(0));
+
+            if (to > from + 1) {
+                crossings[from + 1]++;
+                crossings[to]--;
+            } else if (to <= from) {
+                crossings[to]++;
+                crossings[from + 1]--;
+            }
+        }
+
+        int crossing = 0;
+        int last = -1;
+        for (int k = 0; k <= instructions.size(); k++) {
+            crossing += crossings[k];
+            if (crossing == 0)
+                last = k;
+            previousSplit[k] = last;
+        }
+    }
+
+    private Map<Instruction, Integer> getIndexes() {
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++)
+            indexes.put(instructions.get(i), i);
+        return indexes;
+    }
+
+    /**
+     * One interval per variable, from the liveness at the end of each block and the reads and assignments in it,
+     * walking the blocks and their instructions backwards.
+     */
+    private void buildIntervals() {
+        intervals.clear();
+        inMemory.clear();
+        maxRegister = -1;
+        splits = 0;
+        nextId = 0;
+        Arrays.fill(parts, 0);
+
+        Interval[] variables = new Interval[livenessAnalysis.getNumberOfVariables()];
+        for (int var = 0; var < variables.length; var++)
+            variables[var] = new Interval(var, livenessAnalysis.getVariableName(var), null, -1, false);
+
+        List<BasicBlock> blocks = livenessAnalysis.getControlFlowGraph().getBlocks();
+        Map<Instruction, Integer> indexes = getIndexes();
+
+        for (int b = blocks.size() - 1; b >= 0; b--) {
+            BasicBlock block = blocks.get(b);
+            List<Instruction> blockInstructions = block.getInstructions();
+            int first = indexes.get(blockInstructions.get(0));
+            int blockFrom = 2 * first;
+            int blockTo = 2 * (first + blockInstructions.size());
+
+            Bits.forEach(livenessAnalysis.getLiveOut(block), var -> variables[var].addRangeBackwards(blockFrom, blockTo));
+
+            for (int i = blockInstructions.size() - 1; i >= 0; i--) {
+                Instruction instruction = blockInstructions.get(i);
+                int position = 2 * (first + i);
+
+                Operand assigned = InstructionReads.getAssigned(instruction);
+                int def = assigned == null ? -1 : livenessAnalysis.getVariableNumber(assigned.getName());
+                if (def >= 0) {
+                    variables[def].setStartBackwards(position + 1);
+                    variables[def].addOccurrenceBackwards(position + 1, assigned);
+                }
+
+                InstructionReads.visit(instruction, (element, replacement) -> {
+                    if (!(element instanceof Operand operand))
+                        return;
+
+                    int use = livenessAnalysis.getVariableNumber(operand.getName());
+                    if (use >= 0) {
+                        variables[use].addRangeBackwards(blockFrom, position + 1);
+                        variables[use].addOccurrenceBackwards(position, operand);
+                    }
+                });
+            }
+        }
+
+        for (Interval interval : variables) {
+            if (interval.rangeCount > 0) {
+                interval.finishBuilding();
+                intervals.add(interval);
+            }
+        }
+    }
+
+    /**
+     * Gives registers to the intervals in order of their start. Returns false when an interval that cannot be spilled
+     * finds no register and holds none that could be taken from a spillable one.
+     */
+    private boolean scan(int registers) {
+        PriorityQueue<Interval> unhandled = new PriorityQueue<>(
+                Comparator.comparingInt(Interval::start).thenComparingInt(interval -> interval.id));
+        unhandled.addAll(intervals);
+
+        List<Interval> active = new ArrayList<>();
+        List<Interval> inactive = new ArrayList<>();
+
+        while (!unhandled.isEmpty()) {
+            Interval current = unhandled.poll();
+            int position = current.start();
+
+            // intervals that ended leave, the ones in a hole stop holding their register until they are live again
+            List<Interval> stillActive = new ArrayList<>();
+            List<Interval> stillInactive = new ArrayList<>();
+            for (Interval interval : active) {
+                if (interval.end() <= position)
+                    continue;
+                (interval.covers(position) ? stillActive : stillInactive).add(interval);
+            }
+            for (Interval interval : inactive) {
+                if (interval.end() <= position)
+                    continue;
+                (interval.covers(position) ? stillActive : stillInactive).add(interval);
+            }
+            active = stillActive;
+            inactive = stillInactive;
+
+            // position up to which each register is free, for those an inactive interval takes back during this one
+            Map<Integer, Integer> freeUntil = new HashMap<>();
+            for (Interval interval : inactive) {
+                int intersection = interval.nextIntersection(current, position);
+                if (intersection != NONE)
+                    freeUntil.merge(interval.register, intersection, Math::min);
+            }
+
+            if (!allocateFree(current, registers, active, freeUntil, unhandled)
+                    && !allocateBlocked(current, registers, active, freeUntil, unhandled))
+                return false;
+
+            if (current.register >= 0) {
+                active.add(current);
+                maxRegister = Math.max(maxRegister, current.register);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Takes the lowest register free for the whole interval or, failing that, the one free for longest, splitting
+     * the interval where that register is needed again.
+     */
+    private boolean allocateFree(Interval current, int registers, List<Interval> active, Map<Integer, Integer> freeUntil,
+                                 PriorityQueue<Interval> unhandled) {
+        BitSet busy = new BitSet();
+        for (Interval interval : active)
+            busy.set(interval.register);
+
+        int best = -1;
+        int bestUntil = -1;
+        for (int register = busy.nextClearBit(0); register < registers; register = busy.nextClearBit(register + 1)) {
+            int until = freeUntil.getOrDefault(register, NONE);
+            if (until >= current.end()) {
+                best = register;
+                bestUntil = NONE;
+                break;
+            }
+            if (until > bestUntil) {
+                best = register;
+                bestUntil = until;
+            }
+        }
+
+        if (best < 0 || bestUntil <= current.start())
+            return false;
+
+        if (bestUntil < current.end()) {
+            // the first part must end, copy included, before the register is taken back
+            Interval rest = split(current, (bestUntil - 1) / 2);
+            if (rest == null)
+                return false;
+            unhandled.add(rest);
+        }
+
+        current.register = best;
+        return true;
+    }
+
+    /**
+     * With every register taken, either the interval goes to memory or it takes the register of an active one, which
+     * goes to memory from the last point it can be split at. The one whose next use is furthest away goes.
+     */
+    private boolean allocateBlocked(Interval current, int registers, List<Interval> active,
+                                    Map<Integer, Integer> freeUntil, PriorityQueue<Interval> unhandled) {
+        int position = current.start();
+
+        Interval victim = null;
+        int victimUse = -1;
+        for (Interval interval : active) {
+            // an inactive interval taking the register back during this one would keep it from having it
+            if (interval.register >= registers || freeUntil.containsKey(interval.register) || !isSpillable(interval))
+                continue;
+
+            int use = interval.nextUse(position);
+            if (use > victimUse) {
+                victim = interval;
+                victimUse = use;
+            }
+        }
+
+        if (isSpillable(current) && (victim == null || current.nextUse(position) >= victimUse)) {
+            inMemory.add(current);
+            return true;
+        }
+        if (victim == null)
+            return false;
+
+        active.remove(victim);
+        Interval rest = position > 0 ? split(victim, (position - 1) / 2) : null;
+        inMemory.add(rest == null ? victim : rest);
+
+        current.register = victim.register;
+        if (rest == null)
+            victim.register = -1;
+        return true;
+    }
+
+    private boolean isSpillable(Interval interval) {
+        return spillCode.isSpillable(interval.variableName);
+    }
+
+    /**
+     * Whether spilling the interval leaves the spill array out, since its variable is only ever assigned a literal.
+     * Splitting keeps that, as the parts that start with a copy are assigned the literal instead.
+     */
+    private boolean isRematerialized(Interval interval) {
+        return constants.containsKey(interval.variableName);
+    }
+
+    /**
+     * Splits the interval before the last instruction up to {@code instruction} it can be split at, after its start.
+     * The interval keeps everything before that point, and also the read of the copy when it is live there. Returns the
+     * new interval with the rest, or null when there is no such point.
+     */
+    private Interval split(Interval interval, int instruction) {
+        int boundary = previousSplit[Math.min(instruction, instructions.size())];
+        if (boundary < 0 || 2 * boundary <= interval.start())
+            return null;
+
+        int position = 2 * boundary;
+        boolean copied = interval.covers(position);
+        Interval rest = new Interval(interval.variable, interval.variableName, interval, boundary, copied);
+
+        int parentRanges = 0;
+        for (int r = 0; r < interval.rangeCount; r++) {
+            int from = interval.ranges[2 * r];
+            int to = interval.ranges[2 * r + 1];
+
+            if (to > position)
+                rest.addRange(Math.max(from, position), to);
+
+            int limit = copied ? position + 1 : position;
+            if (from < limit) {
+                interval.ranges[2 * parentRanges] = from;
+                interval.ranges[2 * parentRanges + 1] = Math.min(to, limit);
+                parentRanges++;
+            }
+        }
+        interval.rangeCount = parentRanges;
+
+        int parentOccurrences = 0;
+        for (int o = 0; o < interval.occurrences; o++) {
+            if (interval.positions[o] >= position) {
+                rest.addOccurrence(interval.positions[o], interval.operands[o]);
+            } else {
+                interval.positions[parentOccurrences] = interval.positions[o];
+                interval.operands[parentOccurrences] = interval.operands[o];
+                parentOccurrences++;
+            }
+        }
+        for (int o = parentOccurrences; o < interval.occurrences; o++)
+            interval.operands[o] = null;
+        interval.occurrences = parentOccurrences;
+
+        if (rest.rangeCount == 0)
+            return null;
+
+        intervals.add(rest);
+        splits++;
+        return rest;
+    }
+
+    /**
+     * Renames the variables of the split intervals, adds their copies and the var table entries, and moves the
+     * spilled intervals to memory, with the spill array in the given register.
+     */
+    private void apply(int spillRegister) {
+        Map<Integer, List<Instruction>> copies = new HashMap<>();
+
+        for (Interval interval : intervals) {
+            if (interval.parent == null)
+                continue;
+
+            Type type = vartable.get(interval.variableName).getVarType();
+            vartable.put(interval.name, new Descriptor(VarScope.LOCAL, -1, type));
+
+            for (int o = 0; o < interval.occurrences; o++)
+                interval.operands[o].setName(interval.name);
+
+            if (interval.copied) {
+                LiteralElement literal = constants.get(interval.variableName);
+                Element source = literal != null ? new LiteralElement(literal.getLiteral(), type) : new Operand(interval.parent.name, type);
+                Instruction copy = new AssignInstruction(new Operand(interval.name, type), type, new SingleOpInstruction(source));
+                copies.computeIfAbsent(interval.boundary, boundary -> new ArrayList<>()).add(copy);
+            }
+        }
+
+        // variables that are never read nor assigned still need a register for the backend
+        for (int var = 0; var < livenessAnalysis.getNumberOfVariables(); var++)
+            vartable.get(livenessAnalysis.getVariableName(var)).setVirtualReg(minColors);
+        for (Interval interval : intervals) {
+            if (interval.register >= 0)
+                vartable.get(interval.name).setVirtualReg(minColors + interval.register);
+        }
+
+        if (!copies.isEmpty())
+            insertCopies(copies);
+
+        if (!inMemory.isEmpty()) {
+            List<String> names = new ArrayList<>();
+            for (Interval interval : inMemory)
+                names.add(interval.name);
+
+            spillCode.spill(names);
+            if (vartable.containsKey(SpillCode.ARRAY_NAME))
+                vartable.get(SpillCode.ARRAY_NAME).setVirtualReg(minColors + spillRegister);
+        }
+    }
+
+    /**
+     * Puts the copies before their instructions. Jumps to those instructions all come from before them, so their
+     * labels move to the copies.
+     */
+    private void insertCopies(Map<Integer, List<Instruction>> copies) {
+        Map<Instruction, Instruction> labelTargets = new IdentityHashMap<>();
+        List<Instruction> rewritten = new ArrayList<>(instructions.size() + copies.size());
+
+        for (int i = 0; i < instructions.size(); i++) {
+            List<Instruction> before = copies.get(i);
+            if (before != null) {
+                labelTargets.put(instructions.get(i), before.get(0));
+                rewritten.addAll(before);
+            }
+            rewritten.add(instructions.get(i));
+        }
+
+        for (Map.Entry<String, Instruction> label : method.getLabels().entrySet()) {
+            Instruction target = labelTargets.get(label.getValue());
+            if (target != null)
+                label.setValue(target);
+        }
+
+        instructions.clear();
+        instructions.addAll(rewritten);
+    }
+
+    private class Interval {
+        private final int id;
+        private final int variable;
+        private final String variableName;
+        private final String name;
+        private final Interval parent;
+        private final int boundary;
+        private final boolean copied;
+        private int[] ranges;
+        private int rangeCount;
+        private int[] positions;
+        private Operand[] operands;
+        private int occurrences;
+        private int register;
+
+        /**
+         * Interval of a variable, or the part of one split off the parent before instruction {@code boundary}, which
+         * starts with a copy from it when {@code copied}.
+         */
+        Interval(int variable, String variableName, Interval parent, int boundary, boolean copied) {
+            this.id = nextId++;
+            this.variable = variable;
+            this.variableName = variableName;
+            this.name = parent == null ? variableName : getFreeName(variable, variableName);
+            this.parent = parent;
+            this.boundary = boundary;
+            this.copied = copied;
+            this.ranges = new int[4];
+            this.rangeCount = 0;
+            this.positions = new int[4];
+            this.operands = new Operand[4];
+            this.occurrences = 0;
+            this.register = -1;
+        }
+
+        int start() {
+            return ranges[0];
+        }
+
+        int end() {
+            return ranges[2 * rangeCount - 1];
+        }
+
+        /**
+         * Index of the first range that ends after the position.
+         */
+        private int findRange(int position) {
+            int low = 0;
+            int high = rangeCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (ranges[2 * middle + 1] <= position)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        boolean covers(int position) {
+            int range = findRange(position);
+            return range < rangeCount && ranges[2 * range] <= position;
+        }
+
+        /**
+         * First position from the given one where both intervals are live, or {@link #NONE}.
+         */
+        int nextIntersection(Interval other, int position) {
+            int i = findRange(position);
+            int j = other.findRange(position);
+
+            while (i < rangeCount && j < other.rangeCount) {
+                int from = Math.max(Math.max(ranges[2 * i], other.ranges[2 * j]), position);
+                int to = Math.min(ranges[2 * i + 1], other.ranges[2 * j + 1]);
+                if (from < to)
+                    return from;
+
+                if (ranges[2 * i + 1] < other.ranges[2 * j + 1])
+                    i++;
+                else
+                    j++;
+            }
+
+            return NONE;
+        }
+
+        /**
+         * First read or assignment at or after the position, or {@link #NONE}.
+         */
+        int nextUse(int position) {
+            int low = 0;
+            int high = occurrences;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (positions[middle] < position)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low < occurrences ? positions[low] : NONE;
+        }
+
+        void addRange(int from, int to) {
+            if (2 * rangeCount == ranges.length)
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+
+            ranges[2 * rangeCount] = from;
+            ranges[2 * rangeCount + 1] = to;
+            rangeCount++;
+        }
+
+        void addOccurrence(int position, Operand operand) {
+            if (occurrences == positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+                operands = Arrays.copyOf(operands, operands.length * 2);
+            }
+
+            positions[occurrences] = position;
+            operands[occurrences] = operand;
+            occurrences++;
+        }
+
+        /*
+         * While building, ranges and occurrences come in decreasing order of position and are reversed at the end.
+         */
+
+        void addRangeBackwards(int from, int to) {
+            if (rangeCount > 0 && ranges[2 * rangeCount - 2] <= to) {
+                ranges[2 * rangeCount - 2] = Math.min(ranges[2 * rangeCount - 2], from);
+                ranges[2 * rangeCount - 1] = Math.max(ranges[2 * rangeCount - 1], to);
+            } else {
+                addRange(from, to);
+            }
+        }
+
+        /**
+         * The variable is assigned at the position, so it is not live right before it. An assignment nothing reads
+         * still takes the register for that position.
+         */
+        void setStartBackwards(int position) {
+            if (rangeCount == 0 || ranges[2 * rangeCount - 2] > position)
+                addRange(position, position + 1);
+            else
+                ranges[2 * rangeCount - 2] = position;
+        }
+
+        void addOccurrenceBackwards(int position, Operand operand) {
+            addOccurrence(position, operand);
+        }
+
+        void finishBuilding() {
+            for (int low = 0, high = rangeCount - 1; low < high; low++, high--) {
+                swap(ranges, 2 * low, 2 * high);
+                swap(ranges, 2 * low + 1, 2 * high + 1);
+            }
+            for (int low = 0, high = occurrences - 1; low < high; low++, high--) {
+                swap(positions, low, high);
+                Operand operand = operands[low];
+                operands[low] = operands[high];
+                operands[high] = operand;
+            }
+        }
+    }
+
+    private static void swap(int[] array, int i, int j) {
+        int value = array[i];
+        array[i] = array[j];
+        array[j] = value;
+    }
+
+    /**
+     * Name for a part of a variable, not a valid identifier so no variable of the program has it.
+     */
+    private String getFreeName(int variable, String variableName) {
+        String name;
+        do {
+            name = variableName + "#" + ++parts[variable];
+        } while (vartable.containsKey(name));
+        return name;
+    }
+}
@@ -1,130 +1,273 @@
 package pt.up.fe.comp2023.otimization.RegisterAllocation;
 
 import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.otimization.ControlFlow.BasicBlock;
+import pt.up.fe.comp2023.otimization.ControlFlow.ControlFlowGraph;
+import pt.up.fe.comp2023.otimization.ControlFlow.InstructionReads;
 
 import java.util.*;
 
+/**
+ * Liveness of the local variables of a method. The variables that get a register are numbered densely from the var
+ * table, and the sets are bitsets over those numbers.
+ * <p>
+ * The dataflow equations are solved per basic block, from the variables each block reads before assigning and the
+ * ones it assigns. The liveness at each instruction is only derived afterwards, by walking back from the end of each
+ * block, when the interference graph is built.
+ */
 public class LivenessAnalysis {
 
     private final Method method;
-    private final Map<Instruction, LivenessData> livenessData;
+    private final ControlFlowGraph cfg;
+    private final List<String> variables;
+    private final Map<String, Integer> numbers;
+    private final BlockLiveness[] blocks;
 
     public LivenessAnalysis(Method method){
         this.method = method;
-        this.livenessData = new HashMap<>();
+        this.cfg = new ControlFlowGraph(method);
+        this.variables = new ArrayList<>();
+        this.numbers = new HashMap<>();
 
-        for (Instruction instruction : method.getInstructions()){
-            LivenessData data = new LivenessData(getDefineVariables(instruction), getUseVariables(instruction),
-                    new HashSet<>(), new HashSet<>());
-            livenessData.put(instruction, data);
-        }
+        numberVariables();
 
+        this.blocks = new BlockLiveness[cfg.getBlocks().size()];
+        for (BasicBlock block : cfg.getBlocks())
+            blocks[block.getId()] = new BlockLiveness(block);
     }
 
     public Method getMethod() {
         return method;
     }
 
-    public Map<Instruction, LivenessData> getLivenessData() {
-        return livenessData;
+    public ControlFlowGraph getControlFlowGraph() {
+        return cfg;
+    }
+
+    /**
+     * Number of registers taken by this and the parameters, which keep them. The variables go in the ones after.
+     */
+    public int getReservedRegisters() {
+        int reserved = 0;
+
+        for (Descriptor descriptor : method.getVarTable().values()) {
+            if (descriptor.getScope() != VarScope.LOCAL || descriptor.getVarType().getTypeOfElement() == ElementType.THIS)
+                reserved = Math.max(reserved, descriptor.getVirtualReg() + 1);
+        }
+
+        return reserved;
+    }
+
+    public int getNumberOfVariables() {
+        return variables.size();
     }
 
-    public void analyze(){
-        boolean anyModification = true;
+    public String getVariableName(int variable) {
+        return variables.get(variable);
+    }
 
-        List<Instruction> instructions = new ArrayList<>(method.getInstructions());
-        Collections.reverse(instructions);
+    /**
+     * Number of the variable, or -1 when it does not get a register.
+     */
+    public int getVariableNumber(String name) {
+        return numbers.getOrDefault(name, -1);
+    }
 
-        while (anyModification){
-            anyModification = false;
+    public long[] getLiveIn(BasicBlock block) {
+        return blocks[block.getId()].in;
+    }
 
-            for (Instruction instruction : instructions){
+    public long[] getLiveOut(BasicBlock block) {
+        return blocks[block.getId()].out;
+    }
 
-                LivenessData data = livenessData.get(instruction);
+    /**
+     * Variables read before being assigned on some path from the start of the method.
+     */
+    public long[] getLiveAtEntry() {
+        return blocks.length == 0 ? Bits.create(variables.size()) : getLiveIn(cfg.getEntry());
+    }
 
-                Set<String> in = new HashSet<>(data.getUse());
-                in.addAll(data.getOut());
-                in.removeAll(data.getDef());
+    /**
+     * Estimated cost of keeping each variable out of the registers: the number of times it is read or assigned, where
+     * each access inside a loop weighs ten times as much as one outside it.
+     */
+    public double[] getSpillCosts() {
+        double[] costs = new double[variables.size()];
 
-                anyModification |= data.getIn().addAll(in);
+        for (BasicBlock block : cfg.getBlocks()) {
+            BlockLiveness data = blocks[block.getId()];
+            double weight = Math.pow(10, block.getLoopDepth());
 
-                for (Node successor : instruction.getSuccessors()){
-                    if (successor.getNodeType().equals(NodeType.INSTRUCTION)) {
-                        LivenessData successorData = livenessData.get((Instruction) successor);
-                        anyModification |= data.getOut().addAll(successorData.getIn());
-                    }
-                }
+            for (int i = 0; i < data.defs.length; i++) {
+                if (data.defs[i] >= 0)
+                    costs[data.defs[i]] += weight;
+                for (int use : data.uses[i])
+                    costs[use] += weight;
             }
         }
 
+        return costs;
     }
 
-    private Set<String> getDefineVariables(Instruction instruction){
-        HashSet<String> def = new HashSet<>();
+    /**
+     * Solves the dataflow equations with a worklist of blocks, starting in postorder so a block usually comes after
+     * its successors. A block is only evaluated again when the live-in of one of its successors grew. Returns the
+     * number of blocks evaluated.
+     */
+    public int analyze(){
+        List<BasicBlock> order = new ArrayList<>(cfg.getReversePostOrder());
+        Collections.reverse(order);
 
-        if (instruction.getInstType() == InstructionType.ASSIGN){
-            Operand element = (Operand) ((AssignInstruction) instruction).getDest();
-            addElement(def, element);
-        }else if (instruction.getInstType() == InstructionType.GETFIELD){
-            Operand operand = (Operand) ((GetFieldInstruction) instruction).getSecondOperand();
-            addElement(def, operand);
+        // Blocks the entry cannot reach still get registers for their variables
+        boolean[] queued = new boolean[blocks.length];
+        for (BasicBlock block : order)
+            queued[block.getId()] = true;
+        for (BasicBlock block : cfg.getBlocks()) {
+            if (!queued[block.getId()]) {
+                queued[block.getId()] = true;
+                order.add(block);
+            }
         }
 
-        return def;
-    }
-
-    private Set<String> getUseVariables(Instruction instruction){
-        HashSet<String> use = new HashSet<>();
-
-        switch (instruction.getInstType()){
-            case ASSIGN:
-                AssignInstruction assignInstruction = (AssignInstruction) instruction;
-                return getUseVariables(assignInstruction.getRhs());
-            case CALL:
-                CallInstruction callInstruction = (CallInstruction) instruction;
-                if (callInstruction.getListOfOperands() == null)
-                    break;
-                for (Element element : callInstruction.getListOfOperands())
-                    addElement(use, element);
-                return use;
-            case RETURN:
-                ReturnInstruction returnInstruction = (ReturnInstruction) instruction;
-                if (returnInstruction.hasReturnValue()) {
-                    addElement(use, returnInstruction.getOperand());
+        Deque<BasicBlock> worklist = new ArrayDeque<>(order);
+        int evaluations = 0;
+
+        while (!worklist.isEmpty()) {
+            BasicBlock block = worklist.poll();
+            queued[block.getId()] = false;
+            evaluations++;
+
+            BlockLiveness data = blocks[block.getId()];
+            for (BasicBlock.Edge edge : block.getSuccessors())
+                Bits.or(data.out, blocks[edge.to().getId()].in);
+
+            boolean changed = false;
+            for (int i = 0; i < data.in.length; i++) {
+                long in = data.use[i] | (data.out[i] & ~data.def[i]);
+                if (in != data.in[i]) {
+                    data.in[i] = in;
+                    changed = true;
                 }
-                return use;
-            case BRANCH:
-                CondBranchInstruction condBranchInstruction = (CondBranchInstruction) instruction;
-                return getUseVariables(condBranchInstruction.getCondition());
-            case BINARYOPER:
-                BinaryOpInstruction binaryOperationInstruction = (BinaryOpInstruction) instruction;
-                addElement(use, binaryOperationInstruction.getLeftOperand());
-                addElement(use, binaryOperationInstruction.getRightOperand());
-                return use;
-            case UNARYOPER:
-                UnaryOpInstruction unaryOperationInstruction = (UnaryOpInstruction) instruction;
-                addElement(use, unaryOperationInstruction.getOperand());
-                return use;
-            case PUTFIELD:
-                PutFieldInstruction putFieldInstruction = (PutFieldInstruction) instruction;
-                addElement(use, putFieldInstruction.getThirdOperand());
-                return use;
-            case GETFIELD:
-            case NOPER:
-            case GOTO:
-                return use;
+            }
+
+            if (!changed)
+                continue;
 
+            for (BasicBlock.Edge edge : block.getPredecessors()) {
+                BasicBlock predecessor = edge.from();
+                if (!queued[predecessor.getId()]) {
+                    queued[predecessor.getId()] = true;
+                    worklist.add(predecessor);
+                }
+            }
         }
-        return use;
+
+        return evaluations;
     }
 
-    private void addElement(Set<String> set, Element element){
-        if (element.isLiteral())
-            return;
+    /**
+     * Calls the visitor with the variables live before and after every instruction of the method, and the one it
+     * assigns. The sets are reused between calls, so the visitor must copy anything it keeps.
+     */
+    public void forEachInstruction(InstructionVisitor visitor) {
+        long[] live = Bits.create(variables.size());
+        long[] out = Bits.create(variables.size());
+
+        for (BasicBlock block : cfg.getBlocks()) {
+            BlockLiveness data = blocks[block.getId()];
+            System.arraycopy(data.out, 0, live, 0, live.length);
+
+            for (int i = data.defs.length - 1; i >= 0; i--) {
+                System.arraycopy(live, 0, out, 0, live.length);
+
+                if (data.defs[i] >= 0)
+                    Bits.clear(live, data.defs[i]);
+                for (int use : data.uses[i])
+                    Bits.set(live, use);
+
+                visitor.visit(block.getInstructions().get(i), live, out, data.defs[i]);
+            }
+        }
+    }
+
+    private void numberVariables() {
+        List<Map.Entry<String, Descriptor>> locals = new ArrayList<>();
+
+        for (Map.Entry<String, Descriptor> entry : method.getVarTable().entrySet()) {
+            Descriptor descriptor = entry.getValue();
+            if (descriptor.getScope() == VarScope.LOCAL && descriptor.getVarType().getTypeOfElement() != ElementType.THIS)
+                locals.add(entry);
+        }
+
+        // Same numbers on every run, whatever the order of the var table
+        locals.sort(Comparator.comparingInt((Map.Entry<String, Descriptor> entry) -> entry.getValue().getVirtualReg())
+                .thenComparing(Map.Entry::getKey));
+
+        for (Map.Entry<String, Descriptor> entry : locals) {
+            numbers.put(entry.getKey(), variables.size());
+            variables.add(entry.getKey());
+        }
+    }
+
+    private int getDefinedVariable(Instruction instruction) {
+        Operand assigned = InstructionReads.getAssigned(instruction);
+        return assigned == null ? -1 : getVariableNumber(assigned.getName());
+    }
+
+    private int[] getUsedVariables(Instruction instruction) {
+        List<Integer> used = new ArrayList<>();
+
+        InstructionReads.visit(instruction, (element, replacement) -> {
+            if (element instanceof Operand operand) {
+                int number = getVariableNumber(operand.getName());
+                if (number >= 0)
+                    used.add(number);
+            }
+        });
+
+        return used.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Sets of a block: the variables it reads before assigning them, the ones it assigns and the ones live at its
+     * start and end. The variables each instruction assigns and reads are kept to walk the block back later.
+     */
+    private class BlockLiveness {
+        private final long[] use;
+        private final long[] def;
+        private final long[] in;
+        private final long[] out;
+        private final int[] defs;
+        private final int[][] uses;
+
+        BlockLiveness(BasicBlock block) {
+            int size = block.getInstructions().size();
+
+            this.use = Bits.create(variables.size());
+            this.def = Bits.create(variables.size());
+            this.in = Bits.create(variables.size());
+            this.out = Bits.create(variables.size());
+            this.defs = new int[size];
+            this.uses = new int[size][];
+
+            for (int i = 0; i < size; i++) {
+                Instruction instruction = block.getInstructions().get(i);
+                defs[i] = getDefinedVariable(instruction);
+                uses[i] = getUsedVariables(instruction);
+
+                for (int variable : uses[i]) {
+                    if (!Bits.get(def, variable))
+                        Bits.set(use, variable);
+                }
+                if (defs[i] >= 0)
+                    Bits.set(def, defs[i]);
+            }
+        }
+    }
 
-        Operand operand = (Operand) element;
-        if (!operand.isParameter())
-            set.add(operand.getName());
+    public interface InstructionVisitor {
+        void visit(Instruction instruction, long[] in, long[] out, int def);
     }
 
 }
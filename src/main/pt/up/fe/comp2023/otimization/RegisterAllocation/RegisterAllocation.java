@@ -1,42 +1,230 @@
 package pt.up.fe.comp2023.otimization.RegisterAllocation;
 
-import org.specs.comp.ollir.ClassUnit;
-import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2023.otimization.ControlFlow.Instructions;
+import pt.up.fe.comp2023.profiling.ColoringEvent;
+import pt.up.fe.comp2023.profiling.LinearScanEvent;
+import pt.up.fe.comp2023.profiling.LivenessEvent;
+import pt.up.fe.comp2023.profiling.Profiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 public class RegisterAllocation {
 
+    /**
+     * Methods with more instructions than this are given registers by linear scan, unless the "registerAllocator"
+     * option is "graph" or "linearScan".
+     */
+    public static final int LINEAR_SCAN_THRESHOLD = 2000;
+
     private final OllirResult ollirResult;
     private final ClassUnit classUnit;
+    private final String allocator;
 
     public RegisterAllocation(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
         this.classUnit = ollirResult.getOllirClass();
-
+        this.allocator = ollirResult.getConfig().get("registerAllocator");
     }
 
+    /**
+     * Allocates the registers of every method, even after one of them does not fit, so there is a report for each
+     * method that does not.
+     */
     public void otimize(int maxRegisters) {
-        ollirResult.getOllirClass().buildCFGs();
         ollirResult.getOllirClass().buildVarTables();
 
 
         for (Method method : classUnit.getMethods()){
+            if (useLinearScan(method))
+                allocateLinearScan(method, maxRegisters);
+            else
+                allocate(method, maxRegisters);
+        }
+
+    }
+
+    private boolean useLinearScan(Method method) {
+        if ("linearScan".equals(allocator))
+            return true;
+        if ("graph".equals(allocator))
+            return false;
+
+        return method.getInstructions().size() > LINEAR_SCAN_THRESHOLD;
+    }
+
+    /**
+     * Colors the variables of the method, spilling the ones that do not fit and coloring again until they all do.
+     * Every round spills at least one variable, and the variables spilling adds are never spilled, so it ends. Returns
+     * false, after reporting it, when the variables that cannot be spilled do not fit on their own.
+     */
+    private boolean allocate(Method method, int maxRegisters) {
+        SpillCode spillCode = new SpillCode(method);
+        int minimumRegisters = -1;
+
+        try {
+            while (true) {
+                LivenessEvent livenessEvent = new LivenessEvent();
+                livenessEvent.begin();
+
+                LivenessAnalysis livenessAnalysis = new LivenessAnalysis(method);
+                int iterations = livenessAnalysis.analyze();
+
+                livenessEvent.end();
+                if (livenessEvent.shouldCommit()) {
+                    livenessEvent.method = method.getMethodName();
+                    livenessEvent.instructions = method.getInstructions().size();
+                    livenessEvent.iterations = iterations;
+                    livenessEvent.commit();
+                }
+
+                // measured before spilling adds the array, which then takes a register everywhere
+                if (minimumRegisters < 0 && maxRegisters > 0) {
+                    minimumRegisters = spillCode.getMinimumRegisters(livenessAnalysis);
+                    if (minimumRegisters > maxRegisters) {
+                        reportTooFewRegisters(method, minimumRegisters, maxRegisters);
+                        return false;
+                    }
+                }
+
+                ColoringEvent coloringEvent = new ColoringEvent();
+                coloringEvent.begin();
+
+                InferenceGraph inferenceGraph = new InferenceGraph(livenessAnalysis);
+                inferenceGraph.build();
+
+                int numberOfRegisters = inferenceGraph.colorize(maxRegisters, spillCode.getSpillCosts(livenessAnalysis));
+
+                List<String> spilled = new ArrayList<>();
+                for (int var : inferenceGraph.getSpilledVariables()) {
+                    String name = livenessAnalysis.getVariableName(var);
+                    if (spillCode.isSpillable(name))
+                        spilled.add(name);
+                }
+
+                coloringEvent.end();
+                if (coloringEvent.shouldCommit()) {
+                    coloringEvent.method = method.getMethodName();
+                    coloringEvent.variables = inferenceGraph.getNumberOfNodes();
+                    coloringEvent.interferences = inferenceGraph.getNumberOfEdges();
+                    coloringEvent.coalesced = inferenceGraph.getNumberOfCoalesced();
+                    coloringEvent.maxRegisters = maxRegisters;
+                    coloringEvent.registers = numberOfRegisters;
+                    coloringEvent.spilled = inferenceGraph.getSpilledVariables().size();
+                    coloringEvent.commit();
+                }
+
+                if (inferenceGraph.getSpilledVariables().isEmpty()) {
+                    Profiler.count("removedCopies", removeCopies(method));
+                    return true;
+                }
+
+                if (spilled.isEmpty()) {
+                    reportTooFewRegisters(method, Math.max(minimumRegisters, maxRegisters + 1), maxRegisters);
+                    return false;
+                }
+
+                spillCode.spill(spilled);
+            }
+        } finally {
+            Profiler.count("spilledVariables", spillCode.getSpilledToMemory());
+            Profiler.count("rematerializedVariables", spillCode.getRematerialized());
+        }
+    }
+
+    /**
+     * Gives registers to the variables of the method by linear scan, splitting and spilling them in a single pass.
+     * Returns false, after reporting the fewest registers the method needs, when the variables that cannot be spilled
+     * do not fit, leaving each variable in the register the var table gave it.
+     */
+    private boolean allocateLinearScan(Method method, int maxRegisters) {
+        SpillCode spillCode = new SpillCode(method);
+
+        try {
+            LivenessEvent livenessEvent = new LivenessEvent();
+            livenessEvent.begin();
+
             LivenessAnalysis livenessAnalysis = new LivenessAnalysis(method);
-            livenessAnalysis.analyze();
+            int iterations = livenessAnalysis.analyze();
 
-            InferenceGraph inferenceGraph = new InferenceGraph(livenessAnalysis);
-            inferenceGraph.build();
+            livenessEvent.end();
+            if (livenessEvent.shouldCommit()) {
+                livenessEvent.method = method.getMethodName();
+                livenessEvent.instructions = method.getInstructions().size();
+                livenessEvent.iterations = iterations;
+                livenessEvent.commit();
+            }
 
-            int numberOfRegisters = inferenceGraph.colorize(maxRegisters);
-            if ( maxRegisters != 0 && numberOfRegisters > maxRegisters){
-                String message ="The number of registers is greater than the maximum allowed." +
-                        " The min number of registers is " + numberOfRegisters + " and the maximum allowed is " + maxRegisters + ".";
-                ollirResult.getReports().add(Report.newError(Stage.OPTIMIZATION,-1,-1, message, new RuntimeException(message)));
-                return;
+            int minimumRegisters = maxRegisters > 0 ? spillCode.getMinimumRegisters(livenessAnalysis) : 0;
+            if (minimumRegisters > maxRegisters) {
+                reportTooFewRegisters(method, minimumRegisters, maxRegisters);
+                return false;
             }
+
+            LinearScanEvent linearScanEvent = new LinearScanEvent();
+            linearScanEvent.begin();
+
+            LinearScan linearScan = new LinearScan(livenessAnalysis, spillCode);
+            int numberOfRegisters = linearScan.allocate(maxRegisters);
+
+            linearScanEvent.end();
+            if (linearScanEvent.shouldCommit()) {
+                linearScanEvent.method = method.getMethodName();
+                linearScanEvent.intervals = linearScan.getNumberOfIntervals();
+                linearScanEvent.splits = linearScan.getNumberOfSplits();
+                linearScanEvent.maxRegisters = maxRegisters;
+                linearScanEvent.registers = numberOfRegisters;
+                linearScanEvent.spilled = linearScan.getNumberOfSpilled();
+                linearScanEvent.commit();
+            }
+
+            Profiler.count("splitIntervals", linearScan.getNumberOfSplits());
+
+            if (numberOfRegisters < 0) {
+                reportTooFewRegisters(method, Math.max(minimumRegisters, maxRegisters + 1), maxRegisters);
+                return false;
+            }
+
+            Profiler.count("removedCopies", removeCopies(method));
+            return true;
+        } finally {
+            Profiler.count("spilledVariables", spillCode.getSpilledToMemory());
+            Profiler.count("rematerializedVariables", spillCode.getRematerialized());
         }
+    }
+
+    /**
+     * Reports the method needs more registers than allowed. The number is the bound of
+     * {@link SpillCode#getMinimumRegisters}, or one more than allowed when the allocator could not get down to it.
+     */
+    private void reportTooFewRegisters(Method method, int numberOfRegisters, int maxRegisters) {
+        String message ="The number of registers of method " + method.getMethodName() + " is greater than the maximum allowed." +
+                " The min number of registers is " + numberOfRegisters + " and the maximum allowed is " + maxRegisters + ".";
+        ollirResult.getReports().add(Report.newError(Stage.OPTIMIZATION,-1,-1, message, new RuntimeException(message)));
+    }
+
+    /**
+     * Removes the assignments of a variable to another in the same register, which coalescing leaves behind. Returns
+     * how many were removed.
+     */
+    private static int removeCopies(Method method) {
+        HashMap<String, Descriptor> varTable = method.getVarTable();
+
+        return Instructions.rewrite(method, instruction -> {
+            if (instruction instanceof AssignInstruction assignInstruction
+                    && assignInstruction.getDest() instanceof Operand dest && !(dest instanceof ArrayOperand)
+                    && assignInstruction.getRhs() instanceof SingleOpInstruction singleOpInstruction
+                    && singleOpInstruction.getSingleOperand() instanceof Operand source && !(source instanceof ArrayOperand)
+                    && varTable.containsKey(dest.getName()) && varTable.containsKey(source.getName())
+                    && varTable.get(dest.getName()).getVirtualReg() == varTable.get(source.getName()).getVirtualReg())
+                return null;
 
+            return instruction;
+        });
     }
 }
@@ -0,0 +1,271 @@
+package pt.up.fe.comp2023.otimization.RegisterAllocation;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp2023.otimization.ControlFlow.InstructionReads;
+import pt.up.fe.comp2023.otimization.ControlFlow.Instructions;
+
+import java.util.*;
+
+/**
+ * Moves out of the registers the variables the coloring could not fit. A variable only ever assigned the same literal
+ * is rematerialized: its reads become that literal and its assignments are removed. Every other one gets a slot in an
+ * int array the method allocates when it starts, and its reads and assignments become accesses to that slot.
+ * <p>
+ * The backend loads an array element wherever it loads an operand, so the spilled values need no temporaries and the
+ * array is the only variable spilling adds.
+ */
+public class SpillCode {
+
+    /**
+     * Not a valid identifier, so no variable of the program has this name.
+     */
+    public static final String ARRAY_NAME = "spill#";
+
+    private final Method method;
+    private final Map<String, Integer> slots;
+    private LiteralElement arraySize;
+    private int rematerialized;
+
+    public SpillCode(Method method) {
+        this.method = method;
+        this.slots = new HashMap<>();
+        this.arraySize = null;
+        this.rematerialized = 0;
+    }
+
+    /**
+     * Whether the variable can leave the registers: int and boolean locals, other than the spill array itself.
+     */
+    public boolean isSpillable(String name) {
+        Descriptor descriptor = method.getVarTable().get(name);
+        if (descriptor == null || descriptor.getScope() != VarScope.LOCAL || name.equals(ARRAY_NAME))
+            return false;
+
+        ElementType type = descriptor.getVarType().getTypeOfElement();
+        return type == ElementType.INT32 || type == ElementType.BOOLEAN;
+    }
+
+    /**
+     * Spill costs of the variables of the liveness analysis. Variables that cannot be spilled cost infinitely much,
+     * and rematerializing a constant costs nothing, since pushing it is as cheap as loading it.
+     */
+    public double[] getSpillCosts(LivenessAnalysis livenessAnalysis) {
+        double[] costs = livenessAnalysis.getSpillCosts();
+        Map<String, LiteralElement> constants = findConstants();
+
+        for (int var = 0; var < costs.length; var++) {
+            String name = livenessAnalysis.getVariableName(var);
+
+            if (!isSpillable(name))
+                costs[var] = Double.POSITIVE_INFINITY;
+            else if (constants.containsKey(name))
+                costs[var] = 0;
+        }
+
+        return costs;
+    }
+
+    /**
+     * Variables spilling would rematerialize instead of moving to the array, with the literal they are assigned.
+     */
+    public Map<String, LiteralElement> getConstants() {
+        return findConstants();
+    }
+
+    /**
+     * Registers no allocation of the method can do with fewer of, however much is spilled: the ones of this and the
+     * parameters, plus, wherever it is most, one for each variable that cannot be spilled live there and one more when
+     * some variable that would have to go to the spill array is live there too, for it or for the array.
+     */
+    public int getMinimumRegisters(LivenessAnalysis livenessAnalysis) {
+        long[] unspillable = Bits.create(livenessAnalysis.getNumberOfVariables());
+        long[] toArray = Bits.create(livenessAnalysis.getNumberOfVariables());
+        Set<String> constants = findConstants().keySet();
+
+        // once the array exists it is one of the variables that cannot be spilled
+        boolean hasArray = method.getVarTable().containsKey(ARRAY_NAME);
+
+        for (int var = 0; var < livenessAnalysis.getNumberOfVariables(); var++) {
+            String name = livenessAnalysis.getVariableName(var);
+            if (!isSpillable(name))
+                Bits.set(unspillable, var);
+            else if (!hasArray && !constants.contains(name))
+                Bits.set(toArray, var);
+        }
+
+        int[] pressure = {getPressure(livenessAnalysis.getLiveAtEntry(), -1, unspillable, toArray)};
+        livenessAnalysis.forEachInstruction((instruction, in, out, def) -> {
+            int pressureIn = getPressure(in, -1, unspillable, toArray);
+            int pressureOut = getPressure(out, def, unspillable, toArray);
+            pressure[0] = Math.max(pressure[0], Math.max(pressureIn, pressureOut));
+        });
+
+        return livenessAnalysis.getReservedRegisters() + pressure[0];
+    }
+
+    /**
+     * Registers needed by the live variables and the one assigned, which takes one even when nothing reads it.
+     */
+    private static int getPressure(long[] live, int def, long[] unspillable, long[] toArray) {
+        int count = 0;
+        boolean anyToArray = false;
+
+        for (int i = 0; i < live.length; i++) {
+            count += Long.bitCount(live[i] & unspillable[i]);
+            anyToArray |= (live[i] & toArray[i]) != 0;
+        }
+
+        if (def >= 0 && !Bits.get(live, def)) {
+            if (Bits.get(unspillable, def))
+                count++;
+            anyToArray |= Bits.get(toArray, def);
+        }
+
+        return anyToArray ? count + 1 : count;
+    }
+
+    public int getSpilledToMemory() {
+        return slots.size();
+    }
+
+    public int getRematerialized() {
+        return rematerialized;
+    }
+
+    /**
+     * Rewrites the method without the given variables, which must all be spillable, and removes them from the var
+     * table.
+     */
+    public void spill(Collection<String> names) {
+        Map<String, LiteralElement> constants = findConstants();
+        Map<String, LiteralElement> rematerializing = new HashMap<>();
+
+        for (String name : names) {
+            if (constants.containsKey(name)) {
+                rematerializing.put(name, constants.get(name));
+                rematerialized++;
+            } else {
+                slots.put(name, slots.size());
+            }
+        }
+
+        Instructions.rewrite(method, instruction -> rewrite(instruction, rematerializing));
+
+        // The array is allocated before the first instruction, so a label there still jumps past it
+        if (!slots.isEmpty() && arraySize == null) {
+            arraySize = new LiteralElement("0", new Type(ElementType.INT32));
+            method.getInstructions().add(0, allocateArray());
+            method.getVarTable().put(ARRAY_NAME, new Descriptor(VarScope.LOCAL, -1, getArrayType()));
+        }
+        if (arraySize != null)
+            arraySize.setLiteral(String.valueOf(slots.size()));
+
+        for (String name : names)
+            method.getVarTable().remove(name);
+    }
+
+    /**
+     * Variables whose assignments all assign the same literal.
+     */
+    private Map<String, LiteralElement> findConstants() {
+        Map<String, LiteralElement> constants = new HashMap<>();
+        Set<String> variables = new HashSet<>();
+
+        for (Instruction instruction : method.getInstructions()) {
+            Operand assigned = InstructionReads.getAssigned(instruction);
+            if (assigned == null)
+                continue;
+
+            String name = assigned.getName();
+            LiteralElement literal = getAssignedLiteral((AssignInstruction) instruction);
+            LiteralElement previous = constants.get(name);
+
+            if (!variables.add(name) && previous == null)
+                continue; // already assigned something else
+
+            if (literal == null || previous != null && !previous.getLiteral().equals(literal.getLiteral()))
+                constants.remove(name);
+            else
+                constants.put(name, literal);
+        }
+
+        return constants;
+    }
+
+    private static LiteralElement getAssignedLiteral(AssignInstruction instruction) {
+        if (instruction.getRhs() instanceof SingleOpInstruction singleOpInstruction
+                && singleOpInstruction.getSingleOperand() instanceof LiteralElement literal)
+            return literal;
+
+        return null;
+    }
+
+    /**
+     * Returns the instruction with the spilled variables replaced, or null when it assigned a rematerialized one.
+     */
+    private Instruction rewrite(Instruction instruction, Map<String, LiteralElement> rematerializing) {
+        Operand assigned = InstructionReads.getAssigned(instruction);
+        if (assigned != null && rematerializing.containsKey(assigned.getName()))
+            return null;
+
+        InstructionReads.visit(instruction, (element, replacement) -> {
+            if (element instanceof ArrayOperand arrayOperand) {
+                List<Element> indexes = arrayOperand.getIndexOperands();
+                for (int i = 0; i < indexes.size(); i++) {
+                    Element reload = reload(indexes.get(i), rematerializing);
+                    if (reload != null)
+                        indexes.set(i, reload);
+                }
+            } else if (replacement != null) {
+                Element reload = reload(element, rematerializing);
+                if (reload != null)
+                    replacement.accept(reload);
+            }
+        });
+
+        if (assigned != null && slots.containsKey(assigned.getName())) {
+            AssignInstruction assignInstruction = (AssignInstruction) instruction;
+            return new AssignInstruction(getSlot(assigned.getName(), assigned.getType()),
+                    assignInstruction.getTypeOfAssign(), assignInstruction.getRhs());
+        }
+
+        return instruction;
+    }
+
+    /**
+     * What a read of a spilled variable becomes, or null when the element is not one.
+     */
+    private Element reload(Element element, Map<String, LiteralElement> rematerializing) {
+        if (!(element instanceof Operand operand) || element instanceof ArrayOperand)
+            return null;
+
+        LiteralElement literal = rematerializing.get(operand.getName());
+        if (literal != null)
+            return new LiteralElement(literal.getLiteral(), literal.getType());
+
+        if (slots.containsKey(operand.getName()))
+            return getSlot(operand.getName(), operand.getType());
+
+        return null;
+    }
+
+    private ArrayOperand getSlot(String name, Type type) {
+        Element index = new LiteralElement(String.valueOf(slots.get(name)), new Type(ElementType.INT32));
+        return new ArrayOperand(ARRAY_NAME, type, List.of(index));
+    }
+
+    private Instruction allocateArray() {
+        ArrayType type = getArrayType();
+        ArrayList<Element> arguments = new ArrayList<>(List.of(arraySize));
+        CallInstruction allocation = new CallInstruction(CallType.NEW, new Operand("array", new ArrayType()), arguments, type);
+
+        return new AssignInstruction(new Operand(ARRAY_NAME, type), type, allocation);
+    }
+
+    private static ArrayType getArrayType() {
+        ArrayType type = new ArrayType();
+        type.setNumDimensions(1);
+        type.setTypeOfElements(ElementType.INT32);
+        return type;
+    }
+}
@@ -0,0 +1,33 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted for every run of an AST optimization pass over a method.
+ */
+@Name("pt.up.fe.comp2023.AstPass")
+@Label("AST Optimization Pass")
+@Category({"Jmm Compiler", "Optimization"})
+@Description("Run of an AST optimization pass over a single method")
+public class AstPassEvent extends Event {
+
+    @Label("Pass")
+    public String pass;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Nodes Before")
+    public int nodesBefore;
+
+    @Label("Nodes After")
+    public int nodesAfter;
+
+    @Label("Changed")
+    @Description("The pass reported a modification or the method node count changed")
+    public boolean changed;
+}
@@ -0,0 +1,41 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted for the interference graph construction and coloring of a method.
+ */
+@Name("pt.up.fe.comp2023.Coloring")
+@Label("Register Coloring")
+@Category({"Jmm Compiler", "Register Allocation"})
+public class ColoringEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Variables")
+    public int variables;
+
+    @Label("Interferences")
+    @Description("Number of edges in the interference graph")
+    public int interferences;
+
+    @Label("Max Registers")
+    @Description("Register limit requested, or 0 for no limit")
+    public int maxRegisters;
+
+    @Label("Coalesced")
+    @Description("Copies whose variables were merged into the same register")
+    public int coalesced;
+
+    @Label("Registers")
+    public int registers;
+
+    @Label("Spilled")
+    @Description("Variables the coloring could not fit under the register limit")
+    public int spilled;
+}
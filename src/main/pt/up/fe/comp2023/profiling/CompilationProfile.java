@@ -0,0 +1,79 @@
+package pt.up.fe.comp2023.profiling;
+
+import com.google.gson.Gson;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-phase wall time, CPU time and allocation of one compilation, plus named counters
+ * (e.g. the number of optimizer iterations). Phases and counters may be added from the pool threads a compilation
+ * uses, see {@link Profiler#runAs}.
+ */
+public class CompilationProfile {
+
+    private static final Gson GSON = new Gson();
+
+    private String source;
+    private String className;
+    private boolean cacheHit;
+    private long totalWallNanos;
+    private final List<PhaseRecord> phases;
+    private final Map<String, Long> counters;
+
+    public CompilationProfile(String source) {
+        this.source = source;
+        this.phases = new ArrayList<>();
+        this.counters = new LinkedHashMap<>();
+    }
+
+    public synchronized void addPhase(PhaseRecord phase) {
+        phases.add(phase);
+    }
+
+    public synchronized void addCounter(String name, long value) {
+        counters.merge(name, value, Long::sum);
+    }
+
+    public List<PhaseRecord> getPhases() {
+        return phases;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public void setClassName(String className) {
+        this.className = className;
+    }
+
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    public void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    public long getTotalWallNanos() {
+        return totalWallNanos;
+    }
+
+    public void setTotalWallNanos(long totalWallNanos) {
+        this.totalWallNanos = totalWallNanos;
+    }
+
+    public String toJson() {
+        return GSON.toJson(this);
+    }
+}
@@ -0,0 +1,37 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted for the linear scan register allocation of a method.
+ */
+@Name("pt.up.fe.comp2023.LinearScan")
+@Label("Linear Scan")
+@Category({"Jmm Compiler", "Register Allocation"})
+public class LinearScanEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Intervals")
+    @Description("Live intervals allocated, including the ones split off others")
+    public int intervals;
+
+    @Label("Splits")
+    public int splits;
+
+    @Label("Max Registers")
+    @Description("Register limit requested, or 0 for no limit")
+    public int maxRegisters;
+
+    @Label("Registers")
+    public int registers;
+
+    @Label("Spilled")
+    @Description("Intervals moved to memory")
+    public int spilled;
+}
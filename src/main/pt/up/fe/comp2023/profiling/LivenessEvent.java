@@ -0,0 +1,24 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted for the liveness analysis of a method.
+ */
+@Name("pt.up.fe.comp2023.Liveness")
+@Label("Liveness Analysis")
+@Category({"Jmm Compiler", "Register Allocation"})
+public class LivenessEvent extends Event {
+
+    @Label("Method")
+    public String method;
+
+    @Label("Instructions")
+    public int instructions;
+
+    @Label("Iterations")
+    public int iterations;
+}
@@ -0,0 +1,24 @@
+package pt.up.fe.comp2023.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted for every instrumented compiler phase (parse, type check, OLLIR, Jasmin, ...).
+ */
+@Name("pt.up.fe.comp2023.Phase")
+@Label("Compiler Phase")
+@Category({"Jmm Compiler", "Pipeline"})
+@Description("Execution of a compiler pipeline phase")
+public class PhaseEvent extends Event {
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Iteration")
+    @Description("Iteration of the phase, or 0 when the phase only runs once")
+    public int iteration;
+}
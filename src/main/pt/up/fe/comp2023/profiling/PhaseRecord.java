@@ -0,0 +1,41 @@
+package pt.up.fe.comp2023.profiling;
+
+/**
+ * Measurements of a single execution of a compiler phase.
+ */
+public class PhaseRecord {
+
+    private final String name;
+    private final Integer iteration;
+    private final long wallNanos;
+    private final long cpuNanos;
+    private final long allocatedBytes;
+
+    public PhaseRecord(String name, Integer iteration, long wallNanos, long cpuNanos, long allocatedBytes) {
+        this.name = name;
+        this.iteration = iteration;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getIteration() {
+        return iteration;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+}
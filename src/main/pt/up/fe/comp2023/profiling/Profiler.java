@@ -0,0 +1,148 @@
+package pt.up.fe.comp2023.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.function.Supplier;
+
+/**
+ * Entry point for phase instrumentation. Stages call {@link #phase(String)} around their work; the measurements go
+ * to the profile started by the current thread and, while Flight Recorder is recording, to a {@link PhaseEvent}.
+ * Nothing is measured when neither is active. Work a compilation hands to other threads is measured through
+ * {@link #runAs}.
+ */
+public class Profiler {
+
+    private static final ThreadLocal<CompilationProfile> CURRENT = new ThreadLocal<>();
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Phase NO_PHASE = new Phase(null, null, null, null);
+
+    public static void start(CompilationProfile profile) {
+        CURRENT.set(profile);
+    }
+
+    public static CompilationProfile stop() {
+        CompilationProfile profile = CURRENT.get();
+        CURRENT.remove();
+        return profile;
+    }
+
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Profile of the compilation running on the current thread, or null when none is being profiled.
+     */
+    public static CompilationProfile current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs part of a compilation that was handed to another thread, such as a pool thread, under the profile of that
+     * compilation, so the phases and counters it records are not lost with the worker's thread local. The CPU time and
+     * allocation of the task, which the phase of the thread that waits for it does not see, are added to the
+     * counters {@code <name>WorkerCpuNanos} and {@code <name>WorkerAllocatedBytes}. The worker keeps the profile it had
+     * before, since a pool thread may be in the middle of a compilation of its own.
+     */
+    public static <T> T runAs(CompilationProfile profile, String name, Supplier<T> task) {
+        CompilationProfile previous = CURRENT.get();
+        if (profile == null && previous == null) {
+            return task.get();
+        }
+
+        CURRENT.set(profile);
+        long startCpu = profile == null ? 0 : cpuTime();
+        long startAllocated = profile == null ? 0 : allocatedBytes();
+
+        try {
+            return task.get();
+        } finally {
+            if (profile != null) {
+                profile.addCounter(name + "WorkerCpuNanos", cpuTime() - startCpu);
+                profile.addCounter(name + "WorkerAllocatedBytes", allocatedBytes() - startAllocated);
+            }
+
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    public static Phase phase(String name) {
+        return phase(name, null);
+    }
+
+    public static Phase phase(String name, Integer iteration) {
+        CompilationProfile profile = CURRENT.get();
+
+        PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.phase = name;
+            event.iteration = iteration == null ? 0 : iteration;
+            event.begin();
+        } else if (profile == null) {
+            return NO_PHASE;
+        } else {
+            event = null;
+        }
+
+        return new Phase(profile, event, name, iteration);
+    }
+
+    public static void count(String counter, long value) {
+        CompilationProfile profile = CURRENT.get();
+        if (profile != null) {
+            profile.addCounter(counter, value);
+        }
+    }
+
+    static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean sunThreads && sunThreads.isThreadAllocatedMemorySupported()) {
+            return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+
+        return 0;
+    }
+
+    public static class Phase implements AutoCloseable {
+        private final CompilationProfile profile;
+        private final PhaseEvent event;
+        private final String name;
+        private final Integer iteration;
+        private final long startWall;
+        private final long startCpu;
+        private final long startAllocated;
+
+        private Phase(CompilationProfile profile, PhaseEvent event, String name, Integer iteration) {
+            this.profile = profile;
+            this.event = event;
+            this.name = name;
+            this.iteration = iteration;
+
+            boolean active = profile != null;
+            this.startWall = active ? System.nanoTime() : 0;
+            this.startCpu = active ? cpuTime() : 0;
+            this.startAllocated = active ? allocatedBytes() : 0;
+        }
+
+        @Override
+        public void close() {
+            if (event != null) {
+                event.commit();
+            }
+
+            if (profile == null) {
+                return;
+            }
+
+            profile.addPhase(new PhaseRecord(name, iteration, System.nanoTime() - startWall,
+                    cpuTime() - startCpu, allocatedBytes() - startAllocated));
+        }
+    }
+}
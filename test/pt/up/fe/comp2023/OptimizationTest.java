@@ -0,0 +1,51 @@
+package pt.up.fe.comp2023;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles programs with the optimizations on and checks they print what they print with them off.
+ */
+public class OptimizationTest {
+
+    static String getCode(String resource) {
+        return SpecsIo.getResource("pt/up/fe/comp2023/" + resource);
+    }
+
+    static JasminResult compile(String code, boolean optimize) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", String.valueOf(optimize));
+        config.put("registerAllocation", "-1");
+        return TestUtils.backend(code, config);
+    }
+
+    static void assertSameOutput(String resource, String expected) {
+        String code = getCode(resource);
+        JasminResult optimized = compile(code, true);
+        TestUtils.noErrors(optimized);
+        String output = optimized.run();
+
+        CpUtils.assertEquals("Expected " + resource + " to print the same with -o", compile(code, false).run(), output,
+                optimized);
+        if (expected != null)
+            CpUtils.assertEquals("Unexpected output of " + resource, expected, output.trim(), optimized);
+    }
+
+    @Test
+    public void copyChain() {
+        assertSameOutput("optimize/CopyChain.jmm", "0\n14");
+    }
+
+    @Test
+    public void registerAllocationPrograms() {
+        for (String program : List.of("Spill.jmm", "Rematerialize.jmm", "Coalesce.jmm", "Split.jmm"))
+            assertSameOutput("regalloc/" + program, null);
+    }
+}
@@ -0,0 +1,189 @@
+package pt.up.fe.comp2023;
+
+import org.junit.Test;
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2023.otimization.ControlFlow.InstructionReads;
+import pt.up.fe.comp2023.otimization.RegisterAllocation.LinearScan;
+import pt.up.fe.comp2023.otimization.RegisterAllocation.LivenessAnalysis;
+import pt.up.fe.comp2023.otimization.RegisterAllocation.SpillCode;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles programs with a limit on the registers of each method, with both register allocators, and checks they print
+ * what they print without register allocation, within the limit.
+ */
+public class RegisterAllocationTest {
+
+    private static final List<String> PROGRAMS = List.of("Spill.jmm", "Rematerialize.jmm", "Coalesce.jmm", "Split.jmm");
+    private static final List<String> ALLOCATORS = List.of("graph", "linearScan");
+    private static final Pattern LIMIT_LOCALS = Pattern.compile("\\.limit\\s+locals\\s+(\\d+)");
+
+    static String getCode(String filename) {
+        return SpecsIo.getResource("pt/up/fe/comp2023/regalloc/" + filename);
+    }
+
+    static Map<String, String> getConfig(int maxRegisters, String allocator) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "false");
+        config.put("registerAllocation", String.valueOf(maxRegisters));
+        if (allocator != null)
+            config.put("registerAllocator", allocator);
+        return config;
+    }
+
+    static String runUnallocated(String code) {
+        return TestUtils.backend(code, getConfig(-1, null)).run();
+    }
+
+    /**
+     * Largest .limit locals of any method of the class.
+     */
+    static int getMaxLocals(JasminResult jasminResult) {
+        Matcher matcher = LIMIT_LOCALS.matcher(jasminResult.getJasminCode());
+
+        int maxLocals = 0;
+        while (matcher.find())
+            maxLocals = Math.max(maxLocals, Integer.parseInt(matcher.group(1)));
+        return maxLocals;
+    }
+
+    /**
+     * Compiles the program within the limit, checks it runs as without register allocation and returns the allocated
+     * OLLIR.
+     */
+    static OllirResult assertRunsWithin(String filename, int maxRegisters, String allocator) {
+        String code = getCode(filename);
+
+        OllirResult ollirResult = TestUtils.optimize(code, getConfig(maxRegisters, allocator));
+        TestUtils.noErrors(ollirResult);
+        JasminResult jasminResult = TestUtils.backend(ollirResult);
+        TestUtils.noErrors(jasminResult);
+
+        CpUtils.assertTrue("Expected at most " + maxRegisters + " locals with " + allocator,
+                getMaxLocals(jasminResult) <= maxRegisters, jasminResult);
+        CpUtils.assertEquals("Expected the same output with " + allocator + " and " + maxRegisters + " registers",
+                runUnallocated(code), jasminResult.run(), jasminResult);
+
+        return ollirResult;
+    }
+
+    static Method getMethod(OllirResult ollirResult, String methodName) {
+        return CpUtils.getMethod(ollirResult, methodName);
+    }
+
+    /**
+     * Assignments of a variable to another, which coalescing removes.
+     */
+    static long countCopies(Method method) {
+        return method.getInstructions().stream()
+                .filter(instruction -> instruction instanceof AssignInstruction assign
+                        && assign.getDest() instanceof Operand && !(assign.getDest() instanceof ArrayOperand)
+                        && assign.getRhs() instanceof SingleOpInstruction singleOp
+                        && singleOp.getSingleOperand() instanceof Operand && !(singleOp.getSingleOperand() instanceof ArrayOperand))
+                .count();
+    }
+
+    /**
+     * Reads of the variable, or of the parts linear scan splits it in.
+     */
+    static long countReads(Method method, String variable) {
+        long[] reads = {0};
+        for (Instruction instruction : method.getInstructions()) {
+            InstructionReads.visit(instruction, (element, replace) -> {
+                if (element instanceof Operand operand
+                        && (operand.getName().equals(variable) || operand.getName().startsWith(variable + "#")))
+                    reads[0]++;
+            });
+        }
+        return reads[0];
+    }
+
+    @Test
+    public void spillToArray() {
+        for (String allocator : ALLOCATORS) {
+            OllirResult ollirResult = assertRunsWithin("Spill.jmm", 4, allocator);
+
+            CpUtils.assertTrue("Expected " + allocator + " to spill variables of 'mix' to the spill array",
+                    getMethod(ollirResult, "mix").getVarTable().containsKey(SpillCode.ARRAY_NAME), ollirResult);
+        }
+    }
+
+    @Test
+    public void rematerializeConstant() {
+        for (String allocator : ALLOCATORS) {
+            OllirResult ollirResult = assertRunsWithin("Rematerialize.jmm", 4, allocator);
+            Method method = getMethod(ollirResult, "scale");
+
+            CpUtils.assertEquals("Expected " + allocator + " to read the literal instead of 'k' in 'scale'", 0,
+                    (int) countReads(method, "k"), ollirResult);
+            CpUtils.assertTrue("Expected " + allocator + " to need no spill array in 'scale'",
+                    !method.getVarTable().containsKey(SpillCode.ARRAY_NAME), ollirResult);
+        }
+    }
+
+    @Test
+    public void coalesceCopies() {
+        String code = getCode("Coalesce.jmm");
+        OllirResult unallocated = TestUtils.optimize(code, getConfig(-1, null));
+        CpUtils.assertTrue("Expected copies in 'chain' before register allocation",
+                countCopies(getMethod(unallocated, "chain")) > 0, unallocated);
+
+        OllirResult ollirResult = assertRunsWithin("Coalesce.jmm", 3, "graph");
+
+        CpUtils.assertEquals("Expected every copy in 'chain' to be coalesced", 0,
+                (int) countCopies(getMethod(ollirResult, "chain")), ollirResult);
+    }
+
+    @Test
+    public void splitInterval() {
+        String code = getCode("Split.jmm");
+        OllirResult unallocated = TestUtils.optimize(code, getConfig(-1, null));
+        unallocated.getOllirClass().buildVarTables();
+
+        Method method = getMethod(unallocated, "spread");
+        LivenessAnalysis livenessAnalysis = new LivenessAnalysis(method);
+        livenessAnalysis.analyze();
+        LinearScan linearScan = new LinearScan(livenessAnalysis, new SpillCode(method));
+
+        CpUtils.assertTrue("Expected linear scan to allocate 'spread' in 5 registers", linearScan.allocate(5) >= 0, unallocated);
+        CpUtils.assertTrue("Expected linear scan to split an interval of 'spread'", linearScan.getNumberOfSplits() > 0, unallocated);
+
+        assertRunsWithin("Split.jmm", 5, "linearScan");
+    }
+
+    /**
+     * With every limit either the program runs as without register allocation, or the only errors say the limit is too
+     * low.
+     */
+    @Test
+    public void everyLimit() {
+        for (String filename : PROGRAMS) {
+            for (String allocator : ALLOCATORS) {
+                for (int maxRegisters = 1; maxRegisters <= 6; maxRegisters++) {
+                    OllirResult ollirResult = TestUtils.optimize(getCode(filename), getConfig(maxRegisters, allocator));
+
+                    if (ollirResult.getReports().isEmpty()) {
+                        assertRunsWithin(filename, maxRegisters, allocator);
+                        continue;
+                    }
+
+                    for (Report report : ollirResult.getReports()) {
+                        CpUtils.assertTrue("Unexpected report for " + filename + " with " + allocator + ": " + report,
+                                report.getMessage().contains("is greater than the maximum allowed"), ollirResult);
+                    }
+                }
+            }
+        }
+    }
+}
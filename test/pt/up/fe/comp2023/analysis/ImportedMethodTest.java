@@ -0,0 +1,175 @@
+package pt.up.fe.comp2023.analysis;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.CallInstruction;
+import org.specs.comp.ollir.LiteralElement;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.ollir.OllirVisitor;
+import pt.up.fe.comp2023.ollir.Optimization;
+import pt.up.fe.specs.util.SpecsIo;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles a program that calls methods of classes compiled into a temporary classpath, and checks the signatures
+ * found in the class files end up in the invokes of both OLLIR generators.
+ */
+public class ImportedMethodTest {
+
+    private static final String BASE = """
+            public class Base {
+                public boolean isReady() { return true; }
+                public int[] values(int n) { return new int[n]; }
+            }
+            """;
+
+    private static final String LIBRARY = """
+            public class Library extends Base {
+                public static int twice(int n) { return 2 * n; }
+                public int pick(int n) { return n + 1; }
+                public boolean pick(boolean b) { return !b; }
+                public Library self() { return this; }
+            }
+            """;
+
+    // Method called and the return type of each call of 'run', in order
+    private static final List<List<String>> EXPECTED_CALLS = List.of(
+            List.of("pick", "int"),
+            List.of("pick", "bool"),
+            List.of("isReady", "bool"),
+            List.of("values", "int[]"),
+            List.of("self", "Library"),
+            List.of("twice", "int"));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Compiles the Java classes into the folder, which is also their classpath.
+     */
+    static void compileClasses(Path folder, String... sources) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull("Expected the tests to run on a JDK", compiler);
+
+        String[] arguments = new String[sources.length + 4];
+        arguments[0] = "-d";
+        arguments[1] = folder.toString();
+        arguments[2] = "-cp";
+        arguments[3] = folder.toString();
+        for (int i = 0; i < sources.length; i++) {
+            String className = sources[i].substring("public class ".length()).split("\\s")[0];
+            Path source = folder.resolve("src").resolve(className + ".java");
+            Files.createDirectories(source.getParent());
+            Files.writeString(source, sources[i]);
+            arguments[i + 4] = source.toString();
+        }
+
+        assertEquals("Could not compile the classpath fixture", 0, compiler.run(null, null, null, arguments));
+    }
+
+    JmmSemanticsResult analyseWithClasspath() throws IOException {
+        Path classpath = temporaryFolder.newFolder("classpath").toPath();
+        compileClasses(classpath, BASE, LIBRARY);
+
+        Map<String, String> config = new HashMap<>();
+        config.put("classpath", classpath.toString());
+        config.put("optimize", "false");
+        config.put("registerAllocation", "-1");
+
+        JmmSemanticsResult semanticsResult = TestUtils.analyse(SpecsIo.getResource("pt/up/fe/comp2023/imports/Imports.jmm"), config);
+        TestUtils.noErrors(semanticsResult);
+        return semanticsResult;
+    }
+
+    /**
+     * Method name and return type of every call of the method, in order.
+     */
+    static List<List<String>> getCalls(OllirResult ollirResult, String methodName) {
+        return CpUtils.getMethod(ollirResult, methodName).getInstructions().stream()
+                .map(instruction -> instruction instanceof AssignInstruction assign ? assign.getRhs() : instruction)
+                .filter(instruction -> instruction instanceof CallInstruction)
+                .map(instruction -> (CallInstruction) instruction)
+                .filter(call -> call.getSecondArg() instanceof LiteralElement)
+                .map(call -> List.of(((LiteralElement) call.getSecondArg()).getLiteral().replace("\"", ""),
+                        CpUtils.toString(call.getReturnType())))
+                .toList();
+    }
+
+    @Test
+    public void invokeTypesFromBuilder() throws IOException {
+        OllirResult ollirResult = new Optimization().toOllir(analyseWithClasspath());
+
+        assertEquals(EXPECTED_CALLS, getCalls(ollirResult, "run"));
+    }
+
+    @Test
+    public void invokeTypesFromVisitor() throws IOException {
+        JmmSemanticsResult semanticsResult = analyseWithClasspath();
+        OllirVisitor ollirVisitor = new OllirVisitor(semanticsResult.getSymbolTable());
+        ollirVisitor.visit(semanticsResult.getRootNode());
+        OllirResult ollirResult = new OllirResult(semanticsResult, ollirVisitor.getCode(), List.of());
+
+        assertEquals(EXPECTED_CALLS, getCalls(ollirResult, "run"));
+    }
+
+    @Test
+    public void overloadsAndInheritedMethods() throws IOException {
+        SimpleSymbolTable symbolTable = (SimpleSymbolTable) analyseWithClasspath().getSymbolTable();
+
+        ClassIndex.Method pickInt = symbolTable.findImportedMethod("Library", "pick", List.of(Types.of("int", false)));
+        ClassIndex.Method pickBoolean = symbolTable.findImportedMethod("Library", "pick", List.of(Types.of("boolean", false)));
+        assertEquals(Types.of("int", false), pickInt.returnType());
+        assertEquals(Types.of("boolean", false), pickBoolean.returnType());
+
+        // An argument of unknown type matches both overloads, so neither is chosen
+        assertNull(symbolTable.findImportedMethod("Library", "pick", Arrays.asList((Type) null)));
+
+        ClassIndex.Method values = symbolTable.findImportedMethod("Library", "values", List.of(Types.of("int", false)));
+        assertEquals(Types.of("int", true), values.returnType());
+        assertFalse(values.isStatic());
+        assertTrue(symbolTable.findImportedMethod("Library", "twice", List.of(Types.of("int", false))).isStatic());
+    }
+
+    @Test
+    public void fingerprintChangesWithClassFile() throws IOException {
+        Path classpath = temporaryFolder.newFolder("classpath").toPath();
+        compileClasses(classpath, BASE, LIBRARY);
+
+        ClassIndex classIndex = ClassIndex.forConfig(Map.of("classpath", classpath.toString()));
+        String fingerprint = classIndex.fingerprint();
+        assertFalse(classIndex.getMethods("Library").containsKey("extra"));
+        assertEquals(fingerprint, classIndex.fingerprint());
+
+        Path classFile = classpath.resolve("Library.class");
+        FileTime modified = Files.getLastModifiedTime(classFile);
+        compileClasses(classpath, LIBRARY.replace("public Library self()", "public int extra() { return 0; }\n    public Library self()"));
+        // The file system may keep the time in seconds
+        Files.setLastModifiedTime(classFile, FileTime.fromMillis(modified.toMillis() + 2000));
+
+        assertNotEquals(fingerprint, classIndex.fingerprint());
+        assertTrue(classIndex.getMethods("Library").containsKey("extra"));
+    }
+}
@@ -0,0 +1,63 @@
+package pt.up.fe.comp2023.benchmark;
+
+import com.sun.management.ThreadMXBean;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares building the AST during the parse with building the ANTLR parse tree and converting it afterwards, in
+ * parse time and in memory allocated per parse, over large generated programs.
+ * <p>
+ * Usage: AstBuildBenchmark [iterations]
+ */
+public class AstBuildBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        for (int methods : List.of(1000, 5000)) {
+            String code = ParserBenchmark.generateProgram(methods);
+
+            measure(code, WARMUP_ITERATIONS, "false");
+            measure(code, WARMUP_ITERATIONS, "true");
+
+            double[] converted = measure(code, iterations, "false");
+            double[] direct = measure(code, iterations, "true");
+
+            System.out.printf("%5d methods (%5.1f MB)   converted: %8.2f ms %8.1f MB   direct: %8.2f ms %8.1f MB%n",
+                    methods, code.length() / 1e6, converted[0], converted[1], direct[0], direct[1]);
+        }
+    }
+
+    /**
+     * Returns the average time in milliseconds and the average memory allocated in megabytes per parse.
+     */
+    private static double[] measure(String code, int iterations, String directAst) {
+        Map<String, String> config = new HashMap<>();
+        config.put("directAst", directAst);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        SimpleParser parser = new SimpleParser();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JmmParserResult result = parser.parse(code, config);
+            if (result.getRootNode() == null) {
+                throw new RuntimeException("Could not parse the generated program: " + result.getReports());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new double[]{elapsed / 1e6 / iterations, allocated / 1e6 / iterations};
+    }
+}
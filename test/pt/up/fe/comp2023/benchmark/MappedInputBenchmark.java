@@ -0,0 +1,75 @@
+package pt.up.fe.comp2023.benchmark;
+
+import com.sun.management.ThreadMXBean;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.MappedCharStream;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Compares reading a large source file into a String and parsing it with parsing it from a memory mapping of the
+ * file, in time and in memory allocated per parse.
+ * <p>
+ * Usage: MappedInputBenchmark [iterations]
+ */
+public class MappedInputBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        SimpleParser parser = new SimpleParser();
+        Map<String, String> config = new HashMap<>();
+
+        for (int methods : List.of(5000, 20000)) {
+            Path file = Files.createTempFile("benchmark", ".jmm");
+            try {
+                Files.writeString(file, ParserBenchmark.generateProgram(methods));
+
+                Function<Path, JmmParserResult> read = path -> parser.parse(SpecsIo.read(path.toFile()), config);
+                Function<Path, JmmParserResult> mapped = path -> parser.parse(MappedCharStream.open(path), config);
+
+                measure(file, WARMUP_ITERATIONS, read);
+                measure(file, WARMUP_ITERATIONS, mapped);
+
+                double[] readResult = measure(file, iterations, read);
+                double[] mappedResult = measure(file, iterations, mapped);
+
+                System.out.printf("%6d methods (%5.1f MB)   read: %8.2f ms %8.1f MB   mapped: %8.2f ms %8.1f MB%n",
+                        methods, Files.size(file) / 1e6, readResult[0], readResult[1], mappedResult[0], mappedResult[1]);
+            } finally {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Returns the average time in milliseconds and the average memory allocated in megabytes per parse.
+     */
+    private static double[] measure(Path file, int iterations, Function<Path, JmmParserResult> parse) {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            JmmParserResult result = parse.apply(file);
+            if (result.getRootNode() == null) {
+                throw new RuntimeException("Could not parse the generated program: " + result.getReports());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        return new double[]{elapsed / 1e6 / iterations, allocated / 1e6 / iterations};
+    }
+}
@@ -0,0 +1,134 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.analysis.Analysis;
+import pt.up.fe.comp2023.ollir.Optimization;
+import pt.up.fe.comp2023.otimization.Constants.ConstFolding;
+import pt.up.fe.comp2023.otimization.Constants.DeadCodeVisitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Compares the AST optimizations run by rescanning the whole class until nothing changes with the worklist driver of
+ * {@link Optimization}, over a class where a single method needs many rounds and every other method is done after
+ * the first one.
+ * <p>
+ * Usage: OptimizationBenchmark [iterations]
+ */
+public class OptimizationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int CHAIN_LENGTH = 50;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        for (int methods : List.of(100, 500, 2000)) {
+            String code = generateProgram(methods, CHAIN_LENGTH);
+
+            measure(code, WARMUP_ITERATIONS, OptimizationBenchmark::rescanWholeClass);
+            measure(code, WARMUP_ITERATIONS, semantics -> new Optimization().optimize(semantics));
+
+            double rescan = measure(code, iterations, OptimizationBenchmark::rescanWholeClass);
+            double worklist = measure(code, iterations, semantics -> new Optimization().optimize(semantics));
+
+            System.out.printf("%5d methods   whole class: %9.2f ms   worklist: %8.2f ms   speedup: %.2fx%n",
+                    methods, rescan, worklist, rescan / worklist);
+        }
+    }
+
+    /**
+     * Returns the average time in milliseconds of the optimization, each run over a freshly analysed tree.
+     */
+    private static double measure(String code, int iterations, Consumer<JmmSemanticsResult> optimize) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "true");
+
+        long nanos = 0;
+        for (int i = 0; i < iterations; i++) {
+            JmmParserResult parserResult = new SimpleParser().parse(code, config);
+            JmmSemanticsResult semantics = new Analysis().semanticAnalysis(parserResult);
+            if (!semantics.getReports().isEmpty()) {
+                throw new RuntimeException("Semantic errors in the generated program: " + semantics.getReports());
+            }
+
+            long start = System.nanoTime();
+            optimize.accept(semantics);
+            nanos += System.nanoTime() - start;
+        }
+
+        return nanos / 1e6 / iterations;
+    }
+
+    /**
+     * Runs every pass over every method until no pass changes any of them, as the optimizer did before the worklist.
+     */
+    private static void rescanWholeClass(JmmSemanticsResult semantics) {
+        ConstFolding constFolding = new ConstFolding();
+        DeadCodeVisitor deadCode = new DeadCodeVisitor(semantics.getSymbolTable());
+
+        List<JmmNode> methods = new ArrayList<>();
+        for (JmmNode node : semantics.getRootNode().getChildren()) {
+            for (JmmNode child : node.getChildren()) {
+                if (child.getKind().equals("Methods"))
+                    methods.addAll(child.getChildren());
+            }
+        }
+
+        boolean modifications;
+        do {
+            modifications = false;
+            for (JmmNode method : methods)
+                modifications = constFolding.visit(method) || modifications;
+            for (JmmNode method : methods)
+                modifications = deadCode.visit(method) || modifications;
+        } while (modifications);
+    }
+
+    /**
+     * Class with one method whose locals form a chain of the given length, each only dead once the assignment that
+     * reads it was removed the round before, and many small methods that only need one round.
+     */
+    static String generateProgram(int methods, int chainLength) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("class Optimized {\n");
+
+        code.append("    public int chain() {\n");
+        for (int i = 0; i < chainLength; i++) {
+            code.append("        int v").append(i).append(";\n");
+        }
+        code.append("        v0 = 1;\n");
+        for (int i = 1; i < chainLength; i++) {
+            code.append("        v").append(i).append(" = v").append(i - 1).append(" + 1;\n");
+        }
+        code.append("        return 0;\n");
+        code.append("    }\n");
+
+        for (int i = 0; i < methods; i++) {
+            code.append("    public int method").append(i).append("(int a, int[] b) {\n");
+            code.append("        int x;\n");
+            code.append("        int y;\n");
+            code.append("        x = a * 2;\n");
+            code.append("        y = b[x] + x;\n");
+            code.append("        while (x < y) {\n");
+            code.append("            x = x + b[y - x];\n");
+            code.append("        }\n");
+            code.append("        return x;\n");
+            code.append("    }\n");
+        }
+
+        code.append("    public static void main(String[] args) {\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+}
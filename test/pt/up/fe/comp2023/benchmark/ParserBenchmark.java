@@ -0,0 +1,128 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compares the parse time of the SLL-first two-stage parser with plain LL parsing, over the .jmm files of the test
+ * folder and over large generated programs.
+ * <p>
+ * Usage: ParserBenchmark [testFolder] [iterations]
+ */
+public class ParserBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+
+    public static void main(String[] args) throws IOException {
+        String testFolder = args.length > 0 ? args[0] : "test";
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        List<String> corpus = readCorpus(Path.of(testFolder));
+        List<String> synthetic = List.of(generateProgram(200), generateProgram(1000));
+
+        System.out.println("Corpus: " + corpus.size() + " files, synthetic: " + synthetic.size() + " files");
+
+        run("corpus", corpus, iterations);
+        run("synthetic", synthetic, iterations);
+    }
+
+    private static void run(String name, List<String> sources, int iterations) {
+        // The DFA cache is shared by every parser, so both modes are warmed up before measuring either
+        measure(sources, WARMUP_ITERATIONS, "false");
+        measure(sources, WARMUP_ITERATIONS, "true");
+
+        double llMillis = measure(sources, iterations, "false");
+        double sllMillis = measure(sources, iterations, "true");
+
+        System.out.printf("%-10s LL only: %8.2f ms/pass   SLL first: %8.2f ms/pass   speedup: %.2fx%n",
+                name, llMillis, sllMillis, llMillis / sllMillis);
+    }
+
+    private static double measure(List<String> sources, int iterations, String sllParsing) {
+        Map<String, String> config = new HashMap<>();
+        config.put("sllParsing", sllParsing);
+
+        SimpleParser parser = new SimpleParser();
+        int errors = 0;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            for (String source : sources) {
+                JmmParserResult result = parser.parse(source, config);
+                if (!result.getReports().isEmpty()) {
+                    errors++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (errors > 0 && iterations > WARMUP_ITERATIONS) {
+            System.out.println("\t" + errors / iterations + " inputs with syntax errors (sllParsing=" + sllParsing + ")");
+        }
+
+        return elapsed / 1e6 / iterations;
+    }
+
+    private static List<String> readCorpus(Path folder) throws IOException {
+        List<String> sources = new ArrayList<>();
+
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.filter(path -> path.toString().endsWith(".jmm"))
+                    .sorted()
+                    .forEach(path -> sources.add(SpecsIo.read(new File(path.toString()))));
+        }
+
+        return sources;
+    }
+
+    /**
+     * Program with the given number of methods, mixing expression statements, assignments, array accesses and
+     * control flow, which are the constructs that need the most lookahead.
+     */
+    static String generateProgram(int methods) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("import io;\n");
+        code.append("class Synthetic {\n");
+        code.append("    int field;\n");
+        code.append("    int[] values;\n");
+
+        for (int i = 0; i < methods; i++) {
+            code.append("    public int method").append(i).append("(int a, int[] b, boolean c) {\n");
+            code.append("        int x;\n");
+            code.append("        int y;\n");
+            code.append("        Synthetic s;\n");
+            code.append("        s = new Synthetic();\n");
+            code.append("        x = a * 2 + b[a - 1] / 3;\n");
+            code.append("        y = b.length;\n");
+            code.append("        b[x] = y - x;\n");
+            code.append("        field = x + y;\n");
+            code.append("        s.method").append(i).append("(x, b, c && x < y);\n");
+            code.append("        io.println(x);\n");
+            code.append("        while (x < y) {\n");
+            code.append("            x = x + 1;\n");
+            code.append("            if (!c && x < 10) { y = y - 1; } else { b[x] = b[y] + 1; }\n");
+            code.append("        }\n");
+            code.append("        this.method").append(i).append("(new int[x].length, b, true);\n");
+            code.append("        return x * (y + a);\n");
+            code.append("    }\n");
+        }
+
+        code.append("    public static void main(String[] args) {\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Steady-state parse throughput, in files per second, with the per-thread parser pool and with new lexer and parser
+ * instances for every file, using one thread and then several threads parsing the .jmm files of the test folder.
+ * <p>
+ * Usage: ParserPoolBenchmark [testFolder] [threads] [seconds]
+ */
+public class ParserPoolBenchmark {
+
+    private static final int WARMUP_SECONDS = 3;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String testFolder = args.length > 0 ? args[0] : "test";
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        List<String> corpus = readCorpus(Path.of(testFolder));
+        System.out.println("Corpus: " + corpus.size() + " files");
+
+        // Warms up the JIT and the shared DFA cache for both configurations
+        measure(corpus, threads, WARMUP_SECONDS, "true");
+        measure(corpus, threads, WARMUP_SECONDS, "false");
+
+        for (int threadCount : List.of(1, threads)) {
+            double fresh = measure(corpus, threadCount, seconds, "false");
+            double pooled = measure(corpus, threadCount, seconds, "true");
+
+            System.out.printf("%2d thread(s)   fresh: %10.1f files/s   pooled: %10.1f files/s   speedup: %.2fx%n",
+                    threadCount, fresh, pooled, pooled / fresh);
+        }
+    }
+
+    private static double measure(List<String> sources, int threads, int seconds, String parserPool)
+            throws InterruptedException {
+        Map<String, String> config = new HashMap<>();
+        config.put("parserPool", parserPool);
+
+        AtomicLong parsed = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+
+        for (int i = 0; i < threads; i++) {
+            int offset = i;
+            Thread worker = new Thread(() -> {
+                SimpleParser parser = new SimpleParser();
+                long count = 0;
+
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                // Each thread starts at a different file, so they do not parse the same input at the same time
+                for (int next = offset; System.nanoTime() < deadline; next++) {
+                    JmmParserResult result = parser.parse(sources.get(next % sources.size()), config);
+                    if (result.getRootNode() != null || !result.getReports().isEmpty()) {
+                        count++;
+                    }
+                }
+
+                parsed.addAndGet(count);
+            });
+
+            worker.start();
+            workers.add(worker);
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        return parsed.get() / (elapsed / 1e9);
+    }
+
+    private static List<String> readCorpus(Path folder) throws IOException {
+        List<String> sources = new ArrayList<>();
+
+        try (Stream<Path> files = Files.walk(folder)) {
+            files.filter(path -> path.toString().endsWith(".jmm"))
+                    .sorted()
+                    .forEach(path -> sources.add(SpecsIo.read(new File(path.toString()))));
+        }
+
+        return sources;
+    }
+}
@@ -0,0 +1,148 @@
+package pt.up.fe.comp2023.benchmark;
+
+import org.specs.comp.ollir.Descriptor;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.analysis.Analysis;
+import pt.up.fe.comp2023.ollir.Optimization;
+import pt.up.fe.comp2023.otimization.RegisterAllocation.RegisterAllocation;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the graph coloring and linear scan register allocators on a single method of growing size, where each
+ * statement reads a variable assigned many statements before, so the number of variables live at once stays high,
+ * with a loop every few statements. Reports the time each takes to allocate the method and the locals it ends up
+ * with, both with as few registers as possible and with a limit that forces spilling.
+ * <p>
+ * Usage: RegisterAllocationBenchmark [iterations]
+ */
+public class RegisterAllocationBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int LOOP_EVERY = 16;
+    private static final int MAX_REGISTERS = 12;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        for (int window : List.of(8, 64, 256)) {
+            for (int statements : List.of(250, 1000, 4000)) {
+                JmmSemanticsResult semantics = analyse(generateProgram(statements, window));
+
+                for (int maxRegisters : List.of(0, MAX_REGISTERS)) {
+                    measure(semantics, "graph", maxRegisters, WARMUP_ITERATIONS);
+                    measure(semantics, "linearScan", maxRegisters, WARMUP_ITERATIONS);
+
+                    Result graph = measure(semantics, "graph", maxRegisters, iterations);
+                    Result linearScan = measure(semantics, "linearScan", maxRegisters, iterations);
+
+                    System.out.printf("window %3d  %5d statements (%6d instructions)  n=%-3d graph: %9.2f ms %4d locals   linear scan: %8.2f ms %4d locals   speedup: %.2fx%n",
+                            window, statements, graph.instructions, maxRegisters, graph.millis, graph.locals,
+                            linearScan.millis, linearScan.locals, graph.millis / linearScan.millis);
+                }
+            }
+        }
+    }
+
+    private static JmmSemanticsResult analyse(String code) {
+        Map<String, String> config = new HashMap<>();
+
+        JmmParserResult parserResult = new SimpleParser().parse(code, config);
+        JmmSemanticsResult semantics = new Analysis().semanticAnalysis(parserResult);
+        if (!semantics.getReports().isEmpty()) {
+            throw new RuntimeException("Semantic errors in the generated program: " + semantics.getReports());
+        }
+
+        return semantics;
+    }
+
+    /**
+     * Returns the average time in milliseconds of allocating registers with the given allocator, each run over freshly
+     * generated OLLIR, along with the locals of the generated method.
+     */
+    private static Result measure(JmmSemanticsResult semantics, String allocator, int maxRegisters, int iterations) {
+        long nanos = 0;
+        int locals = 0;
+        int instructions = 0;
+
+        for (int i = 0; i < iterations; i++) {
+            OllirResult ollirResult = new Optimization().toOllir(semantics);
+            ollirResult.getConfig().put("registerAllocator", allocator);
+
+            Method method = findMethod(ollirResult, "run");
+            instructions = method.getInstructions().size();
+
+            long start = System.nanoTime();
+            new RegisterAllocation(ollirResult).otimize(maxRegisters);
+            nanos += System.nanoTime() - start;
+
+            if (!ollirResult.getReports().isEmpty()) {
+                throw new RuntimeException("Could not allocate registers: " + ollirResult.getReports());
+            }
+
+            locals = 0;
+            for (Descriptor descriptor : method.getVarTable().values())
+                locals = Math.max(locals, descriptor.getVirtualReg() + 1);
+        }
+
+        return new Result(nanos / 1e6 / iterations, locals, instructions);
+    }
+
+    private static Method findMethod(OllirResult ollirResult, String name) {
+        for (Method method : ollirResult.getOllirClass().getMethods()) {
+            if (method.getMethodName().equals(name))
+                return method;
+        }
+
+        throw new IllegalStateException("No method " + name + " in the generated program");
+    }
+
+    /**
+     * Class with a method of the given number of statements over as many variables, where each one is assigned from
+     * the one before and read again {@code window} statements later.
+     */
+    static String generateProgram(int statements, int window) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("class Allocated {\n");
+        code.append("    public int run(int n, int[] b) {\n");
+        for (int i = 0; i < statements; i++) {
+            code.append("        int v").append(i).append(";\n");
+        }
+        code.append("        int s;\n");
+
+        code.append("        s = 0;\n");
+        code.append("        v0 = n;\n");
+        for (int i = 1; i < statements; i++) {
+            String previous = "v" + (i - 1);
+            String variable = "v" + i;
+
+            code.append("        ").append(variable).append(" = ").append(previous).append(" + b[").append(previous).append("];\n");
+            if (i >= window) {
+                code.append("        s = s + v").append(i - window).append(";\n");
+            }
+            if (i % LOOP_EVERY == 0) {
+                code.append("        while (").append(variable).append(" < n) {\n");
+                code.append("            ").append(variable).append(" = ").append(variable).append(" + s;\n");
+                code.append("        }\n");
+            }
+        }
+        code.append("        return s + v").append(statements - 1).append(";\n");
+        code.append("    }\n");
+
+        code.append("    public static void main(String[] args) {\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+
+    private record Result(double millis, int locals, int instructions) {
+    }
+}
@@ -0,0 +1,107 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.analysis.Analysis;
+import pt.up.fe.comp2023.ollir.Optimization;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures semantic analysis and OLLIR generation over a method with thousands of locals, where every use of a
+ * variable and every new temporary looks up the symbol table. With constant-time lookups the time per local stays
+ * about the same as the number of locals grows.
+ * <p>
+ * Usage: SymbolTableBenchmark [iterations]
+ */
+public class SymbolTableBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        for (int locals : List.of(1000, 2000, 4000, 8000)) {
+            String code = generateProgram(locals);
+            Map<String, String> config = new HashMap<>();
+            config.put("optimize", "false");
+
+            JmmParserResult parserResult = new SimpleParser().parse(code, config);
+            if (parserResult.getRootNode() == null) {
+                throw new RuntimeException("Could not parse the generated program: " + parserResult.getReports());
+            }
+
+            measure(parserResult, WARMUP_ITERATIONS);
+            double[] millis = measure(parserResult, iterations);
+
+            System.out.printf("%5d locals   analysis: %8.2f ms   ollir: %8.2f ms   (%.2f us/local)%n",
+                    locals, millis[0], millis[1], (millis[0] + millis[1]) * 1000 / locals);
+        }
+    }
+
+    /**
+     * Returns the average time in milliseconds of the semantic analysis and of the OLLIR generation.
+     */
+    private static double[] measure(JmmParserResult parserResult, int iterations) {
+        long analysisNanos = 0;
+        long ollirNanos = 0;
+
+        // The OLLIR stage prints progress messages
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            for (int i = 0; i < iterations; i++) {
+                long start = System.nanoTime();
+                JmmSemanticsResult semanticsResult = new Analysis().semanticAnalysis(parserResult);
+                analysisNanos += System.nanoTime() - start;
+
+                if (!semanticsResult.getReports().isEmpty()) {
+                    throw new RuntimeException("Semantic errors in the generated program: " + semanticsResult.getReports());
+                }
+
+                start = System.nanoTime();
+                new Optimization().toOllir(semanticsResult);
+                ollirNanos += System.nanoTime() - start;
+            }
+        } finally {
+            System.setOut(out);
+        }
+
+        return new double[]{analysisNanos / 1e6 / iterations, ollirNanos / 1e6 / iterations};
+    }
+
+    /**
+     * Program with one method declaring the given number of locals, each assigned from the previous one in an
+     * expression that needs temporaries.
+     */
+    static String generateProgram(int locals) {
+        StringBuilder code = new StringBuilder();
+
+        code.append("class ManyLocals {\n");
+        code.append("    int field;\n");
+        code.append("    public int run(int a, int[] b) {\n");
+
+        for (int i = 0; i < locals; i++) {
+            code.append("        int v").append(i).append(";\n");
+        }
+
+        code.append("        v0 = a;\n");
+        for (int i = 1; i < locals; i++) {
+            code.append("        v").append(i).append(" = v").append(i - 1).append(" * 2 + b[v").append(i - 1)
+                    .append("] + field;\n");
+        }
+
+        code.append("        return v").append(locals - 1).append(";\n");
+        code.append("    }\n");
+        code.append("    public static void main(String[] args) {\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        return code.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package pt.up.fe.comp2023.benchmark;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2023.SimpleParser;
+import pt.up.fe.comp2023.analysis.Analysis;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the semantic analysis with the methods type checked one after the other and in parallel, over classes
+ * with hundreds of methods.
+ * <p>
+ * Usage: TypeCheckBenchmark [iterations]
+ */
+public class TypeCheckBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 10;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+        System.out.println("Threads: " + Runtime.getRuntime().availableProcessors());
+
+        for (int methods : List.of(200, 1000, 5000)) {
+            String code = ParserBenchmark.generateProgram(methods);
+
+            double sequential = measure(code, WARMUP_ITERATIONS, iterations, "false");
+            double parallel = measure(code, WARMUP_ITERATIONS, iterations, "true");
+
+            System.out.printf("%5d methods   sequential: %8.2f ms   parallel: %8.2f ms   speedup: %.2fx%n",
+                    methods, sequential, parallel, sequential / parallel);
+        }
+    }
+
+    /**
+     * Returns the average time in milliseconds of the semantic analysis.
+     */
+    private static double measure(String code, int warmup, int iterations, String parallelTypeCheck) {
+        Map<String, String> config = new HashMap<>();
+        config.put("parallelTypeCheck", parallelTypeCheck);
+
+        JmmParserResult parserResult = new SimpleParser().parse(code, config);
+        if (parserResult.getRootNode() == null) {
+            throw new RuntimeException("Could not parse the generated program: " + parserResult.getReports());
+        }
+
+        for (int i = 0; i < warmup; i++) {
+            analyze(parserResult);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            analyze(parserResult);
+        }
+
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    private static void analyze(JmmParserResult parserResult) {
+        JmmSemanticsResult result = new Analysis().semanticAnalysis(parserResult);
+
+        if (!result.getReports().isEmpty()) {
+            throw new RuntimeException("Semantic errors in the generated program: " + result.getReports());
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package pt.up.fe.comp2023.jasmin;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AccessModifiers;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Writes classes with {@link ClassFileEmitter}, loads them with the type-checking verifier and runs them.
+ */
+public class ClassFileEmitterTest {
+
+    // iload_1, iconst_1, iadd and istore_1 take a byte each
+    private static final int ADDS_PAST_32K = 9000;
+    // s = s * 3 + n; takes 8 bytes
+    private static final int STATEMENTS_PAST_32K = 6000;
+
+    private static class ByteClassLoader extends ClassLoader {
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    static ClassFileEmitter beginClass(String className) {
+        ClassFileEmitter emitter = new ClassFileEmitter(null);
+        emitter.beginClass(AccessModifiers.PUBLIC, className, "java/lang/Object");
+        return emitter;
+    }
+
+    static void beginStatic(ClassFileEmitter emitter, String name, String descriptor) {
+        emitter.beginMethod(AccessModifiers.PUBLIC, true, false, name, descriptor);
+    }
+
+    /**
+     * Loads the class and calls one of its static methods, which takes an int.
+     */
+    static Object call(ClassFileEmitter emitter, String className, String methodName, int argument) throws Throwable {
+        Class<?> loaded = new ByteClassLoader().define(className, emitter.toByteArray());
+
+        try {
+            return loaded.getMethod(methodName, int.class).invoke(null, argument);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Adds 1 to local 1 the given number of times.
+     */
+    static void adds(ClassFileEmitter emitter, int count) {
+        for (int i = 0; i < count; i++) {
+            emitter.localInstruction("iload", 1, "I");
+            emitter.instruction("iconst_1");
+            emitter.instruction("iadd");
+            emitter.localInstruction("istore", 1, "I");
+        }
+    }
+
+    @Test
+    public void unreachableCodeAfterGoto() throws Throwable {
+        ClassFileEmitter emitter = beginClass("Unreachable");
+        beginStatic(emitter, "f", "(I)I");
+        emitter.localInstruction("iload", 0, "I");
+        emitter.jump("goto", "end");
+        // never runs, and leaves a value of the wrong type on the stack
+        emitter.ldc("\"dead\"");
+        emitter.instruction("pop");
+        emitter.instruction("iconst_1");
+        emitter.label("end");
+        emitter.instruction("ireturn");
+        emitter.endMethod(false, 0, 0);
+
+        assertEquals(5, call(emitter, "Unreachable", "f", 5));
+    }
+
+    @Test
+    public void branchesPast32K() throws Throwable {
+        ClassFileEmitter emitter = beginClass("FarBranches");
+
+        // while (n > 0) { s += ADDS_PAST_32K; n--; }, so both the exit and the loop back are far
+        beginStatic(emitter, "loop", "(I)I");
+        emitter.instruction("iconst_0");
+        emitter.localInstruction("istore", 1, "I");
+        emitter.label("condition");
+        emitter.localInstruction("iload", 0, "I");
+        emitter.jump("ifle", "end");
+        adds(emitter, ADDS_PAST_32K);
+        emitter.iinc(0, -1);
+        emitter.jump("goto", "condition");
+        emitter.label("end");
+        emitter.localInstruction("iload", 1, "I");
+        emitter.instruction("ireturn");
+        emitter.endMethod(false, 0, 0);
+
+        // a far goto over unreachable code, with an object created after it that is still uninitialized at a target
+        beginStatic(emitter, "skip", "(I)Ljava/lang/Object;");
+        emitter.instruction("iconst_0");
+        emitter.localInstruction("istore", 1, "I");
+        emitter.jump("goto", "after");
+        adds(emitter, ADDS_PAST_32K);
+        emitter.label("after");
+        emitter.newObject("java/lang/Object");
+        emitter.localInstruction("astore", 2, "Ljava/lang/Object;");
+        emitter.localInstruction("iload", 0, "I");
+        emitter.jump("ifeq", "initialize");
+        emitter.label("initialize");
+        emitter.localInstruction("aload", 2, "Ljava/lang/Object;");
+        emitter.invoke("invokespecial", "java/lang/Object", "<init>", "()V");
+        emitter.localInstruction("aload", 2, "Ljava/lang/Object;");
+        emitter.instruction("areturn");
+        emitter.endMethod(false, 0, 0);
+
+        assertEquals(3 * ADDS_PAST_32K, call(emitter, "FarBranches", "loop", 3));
+        assertEquals(Object.class, call(emitter, "FarBranches", "skip", 1).getClass());
+    }
+
+    @Test
+    public void wideIincAndLocalsAbove255() throws Throwable {
+        ClassFileEmitter emitter = beginClass("WideLocals");
+        beginStatic(emitter, "f", "(I)I");
+        emitter.localInstruction("iload", 0, "I");
+        emitter.localInstruction("istore", 300, "I");
+        emitter.iinc(300, 1000);
+        emitter.iinc(0, -200);
+        emitter.localInstruction("iload", 0, "I");
+        // a frame with the locals above 255
+        emitter.jump("ifge", "positive");
+        emitter.localInstruction("iload", 300, "I");
+        emitter.instruction("ireturn");
+        emitter.label("positive");
+        emitter.localInstruction("iload", 300, "I");
+        emitter.localInstruction("iload", 0, "I");
+        emitter.instruction("iadd");
+        emitter.instruction("ireturn");
+        emitter.endMethod(false, 0, 0);
+
+        assertEquals(1005, call(emitter, "WideLocals", "f", 5));
+        assertEquals(1500 + 300, call(emitter, "WideLocals", "f", 500));
+    }
+
+    @Test
+    public void stackMergesToCommonSuperClass() throws Throwable {
+        ClassFileEmitter emitter = beginClass("Merge");
+        beginStatic(emitter, "box", "(I)Ljava/lang/Number;");
+        emitter.localInstruction("iload", 0, "I");
+        emitter.localInstruction("iload", 0, "I");
+        emitter.jump("ifeq", "short");
+        emitter.invoke("invokestatic", "java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;");
+        emitter.jump("goto", "end");
+        emitter.label("short");
+        emitter.invoke("invokestatic", "java/lang/Short", "valueOf", "(S)Ljava/lang/Short;");
+        // Integer and Short are both a Number, which is what is returned
+        emitter.label("end");
+        emitter.instruction("areturn");
+        emitter.endMethod(false, 0, 0);
+
+        assertEquals(7, call(emitter, "Merge", "box", 7));
+        assertEquals((short) 0, call(emitter, "Merge", "box", 0));
+    }
+
+    @Test
+    public void stackMergeOfUnknownClassesFails() {
+        ClassFileEmitter emitter = beginClass("UnknownMerge");
+        beginStatic(emitter, "pick", "(I)Ljava/lang/Object;");
+        emitter.localInstruction("iload", 0, "I");
+        emitter.jump("ifeq", "second");
+        emitter.invoke("invokestatic", "First", "get", "()LFirst;");
+        emitter.jump("goto", "end");
+        emitter.label("second");
+        emitter.invoke("invokestatic", "Second", "get", "()LSecond;");
+        emitter.label("end");
+        emitter.instruction("areturn");
+
+        try {
+            emitter.endMethod(false, 0, 0);
+            fail("Expected the merge of First and Second to fail");
+        } catch (JasminException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("COMMON SUPER CLASS"));
+        }
+    }
+
+    /**
+     * A Java-- method whose loop is too long for 16-bit branch offsets, through the whole backend.
+     */
+    @Test
+    public void longLoopFromJmm() throws Throwable {
+        StringBuilder code = new StringBuilder();
+        code.append("class LongLoop {\n");
+        code.append("    public int run(int n) {\n");
+        code.append("        int s;\n");
+        code.append("        s = 0;\n");
+        code.append("        while (0 < n) {\n");
+        for (int i = 0; i < STATEMENTS_PAST_32K; i++)
+            code.append("            s = s * 3 + n;\n");
+        code.append("            n = n - 1;\n");
+        code.append("        }\n");
+        code.append("        return s;\n");
+        code.append("    }\n");
+        code.append("    public static void main(String[] args) {\n");
+        code.append("    }\n");
+        code.append("}\n");
+
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", "false");
+        config.put("registerAllocation", "0");
+        OllirResult ollirResult = TestUtils.optimize(code.toString(), config);
+        TestUtils.noErrors(ollirResult);
+
+        ClassFileResult classFile = new MyJasminBackend().toClassFile(ollirResult);
+        assertTrue(classFile.getReports().toString(), classFile.getReports().isEmpty());
+
+        Class<?> loaded = new ByteClassLoader().define("LongLoop", classFile.getClassBytes());
+        Object instance = loaded.getDeclaredConstructor().newInstance();
+        Object result = loaded.getMethod("run", int.class).invoke(instance, 3);
+
+        int expected = 0;
+        for (int n = 3; 0 < n; n--) {
+            for (int i = 0; i < STATEMENTS_PAST_32K; i++)
+                expected = expected * 3 + n;
+        }
+        assertEquals(expected, result);
+    }
+}
@@ -0,0 +1,103 @@
+package pt.up.fe.comp2023.ollir;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2023.jasmin.MyJasminBackend;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the class {@link OllirBuilder} builds is the one {@link OllirVisitor} prints, by generating Jasmin from both.
+ */
+public class OllirBuilderTest {
+
+    private static final List<String> PROGRAMS = List.of(
+            "pt/up/fe/comp/cp2/apps/HelloWorld.jmm",
+            "pt/up/fe/comp/cp2/apps/Simple.jmm",
+            "pt/up/fe/comp/cp2/jasmin/OllirToJasminArithmetics.jmm",
+            "pt/up/fe/comp/cp2/jasmin/OllirToJasminBasic.jmm",
+            "pt/up/fe/comp/cp2/jasmin/OllirToJasminInvoke.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileArithmetic.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileAssignment.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileBasic.jmm",
+            "pt/up/fe/comp/cp2/ollir/CompileMethodInvocation.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_and.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arithmetic/Arithmetic_less.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arithmetic/ByteCodeIndexes1.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arithmetic/ByteCodeIndexes2.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayAccess.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayAsArg.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayAsArgCode.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ArrayInit.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/arrays/ComplexArrayAccess.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/basic/BasicMethodsArray.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/calls/ConditionArgsFuncCall.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/IfWhileNested.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleControlFlow.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleIfElseNot.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleIfElseStat.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleWhileStat.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/control_flow/SwitchStat.jmm",
+            "pt/up/fe/comp/cpf/4_jasmin/limits/LocalLimits.jmm",
+            "pt/up/fe/comp/cpf/5_optimizations/const_prop/PropSimple.jmm",
+            "pt/up/fe/comp/cpf/5_optimizations/const_prop/PropWithLoop.jmm",
+            "pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm",
+            "pt/up/fe/comp2023/optimize/CopyChain.jmm",
+            "pt/up/fe/comp2023/regalloc/Coalesce.jmm",
+            "pt/up/fe/comp2023/regalloc/Rematerialize.jmm",
+            "pt/up/fe/comp2023/regalloc/Spill.jmm",
+            "pt/up/fe/comp2023/regalloc/Split.jmm");
+
+    static Map<String, String> getConfig(boolean optimize) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", String.valueOf(optimize));
+        config.put("registerAllocation", "-1");
+        return config;
+    }
+
+    static String toJasmin(Optimization optimization, OllirResult ollirResult) {
+        return new MyJasminBackend().toJasmin(optimization.optimize(ollirResult)).getJasminCode();
+    }
+
+    @Test
+    public void sameClassAsVisitor() {
+        for (String program : PROGRAMS) {
+            for (boolean optimize : List.of(false, true)) {
+                Optimization optimization = new Optimization();
+                JmmSemanticsResult semanticsResult = TestUtils.analyse(SpecsIo.getResource(program), getConfig(optimize));
+                TestUtils.noErrors(semanticsResult);
+                semanticsResult = optimization.optimize(semanticsResult);
+
+                OllirVisitor ollirVisitor = new OllirVisitor(semanticsResult.getSymbolTable());
+                ollirVisitor.visit(semanticsResult.getRootNode());
+                OllirResult parsed = new OllirResult(semanticsResult, ollirVisitor.getCode(), List.of());
+
+                OllirResult built = optimization.toOllir(semanticsResult);
+
+                assertEquals("Expected the same Jasmin from both OLLIR generators for " + program + " with optimize="
+                        + optimize, toJasmin(optimization, parsed), toJasmin(optimization, built));
+            }
+        }
+    }
+
+    @Test
+    public void resultHoldsBuiltClass() {
+        JmmSemanticsResult semanticsResult = TestUtils.analyse(SpecsIo.getResource(PROGRAMS.get(0)), getConfig(false));
+        OllirResult ollirResult = new Optimization().toOllir(semanticsResult);
+
+        assertEquals("HelloWorld", ollirResult.getOllirClass().getClassName());
+        assertSame(semanticsResult.getSymbolTable(), ollirResult.getSymbolTable());
+        assertSame(semanticsResult.getConfig(), ollirResult.getConfig());
+        // Only generated with the debug option
+        assertNull(ollirResult.getOllirCode());
+    }
+}